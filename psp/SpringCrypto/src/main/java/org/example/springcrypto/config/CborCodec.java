@@ -0,0 +1,454 @@
+package org.example.springcrypto.config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Codificador/decodificador CBOR (RFC 8949) para los DTOs (records)
+ *
+ * Un record se codifica como un mapa "nombre de campo -> valor", igual que en JSON.
+ * La diferencia está en los campos byte[]: en JSON son texto Base64, aquí se
+ * envían como byte strings con los bytes en crudo y llegan al DTO sin pasar
+ * por Base64.
+ *
+ * Solo cubre lo que usan los DTOs: records, mapas, listas, texto, números,
+ * booleanos, null, byte[] y LocalDateTime (como texto ISO-8601).
+ *
+ * Al leer, los mapas y listas pueden anidarse como mucho MAX_DEPTH niveles:
+ * un documento con miles de niveles no debe acabar en StackOverflowError.
+ */
+public final class CborCodec {
+
+    private static final int MAJOR_UNSIGNED = 0;
+    private static final int MAJOR_NEGATIVE = 1;
+    private static final int MAJOR_BYTES = 2;
+    private static final int MAJOR_TEXT = 3;
+    private static final int MAJOR_ARRAY = 4;
+    private static final int MAJOR_MAP = 5;
+    private static final int MAJOR_SIMPLE = 7;
+
+    private static final int FALSE = 0xF4;
+    private static final int TRUE = 0xF5;
+    private static final int NULL = 0xF6;
+    private static final int FLOAT64 = 0xFB;
+    private static final int BREAK = 0xFF;
+    private static final int INDEFINITE = 31;
+
+    // Los DTOs no pasan de unos pocos niveles
+    static final int MAX_DEPTH = 32;
+
+    // Componentes y constructor canónico por tipo de record (la reflexión es cara)
+    private static final Map<Class<?>, RecordInfo> RECORDS = new ConcurrentHashMap<>();
+
+    private CborCodec() {
+    }
+
+    // ==================== Escritura ====================
+
+    public static byte[] encode(Object value) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        encode(value, out);
+        return out.toByteArray();
+    }
+
+    public static void encode(Object value, OutputStream out) throws IOException {
+        write(value, out);
+    }
+
+    private static void write(Object value, OutputStream out) throws IOException {
+        if (value == null) {
+            out.write(NULL);
+        } else if (value instanceof String s) {
+            writeText(s, out);
+        } else if (value instanceof Boolean b) {
+            out.write(b ? TRUE : FALSE);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            writeInteger(((Number) value).longValue(), out);
+        } else if (value instanceof Number n) {
+            out.write(FLOAT64);
+            writeLong(Double.doubleToLongBits(n.doubleValue()), out);
+        } else if (value instanceof byte[] bytes) {
+            writeBytes(bytes, out);
+        } else if (value instanceof Record record) {
+            RecordInfo info = recordInfo(record.getClass());
+            writeHeader(MAJOR_MAP, info.components.length, out);
+            for (int i = 0; i < info.components.length; i++) {
+                writeText(info.components[i].getName(), out);
+                try {
+                    write(info.components[i].getAccessor().invoke(record), out);
+                } catch (ReflectiveOperationException e) {
+                    throw new IOException("No se pudo leer " + info.components[i].getName(), e);
+                }
+            }
+        } else if (value instanceof Map<?, ?> map) {
+            writeHeader(MAJOR_MAP, map.size(), out);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeText(String.valueOf(entry.getKey()), out);
+                write(entry.getValue(), out);
+            }
+        } else if (value instanceof Collection<?> collection) {
+            writeHeader(MAJOR_ARRAY, collection.size(), out);
+            for (Object item : collection) {
+                write(item, out);
+            }
+        } else if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            writeHeader(MAJOR_ARRAY, length, out);
+            for (int i = 0; i < length; i++) {
+                write(Array.get(value, i), out);
+            }
+        } else if (value instanceof Enum<?> e) {
+            writeText(e.name(), out);
+        } else {
+            // LocalDateTime y demás: texto, como en JSON
+            writeText(value.toString(), out);
+        }
+    }
+
+    private static void writeInteger(long value, OutputStream out) throws IOException {
+        if (value >= 0) {
+            writeHeader(MAJOR_UNSIGNED, value, out);
+        } else {
+            writeHeader(MAJOR_NEGATIVE, -1 - value, out);
+        }
+    }
+
+    private static void writeText(String text, OutputStream out) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        writeHeader(MAJOR_TEXT, bytes.length, out);
+        out.write(bytes);
+    }
+
+    private static void writeBytes(byte[] bytes, OutputStream out) throws IOException {
+        writeHeader(MAJOR_BYTES, bytes.length, out);
+        out.write(bytes);
+    }
+
+    private static void writeHeader(int major, long length, OutputStream out) throws IOException {
+        int type = major << 5;
+        if (length < 24) {
+            out.write(type | (int) length);
+        } else if (length <= 0xFF) {
+            out.write(type | 24);
+            out.write((int) length);
+        } else if (length <= 0xFFFF) {
+            out.write(type | 25);
+            out.write((int) (length >>> 8));
+            out.write((int) length);
+        } else if (length <= 0xFFFFFFFFL) {
+            out.write(type | 26);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                out.write((int) (length >>> shift));
+            }
+        } else {
+            out.write(type | 27);
+            writeLong(length, out);
+        }
+    }
+
+    private static void writeLong(long value, OutputStream out) throws IOException {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+
+    // ==================== Lectura ====================
+
+    /**
+     * Decodifica un documento CBOR y lo convierte al tipo pedido
+     *
+     * @param maxBytes Tamaño máximo aceptado (protege frente a longitudes falsas)
+     */
+    public static <T> T decode(InputStream in, Type type, int maxBytes) throws IOException {
+        byte[] data = in.readNBytes(maxBytes + 1);
+        if (data.length > maxBytes) {
+            throw new IOException("Documento CBOR demasiado grande (máximo " + maxBytes + " bytes)");
+        }
+        Reader reader = new Reader(data);
+        Object raw = reader.read();
+        if (reader.pos != data.length) {
+            throw new IOException("Datos sobrantes tras el documento CBOR");
+        }
+        @SuppressWarnings("unchecked")
+        T value = (T) bind(raw, type);
+        return value;
+    }
+
+    private static Object bind(Object raw, Type type) throws IOException {
+        Class<?> target = rawClass(type);
+
+        if (raw == null) {
+            if (target == boolean.class) return false;
+            if (target == int.class) return 0;
+            if (target == long.class) return 0L;
+            if (target == double.class) return 0.0;
+            return null;
+        }
+
+        if (target == Object.class) {
+            return raw;
+        }
+        if (target == String.class) {
+            if (raw instanceof byte[] bytes) {
+                return Base64.getEncoder().encodeToString(bytes);
+            }
+            return raw.toString();
+        }
+        if (target == byte[].class) {
+            // Se acepta también texto Base64 (clientes que mandan lo mismo que en JSON)
+            return raw instanceof String s ? Base64.getDecoder().decode(s) : (byte[]) raw;
+        }
+        if (target == Long.class || target == long.class) {
+            return ((Number) raw).longValue();
+        }
+        if (target == Integer.class || target == int.class) {
+            return Math.toIntExact(((Number) raw).longValue());
+        }
+        if (target == Double.class || target == double.class) {
+            return ((Number) raw).doubleValue();
+        }
+        if (target == Boolean.class || target == boolean.class) {
+            return raw;
+        }
+        if (target == LocalDateTime.class) {
+            return LocalDateTime.parse(raw.toString());
+        }
+        if (target.isEnum()) {
+            return enumValue(target, raw.toString());
+        }
+        if (List.class.isAssignableFrom(target) || Collection.class.isAssignableFrom(target)) {
+            Type elementType = typeArgument(type, 0);
+            List<Object> list = new ArrayList<>();
+            for (Object item : (List<?>) raw) {
+                list.add(bind(item, elementType));
+            }
+            return list;
+        }
+        if (Map.class.isAssignableFrom(target)) {
+            Type valueType = typeArgument(type, 1);
+            Map<String, Object> map = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) raw).entrySet()) {
+                map.put(entry.getKey().toString(), bind(entry.getValue(), valueType));
+            }
+            return map;
+        }
+        if (target.isRecord()) {
+            Map<?, ?> fields = (Map<?, ?>) raw;
+            RecordInfo info = recordInfo(target);
+            Object[] args = new Object[info.components.length];
+            for (int i = 0; i < args.length; i++) {
+                RecordComponent component = info.components[i];
+                args[i] = bind(fields.get(component.getName()), component.getGenericType());
+            }
+            try {
+                return info.constructor.newInstance(args);
+            } catch (ReflectiveOperationException e) {
+                throw new IOException("No se pudo construir " + target.getSimpleName(), e);
+            }
+        }
+        throw new IOException("Tipo no soportado en CBOR: " + type);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object enumValue(Class<?> type, String name) {
+        return Enum.valueOf((Class<? extends Enum>) type, name);
+    }
+
+    private static Class<?> rawClass(Type type) {
+        if (type instanceof Class<?> c) return c;
+        if (type instanceof ParameterizedType p) return (Class<?>) p.getRawType();
+        return Object.class;
+    }
+
+    private static Type typeArgument(Type type, int index) {
+        if (type instanceof ParameterizedType p && p.getActualTypeArguments().length > index) {
+            return p.getActualTypeArguments()[index];
+        }
+        return Object.class;
+    }
+
+    private static RecordInfo recordInfo(Class<?> type) {
+        return RECORDS.computeIfAbsent(type, t -> {
+            RecordComponent[] components = t.getRecordComponents();
+            Class<?>[] types = new Class<?>[components.length];
+            for (int i = 0; i < components.length; i++) {
+                types[i] = components[i].getType();
+            }
+            try {
+                return new RecordInfo(components, t.getDeclaredConstructor(types));
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException("Record sin constructor canónico: " + t, e);
+            }
+        });
+    }
+
+    private record RecordInfo(RecordComponent[] components, Constructor<?> constructor) {}
+
+    /**
+     * Parser CBOR sobre un array de bytes ya leído
+     */
+    private static final class Reader {
+        private final byte[] data;
+        private int pos;
+        private int depth;
+
+        private Reader(byte[] data) {
+            this.data = data;
+        }
+
+        private Object read() throws IOException {
+            int initial = next();
+            int major = initial >>> 5;
+            int info = initial & 0x1F;
+
+            switch (major) {
+                case MAJOR_UNSIGNED:
+                    return readLength(info);
+                case MAJOR_NEGATIVE:
+                    return -1 - readLength(info);
+                case MAJOR_BYTES:
+                    return readString(info, MAJOR_BYTES);
+                case MAJOR_TEXT:
+                    return new String(readString(info, MAJOR_TEXT), StandardCharsets.UTF_8);
+                case MAJOR_ARRAY: {
+                    enter();
+                    List<Object> list = new ArrayList<>();
+                    if (info == INDEFINITE) {
+                        while (peek() != BREAK) list.add(read());
+                        pos++;
+                    } else {
+                        long n = readLength(info);
+                        for (long i = 0; i < n; i++) list.add(read());
+                    }
+                    depth--;
+                    return list;
+                }
+                case MAJOR_MAP: {
+                    enter();
+                    Map<Object, Object> map = new LinkedHashMap<>();
+                    if (info == INDEFINITE) {
+                        while (peek() != BREAK) map.put(read(), read());
+                        pos++;
+                    } else {
+                        long n = readLength(info);
+                        for (long i = 0; i < n; i++) map.put(read(), read());
+                    }
+                    depth--;
+                    return map;
+                }
+                case 6: { // tag: se ignora y se lee el valor
+                    readLength(info);
+                    enter();
+                    Object tagged = read();
+                    depth--;
+                    return tagged;
+                }
+                default:
+                    return readSimple(info);
+            }
+        }
+
+        private void enter() throws IOException {
+            if (++depth > MAX_DEPTH) {
+                throw new IOException("Documento CBOR demasiado anidado (máximo " + MAX_DEPTH + " niveles)");
+            }
+        }
+
+        private Object readSimple(int info) throws IOException {
+            return switch (info) {
+                case 20 -> false;
+                case 21 -> true;
+                case 22, 23 -> null;
+                case 25 -> halfToDouble((int) readUnsigned(2));
+                case 26 -> (double) Float.intBitsToFloat((int) readUnsigned(4));
+                case 27 -> Double.longBitsToDouble(readUnsigned(8));
+                default -> throw new IOException("Valor simple CBOR no soportado: " + info);
+            };
+        }
+
+        private byte[] readString(int info, int major) throws IOException {
+            if (info != INDEFINITE) {
+                long length = readLength(info);
+                if (length > data.length - pos) {
+                    throw new IOException("Longitud CBOR fuera de rango");
+                }
+                byte[] bytes = new byte[(int) length];
+                System.arraycopy(data, pos, bytes, 0, bytes.length);
+                pos += bytes.length;
+                return bytes;
+            }
+
+            // Cadena troceada: concatenar los fragmentos
+            ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+            while (peek() != BREAK) {
+                int chunk = next();
+                // Los fragmentos son de longitud definida (RFC 8949, 3.2.3): sin recursión
+                if (chunk >>> 5 != major || (chunk & 0x1F) == INDEFINITE) {
+                    throw new IOException("Fragmento CBOR de tipo incorrecto");
+                }
+                chunks.write(readString(chunk & 0x1F, major));
+            }
+            pos++;
+            return chunks.toByteArray();
+        }
+
+        private long readLength(int info) throws IOException {
+            if (info < 24) return info;
+            return switch (info) {
+                case 24 -> readUnsigned(1);
+                case 25 -> readUnsigned(2);
+                case 26 -> readUnsigned(4);
+                case 27 -> readUnsigned(8);
+                default -> throw new IOException("Longitud CBOR no válida: " + info);
+            };
+        }
+
+        private long readUnsigned(int bytes) throws IOException {
+            long value = 0;
+            for (int i = 0; i < bytes; i++) {
+                value = (value << 8) | next();
+            }
+            return value;
+        }
+
+        private int next() throws IOException {
+            if (pos >= data.length) {
+                throw new IOException("Documento CBOR incompleto");
+            }
+            return data[pos++] & 0xFF;
+        }
+
+        private int peek() throws IOException {
+            if (pos >= data.length) {
+                throw new IOException("Documento CBOR incompleto");
+            }
+            return data[pos] & 0xFF;
+        }
+
+        private static double halfToDouble(int half) {
+            int exp = (half >> 10) & 0x1F;
+            int mant = half & 0x3FF;
+            double value;
+            if (exp == 0) value = mant * Math.pow(2, -24);
+            else if (exp != 31) value = (mant + 1024) * Math.pow(2, exp - 25);
+            else value = mant == 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+            return (half & 0x8000) != 0 ? -value : value;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.example.springcrypto.config;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Convierte los DTOs a/desde CBOR (application/cbor)
+ *
+ * Se registra DESPUÉS del conversor JSON: si el cliente no pide nada
+ * concreto (sin Accept o Accept genérico), la respuesta sigue siendo JSON.
+ */
+public class CborHttpMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+    private final int maxRequestBytes;
+
+    public CborHttpMessageConverter(int maxRequestBytes) {
+        super(MediaType.APPLICATION_CBOR);
+        this.maxRequestBytes = maxRequestBytes;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return clazz.isRecord() || Map.class.isAssignableFrom(clazz) || Collection.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        try {
+            return CborCodec.decode(inputMessage.getBody(), clazz, maxRequestBytes);
+        } catch (IOException | RuntimeException e) {
+            throw new HttpMessageNotReadableException("CBOR no válido: " + e.getMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected void writeInternal(Object value, HttpOutputMessage outputMessage) throws IOException {
+        byte[] body = CborCodec.encode(value);
+        outputMessage.getHeaders().setContentLength(body.length);
+        outputMessage.getBody().write(body);
+    }
+}
@@ -0,0 +1,42 @@
+package org.example.springcrypto.config;
+
+import org.example.springcrypto.interceptor.AdmissionControlInterceptor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private final AdmissionControlInterceptor admissionControlInterceptor;
+    private final int maxCborRequestBytes;
+
+    public WebConfig(
+        AdmissionControlInterceptor admissionControlInterceptor,
+        @Value("${cbor.max-request-bytes:16777216}") int maxCborRequestBytes
+    ) {
+        this.admissionControlInterceptor = admissionControlInterceptor;
+        this.maxCborRequestBytes = maxCborRequestBytes;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // Todo /api: el interceptor decide el coste con su tabla de patrones
+        registry.addInterceptor(admissionControlInterceptor)
+                .addPathPatterns("/api/**");
+    }
+
+    /**
+     * CBOR como formato alternativo (Content-Type / Accept: application/cbor)
+     *
+     * Se añade al final de la lista para que JSON siga siendo el formato por defecto.
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new CborHttpMessageConverter(maxCborRequestBytes));
+    }
+}
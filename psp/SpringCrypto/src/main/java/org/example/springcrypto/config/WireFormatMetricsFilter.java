@@ -0,0 +1,240 @@
+package org.example.springcrypto.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.OutputStreamWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mide, por formato (JSON o CBOR), los bytes recibidos/enviados y el tiempo
+ * de CPU del servidor por petición en los endpoints de /api
+ *
+ * Los resultados se consultan en GET /api/diagnostics/wire-format.
+ */
+@Component
+public class WireFormatMetricsFilter extends OncePerRequestFilter {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final Map<String, FormatStats> stats = new ConcurrentHashMap<>();
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return !path.startsWith("/api/") || path.startsWith("/api/diagnostics/")
+            || path.startsWith("/api/jobs/") && path.endsWith("/events");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long cpuStart = THREADS.getCurrentThreadCpuTime();
+        CountingRequest countingRequest = new CountingRequest(request);
+        CountingResponse counting = new CountingResponse(response);
+        try {
+            chain.doFilter(countingRequest, counting);
+        } finally {
+            counting.flushWriter();
+            long cpu = THREADS.getCurrentThreadCpuTime() - cpuStart;
+            // Bytes leídos de verdad (Content-Length falta en chunked y puede no coincidir)
+            stats.computeIfAbsent(formatOf(request, response), k -> new FormatStats())
+                .record(countingRequest.bytesRead, counting.bytesWritten, cpu);
+        }
+    }
+
+    /**
+     * Resumen por formato: peticiones, bytes medios de entrada/salida y CPU media (µs)
+     */
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        stats.forEach((format, s) -> result.put(format, s.toMap()));
+        return result;
+    }
+
+    private static String formatOf(HttpServletRequest request, HttpServletResponse response) {
+        String type = response.getContentType();
+        if (type == null) {
+            type = request.getContentType();
+        }
+        if (type == null) {
+            return "none";
+        }
+        if (type.startsWith("application/cbor")) {
+            return "cbor";
+        }
+        return type.startsWith("application/json") ? "json" : "other";
+    }
+
+    private static final class FormatStats {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder bytesIn = new LongAdder();
+        private final LongAdder bytesOut = new LongAdder();
+        private final LongAdder cpuNanos = new LongAdder();
+
+        private void record(long in, long out, long cpu) {
+            requests.increment();
+            bytesIn.add(in);
+            bytesOut.add(out);
+            cpuNanos.add(cpu);
+        }
+
+        private Map<String, Object> toMap() {
+            long n = Math.max(1, requests.sum());
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("requests", requests.sum());
+            map.put("avgBytesIn", bytesIn.sum() / n);
+            map.put("avgBytesOut", bytesOut.sum() / n);
+            map.put("avgCpuMicros", cpuNanos.sum() / n / 1000);
+            return map;
+        }
+    }
+
+    /**
+     * Envoltorio que cuenta los bytes leídos del cuerpo de la petición
+     */
+    private static final class CountingRequest extends HttpServletRequestWrapper {
+        private long bytesRead;
+        private ServletInputStream stream;
+        private BufferedReader reader;
+
+        private CountingRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (stream == null) {
+                ServletInputStream delegate = super.getInputStream();
+                stream = new ServletInputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        int b = delegate.read();
+                        if (b >= 0) {
+                            bytesRead++;
+                        }
+                        return b;
+                    }
+
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        int n = delegate.read(b, off, len);
+                        if (n > 0) {
+                            bytesRead += n;
+                        }
+                        return n;
+                    }
+
+                    @Override
+                    public boolean isFinished() {
+                        return delegate.isFinished();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return delegate.isReady();
+                    }
+
+                    @Override
+                    public void setReadListener(ReadListener listener) {
+                        delegate.setReadListener(listener);
+                    }
+                };
+            }
+            return stream;
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            if (reader == null) {
+                String encoding = getCharacterEncoding() != null ? getCharacterEncoding() : StandardCharsets.UTF_8.name();
+                reader = new BufferedReader(new InputStreamReader(getInputStream(), encoding));
+            }
+            return reader;
+        }
+    }
+
+    /**
+     * Envoltorio que cuenta los bytes escritos en la respuesta
+     */
+    private static final class CountingResponse extends HttpServletResponseWrapper {
+        private long bytesWritten;
+        private ServletOutputStream stream;
+        private PrintWriter writer;
+
+        private CountingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (stream == null) {
+                ServletOutputStream delegate = super.getOutputStream();
+                stream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        delegate.write(b);
+                        bytesWritten++;
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        delegate.write(b, off, len);
+                        bytesWritten += len;
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        delegate.flush();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return delegate.isReady();
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener listener) {
+                        delegate.setWriteListener(listener);
+                    }
+                };
+            }
+            return stream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                String encoding = getCharacterEncoding() != null ? getCharacterEncoding() : StandardCharsets.UTF_8.name();
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), encoding));
+            }
+            return writer;
+        }
+
+        private void flushWriter() {
+            if (writer != null) {
+                writer.flush();
+            }
+        }
+    }
+}
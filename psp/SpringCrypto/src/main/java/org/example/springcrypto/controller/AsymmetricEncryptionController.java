@@ -2,13 +2,18 @@ package org.example.springcrypto.controller;
 
 import org.example.springcrypto.dto.*;
 import org.example.springcrypto.service.AsymmetricEncryptionService;
+import org.example.springcrypto.service.BatchSigningService;
+import org.example.springcrypto.service.KeyHandleService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.security.KeyPair;
 import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.util.Base64;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * REST Controller para encriptación asimétrica
@@ -18,9 +23,15 @@ import java.util.Map;
 public class AsymmetricEncryptionController {
 
     private final AsymmetricEncryptionService encryptionService;
+    private final KeyHandleService keyHandleService;
+    private final BatchSigningService batchSigningService;
 
-    public AsymmetricEncryptionController(AsymmetricEncryptionService encryptionService) {
+    public AsymmetricEncryptionController(AsymmetricEncryptionService encryptionService,
+                                          KeyHandleService keyHandleService,
+                                          BatchSigningService batchSigningService) {
         this.encryptionService = encryptionService;
+        this.keyHandleService = keyHandleService;
+        this.batchSigningService = batchSigningService;
     }
 
     /**
@@ -32,14 +43,12 @@ public class AsymmetricEncryptionController {
     public ResponseEntity<?> generateKeyPair(@RequestParam(required = false, defaultValue = "RSA") String algorithm) {
         try {
             KeyPair keyPair = encryptionService.generateKeyPair(algorithm);
-            String publicKeyBase64 = encryptionService.publicKeyToBase64(keyPair.getPublic());
-            String privateKeyBase64 = encryptionService.privateKeyToBase64(keyPair.getPrivate());
 
-            return ResponseEntity.ok(Map.of(
-                    "publicKey", publicKeyBase64,
-                    "privateKey", privateKeyBase64,
-                    "algorithm", keyPair.getPublic().getAlgorithm(),
-                    "keySize", algorithm.equalsIgnoreCase("EC") ? "256 (P-256/secp256r1)" : "2048"
+            return ResponseEntity.ok(new KeyPairResponse(
+                    keyPair.getPublic().getEncoded(),
+                    keyPair.getPrivate().getEncoded(),
+                    keyPair.getPublic().getAlgorithm(),
+                    algorithm.equalsIgnoreCase("EC") ? "256 (P-256/secp256r1)" : "2048"
             ));
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
@@ -52,18 +61,19 @@ public class AsymmetricEncryptionController {
      * POST /api/asymmetric/encrypt
      */
     @PostMapping("/encrypt")
-    public ResponseEntity<?> encrypt(@RequestBody AsymmetricEncryptRequest request) {
+    public ResponseEntity<?> encrypt(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestBody AsymmetricEncryptRequest request) {
         try {
-            PublicKey publicKey = encryptionService.base64ToPublicKey(request.publicKey());
+            PublicKey publicKey = resolvePublicKey(userId, request.keyId(), request.publicKey());
             String padding = request.padding() != null ? request.padding().toUpperCase() : "OAEP";
 
-            String encryptedText = switch (padding) {
-                case "PKCS1" -> encryptionService.encryptPKCS1(request.plainText(), publicKey);
-                case "OAEP" -> encryptionService.encryptOAEP(request.plainText(), publicKey);
-                default -> throw new IllegalArgumentException("Padding no soportado: " + padding);
-            };
+            byte[] encrypted = encryptionService.encryptBytes(padding, request.plainText(), publicKey);
 
-            return ResponseEntity.ok(new AsymmetricEncryptResponse(encryptedText, padding));
+            return ResponseEntity.ok(new AsymmetricEncryptResponse(encrypted, padding));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
                     .body(Map.of("error", e.getMessage()));
@@ -75,18 +85,19 @@ public class AsymmetricEncryptionController {
      * POST /api/asymmetric/decrypt
      */
     @PostMapping("/decrypt")
-    public ResponseEntity<?> decrypt(@RequestBody AsymmetricDecryptRequest request) {
+    public ResponseEntity<?> decrypt(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestBody AsymmetricDecryptRequest request) {
         try {
-            PrivateKey privateKey = encryptionService.base64ToPrivateKey(request.privateKey());
+            PrivateKey privateKey = resolvePrivateKey(userId, request.keyId(), request.privateKey());
             String padding = request.padding() != null ? request.padding().toUpperCase() : "OAEP";
 
-            String plainText = switch (padding) {
-                case "PKCS1" -> encryptionService.decryptPKCS1(request.encryptedText(), privateKey);
-                case "OAEP" -> encryptionService.decryptOAEP(request.encryptedText(), privateKey);
-                default -> throw new IllegalArgumentException("Padding no soportado: " + padding);
-            };
+            String plainText = encryptionService.decryptBytes(padding, request.encryptedText(), privateKey);
 
             return ResponseEntity.ok(new AsymmetricDecryptResponse(plainText));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
                     .body(Map.of("error", e.getMessage()));
@@ -98,12 +109,17 @@ public class AsymmetricEncryptionController {
      * POST /api/asymmetric/sign
      */
     @PostMapping("/sign")
-    public ResponseEntity<?> sign(@RequestBody SignRequest request) {
+    public ResponseEntity<?> sign(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestBody SignRequest request) {
         try {
-            PrivateKey privateKey = encryptionService.base64ToPrivateKey(request.privateKey());
-            String signature = encryptionService.sign(request.message(), privateKey);
+            PrivateKey privateKey = resolvePrivateKey(userId, request.keyId(), request.privateKey());
+            byte[] signature = encryptionService.signBytes(request.message(), privateKey);
 
             return ResponseEntity.ok(new SignResponse(signature));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
                     .body(Map.of("error", e.getMessage()));
@@ -115,9 +131,11 @@ public class AsymmetricEncryptionController {
      * POST /api/asymmetric/verify
      */
     @PostMapping("/verify")
-    public ResponseEntity<?> verify(@RequestBody VerifyRequest request) {
+    public ResponseEntity<?> verify(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestBody VerifyRequest request) {
         try {
-            PublicKey publicKey = encryptionService.base64ToPublicKey(request.publicKey());
+            PublicKey publicKey = resolvePublicKey(userId, request.keyId(), request.publicKey());
             boolean valid = encryptionService.verify(
                     request.message(),
                     request.signature(),
@@ -125,6 +143,58 @@ public class AsymmetricEncryptionController {
             );
 
             return ResponseEntity.ok(new VerifyResponse(valid));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Firma por lotes (árbol de Merkle) con una clave PRIVATE registrada
+     * POST /api/asymmetric/sign-batch
+     *
+     * La respuesta llega cuando se firma el lote (unos milisegundos): incluye
+     * la firma de la raíz y la prueba de inclusión de este mensaje.
+     */
+    @PostMapping("/sign-batch")
+    public CompletableFuture<ResponseEntity<?>> signBatch(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestBody BatchSignRequest request) {
+        try {
+            return batchSigningService.submit(userId, request.keyId(), request.message())
+                    .handle((response, error) -> {
+                        if (error == null) {
+                            return ResponseEntity.ok(response);
+                        }
+                        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                        return ResponseEntity.internalServerError()
+                                .body(Map.of("error", String.valueOf(cause.getMessage())));
+                    });
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage())));
+        }
+    }
+
+    /**
+     * Verifica una firma por lotes
+     * POST /api/asymmetric/verify-batch
+     */
+    @PostMapping("/verify-batch")
+    public ResponseEntity<?> verifyBatch(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestBody BatchVerifyRequest request) {
+        try {
+            PublicKey publicKey = resolvePublicKey(userId, request.keyId(), request.publicKey());
+            boolean valid = batchSigningService.verify(request, publicKey);
+
+            return ResponseEntity.ok(new VerifyResponse(valid));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
                     .body(Map.of("error", e.getMessage()));
@@ -136,9 +206,11 @@ public class AsymmetricEncryptionController {
      * POST /api/asymmetric/encrypt-hybrid
      */
     @PostMapping("/encrypt-hybrid")
-    public ResponseEntity<?> encryptHybrid(@RequestBody HybridEncryptRequest request) {
+    public ResponseEntity<?> encryptHybrid(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestBody HybridEncryptRequest request) {
         try {
-            PublicKey publicKey = encryptionService.base64ToPublicKey(request.publicKey());
+            PublicKey publicKey = resolvePublicKey(userId, request.keyId(), request.publicKey());
             AsymmetricEncryptionService.HybridEncryptionResult result =
                     encryptionService.encryptHybrid(request.plainText(), publicKey);
 
@@ -147,6 +219,9 @@ public class AsymmetricEncryptionController {
                     result.encryptedKey(),
                     result.iv()
             ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
                     .body(Map.of("error", e.getMessage()));
@@ -158,9 +233,11 @@ public class AsymmetricEncryptionController {
      * POST /api/asymmetric/decrypt-hybrid
      */
     @PostMapping("/decrypt-hybrid")
-    public ResponseEntity<?> decryptHybrid(@RequestBody HybridDecryptRequest request) {
+    public ResponseEntity<?> decryptHybrid(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestBody HybridDecryptRequest request) {
         try {
-            PrivateKey privateKey = encryptionService.base64ToPrivateKey(request.privateKey());
+            PrivateKey privateKey = resolvePrivateKey(userId, request.keyId(), request.privateKey());
             AsymmetricEncryptionService.HybridEncryptionResult result =
                     new AsymmetricEncryptionService.HybridEncryptionResult(
                             request.encryptedData(),
@@ -171,6 +248,9 @@ public class AsymmetricEncryptionController {
             String plainText = encryptionService.decryptHybrid(result, privateKey);
 
             return ResponseEntity.ok(new HybridDecryptResponse(plainText));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
                     .body(Map.of("error", e.getMessage()));
@@ -183,27 +263,27 @@ public class AsymmetricEncryptionController {
      * Body: { "plainText": "texto", "publicKey": "clave_publica_EC_base64" }
      */
     @PostMapping("/encrypt-ecies")
-    public ResponseEntity<?> encryptECIES(@RequestBody Map<String, String> request) {
+    public ResponseEntity<?> encryptECIES(@RequestBody EciesEncryptRequest request) {
         try {
-            String plainText = request.get("plainText");
-            String publicKeyBase64 = request.get("publicKey");
-
-            if (plainText == null || publicKeyBase64 == null) {
+            if (request.plainText() == null || request.publicKey() == null) {
                 return ResponseEntity.badRequest()
                         .body(Map.of("error", "Se requieren los campos 'plainText' y 'publicKey'"));
             }
 
-            PublicKey publicKey = encryptionService.base64ToPublicKey(publicKeyBase64);
+            PublicKey publicKey = encryptionService.bytesToPublicKey(request.publicKey());
             AsymmetricEncryptionService.ECIESResult result =
-                    encryptionService.encryptECIES(plainText, publicKey);
+                    encryptionService.encryptECIES(request.plainText(), publicKey);
 
-            return ResponseEntity.ok(Map.of(
-                    "ephemeralPublicKey", result.ephemeralPublicKey(),
-                    "encryptedData", result.encryptedData(),
-                    "iv", result.iv(),
-                    "algorithm", "ECIES (ECDH + AES-GCM)",
-                    "description", "Cifrado híbrido con curvas elípticas"
+            return ResponseEntity.ok(new EciesEncryptResponse(
+                    result.ephemeralPublicKey(),
+                    result.encryptedData(),
+                    result.iv(),
+                    "ECIES (ECDH + AES-GCM)",
+                    "Cifrado híbrido con curvas elípticas"
             ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
                     .body(Map.of("error", e.getMessage()));
@@ -221,29 +301,24 @@ public class AsymmetricEncryptionController {
      * }
      */
     @PostMapping("/decrypt-ecies")
-    public ResponseEntity<?> decryptECIES(@RequestBody Map<String, String> request) {
+    public ResponseEntity<?> decryptECIES(@RequestBody EciesDecryptRequest request) {
         try {
-            String privateKeyBase64 = request.get("privateKey");
-            String ephemeralPublicKey = request.get("ephemeralPublicKey");
-            String encryptedData = request.get("encryptedData");
-            String iv = request.get("iv");
-
-            if (privateKeyBase64 == null || ephemeralPublicKey == null ||
-                encryptedData == null || iv == null) {
+            if (request.privateKey() == null || request.ephemeralPublicKey() == null ||
+                request.encryptedData() == null || request.iv() == null) {
                 return ResponseEntity.badRequest()
                         .body(Map.of("error", "Se requieren todos los campos: privateKey, ephemeralPublicKey, encryptedData, iv"));
             }
 
-            PrivateKey privateKey = encryptionService.base64ToPrivateKey(privateKeyBase64);
-            AsymmetricEncryptionService.ECIESResult eciesResult =
-                    new AsymmetricEncryptionService.ECIESResult(ephemeralPublicKey, encryptedData, iv);
+            PrivateKey privateKey = encryptionService.bytesToPrivateKey(request.privateKey());
+            AsymmetricEncryptionService.ECIESResult eciesResult = new AsymmetricEncryptionService.ECIESResult(
+                    request.ephemeralPublicKey(), request.encryptedData(), request.iv());
 
             String plainText = encryptionService.decryptECIES(eciesResult, privateKey);
 
-            return ResponseEntity.ok(Map.of(
-                    "plainText", plainText,
-                    "algorithm", "ECIES"
-            ));
+            return ResponseEntity.ok(new EciesDecryptResponse(plainText, "ECIES"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
                     .body(Map.of("error", e.getMessage()));
@@ -322,18 +397,18 @@ public class AsymmetricEncryptionController {
                     ),
                     "hybridEncryption", Map.of(
                             "originalLength", longMessage.length(),
-                            "encryptedData", hybridResult.encryptedData().substring(0, 50) + "...",
+                            "encryptedData", Base64.getEncoder().encodeToString(hybridResult.encryptedData()).substring(0, 50) + "...",
                             "decryptedLength", decryptedHybrid.length(),
                             "match", decryptedHybrid.equals(longMessage),
                             "description", "RSA + AES-GCM"
                     ),
                     "eciesEncryption", Map.of(
                             "originalLength", longMessage.length(),
-                            "encryptedData", eciesResult.encryptedData().substring(0, 50) + "...",
+                            "encryptedData", Base64.getEncoder().encodeToString(eciesResult.encryptedData()).substring(0, 50) + "...",
                             "decryptedLength", decryptedECIES.length(),
                             "match", decryptedECIES.equals(longMessage),
                             "description", "ECIES (ECDH + AES-GCM)",
-                            "ephemeralPublicKey", eciesResult.ephemeralPublicKey().substring(0, 50) + "..."
+                            "ephemeralPublicKey", Base64.getEncoder().encodeToString(eciesResult.ephemeralPublicKey()).substring(0, 50) + "..."
                     )
             ));
         } catch (Exception e) {
@@ -341,5 +416,24 @@ public class AsymmetricEncryptionController {
                     .body(Map.of("error", e.getMessage()));
         }
     }
-}
 
+    /**
+     * Clave pública registrada (keyId) o, si no, la enviada en la petición
+     */
+    private PublicKey resolvePublicKey(Long userId, String keyId, byte[] publicKey) throws Exception {
+        if (keyId != null && !keyId.isEmpty()) {
+            return keyHandleService.getPublicKey(userId, keyId);
+        }
+        return encryptionService.bytesToPublicKey(publicKey);
+    }
+
+    /**
+     * Clave privada registrada (keyId) o, si no, la enviada en la petición
+     */
+    private PrivateKey resolvePrivateKey(Long userId, String keyId, byte[] privateKey) throws Exception {
+        if (keyId != null && !keyId.isEmpty()) {
+            return keyHandleService.getPrivateKey(userId, keyId);
+        }
+        return encryptionService.bytesToPrivateKey(privateKey);
+    }
+}
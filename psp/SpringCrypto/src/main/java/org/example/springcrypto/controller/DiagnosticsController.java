@@ -0,0 +1,62 @@
+package org.example.springcrypto.controller;
+
+import org.example.springcrypto.config.WireFormatMetricsFilter;
+import org.example.springcrypto.service.BatchSigningService;
+import org.example.springcrypto.service.JcaProviderSelector;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * REST Controller de diagnóstico (métricas internas del servidor)
+ */
+@RestController
+@RequestMapping("/api/diagnostics")
+public class DiagnosticsController {
+
+    private final WireFormatMetricsFilter wireFormatMetrics;
+    private final BatchSigningService batchSigningService;
+    private final JcaProviderSelector providerSelector;
+
+    public DiagnosticsController(WireFormatMetricsFilter wireFormatMetrics,
+                                 BatchSigningService batchSigningService,
+                                 JcaProviderSelector providerSelector) {
+        this.wireFormatMetrics = wireFormatMetrics;
+        this.batchSigningService = batchSigningService;
+        this.providerSelector = providerSelector;
+    }
+
+    /**
+     * Bytes medios por petición y CPU media del servidor, por formato (json / cbor)
+     * GET /api/diagnostics/wire-format
+     */
+    @GetMapping("/wire-format")
+    public ResponseEntity<Map<String, Map<String, Object>>> wireFormat() {
+        return ResponseEntity.ok(wireFormatMetrics.snapshot());
+    }
+
+    /**
+     * Mensajes firmados por lotes frente a firmas reales con la clave privada
+     * GET /api/diagnostics/batch-signing
+     */
+    @GetMapping("/batch-signing")
+    public ResponseEntity<Map<String, Object>> batchSigning() {
+        long messages = batchSigningService.getMessagesSigned();
+        long signatures = batchSigningService.getRootSignatures();
+        return ResponseEntity.ok(Map.of(
+                "messagesSigned", messages,
+                "rootSignatures", signatures,
+                "messagesPerSignature", signatures == 0 ? 0.0 : (double) messages / signatures
+        ));
+    }
+
+    /**
+     * Proveedor JCA elegido por transformación, rendimiento medido e intrínsecos activos
+     * GET /api/diagnostics/providers
+     */
+    @GetMapping("/providers")
+    public ResponseEntity<Map<String, Object>> providers() {
+        return ResponseEntity.ok(providerSelector.report());
+    }
+}
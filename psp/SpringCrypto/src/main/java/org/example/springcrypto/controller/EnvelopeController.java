@@ -0,0 +1,96 @@
+package org.example.springcrypto.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.example.springcrypto.dto.*;
+import org.example.springcrypto.interceptor.AdmissionControlInterceptor;
+import org.example.springcrypto.service.AdmissionControlService;
+import org.example.springcrypto.service.EnvelopeService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * REST Controller para cifrar/descifrar con sobres autodescriptivos
+ *
+ * El sobre lleva algoritmo, keyId, IV y tag: para descifrar no hace falta
+ * saber el modo, y /decrypt acepta lotes que mezclen algoritmos.
+ *
+ * El coste de admisión de /decrypt depende del lote (cada sobre RSA o ECIES
+ * es una operación con clave privada): el interceptor cobra la petición y
+ * aquí, ya leído el cuerpo, se cobran los sobres.
+ */
+@RestController
+@RequestMapping("/api/envelope")
+public class EnvelopeController {
+
+    private final EnvelopeService envelopeService;
+    private final AdmissionControlService admissionControlService;
+
+    public EnvelopeController(EnvelopeService envelopeService, AdmissionControlService admissionControlService) {
+        this.envelopeService = envelopeService;
+        this.admissionControlService = admissionControlService;
+    }
+
+    /**
+     * Cifra un texto y devuelve el sobre
+     * POST /api/envelope/encrypt
+     * Body: { "plainText": "...", "algorithm": "AES_GCM", "keyId": "..." }
+     */
+    @PostMapping("/encrypt")
+    public ResponseEntity<?> encrypt(
+        @RequestHeader(value = "X-User-Id", required = false) Long userId,
+        @RequestBody EnvelopeEncryptRequest request
+    ) {
+        try {
+            return ResponseEntity.ok(envelopeService.seal(userId, request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Descifra uno o varios sobres, sea cual sea su algoritmo
+     * POST /api/envelope/decrypt
+     * Body: { "envelopes": ["U0MB..."], "privateKey": "..." }
+     */
+    @PostMapping("/decrypt")
+    public ResponseEntity<?> decrypt(
+        @RequestHeader(value = "X-User-Id", required = false) Long userId,
+        @RequestBody EnvelopeDecryptRequest request,
+        HttpServletRequest httpRequest
+    ) {
+        int cost = envelopeService.decryptCost(request);
+        if (cost > admissionControlService.getBurstTokens()) {
+            return ResponseEntity.badRequest().body(Map.of("error",
+                "El lote cuesta " + cost + " tokens (máximo " + admissionControlService.getBurstTokens()
+                    + " por petición): divídelo"));
+        }
+        AdmissionControlService.Decision decision = cost > 0
+            ? admissionControlService.tryAdmit(AdmissionControlInterceptor.clientKey(httpRequest), cost)
+            : null;
+        if (decision != null && !decision.admitted()) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header("Retry-After", String.valueOf(decision.retryAfterSeconds()))
+                .body(Map.of("error", "Demasiadas operaciones costosas, reintente más tarde"));
+        }
+
+        long start = System.nanoTime();
+        boolean success = true;
+        try {
+            return ResponseEntity.ok(envelopeService.open(userId, request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            success = false;
+            throw e;
+        } finally {
+            if (decision != null && decision.limiterAcquired()) {
+                admissionControlService.onComplete(System.nanoTime() - start, cost, success);
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.example.springcrypto.controller;
+
+import org.example.springcrypto.dto.*;
+import org.example.springcrypto.service.JobService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * REST Controller para trabajos criptográficos asíncronos
+ *
+ * Flujo:
+ * 1. POST /api/jobs/keypair o /api/jobs/derive  -> 202 con el jobId
+ * 2. GET /api/jobs/{id}                         -> estado y resultado
+ *    o GET /api/jobs/{id}/events (SSE)          -> un evento cuando termina
+ *
+ * Todas las peticiones llevan X-User-Id: solo quien creó el trabajo lo ve
+ * (para el resto, 404).
+ */
+@RestController
+@RequestMapping("/api/jobs")
+public class JobController {
+
+    private static final long SSE_TIMEOUT_MS = 120_000;
+
+    private final JobService jobService;
+
+    public JobController(JobService jobService) {
+        this.jobService = jobService;
+    }
+
+    /**
+     * Genera un par de claves en segundo plano
+     * POST /api/jobs/keypair
+     * Body: { "algorithm": "RSA", "keySize": 4096 }
+     */
+    @PostMapping("/keypair")
+    public ResponseEntity<?> submitKeyPair(
+            @RequestHeader("X-User-Id") Long userId,
+            @RequestBody KeyPairJobRequest request) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(jobService.submitKeyPair(userId, request));
+        } catch (RejectedExecutionException e) {
+            return queueFull();
+        }
+    }
+
+    /**
+     * Deriva una clave con PBKDF2 en segundo plano
+     * POST /api/jobs/derive
+     * Body: { "password": "...", "iterations": 600000 }
+     */
+    @PostMapping("/derive")
+    public ResponseEntity<?> submitDerive(
+            @RequestHeader("X-User-Id") Long userId,
+            @RequestBody DeriveKeyJobRequest request) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(jobService.submitDerive(userId, request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            return queueFull();
+        }
+    }
+
+    /**
+     * Consulta el estado de un trabajo
+     * GET /api/jobs/{id}
+     */
+    @GetMapping("/{jobId}")
+    public ResponseEntity<JobResponse> getJob(
+            @RequestHeader("X-User-Id") Long userId,
+            @PathVariable String jobId) {
+        return ResponseEntity.of(jobService.getJob(userId, jobId));
+    }
+
+    /**
+     * Recibe el resultado por Server-Sent Events cuando el trabajo termine
+     * GET /api/jobs/{id}/events
+     */
+    @GetMapping(value = "/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamJob(
+            @RequestHeader("X-User-Id") Long userId,
+            @PathVariable String jobId) {
+        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MS);
+
+        Consumer<JobResponse> listener = job -> {
+            try {
+                emitter.send(SseEmitter.event().name("job").data(job, MediaType.APPLICATION_JSON));
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                // IllegalStateException: el emitter ya caducó o se cerró
+                emitter.completeWithError(e);
+            }
+        };
+        // Si la conexión termina antes que el trabajo, el trabajo no debe seguir guardando el listener
+        emitter.onTimeout(() -> jobService.removeListener(jobId, listener));
+        emitter.onCompletion(() -> jobService.removeListener(jobId, listener));
+        emitter.onError(e -> jobService.removeListener(jobId, listener));
+
+        if (!jobService.onFinished(userId, jobId, listener)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    private ResponseEntity<?> queueFull() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "1")
+                .body(Map.of("error", "Cola de trabajos llena, reintente más tarde"));
+    }
+}
@@ -0,0 +1,79 @@
+package org.example.springcrypto.controller;
+
+import org.example.springcrypto.dto.*;
+import org.example.springcrypto.service.KeyHandleService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * REST Controller para registrar claves en el servidor
+ *
+ * Flujo:
+ * 1. POST /api/keys con la clave (o sin ella para generar una AES) -> keyId
+ * 2. Usar "keyId" en /api/symmetric/* y /api/asymmetric/* en lugar de la clave
+ * 3. DELETE /api/keys/{keyId} cuando ya no se necesite
+ *
+ * Todas las peticiones con keyId llevan X-User-Id (sin él, 400): las claves
+ * son de quien las registró.
+ */
+@RestController
+@RequestMapping("/api/keys")
+public class KeyHandleController {
+
+    private final KeyHandleService keyHandleService;
+
+    public KeyHandleController(KeyHandleService keyHandleService) {
+        this.keyHandleService = keyHandleService;
+    }
+
+    /**
+     * Registra una clave
+     * POST /api/keys
+     * Body: { "type": "PRIVATE", "key": "MIIEvQ..." }  o  { "type": "SECRET" }
+     */
+    @PostMapping
+    public ResponseEntity<?> register(
+        @RequestHeader("X-User-Id") Long userId,
+        @RequestBody RegisterKeyRequest request
+    ) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(keyHandleService.register(userId, request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Clave no válida: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Lista las claves registradas del usuario (sin el material de la clave)
+     * GET /api/keys
+     */
+    @GetMapping
+    public ResponseEntity<List<KeyHandleResponse>> list(
+        @RequestHeader("X-User-Id") Long userId
+    ) {
+        return ResponseEntity.ok(keyHandleService.list(userId));
+    }
+
+    /**
+     * Borra una clave registrada
+     * DELETE /api/keys/{keyId}
+     */
+    @DeleteMapping("/{keyId}")
+    public ResponseEntity<Void> delete(
+        @RequestHeader("X-User-Id") Long userId,
+        @PathVariable String keyId
+    ) {
+        if (!keyHandleService.delete(userId, keyId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.noContent().build();
+    }
+}
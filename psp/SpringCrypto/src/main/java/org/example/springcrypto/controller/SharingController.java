@@ -1,11 +1,15 @@
 package org.example.springcrypto.controller;
 
 import org.example.springcrypto.dto.*;
+import org.example.springcrypto.service.KeyDirectoryService;
+import org.example.springcrypto.service.PublicKeyDirectory;
 import org.example.springcrypto.service.SharingService;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Controlador para Compartir Secretos entre Usuarios
@@ -15,6 +19,9 @@ import java.util.List;
  * 1. SETUP: Cada usuario registra su clave pública
  *    POST /api/sharing/public-key
  *
+ *    Para obtener las claves de muchos receptores de una vez:
+ *    POST /api/sharing/public-keys:batchGet
+ *
  * 2. COMPARTIR: Usuario A comparte con Usuario B
  *    a) A descifra su secreto con su password (AES)
  *    b) A obtiene la clave pública de B
@@ -30,15 +37,20 @@ import java.util.List;
  *
  * 4. REVOCAR: Usuario A revoca acceso
  *    DELETE /api/sharing/revoke/{secretId}/{userId}
+ *
+ * 5. ROTAR: Usuario A cambia la clave del secreto y la re-envuelve para todos
+ *    POST /api/sharing/secret/{secretId}/rotate
  */
 @RestController
 @RequestMapping("/api/sharing")
 public class SharingController {
 
     private final SharingService sharingService;
+    private final KeyDirectoryService keyDirectoryService;
 
-    public SharingController(SharingService sharingService) {
+    public SharingController(SharingService sharingService, KeyDirectoryService keyDirectoryService) {
         this.sharingService = sharingService;
+        this.keyDirectoryService = keyDirectoryService;
     }
 
     /**
@@ -63,15 +75,70 @@ public class SharingController {
      * Obtiene la clave pública de un usuario
      *
      * Necesario para cifrar un secreto antes de compartirlo.
+     * La respuesta lleva ETag: si el cliente envía If-None-Match con el
+     * mismo valor, se responde 304 sin cuerpo.
      *
      * @param targetUserId ID del usuario cuya clave pública se quiere obtener
      */
     @GetMapping("/public-key/{targetUserId}")
     public ResponseEntity<UserPublicKeyResponse> getUserPublicKey(
+        @PathVariable Long targetUserId,
+        @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch
+    ) {
+        PublicKeyDirectory.DirectoryEntry entry = sharingService.getUserPublicKeyEntry(targetUserId);
+
+        if (ifNoneMatchMatches(ifNoneMatch, entry.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(entry.etag()).build();
+        }
+        return ResponseEntity.ok().eTag(entry.etag()).body(entry.response());
+    }
+
+    /**
+     * Obtiene la clave pública de un usuario CERTIFICADA por el servidor
+     *
+     * Incluye la prueba de inclusión en el árbol de Merkle de la última época
+     * y la firma del servidor sobre su raíz. Las claves recién registradas
+     * aparecen a partir de la siguiente época (unos segundos).
+     *
+     * @param targetUserId ID del usuario cuya clave pública se quiere obtener
+     */
+    @GetMapping("/public-key/{targetUserId}/certified")
+    public ResponseEntity<CertifiedPublicKeyResponse> getCertifiedPublicKey(
         @PathVariable Long targetUserId
     ) {
-        UserPublicKeyResponse response = sharingService.getUserPublicKey(targetUserId);
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(keyDirectoryService.certify(targetUserId));
+    }
+
+    /**
+     * Última época del directorio de claves (raíz firmada + clave del servidor)
+     *
+     * Los clientes pueden guardar las raíces publicadas para detectar si el
+     * servidor muestra directorios distintos a distintos usuarios.
+     */
+    @GetMapping("/directory/snapshot")
+    public ResponseEntity<KeyDirectorySnapshotResponse> getDirectorySnapshot() {
+        return ResponseEntity.ok(keyDirectoryService.getLatestSnapshot());
+    }
+
+    /**
+     * Obtiene las claves públicas de varios usuarios en una sola petición
+     *
+     * Pensado para compartir con muchos receptores: una consulta en lugar de N.
+     * Los usuarios sin clave registrada se devuelven en "missing".
+     *
+     * @param request Lista de IDs de usuario
+     */
+    @PostMapping("/public-keys:batchGet")
+    public ResponseEntity<PublicKeyBatchResponse> getUserPublicKeys(
+        @RequestBody PublicKeyBatchRequest request,
+        @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch
+    ) {
+        SharingService.PublicKeyBatch batch = sharingService.getUserPublicKeys(request.userIds());
+
+        if (ifNoneMatchMatches(ifNoneMatch, batch.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(batch.etag()).build();
+        }
+        return ResponseEntity.ok().eTag(batch.etag()).body(batch.response());
     }
 
     /**
@@ -87,12 +154,18 @@ public class SharingController {
      * @param request Datos del secreto compartido
      */
     @PostMapping("/share")
-    public ResponseEntity<ShareSecretResponse> shareSecret(
+    public ResponseEntity<?> shareSecret(
         @RequestHeader(value = "X-User-Id", defaultValue = "1") Long userId,
         @RequestBody ShareSecretRequest request
     ) {
-        ShareSecretResponse response = sharingService.shareSecret(userId, request);
-        return ResponseEntity.ok(response);
+        try {
+            ShareSecretResponse response = sharingService.shareSecret(userId, request);
+            return ResponseEntity.ok(response);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
     /**
@@ -172,5 +245,86 @@ public class SharingController {
         List<SharedSecretItem> shares = sharingService.getSecretShares(userId, secretId);
         return ResponseEntity.ok(shares);
     }
-}
 
+    /**
+     * Rota la clave de un secreto compartido
+     *
+     * Flujo del cliente:
+     * 1. GET /api/vault/secrets/{secretId} (anota shareVersion)
+     * 2. Re-cifrar el secreto con una clave nueva
+     * 3. Envolver la clave nueva con la clave pública de cada receptor
+     *    (POST /api/sharing/public-keys:batchGet)
+     * 4. POST este endpoint con todo
+     *
+     * Respuestas:
+     * - 200: rotado (secreto y todos los compartidos)
+     * - 400: faltan receptores, sobran o alguna clave no es válida
+     * - 409: alguien compartió/revocó/rotó entretanto (versión distinta)
+     *
+     * @param userId ID del propietario
+     * @param secretId ID del secreto
+     * @param request Secreto re-cifrado y claves re-envueltas
+     */
+    @PostMapping("/secret/{secretId}/rotate")
+    public ResponseEntity<?> rotateSecretKey(
+        @RequestHeader(value = "X-User-Id", defaultValue = "1") Long userId,
+        @PathVariable Long secretId,
+        @RequestBody RotateSecretKeyRequest request
+    ) {
+        try {
+            RotateSecretKeyResponse response = sharingService.rotateSecretKey(userId, secretId, request);
+            return ResponseEntity.ok(response);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * If-None-Match según RFC 9110: "*" o una lista de ETags separados por
+     * comas, con comparación débil (se ignora el prefijo W/)
+     */
+    static boolean ifNoneMatchMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        if (ifNoneMatch.trim().equals("*")) {
+            return true;
+        }
+        String opaque = stripWeak(etag);
+        int i = 0;
+        int length = ifNoneMatch.length();
+        while (i < length) {
+            char c = ifNoneMatch.charAt(i);
+            if (c == ',' || c == ' ' || c == '\t') {
+                i++;
+                continue;
+            }
+            int start = i;
+            if (ifNoneMatch.startsWith("W/", i)) {
+                i += 2;
+            }
+            if (i < length && ifNoneMatch.charAt(i) == '"') {
+                // Hasta la comilla de cierre: dentro de un ETag puede haber comas
+                int end = ifNoneMatch.indexOf('"', i + 1);
+                if (end < 0) {
+                    return false;
+                }
+                i = end + 1;
+            } else {
+                while (i < length && ifNoneMatch.charAt(i) != ',') {
+                    i++;
+                }
+            }
+            if (stripWeak(ifNoneMatch.substring(start, i).trim()).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+}
@@ -1,7 +1,12 @@
 package org.example.springcrypto.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import org.example.springcrypto.dto.*;
+import org.example.springcrypto.interceptor.AdmissionControlInterceptor;
+import org.example.springcrypto.service.AdmissionControlService;
+import org.example.springcrypto.service.KeyHandleService;
 import org.example.springcrypto.service.SymmetricEncryptionService;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -16,9 +21,15 @@ import java.util.Map;
 public class SymmetricEncryptionController {
 
     private final SymmetricEncryptionService encryptionService;
+    private final KeyHandleService keyHandleService;
+    private final AdmissionControlService admissionControlService;
 
-    public SymmetricEncryptionController(SymmetricEncryptionService encryptionService) {
+    public SymmetricEncryptionController(SymmetricEncryptionService encryptionService,
+                                         KeyHandleService keyHandleService,
+                                         AdmissionControlService admissionControlService) {
         this.encryptionService = encryptionService;
+        this.keyHandleService = keyHandleService;
+        this.admissionControlService = admissionControlService;
     }
 
     /**
@@ -26,15 +37,11 @@ public class SymmetricEncryptionController {
      * GET /api/symmetric/generate-key
      */
     @GetMapping("/generate-key")
-    public ResponseEntity<Map<String, String>> generateKey() {
+    public ResponseEntity<?> generateKey() {
         try {
             SecretKey key = encryptionService.generateKey();
-            String keyBase64 = encryptionService.keyToBase64(key);
-            return ResponseEntity.ok(Map.of(
-                    "key", keyBase64,
-                    "algorithm", "AES",
-                    "keySize", "256",
-                    "type", "random"
+            return ResponseEntity.ok(new SymmetricKeyResponse(
+                    key.getEncoded(), "AES", "256", "random", null, null, null, null, null
             ));
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
@@ -43,11 +50,15 @@ public class SymmetricEncryptionController {
     }
 
     /**
-     * Genera una clave AES desde un password/string usando PBKDF2
+     * Genera una clave AES desde un password/string usando PBKDF2 (o Argon2id)
      * POST /api/symmetric/generate-key-from-password
+     * Body: { "password": "...", "kdf": "ARGON2ID" }  (kdf opcional, por defecto PBKDF2)
+     *
+     * Argon2id paga un recargo de admisión (el interceptor solo cobra lo de PBKDF2)
      */
     @PostMapping("/generate-key-from-password")
-    public ResponseEntity<Map<String, String>> generateKeyFromPassword(@RequestBody Map<String, String> request) {
+    public ResponseEntity<?> generateKeyFromPassword(@RequestBody Map<String, String> request,
+                                                     HttpServletRequest httpRequest) {
         try {
             String password = request.get("password");
             if (password == null || password.isEmpty()) {
@@ -55,17 +66,33 @@ public class SymmetricEncryptionController {
                         .body(Map.of("error", "El campo 'password' es requerido"));
             }
 
+            if ("ARGON2ID".equalsIgnoreCase(request.get("kdf"))) {
+                // Solo tokens del cubo: el permiso de concurrencia ya lo tomó el interceptor
+                AdmissionControlService.Decision decision = admissionControlService.tryAdmit(
+                        AdmissionControlInterceptor.clientKey(httpRequest),
+                        AdmissionControlInterceptor.ARGON2ID_SURCHARGE, false);
+                if (!decision.admitted()) {
+                    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                            .header("Retry-After", String.valueOf(decision.retryAfterSeconds()))
+                            .body(Map.of("error", "Demasiadas operaciones costosas, reintente más tarde"));
+                }
+                SecretKey key = encryptionService.generateKeyFromPasswordArgon2id(password);
+                return ResponseEntity.ok(new SymmetricKeyResponse(
+                        key.getEncoded(), "AES", "256", "derived",
+                        "Argon2id",
+                        String.valueOf(encryptionService.getArgon2Iterations()),
+                        String.valueOf(encryptionService.getArgon2MemoryKiB()),
+                        String.valueOf(encryptionService.getArgon2Parallelism()),
+                        "La misma contraseña siempre genera la misma clave"
+                ));
+            }
+
             SecretKey key = encryptionService.generateKeyFromPassword(password);
-            String keyBase64 = encryptionService.keyToBase64(key);
 
-            return ResponseEntity.ok(Map.of(
-                    "key", keyBase64,
-                    "algorithm", "AES",
-                    "keySize", "256",
-                    "type", "derived",
-                    "derivationMethod", "PBKDF2WithHmacSHA256",
-                    "iterations", "65536",
-                    "info", "La misma contraseña siempre genera la misma clave"
+            return ResponseEntity.ok(new SymmetricKeyResponse(
+                    key.getEncoded(), "AES", "256", "derived",
+                    "PBKDF2WithHmacSHA256", "65536", null, null,
+                    "La misma contraseña siempre genera la misma clave"
             ));
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
@@ -78,17 +105,13 @@ public class SymmetricEncryptionController {
      * GET /api/symmetric/configured-key
      */
     @GetMapping("/configured-key")
-    public ResponseEntity<Map<String, String>> getConfiguredKey() {
+    public ResponseEntity<?> getConfiguredKey() {
         try {
             SecretKey key = encryptionService.getConfiguredKey();
-            String keyBase64 = encryptionService.keyToBase64(key);
 
-            return ResponseEntity.ok(Map.of(
-                    "key", keyBase64,
-                    "algorithm", "AES",
-                    "keySize", "256",
-                    "type", "configured",
-                    "info", "Clave derivada desde application.properties (crypto.aes.secret-key)"
+            return ResponseEntity.ok(new SymmetricKeyResponse(
+                    key.getEncoded(), "AES", "256", "configured", null, null, null, null,
+                    "Clave derivada desde application.properties (crypto.aes.secret-key)"
             ));
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
@@ -99,54 +122,44 @@ public class SymmetricEncryptionController {
     /**
      * Encripta texto usando AES
      * POST /api/symmetric/encrypt
+     *
+     * Con keyId (clave registrada en /api/keys) la clave no viaja ni se devuelve.
      */
     @PostMapping("/encrypt")
-    public ResponseEntity<?> encrypt(@RequestBody SymmetricEncryptRequest request) {
+    public ResponseEntity<?> encrypt(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestBody SymmetricEncryptRequest request) {
         try {
+            if (request.keyId() != null && !request.keyId().isEmpty()) {
+                String mode = request.mode() != null ? request.mode().toUpperCase() : "GCM";
+                String transformation = SymmetricEncryptionService.transformationFor(mode);
+                byte[] iv = mode.equals("ECB") ? null : encryptionService.generateIV();
+                byte[] encrypted = keyHandleService.withCipher(userId, request.keyId(), transformation,
+                        (cipher, key) -> encryptionService.encryptBytes(mode, request.plainText(), key, iv, cipher));
+                return ResponseEntity.ok(new SymmetricEncryptResponse(encrypted, null, mode, iv));
+            }
+
             // Obtener o generar clave
             SecretKey key;
-            String keyBase64;
-            if (request.key() != null && !request.key().isEmpty()) {
-                key = encryptionService.base64ToKey(request.key());
-                keyBase64 = request.key();
+            if (request.key() != null && request.key().length > 0) {
+                key = encryptionService.bytesToKey(request.key());
             } else {
                 key = encryptionService.generateKey();
-                keyBase64 = encryptionService.keyToBase64(key);
             }
 
-            String encryptedText;
-            String ivBase64 = null;
             String mode = request.mode() != null ? request.mode().toUpperCase() : "GCM";
-
-            switch (mode) {
-                case "ECB" -> encryptedText = encryptionService.encryptECB(request.plainText(), key);
-                case "CBC" -> {
-                    byte[] iv = encryptionService.generateIV();
-                    encryptedText = encryptionService.encryptCBC(request.plainText(), key, iv);
-                    ivBase64 = encryptionService.ivToBase64(iv);
-                }
-                case "CTR" -> {
-                    byte[] iv = encryptionService.generateIV();
-                    encryptedText = encryptionService.encryptCTR(request.plainText(), key, iv);
-                    ivBase64 = encryptionService.ivToBase64(iv);
-                }
-                case "GCM" -> {
-                    byte[] iv = encryptionService.generateIV();
-                    encryptedText = encryptionService.encryptGCM(request.plainText(), key, iv);
-                    ivBase64 = encryptionService.ivToBase64(iv);
-                }
-                default -> {
-                    return ResponseEntity.badRequest()
-                            .body(Map.of("error", "Modo no soportado: " + mode + ". Use: ECB, CBC, CTR, GCM"));
-                }
-            }
+            byte[] iv = mode.equals("ECB") ? null : encryptionService.generateIV();
+            byte[] encrypted = encryptionService.encryptBytes(mode, request.plainText(), key, iv);
 
             return ResponseEntity.ok(new SymmetricEncryptResponse(
-                    encryptedText,
-                    keyBase64,
+                    encrypted,
+                    key.getEncoded(),
                     mode,
-                    ivBase64
+                    iv
             ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
                     .body(Map.of("error", e.getMessage()));
@@ -158,24 +171,28 @@ public class SymmetricEncryptionController {
      * POST /api/symmetric/decrypt
      */
     @PostMapping("/decrypt")
-    public ResponseEntity<?> decrypt(@RequestBody SymmetricDecryptRequest request) {
+    public ResponseEntity<?> decrypt(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestBody SymmetricDecryptRequest request) {
         try {
-            SecretKey key = encryptionService.base64ToKey(request.key());
-            String plainText;
             String mode = request.mode() != null ? request.mode().toUpperCase() : "GCM";
+            if (request.keyId() != null && !request.keyId().isEmpty()) {
+                String transformation = SymmetricEncryptionService.transformationFor(mode);
+                String plainText = keyHandleService.withCipher(userId, request.keyId(), transformation,
+                        (cipher, key) -> encryptionService.decryptBytes(mode, request.encryptedText(), key, cipher));
+                return ResponseEntity.ok(new SymmetricDecryptResponse(plainText));
+            }
 
-            switch (mode) {
-                case "ECB" -> plainText = encryptionService.decryptECB(request.encryptedText(), key);
-                case "CBC" -> plainText = encryptionService.decryptCBC(request.encryptedText(), key);
-                case "CTR" -> plainText = encryptionService.decryptCTR(request.encryptedText(), key);
-                case "GCM" -> plainText = encryptionService.decryptGCM(request.encryptedText(), key);
-                default -> {
-                    return ResponseEntity.badRequest()
-                            .body(Map.of("error", "Modo no soportado: " + mode));
-                }
+            if (request.key() == null) {
+                throw new IllegalArgumentException("Se requiere 'key' o 'keyId'");
             }
+            SecretKey key = encryptionService.bytesToKey(request.key());
+            String plainText = encryptionService.decryptBytes(mode, request.encryptedText(), key);
 
             return ResponseEntity.ok(new SymmetricDecryptResponse(plainText));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
                     .body(Map.of("error", e.getMessage()));
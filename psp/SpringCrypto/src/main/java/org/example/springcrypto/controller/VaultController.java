@@ -2,10 +2,12 @@ package org.example.springcrypto.controller;
 
 import org.example.springcrypto.dto.*;
 import org.example.springcrypto.service.VaultService;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Controlador de Caja Fuerte (Vault)
@@ -33,6 +35,7 @@ public class VaultController {
      * 1. Derivar clave AES con PBKDF2(password, salt, 100000 iteraciones)
      * 2. Cifrar datos con AES-256-GCM
      * 3. Enviar: encryptedData (base64), iv (base64), salt (base64)
+     * 4. Opcional: searchTokens = HMAC de cada palabra clave (ver /search)
      *
      * @param userId Mock de autenticación (en producción: obtener de JWT)
      * @param request Datos cifrados desde el cliente
@@ -83,6 +86,29 @@ public class VaultController {
         return ResponseEntity.ok(secrets);
     }
 
+    /**
+     * Busca secretos por índice ciego sin descargar la caja fuerte
+     *
+     * El cliente calcula token = HMAC-SHA256(claveDeBúsqueda, palabra normalizada)
+     * con una clave derivada de su password, igual que al guardar el secreto.
+     * Varios token= se combinan con AND.
+     *
+     * @param userId Mock de autenticación
+     * @param token Uno o varios tokens (Base64 o Base64 URL-safe)
+     * @return IDs y metadatos cifrados de los secretos que coinciden
+     */
+    @GetMapping("/search")
+    public ResponseEntity<?> search(
+        @RequestHeader(value = "X-User-Id", defaultValue = "1") Long userId,
+        @RequestParam("token") List<String> token
+    ) {
+        try {
+            return ResponseEntity.ok(vaultService.search(userId, token));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     /**
      * Elimina un secreto
      *
@@ -119,5 +145,55 @@ public class VaultController {
         vaultService.updateSecret(userId, secretId, request);
         return ResponseEntity.ok().build();
     }
-}
 
+    /**
+     * Hash en árbol de un secreto
+     *
+     * El cliente compara la raíz con la de su copia: si coincide, no hay que
+     * descargar nada. Si no, con ?chunks=true recibe el hash de cada trozo y
+     * sabe qué trozos difieren. Con ?verify=true el servidor rehashea el blob
+     * guardado y comprueba que coincide con la raíz almacenada.
+     *
+     * @param userId Mock de autenticación
+     * @param secretId ID del secreto
+     * @return Raíz, tamaño de trozo y (opcional) hashes de cada trozo
+     */
+    @GetMapping("/secrets/{secretId}/tree-hash")
+    public ResponseEntity<VaultTreeHashResponse> getTreeHash(
+        @RequestHeader(value = "X-User-Id", defaultValue = "1") Long userId,
+        @PathVariable Long secretId,
+        @RequestParam(defaultValue = "false") boolean chunks,
+        @RequestParam(defaultValue = "false") boolean verify
+    ) {
+        VaultTreeHashResponse response = vaultService.getTreeHash(userId, secretId, chunks, verify);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Actualización parcial: el cliente sube solo los trozos que cambiaron
+     *
+     * Respuestas:
+     * - 200: nueva raíz
+     * - 400: trozos mal formados o falta un trozo que cambia de tamaño
+     * - 409: baseRoot no es la raíz actual, o la raíz final no es expectedRoot
+     *
+     * @param userId Mock de autenticación
+     * @param secretId ID del secreto
+     * @param request Trozos nuevos (índice + datos)
+     */
+    @PatchMapping("/secrets/{secretId}/chunks")
+    public ResponseEntity<?> updateChunks(
+        @RequestHeader(value = "X-User-Id", defaultValue = "1") Long userId,
+        @PathVariable Long secretId,
+        @RequestBody VaultChunkUpdateRequest request
+    ) {
+        try {
+            VaultTreeHashResponse response = vaultService.updateChunks(userId, secretId, request);
+            return ResponseEntity.ok(response);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+}
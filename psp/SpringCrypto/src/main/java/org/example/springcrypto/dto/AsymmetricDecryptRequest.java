@@ -4,8 +4,9 @@ package org.example.springcrypto.dto;
  * Request para desencriptación asimétrica
  */
 public record AsymmetricDecryptRequest(
-        String encryptedText,
-        String privateKey,    // Base64 encoded
-        String padding        // PKCS1, OAEP
+        byte[] encryptedText,
+        byte[] privateKey,    // PKCS#8
+        String padding,        // PKCS1, OAEP
+        String keyId          // ID de una clave PRIVATE registrada (en lugar de privateKey)
 ) {}
 
@@ -5,7 +5,8 @@ package org.example.springcrypto.dto;
  */
 public record AsymmetricEncryptRequest(
         String plainText,
-        String publicKey,     // Base64 encoded
-        String padding        // PKCS1, OAEP
+        byte[] publicKey,     // X.509
+        String padding,        // PKCS1, OAEP
+        String keyId          // ID de una clave PUBLIC registrada (en lugar de publicKey)
 ) {}
 
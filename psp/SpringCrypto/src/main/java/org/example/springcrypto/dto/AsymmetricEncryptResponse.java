@@ -4,7 +4,7 @@ package org.example.springcrypto.dto;
  * Response para encriptación asimétrica
  */
 public record AsymmetricEncryptResponse(
-        String encryptedText,
+        byte[] encryptedText,
         String padding
 ) {}
 
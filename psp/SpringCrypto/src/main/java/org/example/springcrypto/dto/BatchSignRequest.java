@@ -0,0 +1,9 @@
+package org.example.springcrypto.dto;
+
+/**
+ * Request para firma por lotes (árbol de Merkle)
+ */
+public record BatchSignRequest(
+        String message,
+        String keyId          // ID de una clave PRIVATE registrada en /api/keys
+) {}
@@ -0,0 +1,21 @@
+package org.example.springcrypto.dto;
+
+import java.util.List;
+
+/**
+ * Firma por lotes: firma de la raíz + prueba de inclusión del mensaje
+ *
+ * Para verificar:
+ * 1. hoja = SHA-256(0x00 || leafSalt || mensaje UTF-8)
+ * 2. Subir por inclusionProof hasta la raíz (nodo = SHA-256(0x01 || izq || der))
+ * 3. Verificar signature sobre "SpringCrypto-BatchSign:v1:{treeSize}:{rootHash}"
+ */
+public record BatchSignResponse(
+        byte[] signature,              // Firma de la raíz (compartida por todo el lote)
+        String signatureAlgorithm,                  // "SHA256withECDSA" o "SHA256withRSA"
+        byte[] rootHash,               // Raíz del árbol de Merkle
+        Integer treeSize,                           // Mensajes en el lote
+        Integer leafIndex,                          // Posición de este mensaje en el árbol
+        byte[] leafSalt,               // Salt aleatorio de la hoja
+        List<byte[]> inclusionProof    // Hashes hermanos, de la hoja a la raíz
+) {}
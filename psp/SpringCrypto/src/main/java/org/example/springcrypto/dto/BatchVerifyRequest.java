@@ -0,0 +1,17 @@
+package org.example.springcrypto.dto;
+
+import java.util.List;
+
+/**
+ * Request para verificar una firma por lotes
+ */
+public record BatchVerifyRequest(
+        String message,
+        byte[] signature,
+        byte[] leafSalt,
+        Integer leafIndex,
+        Integer treeSize,
+        List<byte[]> inclusionProof,
+        byte[] publicKey,      // X.509
+        String keyId                        // ID de una clave PUBLIC registrada (en lugar de publicKey)
+) {}
@@ -1,6 +1,7 @@
 package org.example.springcrypto.dto;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * Respuesta con clave pública CERTIFICADA (firmada por el servidor)
@@ -8,15 +9,27 @@ import java.time.LocalDateTime;
  * La firma permite a los clientes verificar que la clave pública
  * realmente fue registrada en el servidor legítimo, previniendo
  * ataques Man-in-the-Middle.
+ *
+ * El servidor no firma cada clave: firma la raíz de un árbol de Merkle con
+ * todas las claves (una firma por época). Para verificar:
+ * 1. hoja = SHA-256(0x00 || "{userId}:{algorithm}:{keySize}:{publicKey}")
+ * 2. Subir por inclusionProof hasta obtener la raíz (nodo = SHA-256(0x01 || izq || der))
+ * 3. Comparar con rootHash
+ * 4. Verificar serverSignature sobre "SpringCrypto-KeyDirectory:v1:{epoch}:{treeSize}:{rootHash}"
  */
 public record CertifiedPublicKeyResponse(
     Long userId,
-    String publicKey,           // Base64 encoded public key
+    byte[] publicKey,           // X.509
     String algorithm,           // "RSA" o "EC"
     Integer keySize,            // 2048, 4096, 256, 384
-    String serverSignature,     // Base64 - Firma del servidor
+    byte[] serverSignature,     // Firma del servidor
     String signatureAlgorithm,  // "SHA256withRSA" o "SHA256withECDSA"
-    LocalDateTime signedAt      // Timestamp de la firma
+    LocalDateTime signedAt,     // Timestamp de la firma
+    Long epoch,                 // Época del directorio que firmó la raíz
+    Integer treeSize,           // Número de hojas del árbol firmado
+    Integer leafIndex,          // Posición de la clave en el árbol
+    byte[] rootHash,            // Raíz del árbol de Merkle
+    List<byte[]> inclusionProof // Hashes hermanos, de la hoja a la raíz
 ) {
 }
 
@@ -0,0 +1,13 @@
+package org.example.springcrypto.dto;
+
+/**
+ * Request para derivar una clave con PBKDF2 o Argon2id en segundo plano
+ */
+public record DeriveKeyJobRequest(
+        String password,
+        String salt,        // Base64 (opcional, se genera si no se proporciona)
+        Integer iterations, // Opcional, por defecto 65536 (PBKDF2) o crypto.argon2.iterations (Argon2id)
+        String kdf,         // PBKDF2 (defecto) o ARGON2ID
+        Integer memoryKiB,  // Solo Argon2id: memoria en KiB
+        Integer parallelism // Solo Argon2id: lanes (hilos)
+) {}
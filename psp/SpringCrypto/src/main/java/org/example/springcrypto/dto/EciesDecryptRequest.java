@@ -0,0 +1,11 @@
+package org.example.springcrypto.dto;
+
+/**
+ * Request para desencriptación ECIES
+ */
+public record EciesDecryptRequest(
+        byte[] privateKey,           // Clave privada EC (PKCS#8)
+        byte[] ephemeralPublicKey,
+        byte[] encryptedData,
+        byte[] iv
+) {}
@@ -0,0 +1,9 @@
+package org.example.springcrypto.dto;
+
+/**
+ * Response para desencriptación ECIES
+ */
+public record EciesDecryptResponse(
+        String plainText,
+        String algorithm
+) {}
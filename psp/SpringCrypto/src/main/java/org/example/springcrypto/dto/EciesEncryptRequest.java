@@ -0,0 +1,9 @@
+package org.example.springcrypto.dto;
+
+/**
+ * Request para encriptación ECIES
+ */
+public record EciesEncryptRequest(
+        String plainText,
+        byte[] publicKey       // Clave pública EC (X.509)
+) {}
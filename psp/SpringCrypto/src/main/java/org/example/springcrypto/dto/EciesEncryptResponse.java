@@ -0,0 +1,12 @@
+package org.example.springcrypto.dto;
+
+/**
+ * Response para encriptación ECIES
+ */
+public record EciesEncryptResponse(
+        byte[] ephemeralPublicKey,   // Clave pública efímera (X.509)
+        byte[] encryptedData,
+        byte[] iv,
+        String algorithm,
+        String description
+) {}
@@ -0,0 +1,11 @@
+package org.example.springcrypto.dto;
+
+/**
+ * Resultado de descifrar un sobre: plainText o error
+ */
+public record EnvelopeDecryptItem(
+    String plainText,
+    String algorithm,   // Algoritmo leído de la cabecera del sobre
+    String error        // null si se descifró bien
+) {
+}
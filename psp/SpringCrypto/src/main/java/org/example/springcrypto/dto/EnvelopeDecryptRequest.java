@@ -0,0 +1,16 @@
+package org.example.springcrypto.dto;
+
+import java.util.List;
+
+/**
+ * Request para descifrar uno o varios sobres (pueden mezclar algoritmos)
+ *
+ * Cada sobre que lleve keyId se descifra con esa clave registrada.
+ * Para los que no lo lleven se usa key (AES) o privateKey (RSA/EC).
+ */
+public record EnvelopeDecryptRequest(
+    List<byte[]> envelopes,    // Sobres a descifrar
+    byte[] key,                // Clave AES (opcional)
+    byte[] privateKey          // Clave privada PKCS#8 (opcional)
+) {
+}
@@ -0,0 +1,12 @@
+package org.example.springcrypto.dto;
+
+import java.util.List;
+
+/**
+ * Respuesta del descifrado de sobres, en el mismo orden que la petición
+ */
+public record EnvelopeDecryptResponse(
+    List<EnvelopeDecryptItem> results,
+    int failed          // Cuántos sobres no se pudieron descifrar
+) {
+}
@@ -0,0 +1,17 @@
+package org.example.springcrypto.dto;
+
+/**
+ * Request para cifrar y obtener un sobre autodescriptivo
+ *
+ * La clave se indica con keyId (registrada en /api/keys) o en el propio request:
+ * key para los modos AES, publicKey para RSA_OAEP, HYBRID_RSA_AES_GCM y ECIES_AES_GCM.
+ */
+public record EnvelopeEncryptRequest(
+    String plainText,
+    String algorithm,               // AES_ECB, AES_CBC, AES_CTR, AES_GCM (defecto), RSA_OAEP, HYBRID_RSA_AES_GCM, ECIES_AES_GCM
+    String keyId,                   // ID de la clave SECRET o PUBLIC registrada
+    byte[] key,        // Clave AES (si no hay keyId)
+    byte[] publicKey,  // Clave pública X.509 (si no hay keyId)
+    String recipientKeyId           // keyId que se guarda en el sobre para descifrar (por defecto keyId en AES)
+) {
+}
@@ -0,0 +1,10 @@
+package org.example.springcrypto.dto;
+
+/**
+ * Respuesta con el sobre cifrado
+ */
+public record EnvelopeEncryptResponse(
+    byte[] envelope,   // Sobre completo (cabecera + texto cifrado + tag)
+    String algorithm
+) {
+}
@@ -4,9 +4,10 @@ package org.example.springcrypto.dto;
  * Request para desencriptación híbrida
  */
 public record HybridDecryptRequest(
-        String encryptedData,
-        String encryptedKey,
-        String iv,
-        String privateKey     // Base64 encoded
+        byte[] encryptedData,
+        byte[] encryptedKey,
+        byte[] iv,
+        byte[] privateKey,     // PKCS#8
+        String keyId          // ID de una clave PRIVATE registrada (en lugar de privateKey)
 ) {}
 
@@ -5,6 +5,7 @@ package org.example.springcrypto.dto;
  */
 public record HybridEncryptRequest(
         String plainText,
-        String publicKey      // Base64 encoded
+        byte[] publicKey,      // X.509
+        String keyId          // ID de una clave PUBLIC registrada (en lugar de publicKey)
 ) {}
 
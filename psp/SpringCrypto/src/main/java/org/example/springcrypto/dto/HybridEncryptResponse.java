@@ -4,8 +4,8 @@ package org.example.springcrypto.dto;
  * Response para encriptación híbrida
  */
 public record HybridEncryptResponse(
-        String encryptedData,
-        String encryptedKey,
-        String iv
+        byte[] encryptedData,
+        byte[] encryptedKey,
+        byte[] iv
 ) {}
 
@@ -0,0 +1,17 @@
+package org.example.springcrypto.dto;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Estado de un trabajo asíncrono
+ */
+public record JobResponse(
+        String jobId,
+        String type,                 // KEYPAIR o DERIVE
+        String status,               // QUEUED, RUNNING, DONE, FAILED
+        Map<String, String> result,  // Solo cuando status = DONE
+        String error,                // Solo cuando status = FAILED
+        LocalDateTime createdAt,
+        LocalDateTime finishedAt
+) {}
@@ -0,0 +1,17 @@
+package org.example.springcrypto.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Época publicada del directorio de claves: raíz de Merkle firmada por el servidor
+ */
+public record KeyDirectorySnapshotResponse(
+    Long epoch,                 // Número de época (creciente)
+    Integer treeSize,           // Número de claves en el árbol
+    byte[] rootHash,            // Raíz del árbol de Merkle
+    byte[] serverSignature,     // Firma del servidor sobre la raíz
+    String signatureAlgorithm,  // "SHA256withECDSA" o "SHA256withRSA"
+    byte[] serverPublicKey,     // Clave pública del servidor (X.509)
+    LocalDateTime signedAt      // Timestamp de la firma
+) {
+}
@@ -0,0 +1,15 @@
+package org.example.springcrypto.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Clave registrada en el servidor (nunca incluye el material de la clave)
+ */
+public record KeyHandleResponse(
+    String keyId,               // Identificador opaco para usar en lugar de la clave
+    String type,                // "SECRET", "PUBLIC" o "PRIVATE"
+    String algorithm,           // "AES", "RSA" o "EC"
+    LocalDateTime createdAt,
+    Long idleTtlSeconds         // Se borra si no se usa durante este tiempo
+) {
+}
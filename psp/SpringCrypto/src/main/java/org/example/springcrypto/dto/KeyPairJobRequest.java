@@ -0,0 +1,9 @@
+package org.example.springcrypto.dto;
+
+/**
+ * Request para generar un par de claves en segundo plano
+ */
+public record KeyPairJobRequest(
+        String algorithm,  // RSA o EC
+        Integer keySize    // RSA: 2048, 3072, 4096 | EC: 256, 384, 521
+) {}
@@ -1,10 +1,11 @@
 package org.example.springcrypto.dto;
 
 /**
- * Response con par de claves RSA
+ * Response con par de claves (RSA o EC)
  */
 public record KeyPairResponse(
-        String publicKey,     // Base64 encoded
-        String privateKey     // Base64 encoded
+        byte[] publicKey,     // X.509
+        byte[] privateKey,    // PKCS#8
+        String algorithm,
+        String keySize
 ) {}
-
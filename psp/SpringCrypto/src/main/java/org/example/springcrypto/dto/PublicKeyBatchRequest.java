@@ -0,0 +1,8 @@
+package org.example.springcrypto.dto;
+
+import java.util.List;
+
+public record PublicKeyBatchRequest(
+    List<Long> userIds  // IDs de los receptores (máximo configurable, por defecto 5000)
+) {
+}
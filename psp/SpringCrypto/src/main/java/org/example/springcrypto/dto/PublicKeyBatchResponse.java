@@ -0,0 +1,9 @@
+package org.example.springcrypto.dto;
+
+import java.util.List;
+
+public record PublicKeyBatchResponse(
+    List<UserPublicKeyResponse> keys,  // Claves encontradas, en el orden pedido
+    List<Long> missing                 // Usuarios sin clave pública registrada
+) {
+}
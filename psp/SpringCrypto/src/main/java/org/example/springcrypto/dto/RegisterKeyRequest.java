@@ -0,0 +1,13 @@
+package org.example.springcrypto.dto;
+
+/**
+ * Request para registrar una clave en el servidor y obtener un keyId
+ *
+ * Si type es SECRET y no se envía key, el servidor genera una clave AES-256
+ * que nunca sale del servidor.
+ */
+public record RegisterKeyRequest(
+    String type,                // "SECRET" (AES), "PUBLIC" (X.509) o "PRIVATE" (PKCS#8)
+    byte[] key     // Clave (opcional para SECRET)
+) {
+}
@@ -1,7 +1,7 @@
 package org.example.springcrypto.dto;
 
 public record RegisterPublicKeyRequest(
-    String publicKey,  // Base64 encoded public key (X.509 format)
+    byte[] publicKey,  // Clave pública (X.509)
     String algorithm,  // "RSA" o "EC"
     Integer keySize    // 2048, 4096 para RSA; 256, 384 para EC
 ) {
@@ -0,0 +1,11 @@
+package org.example.springcrypto.dto;
+
+/**
+ * Clave del secreto re-cifrada para un receptor (ver RotateSecretKeyRequest)
+ */
+public record RewrappedShare(
+    Long sharedWithUserId,
+    byte[] encryptedData,  // Nueva clave cifrada con la clave pública del receptor
+    String algorithm                    // Opcional: "RSA" o "EC" (por defecto, el que tenía; otro valor, 400)
+) {
+}
@@ -0,0 +1,20 @@
+package org.example.springcrypto.dto;
+
+import java.util.List;
+
+/**
+ * Rotación de la clave de un secreto compartido
+ *
+ * El propietario re-cifra el secreto con la clave nueva y la envuelve para
+ * TODOS los receptores actuales. Se aplica todo o nada, y solo si
+ * expectedVersion sigue siendo la versión de compartidos del secreto.
+ */
+public record RotateSecretKeyRequest(
+    Long expectedVersion,               // shareVersion leída en GET /api/vault/secrets/{id}
+    byte[] encryptedData,  // Secreto re-cifrado con la clave nueva
+    byte[] iv,
+    byte[] salt,
+    String metadata,                    // Opcional: si no viene se mantiene
+    List<RewrappedShare> shares         // Una entrada por receptor actual
+) {
+}
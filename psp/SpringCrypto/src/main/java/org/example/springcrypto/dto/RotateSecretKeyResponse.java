@@ -0,0 +1,8 @@
+package org.example.springcrypto.dto;
+
+public record RotateSecretKeyResponse(
+    Long secretId,
+    Long shareVersion,   // Versión tras la rotación
+    int sharesUpdated
+) {
+}
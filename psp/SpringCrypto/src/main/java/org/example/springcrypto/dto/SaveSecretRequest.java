@@ -1,10 +1,12 @@
 package org.example.springcrypto.dto;
 
+import java.util.List;
+
 public record SaveSecretRequest(
-    String encryptedData,  // Base64 encoded
-    String iv,             // Base64 encoded (12 bytes para GCM)
-    String salt,           // Base64 encoded (16 bytes para PBKDF2)
-    String metadata        // JSON cifrado opcional (título, tags, etc.)
+    byte[] encryptedData,
+    byte[] iv,             // 12 bytes para GCM
+    byte[] salt,           // 16 bytes para PBKDF2
+    String metadata,       // JSON cifrado opcional (título, tags, etc.)
+    List<byte[]> searchTokens  // Opcional: HMAC de palabras clave (índice ciego)
 ) {
 }
-
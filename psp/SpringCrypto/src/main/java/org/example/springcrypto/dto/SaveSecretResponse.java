@@ -4,7 +4,7 @@ import java.time.LocalDateTime;
 
 public record SaveSecretResponse(
     Long secretId,
-    LocalDateTime createdAt
+    LocalDateTime createdAt,
+    byte[] treeHash   // Raíz del hash en árbol del blob
 ) {
 }
-
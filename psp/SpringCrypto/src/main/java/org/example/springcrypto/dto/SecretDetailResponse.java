@@ -2,10 +2,10 @@ package org.example.springcrypto.dto;
 
 public record SecretDetailResponse(
     Long id,
-    String encryptedData,  // Base64
-    String iv,             // Base64
-    String salt,           // Base64
-    String metadata        // JSON cifrado
+    byte[] encryptedData,
+    byte[] iv,
+    byte[] salt,
+    String metadata,       // JSON cifrado
+    Long shareVersion      // Versión de compartidos (para rotar la clave)
 ) {
 }
-
@@ -3,10 +3,11 @@ package org.example.springcrypto.dto;
 public record ShareSecretRequest(
     Long secretId,           // ID del secreto a compartir
     Long sharedWithUserId,   // ID del usuario con quien compartir
-    String encryptedData,    // Secreto cifrado con la clave pública del receptor (Base64)
+    byte[] encryptedData,    // Secreto cifrado con la clave pública del receptor
     String permission,       // "READ" o "READ_WRITE"
     String algorithm,        // "RSA" o "EC"
-    Long expiresInDays       // Opcional: días hasta que expire el compartido
+    Long expiresInDays,      // Opcional: días hasta que expire el compartido
+    Long expectedVersion     // Opcional: shareVersion del secreto al envolver la clave (409 si cambió)
 ) {
 }
 
@@ -7,7 +7,7 @@ public record SharedSecretItem(
     Long secretId,
     Long ownerId,           // Quien compartió
     Long sharedWithId,      // Con quien se compartió
-    String encryptedData,   // Base64 - cifrado con clave pública
+    byte[] encryptedData,   // Cifrado con clave pública
     String permission,
     String algorithm,
     LocalDateTime createdAt,
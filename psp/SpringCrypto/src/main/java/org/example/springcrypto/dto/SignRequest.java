@@ -5,6 +5,7 @@ package org.example.springcrypto.dto;
  */
 public record SignRequest(
         String message,
-        String privateKey     // Base64 encoded
+        byte[] privateKey,     // PKCS#8
+        String keyId          // ID de una clave PRIVATE registrada (en lugar de privateKey)
 ) {}
 
@@ -4,8 +4,9 @@ package org.example.springcrypto.dto;
  * Request para desencriptación simétrica
  */
 public record SymmetricDecryptRequest(
-        String encryptedText,
-        String key,           // Base64 encoded key
-        String mode          // ECB, CBC, CTR, GCM
+        byte[] encryptedText,
+        byte[] key,
+        String mode,          // ECB, CBC, CTR, GCM
+        String keyId          // ID de una clave registrada en /api/keys (en lugar de key)
 ) {}
 
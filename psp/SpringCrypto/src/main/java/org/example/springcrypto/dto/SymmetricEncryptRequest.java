@@ -6,6 +6,7 @@ package org.example.springcrypto.dto;
 public record SymmetricEncryptRequest(
         String plainText,
         String mode,  // ECB, CBC, CTR, GCM
-        String key    // Base64 encoded key (opcional, se genera si no se proporciona)
+        byte[] key,    // Clave (opcional, se genera si no se proporciona)
+        String keyId  // ID de una clave registrada en /api/keys (en lugar de key)
 ) {}
 
@@ -0,0 +1,21 @@
+package org.example.springcrypto.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Response con una clave AES generada, derivada o configurada
+ *
+ * Los campos de la derivación solo vienen en las claves derivadas.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record SymmetricKeyResponse(
+        byte[] key,
+        String algorithm,
+        String keySize,
+        String type,                // "random", "derived" o "configured"
+        String derivationMethod,    // PBKDF2WithHmacSHA256 o Argon2id
+        String iterations,
+        String memoryKiB,           // Solo Argon2id
+        String parallelism,         // Solo Argon2id
+        String info
+) {}
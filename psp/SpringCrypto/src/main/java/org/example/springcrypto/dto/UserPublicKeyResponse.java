@@ -2,7 +2,7 @@ package org.example.springcrypto.dto;
 
 public record UserPublicKeyResponse(
     Long userId,
-    String publicKey,  // Base64
+    byte[] publicKey,  // X.509
     String algorithm,
     Integer keySize
 ) {
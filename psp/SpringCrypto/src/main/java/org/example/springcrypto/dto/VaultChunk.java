@@ -0,0 +1,10 @@
+package org.example.springcrypto.dto;
+
+/**
+ * Trozo de un blob de la caja fuerte (ver VaultChunkUpdateRequest)
+ */
+public record VaultChunk(
+    Integer index,
+    byte[] data   // chunkSize bytes, salvo el último trozo
+) {
+}
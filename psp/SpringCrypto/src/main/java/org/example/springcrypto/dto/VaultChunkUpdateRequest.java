@@ -0,0 +1,20 @@
+package org.example.springcrypto.dto;
+
+import java.util.List;
+
+/**
+ * Actualización parcial de un secreto: solo los trozos que han cambiado
+ *
+ * - baseRoot: raíz que tenía el cliente (obligatoria); si el secreto cambió mientras tanto, 409
+ * - expectedRoot: raíz que debe quedar tras aplicar los trozos; si no coincide, 409 y no se guarda
+ * - size: nuevo tamaño del blob (opcional, por defecto el actual)
+ * - iv: nuevo IV (opcional)
+ */
+public record VaultChunkUpdateRequest(
+    byte[] baseRoot,
+    byte[] expectedRoot,
+    Long size,
+    byte[] iv,
+    List<VaultChunk> chunks
+) {
+}
@@ -0,0 +1,12 @@
+package org.example.springcrypto.dto;
+
+import java.util.List;
+
+/**
+ * Resultado de una búsqueda por índice ciego: solo los secretos que coinciden
+ */
+public record VaultSearchResponse(
+    List<Long> secretIds,
+    List<SecretListItem> secrets
+) {
+}
@@ -0,0 +1,20 @@
+package org.example.springcrypto.dto;
+
+import java.util.List;
+
+/**
+ * Hash en árbol de un secreto de la caja fuerte
+ *
+ * chunkHashes solo viene si se pide (?chunks=true); verified solo si se
+ * pide comprobar el blob guardado (?verify=true).
+ */
+public record VaultTreeHashResponse(
+    Long secretId,
+    String algorithm,          // SHA-256-MERKLE
+    int chunkSize,
+    long size,                 // Bytes del blob cifrado
+    byte[] root,
+    List<byte[]> chunkHashes,  // SHA-256(0x00 || trozo) en orden
+    Boolean verified
+) {
+}
@@ -5,7 +5,8 @@ package org.example.springcrypto.dto;
  */
 public record VerifyRequest(
         String message,
-        String signature,     // Base64 encoded
-        String publicKey      // Base64 encoded
+        byte[] signature,
+        byte[] publicKey,      // X.509
+        String keyId          // ID de una clave PUBLIC registrada (en lugar de publicKey)
 ) {}
 
@@ -0,0 +1,111 @@
+package org.example.springcrypto.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Registro de auditoría de accesos a la caja fuerte y a los compartidos
+ *
+ * Solo se inserta (append-only). Se escribe por lotes desde AuditService,
+ * nunca en el hilo de la petición.
+ */
+@Entity
+@Table(name = "audit_log", indexes = {
+    @Index(name = "idx_audit_user", columnList = "user_id"),
+    @Index(name = "idx_audit_secret", columnList = "secret_id")
+})
+public class AuditLogEntry {
+
+    // SEQUENCE (no IDENTITY) para que Hibernate pueda agrupar los INSERT del lote
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "audit_log_seq")
+    @SequenceGenerator(name = "audit_log_seq", sequenceName = "audit_log_seq", allocationSize = 100)
+    private Long id;
+
+    @Column(name = "occurred_at", nullable = false, updatable = false)
+    private LocalDateTime occurredAt;
+
+    @Column(name = "action", nullable = false, updatable = false)
+    private String action; // GET_SECRET, SHARE_SECRET, GET_SHARED_SECRET, REVOKE_ACCESS, ROTATE_KEY, AUDIT_EVENTS_DROPPED
+
+    @Column(name = "user_id", updatable = false)
+    private Long userId; // Quién hace la operación
+
+    @Column(name = "secret_id", updatable = false)
+    private Long secretId;
+
+    @Column(name = "target_id", updatable = false)
+    private Long targetId; // Usuario receptor o ID del compartido, según la acción
+
+    @Column(name = "success", nullable = false, updatable = false)
+    private boolean success;
+
+    @Column(name = "dropped_count", updatable = false)
+    private Long droppedCount; // Solo en AUDIT_EVENTS_DROPPED: eventos perdidos desde el aviso anterior
+
+    // Getters y Setters
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public LocalDateTime getOccurredAt() {
+        return occurredAt;
+    }
+
+    public void setOccurredAt(LocalDateTime occurredAt) {
+        this.occurredAt = occurredAt;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public void setAction(String action) {
+        this.action = action;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getSecretId() {
+        return secretId;
+    }
+
+    public void setSecretId(Long secretId) {
+        this.secretId = secretId;
+    }
+
+    public Long getTargetId() {
+        return targetId;
+    }
+
+    public void setTargetId(Long targetId) {
+        this.targetId = targetId;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+
+    public Long getDroppedCount() {
+        return droppedCount;
+    }
+
+    public void setDroppedCount(Long droppedCount) {
+        this.droppedCount = droppedCount;
+    }
+}
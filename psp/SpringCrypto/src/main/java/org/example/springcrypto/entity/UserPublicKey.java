@@ -31,6 +31,8 @@ public class UserPublicKey {
     @Column(name = "key_size")
     private Integer keySize; // 2048, 4096 para RSA; 256, 384 para EC
 
+    // NOTA: las claves no se firman una a una; KeyDirectoryService firma la raíz
+    // de un árbol de Merkle por época. Estas columnas quedan para compatibilidad.
     @Lob
     @Column(name = "server_signature")
     private byte[] serverSignature; // Firma del servidor sobre la clave pública
@@ -0,0 +1,78 @@
+package org.example.springcrypto.entity;
+
+import jakarta.persistence.*;
+
+/**
+ * Token de índice ciego (blind index) de un secreto de la caja fuerte
+ *
+ * El cliente calcula HMAC-SHA256(claveDeBúsqueda, palabraNormalizada) para
+ * cada palabra clave del secreto y envía solo los HMAC. El servidor no puede
+ * saber qué palabra hay detrás, pero sí buscar por igualdad: para buscar
+ * "banco" el cliente calcula el mismo HMAC y lo manda en la consulta.
+ *
+ * El índice (user_id, token) hace que la búsqueda cueste O(resultados)
+ * en lugar de descargar y descifrar toda la caja fuerte.
+ */
+@Entity
+@Table(name = "vault_search_tokens", indexes = {
+    @Index(name = "idx_search_user_token", columnList = "user_id, token"),
+    @Index(name = "idx_search_secret", columnList = "secret_id")
+})
+public class VaultSearchToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "secret_id", nullable = false)
+    private Long secretId;
+
+    @Column(name = "token", nullable = false, length = 88)
+    private String token; // HMAC en Base64
+
+    public VaultSearchToken() {
+    }
+
+    public VaultSearchToken(Long userId, Long secretId, String token) {
+        this.userId = userId;
+        this.secretId = secretId;
+        this.token = token;
+    }
+
+    // Getters y Setters
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getSecretId() {
+        return secretId;
+    }
+
+    public void setSecretId(Long secretId) {
+        this.secretId = secretId;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+}
@@ -27,6 +27,23 @@ public class VaultSecret {
     @Column(name = "metadata")
     private String metadata; // JSON con título, tags, etc. (también cifrado)
 
+    // Hash en árbol del blob cifrado (ver VaultTreeHasher)
+    @Column(name = "tree_hash", length = 32)
+    private byte[] treeHash;
+
+    @Lob
+    @Column(name = "chunk_hashes")
+    private byte[] chunkHashes; // Hashes de hoja concatenados, 32 bytes por trozo
+
+    @Column(name = "chunk_size")
+    private Integer chunkSize;
+
+    // Sube con cada compartir/revocar/rotar: la rotación de clave se condiciona a esta versión.
+    // Solo la cambian los UPDATE de VaultSecretRepository (updatable = false: guardar la
+    // entidad con una versión vieja no pisa la de la base de datos)
+    @Column(name = "share_version", nullable = false, updatable = false)
+    private Long shareVersion = 0L;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
@@ -94,6 +111,38 @@ public class VaultSecret {
         this.metadata = metadata;
     }
 
+    public byte[] getTreeHash() {
+        return treeHash;
+    }
+
+    public void setTreeHash(byte[] treeHash) {
+        this.treeHash = treeHash;
+    }
+
+    public byte[] getChunkHashes() {
+        return chunkHashes;
+    }
+
+    public void setChunkHashes(byte[] chunkHashes) {
+        this.chunkHashes = chunkHashes;
+    }
+
+    public Integer getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(Integer chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public Long getShareVersion() {
+        return shareVersion;
+    }
+
+    public void setShareVersion(Long shareVersion) {
+        this.shareVersion = shareVersion;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,153 @@
+package org.example.springcrypto.interceptor;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.example.springcrypto.service.AdmissionControlService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.PathContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Aplica el control de admisión a los endpoints criptográficos caros
+ *
+ * Está registrado en todo /api/**; el coste en tokens de cada petición
+ * (aprox. proporcional a su CPU) sale de una tabla de patrones de ruta.
+ * Si el usuario ha agotado su cubo, o no hay hueco en el límite global de
+ * operaciones caras, se responde 429 con la cabecera Retry-After.
+ */
+@Component
+public class AdmissionControlInterceptor implements HandlerInterceptor {
+
+    private static final String PERMIT_ATTRIBUTE = AdmissionControlInterceptor.class.getName() + ".permit";
+    private static final String START_ATTRIBUTE = AdmissionControlInterceptor.class.getName() + ".start";
+    private static final String COST_ATTRIBUTE = AdmissionControlInterceptor.class.getName() + ".cost";
+
+    /**
+     * Coste de las peticiones que encajan con un método y un patrón de ruta
+     * (sintaxis de @RequestMapping: {variable}, * y **)
+     *
+     * inline = false: la petición solo encola el trabajo (/api/jobs), así que
+     * gasta tokens del cubo pero no ocupa el límite global de concurrencia
+     * (el pool de trabajos ya está acotado y su latencia falsearía el AIMD).
+     */
+    private record CostRule(String method, PathPattern pattern, ToIntFunction<HttpServletRequest> cost, boolean inline) {
+        static CostRule of(String method, String pattern, int cost) {
+            return of(method, pattern, request -> cost);
+        }
+
+        static CostRule of(String method, String pattern, ToIntFunction<HttpServletRequest> cost) {
+            return new CostRule(method, PathPatternParser.defaultInstance.parse(pattern), cost, true);
+        }
+
+        static CostRule queued(String method, String pattern, int cost) {
+            return new CostRule(method, PathPatternParser.defaultInstance.parse(pattern), request -> cost, false);
+        }
+    }
+
+    private static final int RSA_KEYPAIR_COST = 30;
+    private static final int EC_KEYPAIR_COST = 3;
+
+    /**
+     * Recargo de generate-key-from-password con kdf=ARGON2ID sobre los 20 de
+     * PBKDF2 (64 MiB, t=3, p=4: varios cores y unas 3-4 veces su tiempo). El
+     * kdf va en el cuerpo, así que lo cobra el controlador tras leerlo.
+     */
+    public static final int ARGON2ID_SURCHARGE = 40;
+
+    // Se aplica la primera regla que encaja; lo que no encaja con ninguna es barato y no se limita
+    private static final List<CostRule> RULES = List.of(
+        CostRule.of("POST", "/api/symmetric/generate-key-from-password", 20),   // PBKDF2, 65536 iteraciones (Argon2id: + recargo)
+        CostRule.of("GET", "/api/symmetric/configured-key", 20),                // PBKDF2 si hay clave configurada
+        CostRule.of("GET", "/api/asymmetric/generate-keypair", AdmissionControlInterceptor::keyPairCost),
+        CostRule.of("POST", "/api/asymmetric/decrypt", 5),                      // operación con clave privada RSA
+        CostRule.of("POST", "/api/asymmetric/sign", 5),
+        CostRule.of("POST", "/api/asymmetric/sign-batch", 5),                   // una firma por lote
+        CostRule.of("POST", "/api/asymmetric/decrypt-hybrid", 5),
+        CostRule.of("POST", "/api/asymmetric/encrypt-ecies", 3),                // par EC efímero + ECDH
+        CostRule.of("POST", "/api/asymmetric/decrypt-ecies", 3),
+        CostRule.of("GET", "/api/asymmetric/demo", 40),                         // genera pares RSA y EC
+        CostRule.of("POST", "/api/keys", 2),                                    // parsea e importa la clave
+        CostRule.of("POST", "/api/envelope/decrypt", 1),                        // + coste por sobre (EnvelopeController)
+        CostRule.of("GET", "/api/sharing/public-key/{targetUserId}/certified", 2),
+        CostRule.queued("POST", "/api/jobs/keypair", RSA_KEYPAIR_COST),
+        CostRule.queued("POST", "/api/jobs/derive", 20),
+        CostRule.of("GET", "/api/jobs/{jobId}/events", 1)                      // mantiene abierta una conexión SSE
+    );
+
+    private final AdmissionControlService admissionControlService;
+
+    public AdmissionControlInterceptor(AdmissionControlService admissionControlService) {
+        this.admissionControlService = admissionControlService;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        CostRule rule = ruleFor(request);
+        int cost = rule != null ? rule.cost().applyAsInt(request) : 0;
+        if (cost == 0) {
+            return true;
+        }
+
+        AdmissionControlService.Decision decision = admissionControlService.tryAdmit(clientKey(request), cost, rule.inline());
+        if (!decision.admitted()) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader("Retry-After", String.valueOf(decision.retryAfterSeconds()));
+            response.setContentType("application/json");
+            response.setCharacterEncoding("UTF-8");
+            response.getWriter().write("{\"error\":\"Demasiadas operaciones costosas, reintente más tarde\"}");
+            return false;
+        }
+
+        if (decision.limiterAcquired()) {
+            request.setAttribute(PERMIT_ATTRIBUTE, Boolean.TRUE);
+            request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+            request.setAttribute(COST_ATTRIBUTE, cost);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(PERMIT_ATTRIBUTE) == null) {
+            return;
+        }
+
+        long latency = System.nanoTime() - (Long) request.getAttribute(START_ATTRIBUTE);
+        int cost = (Integer) request.getAttribute(COST_ATTRIBUTE);
+        // Solo las 2xx son muestras de latencia: un 4xx/429 rápido bajaría la
+        // línea base y estrangularía el límite global para todos los usuarios
+        int status = response.getStatus();
+        boolean success = ex == null && status >= 200 && status < 300;
+        admissionControlService.onComplete(latency, cost, success);
+    }
+
+    private static CostRule ruleFor(HttpServletRequest request) {
+        String method = request.getMethod();
+        PathContainer path = PathContainer.parsePath(request.getRequestURI().substring(request.getContextPath().length()));
+        for (CostRule rule : RULES) {
+            if (rule.method().equals(method) && rule.pattern().matches(path)) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    private static int keyPairCost(HttpServletRequest request) {
+        String algorithm = request.getParameter("algorithm");
+        return algorithm != null && algorithm.toUpperCase().startsWith("EC") ? EC_KEYPAIR_COST : RSA_KEYPAIR_COST;
+    }
+
+    /**
+     * El cliente se identifica por X-User-Id; si no lo envía, por su IP
+     */
+    public static String clientKey(HttpServletRequest request) {
+        String userId = request.getHeader("X-User-Id");
+        return userId != null ? "user:" + userId : "ip:" + request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,15 @@
+package org.example.springcrypto.repository;
+
+import org.example.springcrypto.entity.AuditLogEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface AuditLogRepository extends JpaRepository<AuditLogEntry, Long> {
+
+    List<AuditLogEntry> findByUserIdOrderByOccurredAtDesc(Long userId);
+
+    List<AuditLogEntry> findBySecretIdOrderByOccurredAtDesc(Long secretId);
+}
@@ -4,6 +4,8 @@ import org.example.springcrypto.entity.UserPublicKey;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -12,5 +14,10 @@ public interface UserPublicKeyRepository extends JpaRepository<UserPublicKey, Lo
     Optional<UserPublicKey> findByUserId(Long userId);
 
     boolean existsByUserId(Long userId);
+
+    /**
+     * Carga las claves de varios usuarios en una sola consulta (IN)
+     */
+    List<UserPublicKey> findByUserIdIn(Collection<Long> userIds);
 }
 
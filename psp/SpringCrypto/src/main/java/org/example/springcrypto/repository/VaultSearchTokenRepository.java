@@ -0,0 +1,38 @@
+package org.example.springcrypto.repository;
+
+import org.example.springcrypto.entity.VaultSearchToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface VaultSearchTokenRepository extends JpaRepository<VaultSearchToken, Long> {
+
+    /**
+     * IDs de los secretos del usuario que tienen TODOS los tokens (AND)
+     */
+    @Query("""
+        select t.secretId from VaultSearchToken t
+        where t.userId = :userId and t.token in :tokens
+        group by t.secretId
+        having count(distinct t.token) = :tokenCount
+        order by t.secretId
+        """)
+    List<Long> findSecretIdsMatchingAll(
+        @Param("userId") Long userId,
+        @Param("tokens") Collection<String> tokens,
+        @Param("tokenCount") long tokenCount
+    );
+
+    /**
+     * Borra los tokens de un secreto (al re-indexarlo o borrarlo)
+     */
+    @Modifying
+    @Query("delete from VaultSearchToken t where t.secretId = :secretId")
+    int deleteBySecretId(@Param("secretId") Long secretId);
+}
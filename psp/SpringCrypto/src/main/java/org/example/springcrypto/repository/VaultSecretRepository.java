@@ -1,7 +1,12 @@
 package org.example.springcrypto.repository;
 
+import jakarta.persistence.LockModeType;
 import org.example.springcrypto.entity.VaultSecret;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -15,5 +20,39 @@ public interface VaultSecretRepository extends JpaRepository<VaultSecret, Long>
     Optional<VaultSecret> findByIdAndUserId(Long id, Long userId);
 
     void deleteByIdAndUserId(Long id, Long userId);
+
+    /**
+     * Como findByIdAndUserId, pero bloquea la fila (SELECT ... FOR UPDATE)
+     * hasta el commit: dos actualizaciones del mismo secreto van en serie
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from VaultSecret s where s.id = :id and s.userId = :userId")
+    Optional<VaultSecret> findByIdAndUserIdForUpdate(@Param("id") Long id, @Param("userId") Long userId);
+
+    /**
+     * Sube la versión de compartidos solo si sigue siendo la esperada
+     *
+     * El UPDATE bloquea la fila hasta el commit: otro compartir/revocar/rotar
+     * del mismo secreto espera y, al continuar, ya ve la versión nueva.
+     *
+     * @return 1 si se subió, 0 si la versión (o el propietario) no coincide
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+        update VaultSecret s set s.shareVersion = s.shareVersion + 1
+        where s.id = :id and s.userId = :userId and s.shareVersion = :expectedVersion
+        """)
+    int bumpShareVersion(
+        @Param("id") Long id,
+        @Param("userId") Long userId,
+        @Param("expectedVersion") Long expectedVersion
+    );
+
+    /**
+     * Sube la versión de compartidos sin condición (compartir / revocar)
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update VaultSecret s set s.shareVersion = s.shareVersion + 1 where s.id = :id")
+    int incrementShareVersion(@Param("id") Long id);
 }
 
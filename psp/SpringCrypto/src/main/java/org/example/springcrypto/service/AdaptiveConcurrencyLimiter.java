@@ -0,0 +1,100 @@
+package org.example.springcrypto.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Límite de concurrencia que se adapta a la latencia observada (AIMD)
+ *
+ * - Additive Increase: si las operaciones terminan en un tiempo "normal",
+ *   el límite sube poco a poco (+1 por cada "limit" operaciones)
+ * - Multiplicative Decrease: si la latencia se dispara respecto a la mejor
+ *   observada, el límite baja un 10% (como mucho una vez por ventana)
+ *
+ * La latencia se normaliza por el coste de la operación, para poder comparar
+ * un PBKDF2 con una generación de claves RSA.
+ *
+ * tryAcquire() es lock-free; solo onComplete() toma un lock corto.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double DECREASE_FACTOR = 0.9;
+    private static final double BASELINE_DECAY = 1.001; // la "mejor latencia" se olvida despacio
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+
+    private volatile double limit;
+    private double baselineNanosPerCost = Double.MAX_VALUE;
+    private long lastDecreaseNanos;
+    private final long decreaseWindowNanos;
+
+    /**
+     * @param initialLimit Límite inicial (normalmente nº de cores)
+     * @param minLimit Límite mínimo
+     * @param maxLimit Límite máximo
+     * @param tolerance Cuántas veces la latencia base se considera sobrecarga (p.ej. 2.0)
+     * @param decreaseWindowNanos Tiempo mínimo entre dos reducciones
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit,
+                                      double tolerance, long decreaseWindowNanos) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.decreaseWindowNanos = decreaseWindowNanos;
+    }
+
+    /**
+     * Intenta ocupar un hueco; devuelve false si ya se alcanzó el límite
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Libera el hueco y ajusta el límite con la latencia medida
+     */
+    public void onComplete(long latencyNanos, int cost) {
+        inFlight.decrementAndGet();
+
+        double sample = (double) latencyNanos / Math.max(1, cost);
+        synchronized (this) {
+            baselineNanosPerCost = Math.min(baselineNanosPerCost * BASELINE_DECAY, sample);
+
+            long now = System.nanoTime();
+            if (sample > baselineNanosPerCost * tolerance) {
+                if (now - lastDecreaseNanos >= decreaseWindowNanos) {
+                    limit = Math.max(minLimit, limit * DECREASE_FACTOR);
+                    lastDecreaseNanos = now;
+                }
+            } else {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+        }
+    }
+
+    /**
+     * Libera el hueco sin tocar el límite (p.ej. si la petición falló antes de trabajar)
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,175 @@
+package org.example.springcrypto.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Control de admisión para las operaciones criptográficas caras
+ *
+ * Dos capas:
+ * 1. Cubo de tokens por usuario ponderado por coste: un PBKDF2 gasta más
+ *    tokens que una firma. Implementado con GCRA (Generic Cell Rate Algorithm):
+ *    el estado de cada usuario es un único long (TAT, "theoretical arrival
+ *    time") que se actualiza con CAS, sin locks.
+ * 2. Límite global de concurrencia para las operaciones caras, que se adapta
+ *    a la latencia observada (AdaptiveConcurrencyLimiter, AIMD).
+ *
+ * Así un cliente ruidoso agota SU cubo sin dejar sin CPU al resto, y aunque
+ * muchos clientes pidan a la vez, no se ocupan todos los cores con trabajo caro.
+ */
+@Service
+public class AdmissionControlService {
+
+    /**
+     * Resultado de la admisión: si se rechaza, cuántos segundos esperar
+     */
+    public record Decision(boolean admitted, boolean limiterAcquired, long retryAfterSeconds) {
+        static final Decision ADMITTED = new Decision(true, false, 0);
+        static final Decision ADMITTED_WITH_PERMIT = new Decision(true, true, 0);
+    }
+
+    // TAT de un cubo que evictIdleBuckets está quitando del mapa
+    private static final long EVICTED = Long.MIN_VALUE;
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final int expensiveCostThreshold;
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    public AdmissionControlService(
+        @Value("${admission.tokens-per-second:20}") double tokensPerSecond,
+        @Value("${admission.burst-tokens:100}") int burstTokens,
+        @Value("${admission.expensive-cost-threshold:10}") int expensiveCostThreshold,
+        @Value("${admission.latency-tolerance:2.0}") double latencyTolerance
+    ) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        this.nanosPerToken = (long) (TimeUnit.SECONDS.toNanos(1) / tokensPerSecond);
+        this.burstNanos = nanosPerToken * burstTokens;
+        this.expensiveCostThreshold = expensiveCostThreshold;
+        this.limiter = new AdaptiveConcurrencyLimiter(
+            cores, 1, cores * 4, latencyTolerance, TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    /**
+     * Decide si se admite una operación de un usuario
+     *
+     * @param userKey Identificador del cliente (X-User-Id o IP)
+     * @param cost Coste en tokens de la operación
+     */
+    public Decision tryAdmit(String userKey, int cost) {
+        return tryAdmit(userKey, cost, true);
+    }
+
+    /**
+     * @param inline false si la petición solo encola el trabajo: se cobran
+     *               los tokens pero no se pasa por el límite de concurrencia
+     */
+    public Decision tryAdmit(String userKey, int cost, boolean inline) {
+        long waitNanos = consumeTokens(userKey, cost);
+        if (waitNanos > 0) {
+            return new Decision(false, false, toRetryAfterSeconds(waitNanos));
+        }
+
+        if (!inline || cost < expensiveCostThreshold) {
+            return Decision.ADMITTED;
+        }
+        if (!limiter.tryAcquire()) {
+            // Devolvemos los tokens: la petición no llega a ejecutarse
+            refundTokens(userKey, cost);
+            return new Decision(false, false, 1);
+        }
+        return Decision.ADMITTED_WITH_PERMIT;
+    }
+
+    /**
+     * Avisa de que terminó una operación admitida con permiso del limitador
+     */
+    public void onComplete(long latencyNanos, int cost, boolean success) {
+        if (success) {
+            limiter.onComplete(latencyNanos, cost);
+        } else {
+            limiter.release();
+        }
+    }
+
+    /**
+     * Coste máximo que puede admitirse en una sola petición (el cubo lleno)
+     */
+    public int getBurstTokens() {
+        return (int) (burstNanos / nanosPerToken);
+    }
+
+    public int getConcurrencyLimit() {
+        return limiter.getLimit();
+    }
+
+    public int getInFlight() {
+        return limiter.getInFlight();
+    }
+
+    /**
+     * Limpia los cubos llenos (usuarios inactivos) para que el mapa no crezca sin fin
+     *
+     * El cubo se marca como EVICTED con CAS antes de quitarlo del mapa: o gana
+     * el cobro de una petición concurrente (y el cubo se queda) o gana la
+     * limpieza (y la petición, al ver la marca, cobra en un cubo nuevo).
+     */
+    @Scheduled(fixedDelayString = "${admission.cleanup-interval-ms:60000}")
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        for (Map.Entry<String, AtomicLong> entry : buckets.entrySet()) {
+            AtomicLong tat = entry.getValue();
+            long current = tat.get();
+            if (current != EVICTED && current - now <= 0 && tat.compareAndSet(current, EVICTED)) {
+                buckets.remove(entry.getKey(), tat);
+            }
+        }
+    }
+
+    /**
+     * GCRA: cada token "empuja" el TAT nanosPerToken hacia el futuro.
+     * Se admite si el TAT resultante no supera now + burst.
+     *
+     * @return 0 si se admite, o los nanosegundos que habría que esperar
+     */
+    private long consumeTokens(String userKey, int cost) {
+        long increment = nanosPerToken * cost;
+
+        while (true) {
+            AtomicLong tat = buckets.computeIfAbsent(userKey, k -> new AtomicLong(System.nanoTime()));
+            long now = System.nanoTime();
+            long current = tat.get();
+            if (current == EVICTED) {
+                buckets.remove(userKey, tat);
+                continue;
+            }
+            long base = current - now > 0 ? current : now;
+            long next = base + increment;
+            long excess = next - now - burstNanos;
+            if (excess > 0) {
+                return excess;
+            }
+            if (tat.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    private void refundTokens(String userKey, int cost) {
+        AtomicLong tat = buckets.get(userKey);
+        if (tat != null) {
+            tat.getAndUpdate(current -> current == EVICTED ? EVICTED : current - nanosPerToken * cost);
+        }
+    }
+
+    private static long toRetryAfterSeconds(long waitNanos) {
+        return Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,519 @@
+package org.example.springcrypto.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Argon2id (RFC 9106) en Java puro
+ *
+ * Alternativa a PBKDF2 para derivar claves desde contraseñas:
+ * - Es "memory-hard": cada derivación rellena memoryKiB KiB de memoria, lo que
+ *   encarece mucho los ataques con GPU/ASIC (PBKDF2 apenas usa memoria)
+ * - El parámetro de paralelismo (p) reparte la memoria en p "lanes" que se
+ *   rellenan en hilos distintos: con p = 4 se usan 4 cores y la derivación
+ *   tarda menos en tiempo real con el mismo coste para el atacante
+ *
+ * Estructura (versión 0x13):
+ * 1. H0 = BLAKE2b de los parámetros, la contraseña, el salt, el secreto y los datos asociados
+ * 2. La memoria es una matriz de p lanes x q bloques de 1 KiB, dividida en 4 "slices"
+ * 3. En cada pasada y slice, cada lane rellena su segmento (en paralelo) combinando el
+ *    bloque anterior con uno de referencia elegido de forma pseudoaleatoria
+ * 4. El tag final es H' del XOR de los últimos bloques de cada lane
+ *
+ * Argon2id usa direccionamiento independiente de los datos (como Argon2i) en la
+ * primera mitad de la primera pasada, y dependiente (como Argon2d) en el resto.
+ */
+public final class Argon2id {
+
+    public static final int VERSION = 0x13;
+
+    private static final int TYPE_ID = 2;
+    private static final int BLOCK_LONGS = 128;       // 1024 bytes
+    private static final int SYNC_POINTS = 4;         // slices por pasada
+    private static final int ADDRESSES_IN_BLOCK = 128;
+
+    private final int memoryKiB;
+    private final int iterations;
+    private final int parallelism;
+    private final Executor executor;
+
+    /**
+     * @param memoryKiB Memoria en KiB (mínimo 8 * parallelism)
+     * @param iterations Número de pasadas sobre la memoria (t, mínimo 1)
+     * @param parallelism Número de lanes (p)
+     * @param executor Hilos para las lanes (null = todas en el hilo que llama)
+     */
+    public Argon2id(int memoryKiB, int iterations, int parallelism, Executor executor) {
+        if (parallelism < 1 || parallelism > 0xFFFFFF) {
+            throw new IllegalArgumentException("Paralelismo fuera de rango (1 - 16777215)");
+        }
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Se requiere al menos 1 iteración");
+        }
+        if (memoryKiB < 8 * parallelism) {
+            throw new IllegalArgumentException("La memoria debe ser al menos 8 KiB por lane");
+        }
+        this.memoryKiB = memoryKiB;
+        this.iterations = iterations;
+        this.parallelism = parallelism;
+        this.executor = executor;
+    }
+
+    public Argon2id(int memoryKiB, int iterations, int parallelism) {
+        this(memoryKiB, iterations, parallelism, null);
+    }
+
+    /**
+     * Deriva tagLength bytes de la contraseña y el salt
+     */
+    public byte[] hash(byte[] password, byte[] salt, int tagLength) {
+        return hash(password, salt, new byte[0], new byte[0], tagLength);
+    }
+
+    /**
+     * Deriva tagLength bytes con secreto (K) y datos asociados (X) opcionales
+     */
+    public byte[] hash(byte[] password, byte[] salt, byte[] secret, byte[] associatedData, int tagLength) {
+        if (salt.length < 8) {
+            throw new IllegalArgumentException("El salt debe tener al menos 8 bytes");
+        }
+        if (tagLength < 4) {
+            throw new IllegalArgumentException("La salida debe tener al menos 4 bytes");
+        }
+
+        int segmentLength = memoryKiB / (SYNC_POINTS * parallelism);
+        int laneLength = segmentLength * SYNC_POINTS;
+        int blockCount = laneLength * parallelism;
+        long[] memory = new long[blockCount * BLOCK_LONGS];
+
+        // 1. H0 y los dos primeros bloques de cada lane
+        Blake2b h0Digest = new Blake2b(64);
+        h0Digest.updateInt(parallelism);
+        h0Digest.updateInt(tagLength);
+        h0Digest.updateInt(memoryKiB);
+        h0Digest.updateInt(iterations);
+        h0Digest.updateInt(VERSION);
+        h0Digest.updateInt(TYPE_ID);
+        h0Digest.updateWithLength(password);
+        h0Digest.updateWithLength(salt);
+        h0Digest.updateWithLength(secret);
+        h0Digest.updateWithLength(associatedData);
+        byte[] h0 = new byte[64 + 8];
+        h0Digest.doFinal(h0, 0);
+
+        byte[] blockBytes = new byte[1024];
+        for (int lane = 0; lane < parallelism; lane++) {
+            for (int column = 0; column < 2; column++) {
+                writeIntLE(h0, 64, column);
+                writeIntLE(h0, 68, lane);
+                hashLong(h0, blockBytes, 1024);
+                loadBlock(blockBytes, memory, (lane * laneLength + column) * BLOCK_LONGS);
+            }
+        }
+
+        // 2-3. Pasadas: en cada slice las lanes son independientes -> en paralelo
+        Instance instance = new Instance(memory, laneLength, segmentLength, blockCount);
+        for (int pass = 0; pass < iterations; pass++) {
+            for (int slice = 0; slice < SYNC_POINTS; slice++) {
+                fillSlice(instance, pass, slice);
+            }
+        }
+
+        // 4. XOR de la última columna y H' final
+        long[] last = new long[BLOCK_LONGS];
+        for (int lane = 0; lane < parallelism; lane++) {
+            int offset = (lane * laneLength + laneLength - 1) * BLOCK_LONGS;
+            for (int i = 0; i < BLOCK_LONGS; i++) {
+                last[i] ^= memory[offset + i];
+            }
+        }
+        storeBlock(last, blockBytes);
+        byte[] tag = new byte[tagLength];
+        hashLong(blockBytes, tag, tagLength);
+        return tag;
+    }
+
+    private void fillSlice(Instance instance, int pass, int slice) {
+        if (executor == null || parallelism == 1) {
+            for (int lane = 0; lane < parallelism; lane++) {
+                fillSegment(instance, pass, lane, slice);
+            }
+            return;
+        }
+
+        // Las lanes 1..p-1 van al executor; la 0 la rellena este hilo
+        List<FutureTask<Void>> tasks = new ArrayList<>(parallelism - 1);
+        for (int lane = 1; lane < parallelism; lane++) {
+            int currentLane = lane;
+            FutureTask<Void> task = new FutureTask<>(() -> fillSegment(instance, pass, currentLane, slice), null);
+            tasks.add(task);
+            executor.execute(task);
+        }
+        fillSegment(instance, pass, 0, slice);
+
+        // Barrera: la slice siguiente lee bloques de todas las lanes
+        try {
+            for (FutureTask<Void> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            tasks.forEach(task -> task.cancel(true));
+            throw new IllegalStateException("Derivación Argon2id interrumpida", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error en una lane de Argon2id", e.getCause());
+        }
+    }
+
+    private void fillSegment(Instance instance, int pass, int lane, int slice) {
+        long[] memory = instance.memory;
+        int laneLength = instance.laneLength;
+        int segmentLength = instance.segmentLength;
+        boolean dataIndependent = pass == 0 && slice < SYNC_POINTS / 2;
+
+        long[] address = null;
+        long[] input = null;
+        long[] zero = null;
+        long[] scratch = new long[BLOCK_LONGS * 2];
+        if (dataIndependent) {
+            address = new long[BLOCK_LONGS];
+            input = new long[BLOCK_LONGS];
+            zero = new long[BLOCK_LONGS];
+            input[0] = pass;
+            input[1] = lane;
+            input[2] = slice;
+            input[3] = instance.blockCount;
+            input[4] = iterations;
+            input[5] = TYPE_ID;
+        }
+
+        int startIndex = 0;
+        if (pass == 0 && slice == 0) {
+            startIndex = 2;
+            if (dataIndependent) {
+                nextAddresses(address, input, zero, scratch);
+            }
+        }
+
+        int currentOffset = lane * laneLength + slice * segmentLength + startIndex;
+        int previousOffset = currentOffset % laneLength == 0 ? currentOffset + laneLength - 1 : currentOffset - 1;
+
+        for (int index = startIndex; index < segmentLength; index++, currentOffset++, previousOffset++) {
+            if (currentOffset % laneLength == 1) {
+                previousOffset = currentOffset - 1;
+            }
+
+            long pseudoRandom;
+            if (dataIndependent) {
+                if (index % ADDRESSES_IN_BLOCK == 0) {
+                    nextAddresses(address, input, zero, scratch);
+                }
+                pseudoRandom = address[index % ADDRESSES_IN_BLOCK];
+            } else {
+                pseudoRandom = memory[previousOffset * BLOCK_LONGS];
+            }
+
+            int referenceLane = (int) ((pseudoRandom >>> 32) % parallelism);
+            if (pass == 0 && slice == 0) {
+                referenceLane = lane;
+            }
+            int referenceIndex = referenceIndex(instance, pass, slice, index,
+                pseudoRandom & 0xFFFFFFFFL, referenceLane == lane);
+
+            fillBlock(memory, previousOffset * BLOCK_LONGS,
+                memory, (referenceLane * laneLength + referenceIndex) * BLOCK_LONGS,
+                memory, currentOffset * BLOCK_LONGS, pass > 0, scratch);
+        }
+    }
+
+    /**
+     * Posición del bloque de referencia dentro de su lane (RFC 9106, 3.4.2)
+     */
+    private static int referenceIndex(Instance instance, int pass, int slice, int index,
+                                      long pseudoRandom, boolean sameLane) {
+        int segmentLength = instance.segmentLength;
+        int laneLength = instance.laneLength;
+        long referenceAreaSize;
+        if (pass == 0) {
+            if (slice == 0) {
+                referenceAreaSize = index - 1;
+            } else if (sameLane) {
+                referenceAreaSize = (long) slice * segmentLength + index - 1;
+            } else {
+                referenceAreaSize = (long) slice * segmentLength + (index == 0 ? -1 : 0);
+            }
+        } else if (sameLane) {
+            referenceAreaSize = laneLength - segmentLength + index - 1;
+        } else {
+            referenceAreaSize = laneLength - segmentLength + (index == 0 ? -1 : 0);
+        }
+
+        // Distribución no uniforme: favorece los bloques más recientes
+        long relativePosition = (pseudoRandom * pseudoRandom) >>> 32;
+        relativePosition = referenceAreaSize - 1 - ((referenceAreaSize * relativePosition) >>> 32);
+
+        long startPosition = 0;
+        if (pass != 0) {
+            startPosition = slice == SYNC_POINTS - 1 ? 0 : (long) (slice + 1) * segmentLength;
+        }
+        return (int) ((startPosition + relativePosition) % laneLength);
+    }
+
+    private static void nextAddresses(long[] address, long[] input, long[] zero, long[] scratch) {
+        input[6]++;
+        fillBlock(zero, 0, input, 0, address, 0, false, scratch);
+        fillBlock(zero, 0, address, 0, address, 0, false, scratch);
+    }
+
+    /**
+     * Función de compresión G: next = P(prev ^ ref) ^ (prev ^ ref) [^ next si withXor]
+     */
+    private static void fillBlock(long[] prevMem, int prev, long[] refMem, int ref,
+                                  long[] nextMem, int next, boolean withXor, long[] scratch) {
+        long[] r = scratch;
+        int tmp = BLOCK_LONGS;
+        for (int i = 0; i < BLOCK_LONGS; i++) {
+            long value = prevMem[prev + i] ^ refMem[ref + i];
+            r[i] = value;
+            scratch[tmp + i] = withXor ? value ^ nextMem[next + i] : value;
+        }
+
+        // P por filas (16 palabras seguidas) y luego por columnas (pares de palabras)
+        for (int row = 0; row < 8; row++) {
+            int b = row * 16;
+            permute(r, b, b + 1, b + 2, b + 3, b + 4, b + 5, b + 6, b + 7,
+                b + 8, b + 9, b + 10, b + 11, b + 12, b + 13, b + 14, b + 15);
+        }
+        for (int column = 0; column < 8; column++) {
+            int b = column * 2;
+            permute(r, b, b + 1, b + 16, b + 17, b + 32, b + 33, b + 48, b + 49,
+                b + 64, b + 65, b + 80, b + 81, b + 96, b + 97, b + 112, b + 113);
+        }
+
+        for (int i = 0; i < BLOCK_LONGS; i++) {
+            nextMem[next + i] = scratch[tmp + i] ^ r[i];
+        }
+    }
+
+    private static void permute(long[] v, int i0, int i1, int i2, int i3, int i4, int i5, int i6, int i7,
+                                int i8, int i9, int i10, int i11, int i12, int i13, int i14, int i15) {
+        mix(v, i0, i4, i8, i12);
+        mix(v, i1, i5, i9, i13);
+        mix(v, i2, i6, i10, i14);
+        mix(v, i3, i7, i11, i15);
+        mix(v, i0, i5, i10, i15);
+        mix(v, i1, i6, i11, i12);
+        mix(v, i2, i7, i8, i13);
+        mix(v, i3, i4, i9, i14);
+    }
+
+    /**
+     * GB de BLAKE2b con la multiplicación de BlaMka: a + b + 2 * lo(a) * lo(b)
+     */
+    private static void mix(long[] v, int a, int b, int c, int d) {
+        v[a] = blaMka(v[a], v[b]);
+        v[d] = Long.rotateRight(v[d] ^ v[a], 32);
+        v[c] = blaMka(v[c], v[d]);
+        v[b] = Long.rotateRight(v[b] ^ v[c], 24);
+        v[a] = blaMka(v[a], v[b]);
+        v[d] = Long.rotateRight(v[d] ^ v[a], 16);
+        v[c] = blaMka(v[c], v[d]);
+        v[b] = Long.rotateRight(v[b] ^ v[c], 63);
+    }
+
+    private static long blaMka(long x, long y) {
+        return x + y + 2 * (x & 0xFFFFFFFFL) * (y & 0xFFFFFFFFL);
+    }
+
+    /**
+     * H': BLAKE2b de longitud variable (RFC 9106, 3.3)
+     */
+    private static void hashLong(byte[] input, byte[] out, int outLength) {
+        if (outLength <= 64) {
+            Blake2b digest = new Blake2b(outLength);
+            digest.updateInt(outLength);
+            digest.update(input, 0, input.length);
+            digest.doFinal(out, 0);
+            return;
+        }
+
+        byte[] v = new byte[64];
+        Blake2b digest = new Blake2b(64);
+        digest.updateInt(outLength);
+        digest.update(input, 0, input.length);
+        digest.doFinal(v, 0);
+
+        int blocks = (outLength + 31) / 32 - 2;
+        int pos = 0;
+        System.arraycopy(v, 0, out, pos, 32);
+        pos += 32;
+        for (int i = 1; i < blocks; i++) {
+            digest = new Blake2b(64);
+            digest.update(v, 0, 64);
+            digest.doFinal(v, 0);
+            System.arraycopy(v, 0, out, pos, 32);
+            pos += 32;
+        }
+        byte[] lastBlock = new byte[outLength - 32 * blocks];
+        digest = new Blake2b(lastBlock.length);
+        digest.update(v, 0, 64);
+        digest.doFinal(lastBlock, 0);
+        System.arraycopy(lastBlock, 0, out, pos, lastBlock.length);
+    }
+
+    private static void loadBlock(byte[] bytes, long[] memory, int offset) {
+        for (int i = 0; i < BLOCK_LONGS; i++) {
+            memory[offset + i] = readLongLE(bytes, i * 8);
+        }
+    }
+
+    private static void storeBlock(long[] block, byte[] bytes) {
+        for (int i = 0; i < BLOCK_LONGS; i++) {
+            writeLongLE(bytes, i * 8, block[i]);
+        }
+    }
+
+    private static long readLongLE(byte[] b, int off) {
+        long value = 0;
+        for (int i = 7; i >= 0; i--) {
+            value = (value << 8) | (b[off + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static void writeLongLE(byte[] b, int off, long value) {
+        for (int i = 0; i < 8; i++) {
+            b[off + i] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    private static void writeIntLE(byte[] b, int off, int value) {
+        for (int i = 0; i < 4; i++) {
+            b[off + i] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    private record Instance(long[] memory, int laneLength, int segmentLength, int blockCount) {
+    }
+
+    /**
+     * BLAKE2b sin clave (RFC 7693), solo lo necesario para Argon2
+     */
+    private static final class Blake2b {
+
+        private static final long[] IV = {
+            0x6a09e667f3bcc908L, 0xbb67ae8584caa73bL, 0x3c6ef372fe94f82bL, 0xa54ff53a5f1d36f1L,
+            0x510e527fade682d1L, 0x9b05688c2b3e6c1fL, 0x1f83d9abfb41bd6bL, 0x5be0cd19137e2179L
+        };
+
+        private static final byte[][] SIGMA = {
+            {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15},
+            {14, 10, 4, 8, 9, 15, 13, 6, 1, 12, 0, 2, 11, 7, 5, 3},
+            {11, 8, 12, 0, 5, 2, 15, 13, 10, 14, 3, 6, 7, 1, 9, 4},
+            {7, 9, 3, 1, 13, 12, 11, 14, 2, 6, 5, 10, 4, 0, 15, 8},
+            {9, 0, 5, 7, 2, 4, 10, 15, 14, 1, 11, 12, 6, 8, 3, 13},
+            {2, 12, 6, 10, 0, 11, 8, 3, 4, 13, 7, 5, 15, 14, 1, 9},
+            {12, 5, 1, 15, 14, 13, 4, 10, 0, 7, 6, 3, 9, 2, 8, 11},
+            {13, 11, 7, 14, 12, 1, 3, 9, 5, 0, 15, 4, 8, 6, 2, 10},
+            {6, 15, 14, 9, 11, 3, 0, 8, 12, 2, 13, 7, 1, 4, 10, 5},
+            {10, 2, 8, 4, 7, 6, 1, 5, 15, 11, 9, 14, 3, 12, 13, 0}
+        };
+
+        private final long[] h = new long[8];
+        private final long[] m = new long[16];
+        private final long[] v = new long[16];
+        private final byte[] buffer = new byte[128];
+        private final int outLength;
+        private int bufferLength;
+        private long counter;
+
+        private Blake2b(int outLength) {
+            this.outLength = outLength;
+            System.arraycopy(IV, 0, h, 0, 8);
+            h[0] ^= 0x01010000L ^ outLength;
+        }
+
+        private void updateInt(int value) {
+            byte[] le = new byte[4];
+            writeIntLE(le, 0, value);
+            update(le, 0, 4);
+        }
+
+        private void updateWithLength(byte[] data) {
+            updateInt(data.length);
+            update(data, 0, data.length);
+        }
+
+        private void update(byte[] data, int offset, int length) {
+            while (length > 0) {
+                // El último bloque se comprime en doFinal (con la marca de final)
+                if (bufferLength == 128) {
+                    counter += 128;
+                    compress(buffer, false);
+                    bufferLength = 0;
+                }
+                int n = Math.min(128 - bufferLength, length);
+                System.arraycopy(data, offset, buffer, bufferLength, n);
+                bufferLength += n;
+                offset += n;
+                length -= n;
+            }
+        }
+
+        private void doFinal(byte[] out, int offset) {
+            counter += bufferLength;
+            for (int i = bufferLength; i < 128; i++) {
+                buffer[i] = 0;
+            }
+            compress(buffer, true);
+
+            byte[] full = new byte[64];
+            for (int i = 0; i < 8; i++) {
+                writeLongLE(full, i * 8, h[i]);
+            }
+            System.arraycopy(full, 0, out, offset, outLength);
+        }
+
+        private void compress(byte[] block, boolean last) {
+            for (int i = 0; i < 16; i++) {
+                m[i] = readLongLE(block, i * 8);
+            }
+            System.arraycopy(h, 0, v, 0, 8);
+            System.arraycopy(IV, 0, v, 8, 8);
+            v[12] ^= counter;
+            if (last) {
+                v[14] = ~v[14];
+            }
+
+            for (int round = 0; round < 12; round++) {
+                byte[] s = SIGMA[round % 10];
+                g(0, 4, 8, 12, m[s[0]], m[s[1]]);
+                g(1, 5, 9, 13, m[s[2]], m[s[3]]);
+                g(2, 6, 10, 14, m[s[4]], m[s[5]]);
+                g(3, 7, 11, 15, m[s[6]], m[s[7]]);
+                g(0, 5, 10, 15, m[s[8]], m[s[9]]);
+                g(1, 6, 11, 12, m[s[10]], m[s[11]]);
+                g(2, 7, 8, 13, m[s[12]], m[s[13]]);
+                g(3, 4, 9, 14, m[s[14]], m[s[15]]);
+            }
+
+            for (int i = 0; i < 8; i++) {
+                h[i] ^= v[i] ^ v[i + 8];
+            }
+        }
+
+        private void g(int a, int b, int c, int d, long x, long y) {
+            v[a] = v[a] + v[b] + x;
+            v[d] = Long.rotateRight(v[d] ^ v[a], 32);
+            v[c] = v[c] + v[d];
+            v[b] = Long.rotateRight(v[b] ^ v[c], 24);
+            v[a] = v[a] + v[b] + y;
+            v[d] = Long.rotateRight(v[d] ^ v[a], 16);
+            v[c] = v[c] + v[d];
+            v[b] = Long.rotateRight(v[b] ^ v[c], 63);
+        }
+    }
+}
@@ -22,6 +22,14 @@ public class AsymmetricEncryptionService {
     private static final int RSA_KEY_SIZE = 2048;
     private static final String EC_CURVE = "secp256r1"; // También conocida como P-256 o prime256v1
 
+    public static final String OAEP_TRANSFORMATION = "RSA/ECB/OAEPWithSHA-256AndMGF1Padding";
+
+    private final JcaProviderSelector providers;
+
+    public AsymmetricEncryptionService(JcaProviderSelector providers) {
+        this.providers = providers;
+    }
+
     /**
      * Genera un par de claves RSA (pública y privada)
      */
@@ -34,6 +42,15 @@ public class AsymmetricEncryptionService {
      * @param algorithm "RSA" o "EC" (Elliptic Curve)
      */
     public KeyPair generateKeyPair(String algorithm) throws Exception {
+        return generateKeyPair(algorithm, null);
+    }
+
+    /**
+     * Genera un par de claves con el algoritmo y tamaño especificados
+     * @param algorithm "RSA" o "EC" (Elliptic Curve)
+     * @param keySize RSA: 2048, 3072, 4096 | EC: 256, 384, 521 (null = por defecto)
+     */
+    public KeyPair generateKeyPair(String algorithm, Integer keySize) throws Exception {
         if (algorithm == null || algorithm.isEmpty()) {
             algorithm = "RSA";
         }
@@ -42,15 +59,26 @@ public class AsymmetricEncryptionService {
 
         return switch (algorithm) {
             case "RSA" -> {
-                KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(RSA_ALGORITHM);
-                keyPairGenerator.initialize(RSA_KEY_SIZE);
+                int size = keySize != null ? keySize : RSA_KEY_SIZE;
+                if (size != 2048 && size != 3072 && size != 4096) {
+                    throw new IllegalArgumentException("Tamaño RSA no soportado: " + size + ". Use 2048, 3072 o 4096");
+                }
+                KeyPairGenerator keyPairGenerator = providers.keyPairGenerator(RSA_ALGORITHM);
+                keyPairGenerator.initialize(size);
                 yield keyPairGenerator.generateKeyPair();
             }
             case "EC", "ECDSA", "ECC" -> {
-                KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(EC_ALGORITHM);
-                // Usar curva secp256r1 (P-256) - equivalente a RSA-3072 en seguridad
+                KeyPairGenerator keyPairGenerator = providers.keyPairGenerator(EC_ALGORITHM);
+                // Por defecto secp256r1 (P-256) - equivalente a RSA-3072 en seguridad
+                String curve = switch (keySize != null ? keySize : 256) {
+                    case 256 -> EC_CURVE;
+                    case 384 -> "secp384r1";
+                    case 521 -> "secp521r1";
+                    default -> throw new IllegalArgumentException(
+                        "Tamaño EC no soportado: " + keySize + ". Use 256, 384 o 521");
+                };
                 java.security.spec.ECGenParameterSpec ecSpec =
-                    new java.security.spec.ECGenParameterSpec(EC_CURVE);
+                    new java.security.spec.ECGenParameterSpec(curve);
                 keyPairGenerator.initialize(ecSpec);
                 yield keyPairGenerator.generateKeyPair();
             }
@@ -78,8 +106,17 @@ public class AsymmetricEncryptionService {
      * Detecta automáticamente si es RSA o EC
      */
     public PublicKey base64ToPublicKey(String base64PublicKey) throws Exception {
-        byte[] decodedKey = Base64.getDecoder().decode(base64PublicKey);
-        X509EncodedKeySpec keySpec = new X509EncodedKeySpec(decodedKey);
+        return bytesToPublicKey(Base64.getDecoder().decode(base64PublicKey));
+    }
+
+    /**
+     * Clave pública X.509 a partir de sus bytes (RSA o EC)
+     */
+    public PublicKey bytesToPublicKey(byte[] encodedKey) throws Exception {
+        if (encodedKey == null) {
+            throw new IllegalArgumentException("Se requiere 'publicKey' o 'keyId'");
+        }
+        X509EncodedKeySpec keySpec = new X509EncodedKeySpec(encodedKey);
 
         // Intentar primero con RSA, luego con EC
         try {
@@ -97,8 +134,17 @@ public class AsymmetricEncryptionService {
      * Detecta automáticamente si es RSA o EC
      */
     public PrivateKey base64ToPrivateKey(String base64PrivateKey) throws Exception {
-        byte[] decodedKey = Base64.getDecoder().decode(base64PrivateKey);
-        PKCS8EncodedKeySpec keySpec = new PKCS8EncodedKeySpec(decodedKey);
+        return bytesToPrivateKey(Base64.getDecoder().decode(base64PrivateKey));
+    }
+
+    /**
+     * Clave privada PKCS#8 a partir de sus bytes (RSA o EC)
+     */
+    public PrivateKey bytesToPrivateKey(byte[] encodedKey) throws Exception {
+        if (encodedKey == null) {
+            throw new IllegalArgumentException("Se requiere 'privateKey' o 'keyId'");
+        }
+        PKCS8EncodedKeySpec keySpec = new PKCS8EncodedKeySpec(encodedKey);
 
         // Intentar primero con RSA, luego con EC
         try {
@@ -117,18 +163,11 @@ public class AsymmetricEncryptionService {
      * Para RSA-2048: 256 - 11 = 245 bytes
      */
     public String encryptPKCS1(String plainText, PublicKey publicKey) throws Exception {
-        Cipher cipher = Cipher.getInstance("RSA/ECB/PKCS1Padding");
-        cipher.init(Cipher.ENCRYPT_MODE, publicKey);
-        byte[] encrypted = cipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8));
-        return Base64.getEncoder().encodeToString(encrypted);
+        return Base64.getEncoder().encodeToString(encryptBytes("PKCS1", plainText, publicKey));
     }
 
     public String decryptPKCS1(String encryptedText, PrivateKey privateKey) throws Exception {
-        Cipher cipher = Cipher.getInstance("RSA/ECB/PKCS1Padding");
-        cipher.init(Cipher.DECRYPT_MODE, privateKey);
-        byte[] decoded = Base64.getDecoder().decode(encryptedText);
-        byte[] decrypted = cipher.doFinal(decoded);
-        return new String(decrypted, StandardCharsets.UTF_8);
+        return decryptBytes("PKCS1", Base64.getDecoder().decode(encryptedText), privateKey);
     }
 
     /**
@@ -138,18 +177,37 @@ public class AsymmetricEncryptionService {
      * Para RSA-2048: 256 - 42 = 214 bytes
      */
     public String encryptOAEP(String plainText, PublicKey publicKey) throws Exception {
-        Cipher cipher = Cipher.getInstance("RSA/ECB/OAEPWithSHA-256AndMGF1Padding");
-        cipher.init(Cipher.ENCRYPT_MODE, publicKey);
-        byte[] encrypted = cipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8));
-        return Base64.getEncoder().encodeToString(encrypted);
+        return Base64.getEncoder().encodeToString(encryptBytes("OAEP", plainText, publicKey));
     }
 
     public String decryptOAEP(String encryptedText, PrivateKey privateKey) throws Exception {
-        Cipher cipher = Cipher.getInstance("RSA/ECB/OAEPWithSHA-256AndMGF1Padding");
+        return decryptBytes("OAEP", Base64.getDecoder().decode(encryptedText), privateKey);
+    }
+
+    /**
+     * Encripta con RSA y el padding indicado (PKCS1 u OAEP)
+     */
+    public byte[] encryptBytes(String padding, String plainText, PublicKey publicKey) throws Exception {
+        Cipher cipher = providers.cipher(rsaTransformation(padding));
+        cipher.init(Cipher.ENCRYPT_MODE, publicKey);
+        return cipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String decryptBytes(String padding, byte[] encrypted, PrivateKey privateKey) throws Exception {
+        if (encrypted == null) {
+            throw new IllegalArgumentException("El campo 'encryptedText' es requerido");
+        }
+        Cipher cipher = providers.cipher(rsaTransformation(padding));
         cipher.init(Cipher.DECRYPT_MODE, privateKey);
-        byte[] decoded = Base64.getDecoder().decode(encryptedText);
-        byte[] decrypted = cipher.doFinal(decoded);
-        return new String(decrypted, StandardCharsets.UTF_8);
+        return new String(cipher.doFinal(encrypted), StandardCharsets.UTF_8);
+    }
+
+    private static String rsaTransformation(String padding) {
+        return switch (padding) {
+            case "PKCS1" -> "RSA/ECB/PKCS1Padding";
+            case "OAEP" -> OAEP_TRANSFORMATION;
+            default -> throw new IllegalArgumentException("Padding no soportado: " + padding);
+        };
     }
 
     /**
@@ -157,29 +215,38 @@ public class AsymmetricEncryptionService {
      * Se firma con la clave privada y se verifica con la pública
      */
     public String sign(String message, PrivateKey privateKey) throws Exception {
+        return Base64.getEncoder().encodeToString(signBytes(message, privateKey));
+    }
+
+    public byte[] signBytes(String message, PrivateKey privateKey) throws Exception {
         // Detectar el algoritmo de la clave
         String algorithm = privateKey.getAlgorithm();
         String signatureAlgorithm = algorithm.equals("EC") ? "SHA256withECDSA" : "SHA256withRSA";
 
-        Signature signature = Signature.getInstance(signatureAlgorithm);
+        Signature signature = providers.signature(signatureAlgorithm);
         signature.initSign(privateKey);
         signature.update(message.getBytes(StandardCharsets.UTF_8));
-        byte[] signatureBytes = signature.sign();
-        return Base64.getEncoder().encodeToString(signatureBytes);
+        return signature.sign();
     }
 
     /**
      * Verifica una firma digital (RSA o ECDSA)
      */
     public boolean verify(String message, String signatureBase64, PublicKey publicKey) throws Exception {
+        return verify(message, Base64.getDecoder().decode(signatureBase64), publicKey);
+    }
+
+    public boolean verify(String message, byte[] signatureBytes, PublicKey publicKey) throws Exception {
+        if (signatureBytes == null) {
+            throw new IllegalArgumentException("El campo 'signature' es requerido");
+        }
         // Detectar el algoritmo de la clave
         String algorithm = publicKey.getAlgorithm();
         String signatureAlgorithm = algorithm.equals("EC") ? "SHA256withECDSA" : "SHA256withRSA";
 
-        Signature signature = Signature.getInstance(signatureAlgorithm);
+        Signature signature = providers.signature(signatureAlgorithm);
         signature.initVerify(publicKey);
         signature.update(message.getBytes(StandardCharsets.UTF_8));
-        byte[] signatureBytes = Base64.getDecoder().decode(signatureBase64);
         return signature.verify(signatureBytes);
     }
 
@@ -188,7 +255,7 @@ public class AsymmetricEncryptionService {
      * Curvas elípticas - firmas más pequeñas que RSA
      */
     public String signECDSA(String message, PrivateKey privateKey) throws Exception {
-        Signature signature = Signature.getInstance("SHA256withECDSA");
+        Signature signature = providers.signature("SHA256withECDSA");
         signature.initSign(privateKey);
         signature.update(message.getBytes(StandardCharsets.UTF_8));
         byte[] signatureBytes = signature.sign();
@@ -199,7 +266,7 @@ public class AsymmetricEncryptionService {
      * Verifica una firma ECDSA
      */
     public boolean verifyECDSA(String message, String signatureBase64, PublicKey publicKey) throws Exception {
-        Signature signature = Signature.getInstance("SHA256withECDSA");
+        Signature signature = providers.signature("SHA256withECDSA");
         signature.initVerify(publicKey);
         signature.update(message.getBytes(StandardCharsets.UTF_8));
         byte[] signatureBytes = Base64.getDecoder().decode(signatureBase64);
@@ -221,36 +288,31 @@ public class AsymmetricEncryptionService {
         Key aesKey = keyGenerator.generateKey();
 
         // Encriptar datos con AES-GCM
-        Cipher aesCipher = Cipher.getInstance("AES/GCM/NoPadding");
+        Cipher aesCipher = providers.cipher(SymmetricEncryptionService.GCM_TRANSFORMATION);
         byte[] iv = new byte[12]; // GCM usa IV de 12 bytes
         new SecureRandom().nextBytes(iv);
         aesCipher.init(Cipher.ENCRYPT_MODE, aesKey, new javax.crypto.spec.GCMParameterSpec(128, iv));
         byte[] encryptedData = aesCipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8));
 
         // Encriptar clave AES con RSA
-        Cipher rsaCipher = Cipher.getInstance("RSA/ECB/OAEPWithSHA-256AndMGF1Padding");
+        Cipher rsaCipher = providers.cipher(OAEP_TRANSFORMATION);
         rsaCipher.init(Cipher.ENCRYPT_MODE, publicKey);
         byte[] encryptedKey = rsaCipher.doFinal(aesKey.getEncoded());
 
-        return new HybridEncryptionResult(
-                Base64.getEncoder().encodeToString(encryptedData),
-                Base64.getEncoder().encodeToString(encryptedKey),
-                Base64.getEncoder().encodeToString(iv)
-        );
+        return new HybridEncryptionResult(encryptedData, encryptedKey, iv);
     }
 
     public String decryptHybrid(HybridEncryptionResult hybridResult, PrivateKey privateKey) throws Exception {
         // Descifrar clave AES con RSA
-        Cipher rsaCipher = Cipher.getInstance("RSA/ECB/OAEPWithSHA-256AndMGF1Padding");
+        Cipher rsaCipher = providers.cipher(OAEP_TRANSFORMATION);
         rsaCipher.init(Cipher.DECRYPT_MODE, privateKey);
-        byte[] aesKeyBytes = rsaCipher.doFinal(Base64.getDecoder().decode(hybridResult.encryptedKey()));
+        byte[] aesKeyBytes = rsaCipher.doFinal(hybridResult.encryptedKey());
         Key aesKey = new javax.crypto.spec.SecretKeySpec(aesKeyBytes, "AES");
 
         // Descifrar datos con AES-GCM
-        Cipher aesCipher = Cipher.getInstance("AES/GCM/NoPadding");
-        byte[] iv = Base64.getDecoder().decode(hybridResult.iv());
-        aesCipher.init(Cipher.DECRYPT_MODE, aesKey, new javax.crypto.spec.GCMParameterSpec(128, iv));
-        byte[] decryptedData = aesCipher.doFinal(Base64.getDecoder().decode(hybridResult.encryptedData()));
+        Cipher aesCipher = providers.cipher(SymmetricEncryptionService.GCM_TRANSFORMATION);
+        aesCipher.init(Cipher.DECRYPT_MODE, aesKey, new javax.crypto.spec.GCMParameterSpec(128, hybridResult.iv()));
+        byte[] decryptedData = aesCipher.doFinal(hybridResult.encryptedData());
 
         return new String(decryptedData, StandardCharsets.UTF_8);
     }
@@ -275,30 +337,18 @@ public class AsymmetricEncryptionService {
         // 1. Generar par de claves efímero
         KeyPair ephemeralKeyPair = generateKeyPair("EC");
 
-        // 2. Realizar ECDH para obtener secreto compartido
-        javax.crypto.KeyAgreement keyAgreement = javax.crypto.KeyAgreement.getInstance("ECDH");
-        keyAgreement.init(ephemeralKeyPair.getPrivate());
-        keyAgreement.doPhase(recipientPublicKey, true);
-        byte[] sharedSecret = keyAgreement.generateSecret();
-
-        // 3. Derivar clave AES del secreto compartido usando KDF (HKDF simplificado con SHA-256)
-        java.security.MessageDigest digest = java.security.MessageDigest.getInstance("SHA-256");
-        byte[] aesKeyBytes = digest.digest(sharedSecret);
-        Key aesKey = new javax.crypto.spec.SecretKeySpec(aesKeyBytes, "AES");
+        // 2-3. ECDH + derivar clave AES del secreto compartido
+        Key aesKey = deriveECIESKey(ephemeralKeyPair.getPrivate(), recipientPublicKey);
 
         // 4. Cifrar con AES-GCM
-        Cipher aesCipher = Cipher.getInstance("AES/GCM/NoPadding");
+        Cipher aesCipher = providers.cipher(SymmetricEncryptionService.GCM_TRANSFORMATION);
         byte[] iv = new byte[12]; // GCM usa IV de 12 bytes
         new SecureRandom().nextBytes(iv);
         aesCipher.init(Cipher.ENCRYPT_MODE, aesKey, new javax.crypto.spec.GCMParameterSpec(128, iv));
         byte[] encryptedData = aesCipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8));
 
         // 5. Devolver clave pública efímera + datos cifrados + IV
-        return new ECIESResult(
-                publicKeyToBase64(ephemeralKeyPair.getPublic()),
-                Base64.getEncoder().encodeToString(encryptedData),
-                Base64.getEncoder().encodeToString(iv)
-        );
+        return new ECIESResult(ephemeralKeyPair.getPublic().getEncoded(), encryptedData, iv);
     }
 
     /**
@@ -311,39 +361,48 @@ public class AsymmetricEncryptionService {
         }
 
         // 1. Recuperar clave pública efímera
-        PublicKey ephemeralPublicKey = base64ToPublicKey(eciesResult.ephemeralPublicKey());
+        PublicKey ephemeralPublicKey = bytesToPublicKey(eciesResult.ephemeralPublicKey());
+
+        // 2-3. ECDH con nuestra clave privada y la clave pública efímera -> la misma clave AES
+        Key aesKey = deriveECIESKey(recipientPrivateKey, ephemeralPublicKey);
+
+        // 4. Descifrar con AES-GCM
+        Cipher aesCipher = providers.cipher(SymmetricEncryptionService.GCM_TRANSFORMATION);
+        aesCipher.init(Cipher.DECRYPT_MODE, aesKey, new javax.crypto.spec.GCMParameterSpec(128, eciesResult.iv()));
+        byte[] decryptedData = aesCipher.doFinal(eciesResult.encryptedData());
 
-        // 2. Realizar ECDH con nuestra clave privada y la clave pública efímera
+        return new String(decryptedData, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Deriva la clave AES de ECIES: ECDH entre una clave privada y la pública
+     * de la otra parte, y SHA-256 del secreto compartido (HKDF simplificado)
+     *
+     * Ambas partes obtienen la misma clave: (privEfímera, pubReceptor) al cifrar
+     * y (privReceptor, pubEfímera) al descifrar.
+     */
+    public javax.crypto.SecretKey deriveECIESKey(PrivateKey privateKey, PublicKey otherPublicKey) throws Exception {
         javax.crypto.KeyAgreement keyAgreement = javax.crypto.KeyAgreement.getInstance("ECDH");
-        keyAgreement.init(recipientPrivateKey);
-        keyAgreement.doPhase(ephemeralPublicKey, true);
+        keyAgreement.init(privateKey);
+        keyAgreement.doPhase(otherPublicKey, true);
         byte[] sharedSecret = keyAgreement.generateSecret();
 
-        // 3. Derivar la misma clave AES
         java.security.MessageDigest digest = java.security.MessageDigest.getInstance("SHA-256");
         byte[] aesKeyBytes = digest.digest(sharedSecret);
-        Key aesKey = new javax.crypto.spec.SecretKeySpec(aesKeyBytes, "AES");
-
-        // 4. Descifrar con AES-GCM
-        Cipher aesCipher = Cipher.getInstance("AES/GCM/NoPadding");
-        byte[] iv = Base64.getDecoder().decode(eciesResult.iv());
-        aesCipher.init(Cipher.DECRYPT_MODE, aesKey, new javax.crypto.spec.GCMParameterSpec(128, iv));
-        byte[] decryptedData = aesCipher.doFinal(Base64.getDecoder().decode(eciesResult.encryptedData()));
-
-        return new String(decryptedData, StandardCharsets.UTF_8);
+        return new javax.crypto.spec.SecretKeySpec(aesKeyBytes, "AES");
     }
 
     /**
      * Record para almacenar resultado de encriptación híbrida
      */
-    public record HybridEncryptionResult(String encryptedData, String encryptedKey, String iv) {}
+    public record HybridEncryptionResult(byte[] encryptedData, byte[] encryptedKey, byte[] iv) {}
 
     /**
      * Record para almacenar resultado de ECIES
-     * ephemeralPublicKey: Clave pública efímera generada para este cifrado
+     * ephemeralPublicKey: Clave pública efímera generada para este cifrado (X.509)
      * encryptedData: Datos cifrados con AES-GCM
      * iv: Vector de inicialización para AES-GCM
      */
-    public record ECIESResult(String ephemeralPublicKey, String encryptedData, String iv) {}
+    public record ECIESResult(byte[] ephemeralPublicKey, byte[] encryptedData, byte[] iv) {}
 }
 
@@ -0,0 +1,95 @@
+package org.example.springcrypto.service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Cola circular acotada y sin locks: muchos productores, un consumidor
+ *
+ * Cada celda tiene un número de secuencia (algoritmo de Dmitry Vyukov):
+ * - Un productor reserva una posición con un CAS sobre "tail" y, tras escribir
+ *   el elemento, publica la celda avanzando su secuencia.
+ * - El consumidor (un único hilo) solo lee celdas ya publicadas.
+ *
+ * Si la cola está llena, offer() devuelve false al momento: quien llama decide
+ * si descarta o reintenta. La memoria es fija: capacity referencias.
+ */
+public class AuditRingBuffer<T> {
+
+    private final int mask;
+    private final AtomicReferenceArray<T> items;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head; // solo lo escribe el consumidor
+
+    /**
+     * @param capacity Tamaño de la cola (se redondea a potencia de 2)
+     */
+    public AuditRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.items = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Encola un elemento sin bloquear
+     *
+     * @return false si la cola está llena
+     */
+    public boolean offer(T item) {
+        while (true) {
+            long pos = tail.get();
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    items.lazySet(index, item);
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                return false; // llena: el consumidor aún no ha liberado esta celda
+            }
+            // diff > 0: otro productor ganó la posición, reintentar
+        }
+    }
+
+    /**
+     * Saca hasta max elementos y los añade a "out" (solo desde el hilo consumidor)
+     *
+     * @return número de elementos extraídos
+     */
+    public int drainTo(List<T> out, int max) {
+        int count = 0;
+        while (count < max) {
+            int index = (int) (head & mask);
+            if (sequences.get(index) != head + 1) {
+                break; // vacía, o el productor aún no ha publicado esta celda
+            }
+            out.add(items.get(index));
+            items.lazySet(index, null);
+            sequences.set(index, head + mask + 1);
+            head++;
+            count++;
+        }
+        return count;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Número aproximado de elementos pendientes
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+}
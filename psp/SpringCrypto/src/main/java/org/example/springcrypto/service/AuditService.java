@@ -0,0 +1,350 @@
+package org.example.springcrypto.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.springcrypto.entity.AuditLogEntry;
+import org.example.springcrypto.repository.AuditLogRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Auditoría asíncrona de accesos a secretos
+ *
+ * Registra getSecret, shareSecret, getSharedSecret y revokeAccess sin añadir
+ * una escritura a la base de datos por petición:
+ *
+ * 1. El hilo de la petición mete el evento en una cola circular sin locks
+ *    (un CAS y una escritura en un array)
+ * 2. Un hilo escritor vacía la cola por lotes y los escribe en un fichero
+ *    append-only y/o en la tabla audit_log (un saveAll por lote)
+ * 3. Al parar la aplicación se vacía lo pendiente
+ *
+ * Cada destino (fichero, tabla) lleva su propia cuenta: si uno falla, el lote
+ * se da por perdido solo en ese destino y el aviso de eventos perdidos se
+ * escribe solo en él; los demás siguen como si nada.
+ *
+ * Si la cola se llena hay dos políticas (audit.overflow-policy):
+ * - DROP: se descarta el evento y se cuenta; el escritor deja constancia
+ *   en el propio log de cuántos eventos se perdieron
+ * - BLOCK: el hilo de la petición espera hasta audit.block-timeout-ms
+ *   a que haya hueco y, si no, descarta
+ *
+ * Un evento con éxito dentro de una transacción no se encola hasta que esta
+ * termina: si hace commit se registra como éxito y si hace rollback como
+ * fallo. Así el log no dice que algo se hizo cuando no llegó a guardarse.
+ */
+@Service
+public class AuditService {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditService.class);
+
+    /**
+     * Operaciones auditadas
+     */
+    public enum AuditAction {
+        GET_SECRET,
+        SHARE_SECRET,
+        GET_SHARED_SECRET,
+        REVOKE_ACCESS,
+        ROTATE_KEY,
+        AUDIT_EVENTS_DROPPED
+    }
+
+    public enum OverflowPolicy {
+        DROP,
+        BLOCK
+    }
+
+    /**
+     * Evento de auditoría (timestamp en milisegundos epoch)
+     *
+     * droppedCount solo se rellena en AUDIT_EVENTS_DROPPED: eventos perdidos
+     * desde el aviso anterior
+     */
+    public record AuditEvent(long timestamp, AuditAction action, Long userId,
+                             Long secretId, Long targetId, boolean success, Long droppedCount) {}
+
+    private final AuditLogRepository repository;
+    private final AuditRingBuffer<AuditEvent> buffer;
+    private final OverflowPolicy overflowPolicy;
+    private final long blockTimeoutNanos;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Path filePath;
+    private final List<Sink> sinks = new ArrayList<>();
+
+    // Eventos descartados por cola llena (se avisan en todos los destinos)
+    private final AtomicLong dropped = new AtomicLong();
+
+    private BufferedWriter fileWriter;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    public AuditService(
+        AuditLogRepository repository,
+        @Value("${audit.buffer-capacity:65536}") int bufferCapacity,
+        @Value("${audit.overflow-policy:DROP}") OverflowPolicy overflowPolicy,
+        @Value("${audit.block-timeout-ms:5}") long blockTimeoutMs,
+        @Value("${audit.batch-size:1000}") int batchSize,
+        @Value("${audit.flush-interval-ms:200}") long flushIntervalMs,
+        @Value("${audit.sinks:file,jpa}") Set<String> sinks,
+        @Value("${audit.file.path:audit/audit.log}") String filePath
+    ) {
+        this.repository = repository;
+        this.buffer = new AuditRingBuffer<>(bufferCapacity);
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(blockTimeoutMs);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.filePath = Path.of(filePath);
+        if (sinks.contains("file")) {
+            this.sinks.add(new Sink("file", this::writeToFile));
+        }
+        if (sinks.contains("jpa")) {
+            this.sinks.add(new Sink("jpa", this::writeToDatabase));
+        }
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (sink("file") != null) {
+            Path parent = filePath.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            fileWriter = Files.newBufferedWriter(filePath, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+        }
+
+        running = true;
+        writerThread = new Thread(this::writerLoop, "audit-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Registra un evento (no bloquea salvo con política BLOCK y cola llena)
+     *
+     * Dentro de una transacción, los éxitos se encolan al terminarla (ver
+     * javadoc de la clase)
+     */
+    public void record(AuditAction action, Long userId, Long secretId, Long targetId, boolean success) {
+        long timestamp = System.currentTimeMillis();
+        if (success && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    enqueue(new AuditEvent(timestamp, action, userId, secretId, targetId,
+                        status == STATUS_COMMITTED, null));
+                }
+            });
+            return;
+        }
+        enqueue(new AuditEvent(timestamp, action, userId, secretId, targetId, success, null));
+    }
+
+    private void enqueue(AuditEvent event) {
+        if (buffer.offer(event)) {
+            return;
+        }
+
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            long deadline = System.nanoTime() + blockTimeoutNanos;
+            while (System.nanoTime() < deadline) {
+                LockSupport.unpark(writerThread);
+                Thread.onSpinWait();
+                if (buffer.offer(event)) {
+                    return;
+                }
+            }
+        }
+        dropped.incrementAndGet();
+    }
+
+    /**
+     * Eventos descartados porque la cola estaba llena
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Eventos escritos en un destino ("file" o "jpa"; 0 si no está activo)
+     */
+    public long getWrittenCount(String sink) {
+        Sink s = sink(sink);
+        return s != null ? s.written.get() : 0;
+    }
+
+    /**
+     * Eventos que no llegaron a un destino porque falló su escritura
+     */
+    public long getFailedCount(String sink) {
+        Sink s = sink(sink);
+        return s != null ? s.failed.get() : 0;
+    }
+
+    public int getPendingCount() {
+        return buffer.size();
+    }
+
+    /**
+     * Para el escritor y vuelca todo lo pendiente
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writerThread);
+        writerThread.join(TimeUnit.SECONDS.toMillis(10));
+
+        if (fileWriter != null) {
+            try {
+                fileWriter.close();
+            } catch (IOException e) {
+                log.warn("No se pudo cerrar el fichero de auditoría: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void writerLoop() {
+        List<AuditEvent> batch = new ArrayList<>(batchSize);
+
+        while (running) {
+            flushOnce(batch);
+            if (batch.isEmpty()) {
+                LockSupport.parkNanos(flushIntervalNanos);
+            }
+            batch.clear();
+        }
+
+        // Vaciado final al parar
+        do {
+            batch.clear();
+            flushOnce(batch);
+        } while (!batch.isEmpty());
+    }
+
+    private void flushOnce(List<AuditEvent> batch) {
+        buffer.drainTo(batch, batchSize);
+        long queueDrops = dropped.get();
+        for (Sink sink : sinks) {
+            sink.flush(batch, queueDrops);
+        }
+    }
+
+    /**
+     * Un destino del log con sus propias cuentas
+     *
+     * reported: eventos perdidos (por cola llena o por fallos de este destino)
+     * de los que ya se ha dejado constancia en él
+     */
+    private static final class Sink {
+        private final String name;
+        private final SinkWriter writer;
+        private final AtomicLong written = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private long reported;
+
+        private Sink(String name, SinkWriter writer) {
+            this.name = name;
+            this.writer = writer;
+        }
+
+        private void flush(List<AuditEvent> batch, long queueDrops) {
+            long lost = queueDrops + failed.get();
+            List<AuditEvent> events = batch;
+            if (lost > reported) {
+                // Dejar constancia del hueco en el propio log
+                events = new ArrayList<>(batch.size() + 1);
+                events.addAll(batch);
+                events.add(new AuditEvent(System.currentTimeMillis(), AuditAction.AUDIT_EVENTS_DROPPED,
+                    null, null, null, false, lost - reported));
+            }
+            if (events.isEmpty()) {
+                return;
+            }
+
+            try {
+                writer.write(events);
+                written.addAndGet(batch.size());
+                reported = lost;
+            } catch (Exception e) {
+                // El lote se ha perdido en este destino: el aviso se repite en su siguiente lote
+                log.error("Error escribiendo {} eventos de auditoría en {}: {}", events.size(), name, e.getMessage());
+                failed.addAndGet(batch.size());
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface SinkWriter {
+        void write(List<AuditEvent> batch) throws Exception;
+    }
+
+    private Sink sink(String name) {
+        for (Sink sink : sinks) {
+            if (sink.name.equals(name)) {
+                return sink;
+            }
+        }
+        return null;
+    }
+
+    private void writeToFile(List<AuditEvent> batch) throws IOException {
+        for (AuditEvent event : batch) {
+            fileWriter.write(Instant.ofEpochMilli(event.timestamp()).toString());
+            fileWriter.write('\t');
+            fileWriter.write(event.action().name());
+            fileWriter.write('\t');
+            fileWriter.write(String.valueOf(event.userId()));
+            fileWriter.write('\t');
+            fileWriter.write(String.valueOf(event.secretId()));
+            fileWriter.write('\t');
+            fileWriter.write(String.valueOf(event.targetId()));
+            fileWriter.write('\t');
+            fileWriter.write(event.success() ? "OK" : "DENIED");
+            if (event.droppedCount() != null) {
+                fileWriter.write('\t');
+                fileWriter.write("dropped=" + event.droppedCount());
+            }
+            fileWriter.newLine();
+        }
+        fileWriter.flush();
+    }
+
+    private void writeToDatabase(List<AuditEvent> batch) {
+        List<AuditLogEntry> entries = new ArrayList<>(batch.size());
+        for (AuditEvent event : batch) {
+            AuditLogEntry entry = new AuditLogEntry();
+            entry.setOccurredAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(event.timestamp()), ZoneId.systemDefault()));
+            entry.setAction(event.action().name());
+            entry.setUserId(event.userId());
+            entry.setSecretId(event.secretId());
+            entry.setTargetId(event.targetId());
+            entry.setSuccess(event.success());
+            entry.setDroppedCount(event.droppedCount());
+            entries.add(entry);
+        }
+        repository.saveAll(entries);
+    }
+}
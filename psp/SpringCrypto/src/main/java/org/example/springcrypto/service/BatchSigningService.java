@@ -0,0 +1,301 @@
+package org.example.springcrypto.service;
+
+import org.example.springcrypto.dto.BatchSignResponse;
+import org.example.springcrypto.dto.BatchVerifyRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Firma por lotes con árbol de Merkle
+ *
+ * Firmar cada mensaje por separado cuesta una operación con la clave privada
+ * por mensaje (cara, sobre todo con RSA). Aquí los mensajes que llegan para la
+ * misma clave en una ventana corta (crypto.batch-sign.window-ms, o hasta
+ * crypto.batch-sign.max-batch mensajes) se agrupan:
+ * 1. Cada mensaje es una hoja: SHA-256(0x00 || salt || mensaje)
+ * 2. Se construye el árbol de Merkle del lote
+ * 3. Se firma SOLO la raíz con AsymmetricEncryptionService.sign
+ * 4. Cada llamante recibe la firma de la raíz + su prueba de inclusión
+ *
+ * Con carga alta, una firma cubre cientos de mensajes.
+ *
+ * El salt aleatorio de cada hoja evita que, con los hashes hermanos de la prueba,
+ * un llamante pueda adivinar los mensajes de otros llamantes del mismo lote.
+ *
+ * El temporizador solo cierra lotes; las firmas se hacen en un pool con un
+ * hilo por núcleo, así los lotes de claves distintas se firman en paralelo.
+ *
+ * Parada: es un SmartLifecycle de fase baja, así que se detiene después del
+ * servidor web (ya no llegan mensajes nuevos) y antes de destruir ningún bean.
+ * Firma los lotes pendientes y espera a los firmantes antes de que
+ * KeyHandleService.clear() borre las claves.
+ */
+@Service
+public class BatchSigningService implements SmartLifecycle {
+
+    private static final String ROOT_MESSAGE_PREFIX = "SpringCrypto-BatchSign:v1:";
+    private static final int LEAF_SALT_SIZE = 16;
+
+    private final AsymmetricEncryptionService asymmetricService;
+    private final KeyHandleService keyHandleService;
+    private final long windowMicros;
+    private final int maxBatch;
+    private final Map<String, PendingBatch> batches = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "batch-sign-timer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ThreadPoolExecutor signers;
+    private final long shutdownTimeoutMs;
+    private volatile boolean running;
+
+    private final LongAdder messagesSigned = new LongAdder();
+    private final LongAdder rootSignatures = new LongAdder();
+
+    public BatchSigningService(
+        AsymmetricEncryptionService asymmetricService,
+        KeyHandleService keyHandleService,
+        @Value("${crypto.batch-sign.window-ms:5}") double windowMs,
+        @Value("${crypto.batch-sign.max-batch:1024}") int maxBatch,
+        @Value("${crypto.batch-sign.shutdown-timeout-ms:10000}") long shutdownTimeoutMs
+    ) {
+        this.asymmetricService = asymmetricService;
+        this.keyHandleService = keyHandleService;
+        this.windowMicros = (long) (windowMs * 1000);
+        this.maxBatch = maxBatch;
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+
+        int workers = Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.signers = new ThreadPoolExecutor(
+            workers, workers, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(),
+            r -> {
+                Thread t = new Thread(r, "batch-signer-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        );
+    }
+
+    /**
+     * Añade un mensaje al lote de su clave; el resultado llega cuando se firme el lote
+     */
+    public CompletableFuture<BatchSignResponse> submit(Long userId, String keyId, String message) {
+        if (message == null) {
+            throw new IllegalArgumentException("El campo 'message' es requerido");
+        }
+        if (keyId == null || keyId.isEmpty()) {
+            throw new IllegalArgumentException("El campo 'keyId' es requerido (clave PRIVATE registrada en /api/keys)");
+        }
+        if (!running) {
+            throw new IllegalStateException("El servicio de firma por lotes está detenido");
+        }
+        // Falla ya si la clave no existe o no es del usuario
+        keyHandleService.getPrivateKey(userId, keyId);
+
+        byte[] salt = new byte[LEAF_SALT_SIZE];
+        random.nextBytes(salt);
+        PendingMessage pending = new PendingMessage(leafHash(salt, message), salt, new CompletableFuture<>());
+
+        String batchKey = userId + ":" + keyId;
+        PendingBatch[] full = new PendingBatch[1];
+        batches.compute(batchKey, (k, batch) -> {
+            if (batch == null) {
+                PendingBatch created = new PendingBatch(userId, keyId);
+                scheduler.schedule(() -> flushIfCurrent(k, created), windowMicros, TimeUnit.MICROSECONDS);
+                batch = created;
+            }
+            batch.messages.add(pending);
+            if (batch.messages.size() >= maxBatch) {
+                full[0] = batch;
+                return null;
+            }
+            return batch;
+        });
+
+        // Lote lleno: se firma ya, sin esperar al temporizador
+        if (full[0] != null) {
+            dispatch(full[0]);
+        }
+        return pending.result;
+    }
+
+    /**
+     * Verifica una firma por lotes: recalcula la raíz y comprueba su firma
+     */
+    public boolean verify(BatchVerifyRequest request, PublicKey publicKey) throws Exception {
+        if (request.message() == null || request.leafIndex() == null || request.treeSize() == null) {
+            throw new IllegalArgumentException("Se requieren 'message', 'leafIndex' y 'treeSize'");
+        }
+        if (request.signature() == null || request.leafSalt() == null) {
+            throw new IllegalArgumentException("Se requieren 'signature' y 'leafSalt'");
+        }
+        if (request.inclusionProof() != null && request.inclusionProof().contains(null)) {
+            throw new IllegalArgumentException("'inclusionProof' no puede contener valores nulos");
+        }
+        byte[] leaf = leafHash(request.leafSalt(), request.message());
+        List<byte[]> proof = request.inclusionProof() != null ? request.inclusionProof() : List.of();
+
+        byte[] root = MerkleTree.rootFromProof(leaf, request.leafIndex(), request.treeSize(), proof);
+        if (root == null) {
+            return false;
+        }
+        String rootMessage = rootMessage(request.treeSize(), Base64.getEncoder().encodeToString(root));
+        return asymmetricService.verify(rootMessage, request.signature(), publicKey);
+    }
+
+    /**
+     * Mensaje que se firma realmente: incluye el tamaño para que no se pueda reinterpretar el árbol
+     */
+    public static String rootMessage(int treeSize, String rootBase64) {
+        return ROOT_MESSAGE_PREFIX + treeSize + ":" + rootBase64;
+    }
+
+    public long getMessagesSigned() {
+        return messagesSigned.sum();
+    }
+
+    public long getRootSignatures() {
+        return rootSignatures.sum();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    /**
+     * Firma los lotes pendientes y espera a que terminen todas las firmas
+     */
+    @Override
+    public void stop() {
+        running = false;
+        scheduler.shutdownNow();
+        batches.keySet().forEach(key -> {
+            PendingBatch batch = batches.remove(key);
+            if (batch != null) {
+                dispatch(batch);
+            }
+        });
+        signers.shutdown();
+        try {
+            if (!signers.awaitTermination(shutdownTimeoutMs, TimeUnit.MILLISECONDS)) {
+                signers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            signers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Después del servidor web (DEFAULT_PHASE - 2048), que deja de aceptar peticiones antes
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void flushIfCurrent(String batchKey, PendingBatch batch) {
+        if (batches.remove(batchKey, batch)) {
+            dispatch(batch);
+        }
+    }
+
+    private void dispatch(PendingBatch batch) {
+        try {
+            signers.execute(() -> sign(batch));
+        } catch (RejectedExecutionException e) {
+            // Pool ya parado: se firma en este hilo
+            sign(batch);
+        }
+    }
+
+    private void sign(PendingBatch batch) {
+        List<PendingMessage> messages = batch.messages;
+        try {
+            List<byte[]> leaves = new ArrayList<>(messages.size());
+            for (PendingMessage message : messages) {
+                leaves.add(message.leafHash);
+            }
+            MerkleTree tree = MerkleTree.of(leaves);
+            byte[] root = tree.root();
+
+            PrivateKey privateKey = keyHandleService.getPrivateKey(batch.userId, batch.keyId);
+            byte[] signature = asymmetricService.signBytes(
+                rootMessage(messages.size(), Base64.getEncoder().encodeToString(root)), privateKey);
+            String signatureAlgorithm = privateKey.getAlgorithm().equals("EC") ? "SHA256withECDSA" : "SHA256withRSA";
+
+            rootSignatures.increment();
+            messagesSigned.add(messages.size());
+
+            for (int i = 0; i < messages.size(); i++) {
+                PendingMessage message = messages.get(i);
+                message.result.complete(new BatchSignResponse(
+                    signature,
+                    signatureAlgorithm,
+                    root,
+                    messages.size(),
+                    i,
+                    message.salt,
+                    tree.proof(i)
+                ));
+            }
+        } catch (Exception e) {
+            messages.forEach(message -> message.result.completeExceptionally(e));
+        }
+    }
+
+    private static byte[] leafHash(byte[] salt, String message) {
+        byte[] messageBytes = message.getBytes(StandardCharsets.UTF_8);
+        byte[] data = new byte[salt.length + messageBytes.length];
+        System.arraycopy(salt, 0, data, 0, salt.length);
+        System.arraycopy(messageBytes, 0, data, salt.length, messageBytes.length);
+        return MerkleTree.hashLeaf(data);
+    }
+
+    private record PendingMessage(byte[] leafHash, byte[] salt, CompletableFuture<BatchSignResponse> result) {
+    }
+
+    /**
+     * Lote abierto para una clave; solo se modifica dentro de batches.compute()
+     */
+    private static final class PendingBatch {
+        private final Long userId;
+        private final String keyId;
+        private final List<PendingMessage> messages = new ArrayList<>();
+
+        private PendingBatch(Long userId, String keyId) {
+            this.userId = userId;
+            this.keyId = keyId;
+        }
+    }
+}
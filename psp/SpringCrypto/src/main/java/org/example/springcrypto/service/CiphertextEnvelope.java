@@ -0,0 +1,308 @@
+package org.example.springcrypto.service;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Sobre binario autodescriptivo para textos cifrados
+ *
+ * Antes, para descifrar había que saber el modo "por fuera" y cada formato
+ * guardaba el IV a su manera (16 bytes delante en CBC/CTR/GCM, campos Base64
+ * separados en híbrido y ECIES). El sobre lleva todo lo necesario:
+ *
+ * <pre>
+ * offset  bytes  campo
+ * 0       2      magic "SC" (0x53 0x43)
+ * 2       1      versión (1)
+ * 3       1      algoritmo (ver {@link Algorithm})
+ * 4       1      longitud del keyId (0 = sin keyId)
+ *         n      keyId (UTF-8): clave registrada en /api/keys que lo descifra
+ *         1      longitud del IV
+ *         n      IV
+ *         2      longitud de la clave encapsulada (big-endian, 0 = no hay)
+ *         n      clave encapsulada (clave AES cifrada con RSA, o clave pública efímera en ECIES)
+ *         1      longitud del tag (16 en GCM, 0 si no hay)
+ *         ...    texto cifrado || tag
+ * </pre>
+ *
+ * En los modos GCM la cabecera completa se autentica como AAD: no se puede
+ * cambiar el algoritmo ni el keyId sin que falle el descifrado.
+ *
+ * La vista es reutilizable ({@link #wrap}) y no copia nada: solo calcula
+ * offsets sobre el array original, que se pasan tal cual a Cipher.
+ */
+public final class CiphertextEnvelope {
+
+    public static final byte MAGIC_0 = 0x53; // 'S'
+    public static final byte MAGIC_1 = 0x43; // 'C'
+    public static final byte VERSION = 1;
+
+    private static final int MAX_KEY_ID_LENGTH = 255;
+    private static final int MAX_ENCAPSULATED_KEY_LENGTH = 65535;
+
+    public enum Algorithm {
+        AES_ECB(1, "AES/ECB/PKCS5Padding", 0, 0),
+        AES_CBC(2, "AES/CBC/PKCS5Padding", 16, 0),
+        AES_CTR(3, "AES/CTR/NoPadding", 16, 0),
+        AES_GCM(4, "AES/GCM/NoPadding", 12, 16),
+        RSA_OAEP(5, "RSA/ECB/OAEPWithSHA-256AndMGF1Padding", 0, 0),
+        HYBRID_RSA_AES_GCM(6, "AES/GCM/NoPadding", 12, 16),
+        ECIES_AES_GCM(7, "AES/GCM/NoPadding", 12, 16);
+
+        private static final Algorithm[] BY_ID = new Algorithm[8];
+
+        static {
+            for (Algorithm algorithm : values()) {
+                BY_ID[algorithm.id] = algorithm;
+            }
+        }
+
+        private final int id;
+        private final String transformation;
+        private final int ivLength;
+        private final int tagLength;
+
+        Algorithm(int id, String transformation, int ivLength, int tagLength) {
+            this.id = id;
+            this.transformation = transformation;
+            this.ivLength = ivLength;
+            this.tagLength = tagLength;
+        }
+
+        public int id() {
+            return id;
+        }
+
+        /**
+         * Transformación JCA del cifrado de los datos
+         */
+        public String transformation() {
+            return transformation;
+        }
+
+        public int ivLength() {
+            return ivLength;
+        }
+
+        public int tagLength() {
+            return tagLength;
+        }
+
+        /**
+         * Si la clave es simétrica (AES) y se usa directamente
+         */
+        public boolean isSymmetric() {
+            return id <= AES_GCM.id;
+        }
+
+        public boolean isAuthenticated() {
+            return tagLength > 0;
+        }
+
+        public static Algorithm fromId(int id) {
+            Algorithm algorithm = id > 0 && id < BY_ID.length ? BY_ID[id] : null;
+            if (algorithm == null) {
+                throw new IllegalArgumentException("Sobre no válido: algoritmo desconocido " + id);
+            }
+            return algorithm;
+        }
+    }
+
+    private byte[] buffer;
+    private int start;
+    private Algorithm algorithm;
+    private int keyIdOffset;
+    private int keyIdLength;
+    private int ivOffset;
+    private int ivLength;
+    private int encapsulatedKeyOffset;
+    private int encapsulatedKeyLength;
+    private int tagLength;
+    private int bodyOffset;
+    private int bodyLength;
+
+    /**
+     * Interpreta un sobre completo
+     */
+    public CiphertextEnvelope wrap(byte[] data) {
+        return wrap(data, 0, data.length);
+    }
+
+    /**
+     * Interpreta un sobre dentro de data[offset, offset + length)
+     *
+     * @throws IllegalArgumentException si el sobre está mal formado
+     */
+    public CiphertextEnvelope wrap(byte[] data, int offset, int length) {
+        int end = offset + length;
+        if (length < 9 || data[offset] != MAGIC_0 || data[offset + 1] != MAGIC_1) {
+            throw new IllegalArgumentException("Sobre no válido: cabecera incorrecta");
+        }
+        if (data[offset + 2] != VERSION) {
+            throw new IllegalArgumentException("Sobre no válido: versión no soportada " + data[offset + 2]);
+        }
+        Algorithm alg = Algorithm.fromId(data[offset + 3] & 0xFF);
+
+        int pos = offset + 4;
+        int kidLen = data[pos++] & 0xFF;
+        int kidOff = pos;
+        pos += kidLen;
+
+        checkAvailable(pos, 1, end);
+        int ivLen = data[pos++] & 0xFF;
+        int ivOff = pos;
+        pos += ivLen;
+        if (ivLen != alg.ivLength) {
+            throw new IllegalArgumentException("Sobre no válido: IV de " + ivLen + " bytes para " + alg);
+        }
+
+        checkAvailable(pos, 2, end);
+        int ekLen = ((data[pos] & 0xFF) << 8) | (data[pos + 1] & 0xFF);
+        pos += 2;
+        int ekOff = pos;
+        pos += ekLen;
+
+        checkAvailable(pos, 1, end);
+        int tagLen = data[pos++] & 0xFF;
+        if (tagLen != alg.tagLength || end - pos < tagLen) {
+            throw new IllegalArgumentException("Sobre no válido: tag incorrecto para " + alg);
+        }
+
+        this.buffer = data;
+        this.start = offset;
+        this.algorithm = alg;
+        this.keyIdOffset = kidOff;
+        this.keyIdLength = kidLen;
+        this.ivOffset = ivOff;
+        this.ivLength = ivLen;
+        this.encapsulatedKeyOffset = ekOff;
+        this.encapsulatedKeyLength = ekLen;
+        this.tagLength = tagLen;
+        this.bodyOffset = pos;
+        this.bodyLength = end - pos;
+        return this;
+    }
+
+    public Algorithm algorithm() {
+        return algorithm;
+    }
+
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    public boolean hasKeyId() {
+        return keyIdLength > 0;
+    }
+
+    /**
+     * keyId como String (crea un objeto; en bucles usar {@link #keyIdMatches})
+     */
+    public String keyId() {
+        return keyIdLength == 0 ? null : new String(buffer, keyIdOffset, keyIdLength, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compara el keyId con un String ASCII sin crear objetos
+     */
+    public boolean keyIdMatches(String keyId) {
+        if (keyId == null || keyId.length() != keyIdLength) {
+            return false;
+        }
+        for (int i = 0; i < keyIdLength; i++) {
+            if ((buffer[keyIdOffset + i] & 0xFF) != keyId.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int ivOffset() {
+        return ivOffset;
+    }
+
+    public int ivLength() {
+        return ivLength;
+    }
+
+    public int encapsulatedKeyOffset() {
+        return encapsulatedKeyOffset;
+    }
+
+    public int encapsulatedKeyLength() {
+        return encapsulatedKeyLength;
+    }
+
+    public int tagLength() {
+        return tagLength;
+    }
+
+    /**
+     * Cabecera completa (se usa como AAD en los modos GCM)
+     */
+    public int headerOffset() {
+        return start;
+    }
+
+    public int headerLength() {
+        return bodyOffset - start;
+    }
+
+    /**
+     * Texto cifrado seguido del tag (así lo espera Cipher)
+     */
+    public int bodyOffset() {
+        return bodyOffset;
+    }
+
+    public int bodyLength() {
+        return bodyLength;
+    }
+
+    /**
+     * Tamaño de la cabecera para los campos dados
+     */
+    public static int headerLength(byte[] keyId, int ivLength, int encapsulatedKeyLength) {
+        return 4 + 1 + keyId.length + 1 + ivLength + 2 + encapsulatedKeyLength + 1;
+    }
+
+    /**
+     * Escribe la cabecera al principio de out
+     *
+     * @return tamaño de la cabecera (donde empieza el texto cifrado)
+     */
+    public static int writeHeader(byte[] out, Algorithm algorithm, byte[] keyId, byte[] iv, byte[] encapsulatedKey) {
+        if (keyId.length > MAX_KEY_ID_LENGTH) {
+            throw new IllegalArgumentException("keyId demasiado largo (máximo " + MAX_KEY_ID_LENGTH + " bytes)");
+        }
+        if (encapsulatedKey.length > MAX_ENCAPSULATED_KEY_LENGTH) {
+            throw new IllegalArgumentException("Clave encapsulada demasiado larga");
+        }
+        if (iv.length != algorithm.ivLength) {
+            throw new IllegalArgumentException("IV de " + iv.length + " bytes para " + algorithm);
+        }
+
+        int pos = 0;
+        out[pos++] = MAGIC_0;
+        out[pos++] = MAGIC_1;
+        out[pos++] = VERSION;
+        out[pos++] = (byte) algorithm.id;
+        out[pos++] = (byte) keyId.length;
+        System.arraycopy(keyId, 0, out, pos, keyId.length);
+        pos += keyId.length;
+        out[pos++] = (byte) iv.length;
+        System.arraycopy(iv, 0, out, pos, iv.length);
+        pos += iv.length;
+        out[pos++] = (byte) (encapsulatedKey.length >>> 8);
+        out[pos++] = (byte) encapsulatedKey.length;
+        System.arraycopy(encapsulatedKey, 0, out, pos, encapsulatedKey.length);
+        pos += encapsulatedKey.length;
+        out[pos++] = (byte) algorithm.tagLength;
+        return pos;
+    }
+
+    private static void checkAvailable(int pos, int needed, int end) {
+        if (pos + needed > end) {
+            throw new IllegalArgumentException("Sobre no válido: truncado");
+        }
+    }
+}
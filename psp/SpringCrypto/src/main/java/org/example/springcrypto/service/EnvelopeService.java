@@ -0,0 +1,342 @@
+package org.example.springcrypto.service;
+
+import org.example.springcrypto.dto.EnvelopeDecryptItem;
+import org.example.springcrypto.dto.EnvelopeDecryptRequest;
+import org.example.springcrypto.dto.EnvelopeDecryptResponse;
+import org.example.springcrypto.dto.EnvelopeEncryptRequest;
+import org.example.springcrypto.dto.EnvelopeEncryptResponse;
+import org.example.springcrypto.service.CiphertextEnvelope.Algorithm;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cifrado y descifrado con sobres autodescriptivos (CiphertextEnvelope)
+ *
+ * Como cada sobre dice su algoritmo, su IV y qué clave lo descifra, un único
+ * endpoint de descifrado sirve para todos los modos y acepta lotes que mezclen
+ * AES, RSA, híbrido y ECIES sin metadatos aparte por cada elemento.
+ */
+@Service
+public class EnvelopeService {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    // Coste de admisión por sobre: operación con clave privada RSA o ECDH
+    private static final int RSA_ENVELOPE_COST = 5;
+    private static final int ECIES_ENVELOPE_COST = 3;
+    // Los sobres AES cuestan microsegundos: un token por bloque
+    private static final int SYMMETRIC_ENVELOPES_PER_TOKEN = 100;
+
+    private final SymmetricEncryptionService symmetricService;
+    private final AsymmetricEncryptionService asymmetricService;
+    private final KeyHandleService keyHandleService;
+    private final JcaProviderSelector providers;
+    private final SecureRandom random = new SecureRandom();
+    private final int maxBatchSize;
+
+    public EnvelopeService(
+        SymmetricEncryptionService symmetricService,
+        AsymmetricEncryptionService asymmetricService,
+        KeyHandleService keyHandleService,
+        JcaProviderSelector providers,
+        @Value("${crypto.envelope.max-batch-size:1000}") int maxBatchSize
+    ) {
+        this.symmetricService = symmetricService;
+        this.asymmetricService = asymmetricService;
+        this.keyHandleService = keyHandleService;
+        this.providers = providers;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Cifra un texto y devuelve el sobre
+     */
+    public EnvelopeEncryptResponse seal(Long userId, EnvelopeEncryptRequest request) throws Exception {
+        if (request.plainText() == null) {
+            throw new IllegalArgumentException("El campo 'plainText' es requerido");
+        }
+        Algorithm algorithm = parseAlgorithm(request.algorithm());
+        byte[] plain = request.plainText().getBytes(StandardCharsets.UTF_8);
+        byte[] iv = new byte[algorithm.ivLength()];
+        random.nextBytes(iv);
+
+        String recipientKeyId = hasText(request.recipientKeyId()) ? request.recipientKeyId()
+            : algorithm.isSymmetric() && hasText(request.keyId()) ? request.keyId() : null;
+        byte[] keyId = recipientKeyId != null ? recipientKeyId.getBytes(StandardCharsets.UTF_8) : EMPTY;
+
+        byte[] envelope;
+        if (algorithm.isSymmetric()) {
+            if (hasText(request.keyId())) {
+                envelope = keyHandleService.withCipher(userId, request.keyId(), algorithm.transformation(),
+                    (cipher, key) -> seal(cipher, key, algorithm, keyId, iv, EMPTY, plain));
+            } else if (hasBytes(request.key())) {
+                envelope = seal(providers.cipher(algorithm.transformation()),
+                    symmetricService.bytesToKey(request.key()), algorithm, keyId, iv, EMPTY, plain);
+            } else {
+                throw new IllegalArgumentException("Se requiere 'keyId' o 'key' para " + algorithm);
+            }
+        } else {
+            PublicKey publicKey;
+            if (hasText(request.keyId())) {
+                publicKey = keyHandleService.getPublicKey(userId, request.keyId());
+            } else if (hasBytes(request.publicKey())) {
+                publicKey = asymmetricService.bytesToPublicKey(request.publicKey());
+            } else {
+                throw new IllegalArgumentException("Se requiere 'keyId' o 'publicKey' para " + algorithm);
+            }
+            envelope = sealAsymmetric(algorithm, publicKey, keyId, iv, plain);
+        }
+
+        return new EnvelopeEncryptResponse(envelope, algorithm.name());
+    }
+
+    /**
+     * Coste en tokens de admisión de un lote de descifrado, según el algoritmo
+     * de cada sobre (los sobres mal formados no cuestan: fallarán sin descifrar)
+     */
+    public int decryptCost(EnvelopeDecryptRequest request) {
+        List<byte[]> envelopes = request.envelopes();
+        if (envelopes == null || envelopes.size() > maxBatchSize) {
+            // open() lo rechaza con 400
+            return 0;
+        }
+        CiphertextEnvelope envelope = new CiphertextEnvelope();
+        int cost = 0;
+        int symmetric = 0;
+        for (byte[] data : envelopes) {
+            try {
+                envelope.wrap(data);
+            } catch (RuntimeException e) {
+                continue;
+            }
+            switch (envelope.algorithm()) {
+                case RSA_OAEP, HYBRID_RSA_AES_GCM -> cost += RSA_ENVELOPE_COST;
+                case ECIES_AES_GCM -> cost += ECIES_ENVELOPE_COST;
+                default -> symmetric++;
+            }
+        }
+        return cost + (symmetric + SYMMETRIC_ENVELOPES_PER_TOKEN - 1) / SYMMETRIC_ENVELOPES_PER_TOKEN;
+    }
+
+    /**
+     * Descifra un lote de sobres; un sobre que falla no impide descifrar los demás
+     */
+    public EnvelopeDecryptResponse open(Long userId, EnvelopeDecryptRequest request) {
+        List<byte[]> envelopes = request.envelopes();
+        if (envelopes == null || envelopes.isEmpty()) {
+            throw new IllegalArgumentException("El campo 'envelopes' es requerido");
+        }
+        if (envelopes.size() > maxBatchSize) {
+            throw new IllegalArgumentException("Máximo " + maxBatchSize + " sobres por petición");
+        }
+
+        RequestKeys keys = new RequestKeys(request);
+        CiphertextEnvelope envelope = new CiphertextEnvelope();
+        List<EnvelopeDecryptItem> results = new ArrayList<>(envelopes.size());
+        int failed = 0;
+
+        for (byte[] encoded : envelopes) {
+            String algorithm = null;
+            try {
+                envelope.wrap(encoded);
+                algorithm = envelope.algorithm().name();
+                results.add(new EnvelopeDecryptItem(open(userId, envelope, keys), algorithm, null));
+            } catch (Exception e) {
+                failed++;
+                String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                results.add(new EnvelopeDecryptItem(null, algorithm, message));
+            }
+        }
+        return new EnvelopeDecryptResponse(results, failed);
+    }
+
+    private byte[] sealAsymmetric(Algorithm algorithm, PublicKey publicKey, byte[] keyId, byte[] iv, byte[] plain)
+            throws Exception {
+        return switch (algorithm) {
+            case RSA_OAEP -> seal(providers.cipher(algorithm.transformation()), publicKey, algorithm, keyId, iv, EMPTY, plain);
+            case HYBRID_RSA_AES_GCM -> {
+                SecretKey aesKey = symmetricService.generateKey();
+                Cipher rsaCipher = providers.cipher(Algorithm.RSA_OAEP.transformation());
+                rsaCipher.init(Cipher.ENCRYPT_MODE, publicKey);
+                byte[] encryptedKey = rsaCipher.doFinal(aesKey.getEncoded());
+                yield seal(providers.cipher(algorithm.transformation()), aesKey, algorithm, keyId, iv, encryptedKey, plain);
+            }
+            case ECIES_AES_GCM -> {
+                if (!publicKey.getAlgorithm().equals("EC")) {
+                    throw new IllegalArgumentException("ECIES requiere una clave pública EC");
+                }
+                KeyPair ephemeral = asymmetricService.generateKeyPair("EC");
+                SecretKey aesKey = asymmetricService.deriveECIESKey(ephemeral.getPrivate(), publicKey);
+                yield seal(providers.cipher(algorithm.transformation()), aesKey, algorithm, keyId, iv,
+                    ephemeral.getPublic().getEncoded(), plain);
+            }
+            default -> throw new IllegalArgumentException("Algoritmo simétrico: " + algorithm);
+        };
+    }
+
+    private String open(Long userId, CiphertextEnvelope envelope, RequestKeys keys) throws Exception {
+        Algorithm algorithm = envelope.algorithm();
+        String keyId = envelope.hasKeyId() ? keys.keyIdOf(envelope) : null;
+
+        if (algorithm.isSymmetric()) {
+            if (keyId != null) {
+                return keyHandleService.withCipher(userId, keyId, algorithm.transformation(),
+                    (cipher, key) -> decrypt(cipher, key, envelope));
+            }
+            return decrypt(keys.cipher(algorithm.transformation()), keys.secretKey(), envelope);
+        }
+
+        PrivateKey privateKey = keyId != null ? keyHandleService.getPrivateKey(userId, keyId) : keys.privateKey();
+        byte[] buffer = envelope.buffer();
+        Key dataKey = switch (algorithm) {
+            case RSA_OAEP -> privateKey;
+            case HYBRID_RSA_AES_GCM -> {
+                Cipher rsaCipher = keys.cipher(Algorithm.RSA_OAEP.transformation());
+                rsaCipher.init(Cipher.DECRYPT_MODE, privateKey);
+                yield new SecretKeySpec(
+                    rsaCipher.doFinal(buffer, envelope.encapsulatedKeyOffset(), envelope.encapsulatedKeyLength()), "AES");
+            }
+            case ECIES_AES_GCM -> {
+                int offset = envelope.encapsulatedKeyOffset();
+                PublicKey ephemeral = KeyFactory.getInstance("EC").generatePublic(new X509EncodedKeySpec(
+                    Arrays.copyOfRange(buffer, offset, offset + envelope.encapsulatedKeyLength())));
+                yield asymmetricService.deriveECIESKey(privateKey, ephemeral);
+            }
+            default -> throw new IllegalArgumentException("Algoritmo simétrico: " + algorithm);
+        };
+        return decrypt(keys.cipher(algorithm.transformation()), dataKey, envelope);
+    }
+
+    /**
+     * Cifra directamente en el array de salida, detrás de la cabecera
+     */
+    private static byte[] seal(Cipher cipher, Key key, Algorithm algorithm, byte[] keyId, byte[] iv,
+                               byte[] encapsulatedKey, byte[] plain) throws Exception {
+        init(cipher, Cipher.ENCRYPT_MODE, key, algorithm, iv, 0, iv.length);
+        int headerLength = CiphertextEnvelope.headerLength(keyId, iv.length, encapsulatedKey.length);
+        byte[] out = new byte[headerLength + cipher.getOutputSize(plain.length)];
+        CiphertextEnvelope.writeHeader(out, algorithm, keyId, iv, encapsulatedKey);
+        if (algorithm.isAuthenticated()) {
+            cipher.updateAAD(out, 0, headerLength);
+        }
+        int written = cipher.doFinal(plain, 0, plain.length, out, headerLength);
+        return headerLength + written == out.length ? out : Arrays.copyOf(out, headerLength + written);
+    }
+
+    /**
+     * Descifra leyendo IV, cabecera (AAD) y texto cifrado directamente del sobre
+     */
+    private static String decrypt(Cipher cipher, Key key, CiphertextEnvelope envelope) throws Exception {
+        byte[] buffer = envelope.buffer();
+        init(cipher, Cipher.DECRYPT_MODE, key, envelope.algorithm(), buffer, envelope.ivOffset(), envelope.ivLength());
+        if (envelope.algorithm().isAuthenticated()) {
+            cipher.updateAAD(buffer, envelope.headerOffset(), envelope.headerLength());
+        }
+        byte[] plain = cipher.doFinal(buffer, envelope.bodyOffset(), envelope.bodyLength());
+        return new String(plain, StandardCharsets.UTF_8);
+    }
+
+    private static void init(Cipher cipher, int mode, Key key, Algorithm algorithm,
+                             byte[] buffer, int ivOffset, int ivLength) throws Exception {
+        if (ivLength == 0) {
+            cipher.init(mode, key);
+        } else if (algorithm.isAuthenticated()) {
+            cipher.init(mode, key, new GCMParameterSpec(algorithm.tagLength() * 8, buffer, ivOffset, ivLength));
+        } else {
+            cipher.init(mode, key, new IvParameterSpec(buffer, ivOffset, ivLength));
+        }
+    }
+
+    private static Algorithm parseAlgorithm(String name) {
+        if (name == null || name.isEmpty()) {
+            return Algorithm.AES_GCM;
+        }
+        try {
+            return Algorithm.valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Algoritmo no soportado: " + name);
+        }
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isEmpty();
+    }
+
+    private static boolean hasBytes(byte[] value) {
+        return value != null && value.length > 0;
+    }
+
+    /**
+     * Claves y Ciphers de una petición de descifrado
+     *
+     * Las claves enviadas en Base64 se parsean como mucho una vez por lote y
+     * se reutiliza un Cipher por transformación. También se recuerda el último
+     * keyId leído para no crear un String por sobre cuando se repite.
+     */
+    private final class RequestKeys {
+        private final EnvelopeDecryptRequest request;
+        private final Map<String, Cipher> ciphers = new HashMap<>();
+        private SecretKey secretKey;
+        private PrivateKey privateKey;
+        private String lastKeyId;
+
+        private RequestKeys(EnvelopeDecryptRequest request) {
+            this.request = request;
+        }
+
+        private String keyIdOf(CiphertextEnvelope envelope) {
+            if (!envelope.keyIdMatches(lastKeyId)) {
+                lastKeyId = envelope.keyId();
+            }
+            return lastKeyId;
+        }
+
+        private Cipher cipher(String transformation) throws Exception {
+            Cipher cipher = ciphers.get(transformation);
+            if (cipher == null) {
+                cipher = providers.cipher(transformation);
+                ciphers.put(transformation, cipher);
+            }
+            return cipher;
+        }
+
+        private SecretKey secretKey() {
+            if (secretKey == null) {
+                if (!hasBytes(request.key())) {
+                    throw new IllegalArgumentException("El sobre no tiene keyId y no se envió 'key'");
+                }
+                secretKey = symmetricService.bytesToKey(request.key());
+            }
+            return secretKey;
+        }
+
+        private PrivateKey privateKey() throws Exception {
+            if (privateKey == null) {
+                if (!hasBytes(request.privateKey())) {
+                    throw new IllegalArgumentException("El sobre no tiene keyId y no se envió 'privateKey'");
+                }
+                privateKey = asymmetricService.bytesToPrivateKey(request.privateKey());
+            }
+            return privateKey;
+        }
+    }
+}
@@ -0,0 +1,544 @@
+package org.example.springcrypto.service;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.Security;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Elige el proveedor JCA más rápido para cada transformación
+ *
+ * Cipher.getInstance(t) devuelve el primer proveedor que soporte t según el
+ * orden de java.security, que no tiene por qué ser el más rápido (p. ej. un
+ * proveedor nativo instalado detrás de SunJCE). Al arrancar:
+ * 1. Para cada transformación se prueban todos los proveedores que la soportan
+ * 2. Cada uno se mide durante crypto.providers.benchmark-ms (tras un calentamiento)
+ * 3. Se fija el más rápido; los servicios piden sus instancias con
+ *    {@link #cipher}, {@link #signature} y {@link #keyPairGenerator}
+ *
+ * El resultado se guarda en crypto.providers.cache-file junto con una huella
+ * (JVM, arquitectura, proveedores instalados): en el siguiente arranque, si la
+ * huella coincide, se lee el fichero y no se vuelve a medir. Un fichero
+ * ilegible o corrupto se descarta y se vuelve a medir. Por defecto vive en un
+ * directorio de la aplicación (~/.springcrypto, solo para su propietario) y no
+ * en el tmpdir compartido, donde otro usuario podría crearlo antes.
+ *
+ * También informa de los intrínsecos de la JVM (AES-NI, GHASH/CLMUL) que hacen
+ * que AES-GCM vaya a varios GB/s en lugar de decenas de MB/s.
+ */
+@Service
+public class JcaProviderSelector {
+
+    private static final Logger log = LoggerFactory.getLogger(JcaProviderSelector.class);
+
+    public static final String CIPHER = "Cipher";
+    public static final String SIGNATURE = "Signature";
+    public static final String KEY_PAIR_GENERATOR = "KeyPairGenerator";
+
+    private static final int AES_BUFFER_SIZE = 16 * 1024;
+    private static final String CACHE_VERSION = "1";
+
+    // Opciones de HotSpot que indican si los intrínsecos criptográficos están activos
+    private static final List<String> INTRINSIC_FLAGS = List.of(
+        "UseAES", "UseAESIntrinsics", "UseAESCTRIntrinsics", "UseGHASHIntrinsics",
+        "UseSHA", "UseSHA256Intrinsics", "UseMontgomeryMultiplyIntrinsic"
+    );
+
+    // Flags de /proc/cpuinfo relevantes (AES-NI, CLMUL para GHASH, SHA-NI, AVX)
+    private static final Set<String> CPU_FLAGS = Set.of(
+        "aes", "pclmulqdq", "vaes", "vpclmulqdq", "sha_ni", "avx2", "avx512f", "pmull", "sha2"
+    );
+
+    private final boolean benchmarkEnabled;
+    private final long benchmarkMs;
+    private final String cacheFile;
+
+    private volatile Map<String, Selection> selections = Map.of();
+    private volatile String source = "default";
+
+    /**
+     * Proveedor elegido para una transformación y lo que midió cada candidato
+     */
+    public record Selection(
+        String type,
+        String algorithm,
+        Provider provider,
+        double throughput,
+        String unit,
+        Map<String, Double> candidates
+    ) {
+    }
+
+    public JcaProviderSelector(
+        @Value("${crypto.providers.benchmark:true}") boolean benchmarkEnabled,
+        @Value("${crypto.providers.benchmark-ms:100}") long benchmarkMs,
+        @Value("${crypto.providers.cache-file:${user.home}/.springcrypto/jca-providers.properties}") String cacheFile
+    ) {
+        this.benchmarkEnabled = benchmarkEnabled;
+        this.benchmarkMs = benchmarkMs;
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * Lee la caché si sigue siendo válida; si no, mide y la reescribe
+     */
+    @PostConstruct
+    public void init() {
+        if (!benchmarkEnabled) {
+            return;
+        }
+        String fingerprint = fingerprint();
+        Map<String, Selection> cached = loadCache(fingerprint);
+        if (cached != null) {
+            selections = cached;
+            source = "cache";
+            return;
+        }
+
+        Map<String, Selection> measured = new LinkedHashMap<>();
+        for (Workload workload : workloads()) {
+            Selection selection = benchmark(workload);
+            if (selection != null) {
+                measured.put(key(workload.type, workload.algorithm), selection);
+            }
+        }
+        selections = Collections.unmodifiableMap(measured);
+        source = "benchmark";
+        saveCache(fingerprint, measured);
+    }
+
+    public Cipher cipher(String transformation) throws GeneralSecurityException {
+        Selection selection = selections.get(key(CIPHER, transformation));
+        return selection != null
+            ? Cipher.getInstance(transformation, selection.provider)
+            : Cipher.getInstance(transformation);
+    }
+
+    public Signature signature(String algorithm) throws NoSuchAlgorithmException {
+        Selection selection = selections.get(key(SIGNATURE, algorithm));
+        return selection != null
+            ? Signature.getInstance(algorithm, selection.provider)
+            : Signature.getInstance(algorithm);
+    }
+
+    public KeyPairGenerator keyPairGenerator(String algorithm) throws NoSuchAlgorithmException {
+        Selection selection = selections.get(key(KEY_PAIR_GENERATOR, algorithm));
+        return selection != null
+            ? KeyPairGenerator.getInstance(algorithm, selection.provider)
+            : KeyPairGenerator.getInstance(algorithm);
+    }
+
+    /**
+     * Informe para /api/diagnostics/providers
+     */
+    public Map<String, Object> report() {
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (Selection selection : selections.values()) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("type", selection.type);
+            item.put("algorithm", selection.algorithm);
+            item.put("provider", selection.provider.getName());
+            item.put("throughput", round(selection.throughput));
+            item.put("unit", selection.unit);
+            item.put("candidates", selection.candidates);
+            items.add(item);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("source", source);
+        report.put("cacheFile", cacheFile);
+        report.put("selections", items);
+        Map<String, String> intrinsics = intrinsics();
+        Set<String> cpuFlags = cpuFlags();
+        boolean aesEnabled = "true".equals(intrinsics.get("UseAES"));
+        report.put("aesNiActive", aesEnabled && (cpuFlags.contains("aes") || cpuFlags.contains("vaes")));
+        report.put("ghashClmulActive", aesEnabled && !"false".equals(intrinsics.get("UseGHASHIntrinsics"))
+            && (cpuFlags.contains("pclmulqdq") || cpuFlags.contains("pmull")));
+        report.put("jvmIntrinsics", intrinsics);
+        report.put("cpuFlags", cpuFlags);
+        report.put("java", System.getProperty("java.vm.name") + " " + System.getProperty("java.version"));
+        report.put("arch", System.getProperty("os.arch"));
+        return report;
+    }
+
+    /**
+     * Estado de los intrínsecos de HotSpot
+     *
+     * Algunas opciones (UseAESIntrinsics, UseGHASHIntrinsics...) son de diagnóstico
+     * y solo se pueden leer con -XX:+UnlockDiagnosticVMOptions; si no, salen como "n/a".
+     */
+    public Map<String, String> intrinsics() {
+        Map<String, String> result = new LinkedHashMap<>();
+        HotSpotDiagnosticMXBean hotSpot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+        for (String flag : INTRINSIC_FLAGS) {
+            String value;
+            try {
+                value = hotSpot != null ? hotSpot.getVMOption(flag).getValue() : "n/a";
+            } catch (IllegalArgumentException e) {
+                value = "n/a";
+            }
+            result.put(flag, value);
+        }
+        return result;
+    }
+
+    /**
+     * Flags criptográficos de la CPU (solo Linux; vacío en otros sistemas)
+     */
+    public Set<String> cpuFlags() {
+        Set<String> found = new TreeSet<>();
+        Path cpuInfo = Path.of("/proc/cpuinfo");
+        if (!Files.isReadable(cpuInfo)) {
+            return found;
+        }
+        try {
+            for (String line : Files.readAllLines(cpuInfo)) {
+                if (line.startsWith("flags") || line.startsWith("Features")) {
+                    for (String flag : line.substring(line.indexOf(':') + 1).trim().split("\\s+")) {
+                        if (CPU_FLAGS.contains(flag)) {
+                            found.add(flag);
+                        }
+                    }
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            // Sin información de CPU: se informa vacío
+        }
+        return found;
+    }
+
+    // ========== Medición ==========
+
+    /**
+     * Una transformación a medir: prepara una operación repetible para un proveedor
+     */
+    private record Workload(String type, String algorithm, String unit, Preparer preparer) {
+    }
+
+    @FunctionalInterface
+    private interface Preparer {
+        Operation prepare(Provider provider) throws Exception;
+    }
+
+    /**
+     * Una ejecución de la operación; devuelve las unidades procesadas (bytes u operaciones)
+     */
+    @FunctionalInterface
+    private interface Operation {
+        long run() throws Exception;
+    }
+
+    private List<Workload> workloads() {
+        List<Workload> workloads = new ArrayList<>();
+        workloads.add(aesWorkload(SymmetricEncryptionService.GCM_TRANSFORMATION));
+        workloads.add(aesWorkload(SymmetricEncryptionService.CTR_TRANSFORMATION));
+        workloads.add(aesWorkload(SymmetricEncryptionService.CBC_TRANSFORMATION));
+        workloads.add(aesWorkload(SymmetricEncryptionService.ECB_TRANSFORMATION));
+
+        KeyPair[] rsa = new KeyPair[1];
+        KeyPair[] ec = new KeyPair[1];
+        workloads.add(new Workload(CIPHER, AsymmetricEncryptionService.OAEP_TRANSFORMATION, "ops/s", provider -> {
+            KeyPair keyPair = rsaKeyPair(rsa);
+            Cipher encrypt = Cipher.getInstance(AsymmetricEncryptionService.OAEP_TRANSFORMATION, provider);
+            Cipher decrypt = Cipher.getInstance(AsymmetricEncryptionService.OAEP_TRANSFORMATION, provider);
+            byte[] data = new byte[32];
+            return () -> {
+                encrypt.init(Cipher.ENCRYPT_MODE, keyPair.getPublic());
+                decrypt.init(Cipher.DECRYPT_MODE, keyPair.getPrivate());
+                decrypt.doFinal(encrypt.doFinal(data));
+                return 1;
+            };
+        }));
+        workloads.add(signatureWorkload("SHA256withRSA", () -> rsaKeyPair(rsa)));
+        workloads.add(signatureWorkload("SHA256withECDSA", () -> ecKeyPair(ec)));
+        workloads.add(new Workload(KEY_PAIR_GENERATOR, "RSA", "ops/s", provider -> {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA", provider);
+            generator.initialize(2048);
+            return () -> {
+                generator.generateKeyPair();
+                return 1;
+            };
+        }));
+        workloads.add(new Workload(KEY_PAIR_GENERATOR, "EC", "ops/s", provider -> {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC", provider);
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+            return () -> {
+                generator.generateKeyPair();
+                return 1;
+            };
+        }));
+        return workloads;
+    }
+
+    private Workload aesWorkload(String transformation) {
+        return new Workload(CIPHER, transformation, "MB/s", provider -> {
+            Cipher cipher = Cipher.getInstance(transformation, provider);
+            SecretKeySpec key = new SecretKeySpec(new byte[32], "AES");
+            byte[] in = new byte[AES_BUFFER_SIZE];
+            byte[] out = new byte[AES_BUFFER_SIZE + 32];
+            byte[] iv = new byte[transformation.contains("GCM") ? 12 : 16];
+            boolean gcm = transformation.contains("GCM");
+            boolean ecb = transformation.contains("ECB");
+            return () -> {
+                if (ecb) {
+                    cipher.init(Cipher.ENCRYPT_MODE, key);
+                } else {
+                    // GCM no admite repetir IV con la misma clave: se incrementa en cada vuelta
+                    iv[0]++;
+                    if (iv[0] == 0) {
+                        iv[1]++;
+                    }
+                    cipher.init(Cipher.ENCRYPT_MODE, key,
+                        gcm ? new GCMParameterSpec(128, iv) : new IvParameterSpec(iv));
+                }
+                cipher.doFinal(in, 0, in.length, out, 0);
+                return in.length;
+            };
+        });
+    }
+
+    @FunctionalInterface
+    private interface KeyPairSource {
+        KeyPair get() throws Exception;
+    }
+
+    private Workload signatureWorkload(String algorithm, KeyPairSource keys) {
+        return new Workload(SIGNATURE, algorithm, "ops/s", provider -> {
+            KeyPair keyPair = keys.get();
+            Signature signature = Signature.getInstance(algorithm, provider);
+            byte[] data = new byte[1024];
+            return () -> {
+                signature.initSign(keyPair.getPrivate());
+                signature.update(data);
+                signature.sign();
+                return 1;
+            };
+        });
+    }
+
+    private static KeyPair rsaKeyPair(KeyPair[] holder) throws Exception {
+        if (holder[0] == null) {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            holder[0] = generator.generateKeyPair();
+        }
+        return holder[0];
+    }
+
+    private static KeyPair ecKeyPair(KeyPair[] holder) throws Exception {
+        if (holder[0] == null) {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+            holder[0] = generator.generateKeyPair();
+        }
+        return holder[0];
+    }
+
+    /**
+     * Mide todos los proveedores que soportan la transformación y devuelve el más rápido
+     */
+    private Selection benchmark(Workload workload) {
+        Map<String, Double> candidates = new LinkedHashMap<>();
+        Provider best = null;
+        double bestThroughput = -1;
+
+        for (Provider provider : Security.getProviders()) {
+            Operation operation;
+            try {
+                operation = workload.preparer.prepare(provider);
+            } catch (Exception e) {
+                // El proveedor no soporta la transformación (o no acepta las claves de prueba)
+                continue;
+            }
+            try {
+                // Calentamiento: el JIT tiene que compilar los intrínsecos antes de medir
+                measure(operation, benchmarkMs);
+                double throughput = measure(operation, benchmarkMs);
+                if (workload.unit.equals("MB/s")) {
+                    throughput /= 1_000_000;
+                }
+                candidates.put(provider.getName(), round(throughput));
+                if (throughput > bestThroughput) {
+                    bestThroughput = throughput;
+                    best = provider;
+                }
+            } catch (Exception e) {
+                // Falla al ejecutar: no es candidato
+            }
+        }
+
+        if (best == null) {
+            return null;
+        }
+        return new Selection(workload.type, workload.algorithm, best, bestThroughput, workload.unit, candidates);
+    }
+
+    /**
+     * Unidades por segundo durante durationMs (al menos una ejecución)
+     */
+    private static double measure(Operation operation, long durationMs) throws Exception {
+        long units = 0;
+        long start = System.nanoTime();
+        long deadline = start + durationMs * 1_000_000;
+        long now;
+        do {
+            units += operation.run();
+            now = System.nanoTime();
+        } while (now < deadline);
+        return units / ((now - start) / 1e9);
+    }
+
+    // ========== Caché en fichero ==========
+
+    /**
+     * Huella del entorno: si cambia la JVM, la CPU o los proveedores, se vuelve a medir
+     */
+    private static String fingerprint() {
+        StringBuilder sb = new StringBuilder(CACHE_VERSION)
+            .append('|').append(System.getProperty("java.vm.name"))
+            .append('|').append(System.getProperty("java.version"))
+            .append('|').append(System.getProperty("os.arch"))
+            .append('|').append(Runtime.getRuntime().availableProcessors());
+        for (Provider provider : Security.getProviders()) {
+            sb.append('|').append(provider.getName()).append(':').append(provider.getVersionStr());
+        }
+        return sb.toString();
+    }
+
+    private Map<String, Selection> loadCache(String fingerprint) {
+        Path path = Path.of(cacheFile);
+        if (!Files.isReadable(path)) {
+            return null;
+        }
+        try {
+            return parseCache(path, fingerprint);
+        } catch (IOException | IllegalArgumentException e) {
+            // Truncado o corrupto (incluye NumberFormatException): se vuelve a medir y se reescribe
+            log.warn("Caché de proveedores JCA no válida ({}), se vuelve a medir: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    private static Map<String, Selection> parseCache(Path path, String fingerprint) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(path)) {
+            properties.load(in);
+        }
+        if (!fingerprint.equals(properties.getProperty("fingerprint"))) {
+            return null;
+        }
+
+        Map<String, Selection> loaded = new LinkedHashMap<>();
+        int count = Integer.parseInt(properties.getProperty("count", "0"));
+        for (int i = 0; i < count; i++) {
+            String prefix = "selection." + i + ".";
+            String type = properties.getProperty(prefix + "type");
+            String algorithm = properties.getProperty(prefix + "algorithm");
+            Provider provider = Security.getProvider(properties.getProperty(prefix + "provider", ""));
+            if (type == null || algorithm == null || provider == null) {
+                return null;
+            }
+            Map<String, Double> candidates = new LinkedHashMap<>();
+            String candidateList = properties.getProperty(prefix + "candidates", "");
+            for (String entry : candidateList.split(",")) {
+                int eq = entry.lastIndexOf('=');
+                if (eq > 0) {
+                    candidates.put(entry.substring(0, eq), Double.parseDouble(entry.substring(eq + 1)));
+                }
+            }
+            loaded.put(key(type, algorithm), new Selection(type, algorithm, provider,
+                Double.parseDouble(properties.getProperty(prefix + "throughput", "0")),
+                properties.getProperty(prefix + "unit", ""),
+                candidates));
+        }
+        return Collections.unmodifiableMap(loaded);
+    }
+
+    private void saveCache(String fingerprint, Map<String, Selection> measured) {
+        Properties properties = new Properties();
+        properties.setProperty("fingerprint", fingerprint);
+        properties.setProperty("count", String.valueOf(measured.size()));
+        int i = 0;
+        for (Selection selection : measured.values()) {
+            String prefix = "selection." + i++ + ".";
+            properties.setProperty(prefix + "type", selection.type);
+            properties.setProperty(prefix + "algorithm", selection.algorithm);
+            properties.setProperty(prefix + "provider", selection.provider.getName());
+            properties.setProperty(prefix + "throughput", String.valueOf(selection.throughput));
+            properties.setProperty(prefix + "unit", selection.unit);
+            List<String> candidates = new ArrayList<>();
+            selection.candidates.forEach((name, value) -> candidates.add(name + "=" + value));
+            properties.setProperty(prefix + "candidates", String.join(",", candidates));
+        }
+        Path path = Path.of(cacheFile).toAbsolutePath();
+        try {
+            crearDirectorio(path.getParent());
+            // Se escribe aparte y se sustituye de golpe: nunca queda un fichero a medias
+            Path tmp = Files.createTempFile(path.getParent(), ".jca-providers", ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(tmp)) {
+                    properties.store(out, "SpringCrypto: proveedor JCA más rápido por transformación");
+                }
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            // Sin caché se vuelve a medir en el próximo arranque; no es un error
+        }
+    }
+
+    /**
+     * Crea el directorio de la caché (rwx------ si el sistema de ficheros lo admite)
+     */
+    private static void crearDirectorio(Path dir) throws IOException {
+        if (Files.isDirectory(dir)) {
+            return;
+        }
+        if (dir.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } else {
+            Files.createDirectories(dir);
+        }
+    }
+
+    private static String key(String type, String algorithm) {
+        return type + ":" + algorithm;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
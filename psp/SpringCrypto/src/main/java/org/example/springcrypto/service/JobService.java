@@ -0,0 +1,323 @@
+package org.example.springcrypto.service;
+
+import jakarta.annotation.PreDestroy;
+import org.example.springcrypto.dto.DeriveKeyJobRequest;
+import org.example.springcrypto.dto.JobResponse;
+import org.example.springcrypto.dto.KeyHandleResponse;
+import org.example.springcrypto.dto.KeyPairJobRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.SecretKey;
+import java.security.KeyPair;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Trabajos asíncronos para operaciones criptográficas largas
+ *
+ * Generar un par RSA-4096 o derivar una clave con PBKDF2 y muchas iteraciones
+ * puede tardar segundos. En lugar de bloquear un hilo del servidor web:
+ * 1. POST crea el trabajo y devuelve su ID al momento
+ * 2. El trabajo se ejecuta en un pool acotado (uno por core)
+ * 3. El cliente consulta el estado (GET) o se suscribe por SSE
+ *
+ * Límites:
+ * - Como mucho jobs.max-queued trabajos esperando; si no, se rechaza
+ * - Los resultados se borran jobs.result-ttl-ms después de terminar
+ *
+ * Cada trabajo es de quien lo creó: otro usuario recibe lo mismo que si no
+ * existiera. Las claves generadas o derivadas no se guardan en el resultado
+ * sino en KeyHandleService, y el resultado solo lleva su keyId.
+ */
+@Service
+public class JobService {
+
+    public enum JobStatus {
+        QUEUED,
+        RUNNING,
+        DONE,
+        FAILED
+    }
+
+    private final AsymmetricEncryptionService asymmetricService;
+    private final SymmetricEncryptionService symmetricService;
+    private final KeyHandleService keyHandleService;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final Duration resultTtl;
+    private final int maxIterations;
+    private final int maxMemoryKiB;
+
+    public JobService(
+        AsymmetricEncryptionService asymmetricService,
+        SymmetricEncryptionService symmetricService,
+        KeyHandleService keyHandleService,
+        @Value("${jobs.max-queued:256}") int maxQueued,
+        @Value("${jobs.result-ttl-ms:300000}") long resultTtlMs,
+        @Value("${jobs.derive.max-iterations:10000000}") int maxIterations,
+        @Value("${jobs.derive.max-memory-kib:262144}") int maxMemoryKiB
+    ) {
+        this.asymmetricService = asymmetricService;
+        this.symmetricService = symmetricService;
+        this.keyHandleService = keyHandleService;
+        this.resultTtl = Duration.ofMillis(resultTtlMs);
+        this.maxIterations = maxIterations;
+        this.maxMemoryKiB = maxMemoryKiB;
+
+        int workers = Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+            workers, workers, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(maxQueued),
+            r -> {
+                Thread t = new Thread(r, "crypto-job-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            },
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    /**
+     * Crea un trabajo de generación de par de claves
+     *
+     * La clave privada se registra como key handle del usuario: el resultado
+     * lleva la pública y el keyId de la privada.
+     *
+     * @throws java.util.concurrent.RejectedExecutionException si la cola está llena
+     */
+    public JobResponse submitKeyPair(Long userId, KeyPairJobRequest request) {
+        String algorithm = request.algorithm() != null ? request.algorithm() : "RSA";
+        return submit(userId, "KEYPAIR", () -> {
+            KeyPair keyPair = asymmetricService.generateKeyPair(algorithm, request.keySize());
+            KeyHandleResponse privateKey = keyHandleService.register(userId, KeyHandleService.KeyType.PRIVATE, keyPair.getPrivate());
+            return Map.of(
+                "publicKey", asymmetricService.publicKeyToBase64(keyPair.getPublic()),
+                "privateKeyId", privateKey.keyId(),
+                "algorithm", keyPair.getPublic().getAlgorithm()
+            );
+        });
+    }
+
+    /**
+     * Crea un trabajo de derivación de clave con PBKDF2 o Argon2id
+     *
+     * Si no se envía salt se genera uno aleatorio (se devuelve en el resultado).
+     * La clave derivada se registra como key handle (resultado: keyId).
+     *
+     * @throws java.util.concurrent.RejectedExecutionException si la cola está llena
+     */
+    public JobResponse submitDerive(Long userId, DeriveKeyJobRequest request) {
+        if (request.password() == null || request.password().isEmpty()) {
+            throw new IllegalArgumentException("El campo 'password' es requerido");
+        }
+        boolean argon2 = "ARGON2ID".equalsIgnoreCase(request.kdf());
+        if (!argon2 && request.kdf() != null && !"PBKDF2".equalsIgnoreCase(request.kdf())) {
+            throw new IllegalArgumentException("KDF no soportada: " + request.kdf() + ". Use: PBKDF2, ARGON2ID");
+        }
+        int defaultIterations = argon2 ? symmetricService.getArgon2Iterations() : 65536;
+        int iterations = request.iterations() != null ? request.iterations() : defaultIterations;
+        if (iterations < 1 || iterations > maxIterations) {
+            throw new IllegalArgumentException("Iteraciones fuera de rango (1 - " + maxIterations + ")");
+        }
+
+        byte[] salt;
+        if (request.salt() != null && !request.salt().isEmpty()) {
+            salt = Base64.getDecoder().decode(request.salt());
+        } else {
+            salt = new byte[16];
+            new SecureRandom().nextBytes(salt);
+        }
+
+        if (argon2) {
+            return submitArgon2(userId, request, salt, iterations);
+        }
+        return submit(userId, "DERIVE", () -> {
+            SecretKey key = symmetricService.generateKeyFromPassword(request.password(), salt, iterations);
+            return Map.of(
+                "keyId", keyHandleService.register(userId, KeyHandleService.KeyType.SECRET, key).keyId(),
+                "salt", Base64.getEncoder().encodeToString(salt),
+                "derivationMethod", "PBKDF2WithHmacSHA256",
+                "iterations", String.valueOf(iterations)
+            );
+        });
+    }
+
+    private JobResponse submitArgon2(Long userId, DeriveKeyJobRequest request, byte[] salt, int iterations) {
+        int memoryKiB = request.memoryKiB() != null ? request.memoryKiB() : symmetricService.getArgon2MemoryKiB();
+        int parallelism = request.parallelism() != null ? request.parallelism() : symmetricService.getArgon2Parallelism();
+        if (memoryKiB > maxMemoryKiB) {
+            throw new IllegalArgumentException("Memoria fuera de rango (máximo " + maxMemoryKiB + " KiB)");
+        }
+        if (salt.length < 8) {
+            throw new IllegalArgumentException("Argon2id requiere un salt de al menos 8 bytes");
+        }
+        // Valida los parámetros ya, en lugar de fallar dentro del trabajo
+        new Argon2id(memoryKiB, iterations, parallelism);
+
+        return submit(userId, "DERIVE", () -> {
+            SecretKey key = symmetricService.generateKeyFromPasswordArgon2id(
+                request.password(), salt, memoryKiB, iterations, parallelism);
+            return Map.of(
+                "keyId", keyHandleService.register(userId, KeyHandleService.KeyType.SECRET, key).keyId(),
+                "salt", Base64.getEncoder().encodeToString(salt),
+                "derivationMethod", "Argon2id",
+                "iterations", String.valueOf(iterations),
+                "memoryKiB", String.valueOf(memoryKiB),
+                "parallelism", String.valueOf(parallelism)
+            );
+        });
+    }
+
+    /**
+     * Estado de un trabajo (vacío si no existe o es de otro usuario)
+     */
+    public Optional<JobResponse> getJob(Long userId, String jobId) {
+        return find(userId, jobId).map(Job::toResponse);
+    }
+
+    /**
+     * Se suscribe al fin de un trabajo (inmediato si ya terminó)
+     *
+     * @return false si el trabajo no existe o es de otro usuario
+     */
+    public boolean onFinished(Long userId, String jobId, Consumer<JobResponse> listener) {
+        Optional<Job> job = find(userId, jobId);
+        job.ifPresent(j -> j.addListener(listener));
+        return job.isPresent();
+    }
+
+    /**
+     * Quita una suscripción que ya no va a poder entregarse (SSE caducado o cerrado)
+     */
+    public void removeListener(String jobId, Consumer<JobResponse> listener) {
+        Job job = jobs.get(jobId);
+        if (job != null) {
+            job.removeListener(listener);
+        }
+    }
+
+    /**
+     * Borra los resultados caducados
+     */
+    @Scheduled(fixedDelayString = "${jobs.cleanup-interval-ms:30000}")
+    public void evictExpired() {
+        LocalDateTime limit = LocalDateTime.now().minus(resultTtl);
+        jobs.values().removeIf(job -> job.isExpired(limit));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private Optional<Job> find(Long userId, String jobId) {
+        return Optional.ofNullable(jobs.get(jobId)).filter(job -> job.ownerId.equals(userId));
+    }
+
+    private JobResponse submit(Long userId, String type, Callable<Map<String, String>> work) {
+        Job job = new Job(UUID.randomUUID().toString(), userId, type);
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> job.run(work));
+        } catch (RuntimeException e) {
+            jobs.remove(job.id);
+            throw e;
+        }
+        return job.toResponse();
+    }
+
+    /**
+     * Estado de un trabajo. Los cambios se hacen bajo el monitor del propio trabajo.
+     */
+    private static final class Job {
+        private final String id;
+        private final Long ownerId;
+        private final String type;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private final List<Consumer<JobResponse>> listeners = new ArrayList<>();
+        private JobStatus status = JobStatus.QUEUED;
+        private Map<String, String> result;
+        private String error;
+        private LocalDateTime finishedAt;
+
+        private Job(String id, Long ownerId, String type) {
+            this.id = id;
+            this.ownerId = ownerId;
+            this.type = type;
+        }
+
+        private void run(Callable<Map<String, String>> work) {
+            synchronized (this) {
+                status = JobStatus.RUNNING;
+            }
+
+            Map<String, String> value = null;
+            String failure = null;
+            try {
+                value = work.call();
+            } catch (Exception e) {
+                failure = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            }
+
+            List<Consumer<JobResponse>> toNotify;
+            JobResponse response;
+            synchronized (this) {
+                result = value;
+                error = failure;
+                status = failure == null ? JobStatus.DONE : JobStatus.FAILED;
+                finishedAt = LocalDateTime.now();
+                toNotify = new ArrayList<>(listeners);
+                listeners.clear();
+                response = toResponse();
+            }
+            for (Consumer<JobResponse> listener : toNotify) {
+                try {
+                    listener.accept(response);
+                } catch (RuntimeException e) {
+                    // Un suscriptor roto no impide avisar a los demás
+                }
+            }
+        }
+
+        private void addListener(Consumer<JobResponse> listener) {
+            JobResponse response;
+            synchronized (this) {
+                if (finishedAt == null) {
+                    listeners.add(listener);
+                    return;
+                }
+                response = toResponse();
+            }
+            listener.accept(response);
+        }
+
+        private synchronized void removeListener(Consumer<JobResponse> listener) {
+            listeners.remove(listener);
+        }
+
+        private synchronized boolean isExpired(LocalDateTime limit) {
+            return finishedAt != null && finishedAt.isBefore(limit);
+        }
+
+        private synchronized JobResponse toResponse() {
+            return new JobResponse(id, type, status.name(), result, error, createdAt, finishedAt);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package org.example.springcrypto.service;
+
+import jakarta.annotation.PostConstruct;
+import org.example.springcrypto.dto.CertifiedPublicKeyResponse;
+import org.example.springcrypto.dto.KeyDirectorySnapshotResponse;
+import org.example.springcrypto.entity.UserPublicKey;
+import org.example.springcrypto.repository.UserPublicKeyRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Directorio de claves públicas certificado con un árbol de Merkle
+ *
+ * En lugar de firmar cada clave pública por separado (una operación con clave
+ * privada por registro), el servidor:
+ * 1. Mete cada clave registrada como hoja de un árbol de Merkle
+ * 2. Cada pocos segundos publica una "época": firma SOLO la raíz
+ * 3. Para cada usuario sirve una prueba de inclusión (hashes hermanos)
+ *
+ * El cliente comprueba la prueba contra la raíz firmada y la firma con la clave
+ * pública del servidor. Una firma por época sirve para todas las claves.
+ *
+ * Los registros nuevos se acumulan y se aplican al árbol al publicar la época,
+ * así el árbol visible coincide siempre con la última raíz firmada.
+ * Una clave recién registrada no es certificable hasta la época siguiente.
+ */
+@Service
+public class KeyDirectoryService {
+
+    private static final String SIGNED_ROOT_PREFIX = "SpringCrypto-KeyDirectory:v1";
+
+    private final UserPublicKeyRepository repository;
+    private final AsymmetricEncryptionService asymmetricService;
+    private final String signingAlgorithm;
+
+    private final MerkleTree tree = new MerkleTree();
+    private final Map<Long, Integer> leafIndexByUser = new HashMap<>();
+    private final Map<Long, DirectoryLeaf> leafByUser = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Registros pendientes de entrar en la próxima época (el último gana)
+    private final Map<Long, DirectoryLeaf> pending = new LinkedHashMap<>();
+
+    private KeyPair serverKeyPair;
+    private volatile KeyDirectorySnapshotResponse latest;
+    private long epoch;
+
+    public KeyDirectoryService(
+        UserPublicKeyRepository repository,
+        AsymmetricEncryptionService asymmetricService,
+        @Value("${crypto.directory.signing-algorithm:EC}") String signingAlgorithm
+    ) {
+        this.repository = repository;
+        this.asymmetricService = asymmetricService;
+        this.signingAlgorithm = signingAlgorithm;
+    }
+
+    /**
+     * Genera la clave de firma del servidor y carga las claves ya registradas
+     *
+     * NOTA: la clave de firma es efímera (cambia en cada arranque). En producción
+     * debería cargarse de un keystore/HSM para que los clientes puedan fijarla.
+     */
+    @PostConstruct
+    public void init() throws Exception {
+        serverKeyPair = asymmetricService.generateKeyPair(signingAlgorithm);
+
+        for (UserPublicKey key : repository.findAll()) {
+            stageNow(key.getUserId(), key.getPublicKey(), key.getAlgorithm(), key.getKeySize());
+        }
+        publishEpoch();
+    }
+
+    /**
+     * Programa la inclusión de una clave en la próxima época
+     *
+     * Si hay transacción activa se espera al commit, para no certificar
+     * una clave cuyo registro acabe haciendo rollback.
+     */
+    public void stage(Long userId, byte[] publicKey, String algorithm, Integer keySize) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    stageNow(userId, publicKey, algorithm, keySize);
+                }
+            });
+        } else {
+            stageNow(userId, publicKey, algorithm, keySize);
+        }
+    }
+
+    /**
+     * Publica una nueva época si hay cambios: aplica los pendientes y firma la raíz
+     *
+     * Cada registro cuesta O(log n) hashes; la firma se hace una vez por época.
+     */
+    @Scheduled(fixedDelayString = "${crypto.directory.epoch-interval-ms:5000}")
+    public void publishEpoch() throws Exception {
+        Map<Long, DirectoryLeaf> batch;
+        synchronized (pending) {
+            if (pending.isEmpty() && latest != null) {
+                return;
+            }
+            batch = new LinkedHashMap<>(pending);
+            pending.clear();
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<Long, DirectoryLeaf> entry : batch.entrySet()) {
+                Long userId = entry.getKey();
+                DirectoryLeaf leaf = entry.getValue();
+                Integer index = leafIndexByUser.get(userId);
+                if (index == null) {
+                    leafIndexByUser.put(userId, tree.append(leaf.hash()));
+                } else {
+                    tree.set(index, leaf.hash());
+                }
+                leafByUser.put(userId, leaf);
+            }
+
+            long nextEpoch = epoch + 1;
+            int treeSize = tree.size();
+            byte[] root = tree.root() == null ? new byte[0] : tree.root();
+            byte[] signature = asymmetricService.signBytes(
+                signedRootMessage(nextEpoch, treeSize, encode(root)), serverKeyPair.getPrivate());
+
+            epoch = nextEpoch;
+            latest = new KeyDirectorySnapshotResponse(
+                epoch,
+                treeSize,
+                root,
+                signature,
+                signatureAlgorithm(),
+                serverKeyPair.getPublic().getEncoded(),
+                LocalDateTime.now()
+            );
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Última época publicada (raíz firmada + clave pública del servidor)
+     */
+    public KeyDirectorySnapshotResponse getLatestSnapshot() {
+        return latest;
+    }
+
+    /**
+     * Clave pública de un usuario con su prueba de inclusión en la última época
+     */
+    public CertifiedPublicKeyResponse certify(Long userId) {
+        lock.readLock().lock();
+        try {
+            Integer index = leafIndexByUser.get(userId);
+            if (index == null) {
+                throw new RuntimeException(
+                    "La clave pública del usuario aún no está incluida en ninguna época publicada");
+            }
+
+            DirectoryLeaf leaf = leafByUser.get(userId);
+            KeyDirectorySnapshotResponse snapshot = latest;
+            List<byte[]> proof = tree.proof(index);
+
+            return new CertifiedPublicKeyResponse(
+                userId,
+                leaf.publicKey(),
+                leaf.algorithm(),
+                leaf.keySize(),
+                snapshot.serverSignature(),
+                snapshot.signatureAlgorithm(),
+                snapshot.signedAt(),
+                snapshot.epoch(),
+                snapshot.treeSize(),
+                index,
+                snapshot.rootHash(),
+                proof
+            );
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Mensaje que firma el servidor en cada época
+     *
+     * Formato: "SpringCrypto-KeyDirectory:v1:{epoch}:{treeSize}:{rootBase64}"
+     */
+    public static String signedRootMessage(long epoch, int treeSize, String rootBase64) {
+        return SIGNED_ROOT_PREFIX + ":" + epoch + ":" + treeSize + ":" + rootBase64;
+    }
+
+    /**
+     * Datos de la hoja de un usuario: "{userId}:{algorithm}:{keySize}:{publicKeyBase64}" (UTF-8)
+     *
+     * El cliente reconstruye la hoja con SHA-256(0x00 || datos) y sube por la prueba.
+     */
+    public static byte[] leafData(Long userId, byte[] publicKey, String algorithm, Integer keySize) {
+        return (userId + ":" + algorithm + ":" + keySize + ":" + encode(publicKey))
+            .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void stageNow(Long userId, byte[] publicKey, String algorithm, Integer keySize) {
+        byte[] hash = MerkleTree.hashLeaf(leafData(userId, publicKey, algorithm, keySize));
+        synchronized (pending) {
+            pending.put(userId, new DirectoryLeaf(publicKey, algorithm, keySize, hash));
+        }
+    }
+
+    private String signatureAlgorithm() {
+        return serverKeyPair.getPrivate().getAlgorithm().equals("EC") ? "SHA256withECDSA" : "SHA256withRSA";
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    private record DirectoryLeaf(byte[] publicKey, String algorithm, Integer keySize, byte[] hash) {}
+}
@@ -0,0 +1,271 @@
+package org.example.springcrypto.service;
+
+import jakarta.annotation.PreDestroy;
+import org.example.springcrypto.dto.KeyHandleResponse;
+import org.example.springcrypto.dto.RegisterKeyRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.security.auth.DestroyFailedException;
+import javax.security.auth.Destroyable;
+import java.security.Key;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registro de claves en el servidor ("key handles")
+ *
+ * Sin registro, cada petición trae la clave completa en Base64 (¡incluida la
+ * privada para descifrar o firmar!) y el servidor la decodifica y parsea cada vez.
+ * Con registro:
+ * 1. El cliente sube la clave UNA vez (o pide que el servidor genere una AES)
+ * 2. Recibe un keyId opaco y lo usa en las peticiones siguientes
+ * 3. El servidor guarda la clave ya parseada (SecretKey / PublicKey / PrivateKey)
+ *
+ * Además, para las claves AES se reutilizan objetos Cipher ya inicializados con
+ * esa clave: el proveedor no recalcula la expansión de clave si la clave no cambia.
+ *
+ * Las claves solo viven en memoria, pertenecen a un usuario y se borran si no
+ * se usan durante crypto.key-handles.idle-ttl-ms.
+ */
+@Service
+public class KeyHandleService {
+
+    public enum KeyType {
+        SECRET,
+        PUBLIC,
+        PRIVATE
+    }
+
+    /**
+     * Operación con un Cipher prestado de la clave (no debe guardarse fuera de la operación)
+     */
+    @FunctionalInterface
+    public interface CipherWork<T> {
+        T apply(Cipher cipher, SecretKey key) throws Exception;
+    }
+
+    private final SymmetricEncryptionService symmetricService;
+    private final AsymmetricEncryptionService asymmetricService;
+    private final JcaProviderSelector providers;
+    private final Map<String, KeyHandle> handles = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicInteger> handlesPerUser = new ConcurrentHashMap<>();
+    private final Duration idleTtl;
+    private final int maxPerUser;
+    private final int maxPooledCiphers;
+
+    public KeyHandleService(
+        SymmetricEncryptionService symmetricService,
+        AsymmetricEncryptionService asymmetricService,
+        JcaProviderSelector providers,
+        @Value("${crypto.key-handles.idle-ttl-ms:900000}") long idleTtlMs,
+        @Value("${crypto.key-handles.max-per-user:100}") int maxPerUser
+    ) {
+        this.symmetricService = symmetricService;
+        this.asymmetricService = asymmetricService;
+        this.providers = providers;
+        this.idleTtl = Duration.ofMillis(idleTtlMs);
+        this.maxPerUser = maxPerUser;
+        this.maxPooledCiphers = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Registra (o genera) una clave y devuelve su keyId
+     */
+    public KeyHandleResponse register(Long userId, RegisterKeyRequest request) throws Exception {
+        if (request.type() == null) {
+            throw new IllegalArgumentException("El campo 'type' es requerido (SECRET, PUBLIC o PRIVATE)");
+        }
+        KeyType type;
+        try {
+            type = KeyType.valueOf(request.type().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Tipo de clave no soportado: " + request.type());
+        }
+        boolean hasKey = request.key() != null && request.key().length > 0;
+        if (!hasKey && type != KeyType.SECRET) {
+            throw new IllegalArgumentException("El campo 'key' es requerido para claves " + type);
+        }
+
+        Key key = switch (type) {
+            case SECRET -> hasKey ? symmetricService.bytesToKey(request.key()) : symmetricService.generateKey();
+            case PUBLIC -> asymmetricService.bytesToPublicKey(request.key());
+            case PRIVATE -> asymmetricService.bytesToPrivateKey(request.key());
+        };
+
+        return register(userId, type, key);
+    }
+
+    /**
+     * Registra una clave ya generada en el servidor (p. ej. por un trabajo
+     * asíncrono) para que su material no salga nunca en una respuesta
+     *
+     * @throws IllegalStateException si el usuario ya tiene el máximo de claves
+     */
+    public KeyHandleResponse register(Long userId, KeyType type, Key key) {
+        AtomicInteger count = handlesPerUser.computeIfAbsent(userId, k -> new AtomicInteger());
+        if (count.incrementAndGet() > maxPerUser) {
+            count.decrementAndGet();
+            destroy(key);
+            throw new IllegalStateException("Máximo de " + maxPerUser + " claves registradas por usuario");
+        }
+
+        KeyHandle handle = new KeyHandle(UUID.randomUUID().toString(), userId, type, key);
+        handles.put(handle.id, handle);
+        return toResponse(handle);
+    }
+
+    /**
+     * Claves registradas por un usuario (sin el material de la clave)
+     */
+    public List<KeyHandleResponse> list(Long userId) {
+        return handles.values().stream()
+            .filter(handle -> handle.ownerId.equals(userId))
+            .sorted(Comparator.comparing(handle -> handle.createdAt))
+            .map(this::toResponse)
+            .toList();
+    }
+
+    /**
+     * Borra una clave registrada
+     *
+     * @return false si no existe o no es del usuario
+     */
+    public boolean delete(Long userId, String keyId) {
+        KeyHandle handle = handles.get(keyId);
+        if (handle == null || !handle.ownerId.equals(userId) || !handles.remove(keyId, handle)) {
+            return false;
+        }
+        release(handle);
+        return true;
+    }
+
+    public PublicKey getPublicKey(Long userId, String keyId) {
+        return (PublicKey) resolve(userId, keyId, KeyType.PUBLIC).key;
+    }
+
+    public PrivateKey getPrivateKey(Long userId, String keyId) {
+        return (PrivateKey) resolve(userId, keyId, KeyType.PRIVATE).key;
+    }
+
+    /**
+     * Ejecuta una operación AES con un Cipher reutilizado de la clave
+     *
+     * Cipher no es thread-safe: cada hilo se lleva uno del pool de la clave
+     * (o crea uno nuevo si está vacío) y lo devuelve al terminar.
+     */
+    public <T> T withCipher(Long userId, String keyId, String transformation, CipherWork<T> work) throws Exception {
+        KeyHandle handle = resolve(userId, keyId, KeyType.SECRET);
+        Queue<Cipher> pool = handle.ciphers.computeIfAbsent(transformation, t -> new ConcurrentLinkedQueue<>());
+
+        Cipher cipher = pool.poll();
+        if (cipher == null) {
+            cipher = providers.cipher(transformation);
+        }
+        T result = work.apply(cipher, (SecretKey) handle.key);
+        // Solo se devuelve si la operación terminó bien (si no, su estado es dudoso)
+        if (pool.size() < maxPooledCiphers) {
+            pool.offer(cipher);
+        }
+        return result;
+    }
+
+    /**
+     * Borra las claves que llevan demasiado tiempo sin usarse
+     */
+    @Scheduled(fixedDelayString = "${crypto.key-handles.cleanup-interval-ms:60000}")
+    public void evictIdle() {
+        long limit = System.nanoTime() - idleTtl.toNanos();
+        handles.values().forEach(handle -> {
+            if (handle.lastUsedNanos - limit < 0 && handles.remove(handle.id, handle)) {
+                release(handle);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void clear() {
+        handles.values().forEach(this::release);
+        handles.clear();
+    }
+
+    private KeyHandle resolve(Long userId, String keyId, KeyType expected) {
+        // Las peticiones con clave en claro no necesitan usuario; las que usan keyId sí
+        if (userId == null) {
+            throw new IllegalArgumentException("Se requiere la cabecera X-User-Id para usar keyId");
+        }
+        KeyHandle handle = handles.get(keyId);
+        // Mismo mensaje si no existe o es de otro usuario: no revelamos qué keyIds existen
+        if (handle == null || !handle.ownerId.equals(userId)) {
+            throw new IllegalArgumentException("Clave no encontrada: " + keyId);
+        }
+        if (handle.type != expected) {
+            throw new IllegalArgumentException("La clave " + keyId + " es de tipo " + handle.type + ", se esperaba " + expected);
+        }
+        handle.lastUsedNanos = System.nanoTime();
+        return handle;
+    }
+
+    private void release(KeyHandle handle) {
+        AtomicInteger count = handlesPerUser.get(handle.ownerId);
+        if (count != null) {
+            count.decrementAndGet();
+        }
+        handle.ciphers.clear();
+        destroy(handle.key);
+    }
+
+    /**
+     * Intenta borrar el material de la clave de memoria
+     * (no todos los proveedores lo soportan)
+     */
+    private static void destroy(Key key) {
+        if (key instanceof Destroyable destroyable && !destroyable.isDestroyed()) {
+            try {
+                destroyable.destroy();
+            } catch (DestroyFailedException e) {
+                // El GC la liberará cuando deje de estar referenciada
+            }
+        }
+    }
+
+    private KeyHandleResponse toResponse(KeyHandle handle) {
+        return new KeyHandleResponse(
+            handle.id,
+            handle.type.name(),
+            handle.key.getAlgorithm(),
+            handle.createdAt,
+            idleTtl.toSeconds()
+        );
+    }
+
+    private static final class KeyHandle {
+        private final String id;
+        private final Long ownerId;
+        private final KeyType type;
+        private final Key key;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private final Map<String, Queue<Cipher>> ciphers = new ConcurrentHashMap<>();
+        private volatile long lastUsedNanos = System.nanoTime();
+
+        private KeyHandle(String id, Long ownerId, KeyType type, Key key) {
+            this.id = id;
+            this.ownerId = ownerId;
+            this.type = type;
+            this.key = key;
+        }
+    }
+}
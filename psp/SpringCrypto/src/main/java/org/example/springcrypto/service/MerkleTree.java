@@ -0,0 +1,208 @@
+package org.example.springcrypto.service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Árbol de Merkle incremental con SHA-256
+ *
+ * Guarda todos los niveles del árbol, así que añadir o cambiar una hoja solo
+ * recalcula el camino hasta la raíz: O(log n) hashes.
+ *
+ * Construcción:
+ * - Hoja:  SHA-256(0x00 || datos)
+ * - Nodo:  SHA-256(0x01 || izquierda || derecha)
+ * - Si un nivel tiene un número impar de nodos, el último sube tal cual
+ *   al nivel superior (no se duplica).
+ *
+ * Los prefijos 0x00/0x01 evitan que una hoja pueda hacerse pasar por un nodo
+ * interno (second preimage attack).
+ *
+ * NO es thread-safe: quien lo use debe sincronizar el acceso.
+ */
+public class MerkleTree {
+
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte NODE_PREFIX = 0x01;
+
+    // levels.get(0) = hojas, último nivel = raíz
+    private final List<List<byte[]>> levels = new ArrayList<>();
+
+    public MerkleTree() {
+        levels.add(new ArrayList<>());
+    }
+
+    /**
+     * Construye un árbol completo a partir de los hashes de sus hojas
+     */
+    public static MerkleTree of(List<byte[]> leafHashes) {
+        MerkleTree tree = new MerkleTree();
+        List<byte[]> level = new ArrayList<>(leafHashes);
+        tree.levels.set(0, level);
+
+        while (level.size() > 1) {
+            List<byte[]> parent = new ArrayList<>((level.size() + 1) / 2);
+            for (int i = 0; i < level.size(); i += 2) {
+                parent.add(i + 1 < level.size() ? hashNode(level.get(i), level.get(i + 1)) : level.get(i));
+            }
+            tree.levels.add(parent);
+            level = parent;
+        }
+        return tree;
+    }
+
+    /**
+     * Añade una hoja al final y devuelve su índice
+     */
+    public int append(byte[] leafHash) {
+        int index = levels.get(0).size();
+        levels.get(0).add(leafHash);
+        updatePath(index);
+        return index;
+    }
+
+    /**
+     * Sustituye el hash de una hoja existente
+     */
+    public void set(int index, byte[] leafHash) {
+        levels.get(0).set(index, leafHash);
+        updatePath(index);
+    }
+
+    public int size() {
+        return levels.get(0).size();
+    }
+
+    /**
+     * Raíz del árbol (null si está vacío)
+     */
+    public byte[] root() {
+        List<byte[]> top = levels.get(levels.size() - 1);
+        return top.isEmpty() ? null : top.get(0);
+    }
+
+    /**
+     * Prueba de inclusión: hashes hermanos desde la hoja hasta la raíz
+     *
+     * Los niveles en los que el nodo sube sin hermano no aportan ningún hash;
+     * el verificador lo deduce a partir del índice y del tamaño del árbol.
+     */
+    public List<byte[]> proof(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Hoja fuera de rango: " + index);
+        }
+
+        List<byte[]> proof = new ArrayList<>();
+        int i = index;
+        for (int l = 0; l < levels.size() - 1; l++) {
+            List<byte[]> level = levels.get(l);
+            if ((i & 1) == 1) {
+                proof.add(level.get(i - 1));
+            } else if (i + 1 < level.size()) {
+                proof.add(level.get(i + 1));
+            }
+            i >>= 1;
+        }
+        return proof;
+    }
+
+    /**
+     * Verifica una prueba de inclusión contra una raíz
+     *
+     * @param leafHash Hash de la hoja (ya con prefijo de hoja)
+     * @param index Posición de la hoja
+     * @param treeSize Número de hojas del árbol firmado
+     * @param proof Hashes hermanos, de abajo arriba
+     * @param root Raíz esperada
+     */
+    public static boolean verify(byte[] leafHash, int index, int treeSize, List<byte[]> proof, byte[] root) {
+        byte[] computed = rootFromProof(leafHash, index, treeSize, proof);
+        return computed != null && MessageDigest.isEqual(computed, root);
+    }
+
+    /**
+     * Recalcula la raíz a partir de una hoja y su prueba de inclusión
+     *
+     * Útil cuando lo que está firmado es la raíz: se recalcula y se verifica la firma.
+     *
+     * @return la raíz, o null si la prueba no encaja con el índice y el tamaño
+     */
+    public static byte[] rootFromProof(byte[] leafHash, int index, int treeSize, List<byte[]> proof) {
+        if (index < 0 || index >= treeSize) {
+            return null;
+        }
+
+        byte[] hash = leafHash;
+        int i = index;
+        int n = treeSize;
+        int p = 0;
+        while (n > 1) {
+            if ((i & 1) == 1) {
+                if (p >= proof.size()) return null;
+                hash = hashNode(proof.get(p++), hash);
+            } else if (i + 1 < n) {
+                if (p >= proof.size()) return null;
+                hash = hashNode(hash, proof.get(p++));
+            }
+            i >>= 1;
+            n = (n + 1) >> 1;
+        }
+        return p == proof.size() ? hash : null;
+    }
+
+    public static byte[] hashLeaf(byte[] data) {
+        return hashLeaf(data, 0, data.length);
+    }
+
+    /**
+     * Hash de hoja de data[offset, offset + length) sin copiar el trozo
+     */
+    public static byte[] hashLeaf(byte[] data, int offset, int length) {
+        MessageDigest digest = sha256();
+        digest.update(LEAF_PREFIX);
+        digest.update(data, offset, length);
+        return digest.digest();
+    }
+
+    public static byte[] hashNode(byte[] left, byte[] right) {
+        MessageDigest digest = sha256();
+        digest.update(NODE_PREFIX);
+        digest.update(left);
+        digest.update(right);
+        return digest.digest();
+    }
+
+    private void updatePath(int index) {
+        int i = index;
+        for (int l = 0; levels.get(l).size() > 1; l++) {
+            List<byte[]> level = levels.get(l);
+            if (l + 1 == levels.size()) {
+                levels.add(new ArrayList<>());
+            }
+            List<byte[]> parent = levels.get(l + 1);
+
+            int left = i & ~1;
+            byte[] node = left + 1 < level.size()
+                ? hashNode(level.get(left), level.get(left + 1))
+                : level.get(left);
+
+            int parentIndex = i >> 1;
+            if (parentIndex == parent.size()) {
+                parent.add(node);
+            } else {
+                parent.set(parentIndex, node);
+            }
+            i = parentIndex;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package org.example.springcrypto.service;
+
+import org.example.springcrypto.dto.UserPublicKeyResponse;
+import org.example.springcrypto.entity.UserPublicKey;
+import org.example.springcrypto.repository.UserPublicKeyRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Directorio de claves públicas con caché en memoria
+ *
+ * Antes de compartir, el cliente necesita la clave pública de cada receptor.
+ * Sin caché, cada consulta va a la base de datos y vuelve a codificar la clave
+ * en Base64. Aquí guardamos la respuesta ya construida (con su ETag) en una
+ * caché LRU acotada, que se invalida cuando el usuario registra una clave nueva.
+ *
+ * Mientras hay cargas de un usuario en curso se lleva su generación, que
+ * evict incrementa. Quien carga de la base de datos apunta la generación antes
+ * de la consulta y solo guarda el resultado si sigue siendo la misma: una
+ * lectura que cargó la clave antigua y llega tarde (después del evict del
+ * commit) no la deja en caché. La generación se olvida cuando termina la
+ * última carga del usuario, así que solo hay tantas como usuarios cargándose.
+ */
+@Service
+public class PublicKeyDirectory {
+
+    private final UserPublicKeyRepository repository;
+    private final int maxEntries;
+
+    // LRU acotada: LinkedHashMap en orden de acceso, protegida por su propio monitor
+    private final Map<Long, DirectoryEntry> cache;
+
+    // userId -> cargas en curso y su generación; protegido por el monitor de cache
+    private final Map<Long, PendingLoad> loads = new HashMap<>();
+
+    private static final class PendingLoad {
+        long generation;
+        int pending;
+    }
+
+    public PublicKeyDirectory(
+        UserPublicKeyRepository repository,
+        @Value("${sharing.public-key-cache.max-entries:10000}") int maxEntries
+    ) {
+        this.repository = repository;
+        this.maxEntries = maxEntries;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, DirectoryEntry> eldest) {
+                return size() > PublicKeyDirectory.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Obtiene la clave pública de un usuario (caché primero, luego base de datos)
+     */
+    public Optional<DirectoryEntry> find(Long userId) {
+        DirectoryEntry cached = getCached(userId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        long generation = beginLoad(userId);
+        try {
+            return repository.findByUserId(userId).map(key -> store(key, generation));
+        } finally {
+            endLoad(userId);
+        }
+    }
+
+    /**
+     * Resuelve muchas claves públicas a la vez
+     *
+     * Las que no estén en caché se cargan con UNA sola consulta (IN).
+     * El resultado respeta el orden de los IDs pedidos (sin duplicados);
+     * los usuarios sin clave registrada simplemente no aparecen.
+     */
+    public List<DirectoryEntry> findAll(Collection<Long> userIds) {
+        Set<Long> requested = new LinkedHashSet<>(userIds);
+        Map<Long, DirectoryEntry> found = new LinkedHashMap<>();
+        List<Long> misses = new ArrayList<>();
+
+        for (Long userId : requested) {
+            DirectoryEntry cached = getCached(userId);
+            if (cached != null) {
+                found.put(userId, cached);
+            } else {
+                misses.add(userId);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            Map<Long, Long> missGenerations = new HashMap<>();
+            for (Long userId : misses) {
+                missGenerations.put(userId, beginLoad(userId));
+            }
+            try {
+                for (UserPublicKey key : repository.findByUserIdIn(misses)) {
+                    found.put(key.getUserId(), store(key, missGenerations.get(key.getUserId())));
+                }
+            } finally {
+                misses.forEach(this::endLoad);
+            }
+        }
+
+        List<DirectoryEntry> result = new ArrayList<>(found.size());
+        for (Long userId : requested) {
+            DirectoryEntry entry = found.get(userId);
+            if (entry != null) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Invalida la entrada de un usuario
+     *
+     * Se invalida ya y otra vez al hacer commit, para que una lectura concurrente
+     * no vuelva a cachear la clave antigua antes de que la nueva sea visible.
+     */
+    public void invalidate(Long userId) {
+        evict(userId);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(userId);
+                }
+            });
+        }
+    }
+
+    /**
+     * ETag combinado para un conjunto de claves (p.ej. respuesta batch)
+     */
+    public static String combinedETag(List<DirectoryEntry> entries) {
+        MessageDigest digest = sha256();
+        for (DirectoryEntry entry : entries) {
+            digest.update(entry.etag().getBytes(StandardCharsets.US_ASCII));
+        }
+        return quote(digest.digest());
+    }
+
+    private DirectoryEntry getCached(Long userId) {
+        synchronized (cache) {
+            return cache.get(userId);
+        }
+    }
+
+    private void evict(Long userId) {
+        synchronized (cache) {
+            cache.remove(userId);
+            // Sin cargas en curso no hay nada que invalidar más allá de la caché
+            PendingLoad load = loads.get(userId);
+            if (load != null) {
+                load.generation++;
+            }
+        }
+    }
+
+    private long beginLoad(Long userId) {
+        synchronized (cache) {
+            PendingLoad load = loads.computeIfAbsent(userId, k -> new PendingLoad());
+            load.pending++;
+            return load.generation;
+        }
+    }
+
+    private void endLoad(Long userId) {
+        synchronized (cache) {
+            PendingLoad load = loads.get(userId);
+            if (load != null && --load.pending == 0) {
+                loads.remove(userId);
+            }
+        }
+    }
+
+    /**
+     * Usuarios con cargas en curso (para pruebas)
+     */
+    int pendingLoads() {
+        synchronized (cache) {
+            return loads.size();
+        }
+    }
+
+    /**
+     * Guarda la entrada solo si nadie ha invalidado al usuario desde que se
+     * empezó a cargar; si no, se devuelve sin cachear
+     */
+    private DirectoryEntry store(UserPublicKey key, long loadedGeneration) {
+        DirectoryEntry entry = toEntry(key);
+        synchronized (cache) {
+            PendingLoad load = loads.get(key.getUserId());
+            if (load != null && load.generation == loadedGeneration) {
+                cache.put(key.getUserId(), entry);
+            }
+        }
+        return entry;
+    }
+
+    private DirectoryEntry toEntry(UserPublicKey key) {
+        UserPublicKeyResponse response = new UserPublicKeyResponse(
+            key.getUserId(),
+            key.getPublicKey(),
+            key.getAlgorithm(),
+            key.getKeySize()
+        );
+
+        // El ETag depende solo del contenido: misma clave => mismo ETag
+        MessageDigest digest = sha256();
+        digest.update(String.valueOf(key.getAlgorithm()).getBytes(StandardCharsets.US_ASCII));
+        digest.update(String.valueOf(key.getKeySize()).getBytes(StandardCharsets.US_ASCII));
+        digest.update(key.getPublicKey());
+
+        return new DirectoryEntry(response, quote(digest.digest()));
+    }
+
+    private static String quote(byte[] hash) {
+        // 128 bits son suficientes para un ETag
+        return "\"" + HexFormat.of().formatHex(hash, 0, 16) + "\"";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    /**
+     * Clave pública ya codificada junto con su ETag
+     */
+    public record DirectoryEntry(UserPublicKeyResponse response, String etag) {}
+}
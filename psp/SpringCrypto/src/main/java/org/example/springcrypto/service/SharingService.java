@@ -7,29 +7,51 @@ import org.example.springcrypto.entity.VaultSecret;
 import org.example.springcrypto.repository.SharedSecretRepository;
 import org.example.springcrypto.repository.UserPublicKeyRepository;
 import org.example.springcrypto.repository.VaultSecretRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 @Service
 public class SharingService {
 
+    // Algoritmos con los que el cliente puede envolver la clave para el receptor
+    private static final List<String> WRAP_ALGORITHMS = List.of("RSA", "EC");
+
     private final SharedSecretRepository sharedSecretRepository;
     private final UserPublicKeyRepository userPublicKeyRepository;
     private final VaultSecretRepository vaultSecretRepository;
+    private final PublicKeyDirectory publicKeyDirectory;
+    private final KeyDirectoryService keyDirectoryService;
+    private final AuditService auditService;
+    private final VaultService vaultService;
+    private final int maxBatchSize;
 
     public SharingService(
         SharedSecretRepository sharedSecretRepository,
         UserPublicKeyRepository userPublicKeyRepository,
-        VaultSecretRepository vaultSecretRepository
+        VaultSecretRepository vaultSecretRepository,
+        PublicKeyDirectory publicKeyDirectory,
+        KeyDirectoryService keyDirectoryService,
+        AuditService auditService,
+        VaultService vaultService,
+        @Value("${sharing.public-key-batch.max-size:5000}") int maxBatchSize
     ) {
         this.sharedSecretRepository = sharedSecretRepository;
         this.userPublicKeyRepository = userPublicKeyRepository;
         this.vaultSecretRepository = vaultSecretRepository;
+        this.publicKeyDirectory = publicKeyDirectory;
+        this.keyDirectoryService = keyDirectoryService;
+        this.auditService = auditService;
+        this.vaultService = vaultService;
+        this.maxBatchSize = maxBatchSize;
     }
 
     /**
@@ -41,25 +63,64 @@ public class SharingService {
             .orElse(new UserPublicKey());
 
         userPublicKey.setUserId(userId);
-        userPublicKey.setPublicKey(Base64.getDecoder().decode(request.publicKey()));
+        if (request.publicKey() == null || request.publicKey().length == 0) {
+            throw new IllegalArgumentException("El campo 'publicKey' es requerido");
+        }
+        userPublicKey.setPublicKey(request.publicKey());
         userPublicKey.setAlgorithm(request.algorithm());
         userPublicKey.setKeySize(request.keySize());
 
         userPublicKeyRepository.save(userPublicKey);
+        publicKeyDirectory.invalidate(userId);
+        keyDirectoryService.stage(userId, userPublicKey.getPublicKey(),
+            userPublicKey.getAlgorithm(), userPublicKey.getKeySize());
     }
 
     /**
      * Obtiene la clave pública de un usuario
      */
     public UserPublicKeyResponse getUserPublicKey(Long userId) {
-        UserPublicKey key = userPublicKeyRepository.findByUserId(userId)
+        return getUserPublicKeyEntry(userId).response();
+    }
+
+    /**
+     * Obtiene la clave pública de un usuario junto con su ETag (servida desde caché)
+     */
+    public PublicKeyDirectory.DirectoryEntry getUserPublicKeyEntry(Long userId) {
+        return publicKeyDirectory.find(userId)
             .orElseThrow(() -> new RuntimeException("Usuario no tiene clave pública registrada"));
+    }
+
+    /**
+     * Obtiene las claves públicas de varios usuarios en una sola operación
+     *
+     * Evita que el cliente haga una petición por receptor antes de compartir.
+     */
+    public PublicKeyBatch getUserPublicKeys(List<Long> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            throw new IllegalArgumentException("Se requiere al menos un userId");
+        }
+        if (userIds.size() > maxBatchSize) {
+            throw new IllegalArgumentException(
+                "Demasiados usuarios en una petición: " + userIds.size() + " (máximo " + maxBatchSize + ")");
+        }
+
+        List<PublicKeyDirectory.DirectoryEntry> entries = publicKeyDirectory.findAll(userIds);
 
-        return new UserPublicKeyResponse(
-            key.getUserId(),
-            Base64.getEncoder().encodeToString(key.getPublicKey()),
-            key.getAlgorithm(),
-            key.getKeySize()
+        List<UserPublicKeyResponse> keys = entries.stream()
+            .map(PublicKeyDirectory.DirectoryEntry::response)
+            .collect(Collectors.toList());
+        Set<Long> foundIds = keys.stream()
+            .map(UserPublicKeyResponse::userId)
+            .collect(Collectors.toSet());
+        List<Long> missing = userIds.stream()
+            .distinct()
+            .filter(id -> !foundIds.contains(id))
+            .collect(Collectors.toList());
+
+        return new PublicKeyBatch(
+            new PublicKeyBatchResponse(keys, missing),
+            PublicKeyDirectory.combinedETag(entries)
         );
     }
 
@@ -74,15 +135,44 @@ public class SharingService {
      */
     @Transactional
     public ShareSecretResponse shareSecret(Long ownerId, ShareSecretRequest request) {
+        try {
+            ShareSecretResponse response = doShareSecret(ownerId, request);
+            auditService.record(AuditService.AuditAction.SHARE_SECRET,
+                ownerId, request.secretId(), request.sharedWithUserId(), true);
+            return response;
+        } catch (RuntimeException e) {
+            auditService.record(AuditService.AuditAction.SHARE_SECRET,
+                ownerId, request.secretId(), request.sharedWithUserId(), false);
+            throw e;
+        }
+    }
+
+    private ShareSecretResponse doShareSecret(Long ownerId, ShareSecretRequest request) {
+        String algorithm = checkAlgorithm(request.algorithm());
+        if (algorithm == null) {
+            throw new IllegalArgumentException("Se requiere 'algorithm' (" + String.join(" o ", WRAP_ALGORITHMS) + ")");
+        }
+
         // Verificar que el secreto existe y pertenece al owner
         VaultSecret secret = vaultSecretRepository.findByIdAndUserId(request.secretId(), ownerId)
             .orElseThrow(() -> new RuntimeException("Secreto no encontrado o sin permisos"));
 
         // Verificar que el receptor tiene clave pública registrada
-        if (!userPublicKeyRepository.existsByUserId(request.sharedWithUserId())) {
+        if (publicKeyDirectory.find(request.sharedWithUserId()).isEmpty()) {
             throw new RuntimeException("El usuario receptor no tiene clave pública registrada");
         }
 
+        // Subir la versión de compartidos: espera si hay una rotación en curso y,
+        // si el cliente indica la versión con la que envolvió la clave, falla si cambió
+        if (request.expectedVersion() != null) {
+            if (vaultSecretRepository.bumpShareVersion(request.secretId(), ownerId, request.expectedVersion()) == 0) {
+                throw new IllegalStateException("Los compartidos del secreto han cambiado (¿rotación de clave?): "
+                    + "vuelve a leer el secreto y envuelve la clave actual");
+            }
+        } else {
+            vaultSecretRepository.incrementShareVersion(request.secretId());
+        }
+
         // Verificar que no esté ya compartido
         if (sharedSecretRepository.findBySecretIdAndSharedWithId(
                 request.secretId(), request.sharedWithUserId()).isPresent()) {
@@ -94,8 +184,8 @@ public class SharingService {
         shared.setSecretId(request.secretId());
         shared.setOwnerId(ownerId);
         shared.setSharedWithId(request.sharedWithUserId());
-        shared.setEncryptedSecretKey(Base64.getDecoder().decode(request.encryptedData()));
-        shared.setAlgorithm(request.algorithm());
+        shared.setEncryptedSecretKey(request.encryptedData());
+        shared.setAlgorithm(algorithm);
         shared.setPermission(request.permission());
 
         if (request.expiresInDays() != null) {
@@ -138,6 +228,17 @@ public class SharingService {
      * Obtiene un secreto compartido (para descifrarlo)
      */
     public SharedSecretItem getSharedSecret(Long userId, Long shareId) {
+        try {
+            SharedSecretItem item = doGetSharedSecret(userId, shareId);
+            auditService.record(AuditService.AuditAction.GET_SHARED_SECRET, userId, item.secretId(), shareId, true);
+            return item;
+        } catch (RuntimeException e) {
+            auditService.record(AuditService.AuditAction.GET_SHARED_SECRET, userId, null, shareId, false);
+            throw e;
+        }
+    }
+
+    private SharedSecretItem doGetSharedSecret(Long userId, Long shareId) {
         SharedSecret shared = sharedSecretRepository.findById(shareId)
             .orElseThrow(() -> new RuntimeException("Secreto compartido no encontrado"));
 
@@ -159,6 +260,16 @@ public class SharingService {
      */
     @Transactional
     public void revokeAccess(Long ownerId, Long secretId, Long sharedWithUserId) {
+        try {
+            doRevokeAccess(ownerId, secretId, sharedWithUserId);
+            auditService.record(AuditService.AuditAction.REVOKE_ACCESS, ownerId, secretId, sharedWithUserId, true);
+        } catch (RuntimeException e) {
+            auditService.record(AuditService.AuditAction.REVOKE_ACCESS, ownerId, secretId, sharedWithUserId, false);
+            throw e;
+        }
+    }
+
+    private void doRevokeAccess(Long ownerId, Long secretId, Long sharedWithUserId) {
         SharedSecret shared = sharedSecretRepository
             .findBySecretIdAndSharedWithId(secretId, sharedWithUserId)
             .orElseThrow(() -> new RuntimeException("Secreto compartido no encontrado"));
@@ -168,9 +279,135 @@ public class SharingService {
             throw new RuntimeException("Solo el propietario puede revocar acceso");
         }
 
+        vaultSecretRepository.incrementShareVersion(secretId);
         sharedSecretRepository.delete(shared);
     }
 
+    /**
+     * Rota la clave de un secreto: nuevo cifrado + clave re-envuelta para cada receptor
+     *
+     * Sustituye a un /share y un /revoke por receptor:
+     * - Todo en una transacción: o se rota todo o nada
+     * - Condicionado a expectedVersion: el UPDATE de la versión bloquea la fila,
+     *   así que un compartir/revocar concurrente espera a que termine la rotación
+     *   (y si llegó antes, la versión ya no coincide y la rotación falla con 409)
+     * - Se validan todas las claves antes de modificar ningún compartido; los
+     *   UPDATE se mandan por lotes JDBC (hibernate.jdbc.batch_size) al hacer commit
+     */
+    @Transactional
+    public RotateSecretKeyResponse rotateSecretKey(Long ownerId, Long secretId, RotateSecretKeyRequest request) {
+        try {
+            RotateSecretKeyResponse response = doRotateSecretKey(ownerId, secretId, request);
+            auditService.record(AuditService.AuditAction.ROTATE_KEY, ownerId, secretId, null, true);
+            return response;
+        } catch (RuntimeException e) {
+            auditService.record(AuditService.AuditAction.ROTATE_KEY, ownerId, secretId, null, false);
+            throw e;
+        }
+    }
+
+    private RotateSecretKeyResponse doRotateSecretKey(Long ownerId, Long secretId, RotateSecretKeyRequest request) {
+        if (request.expectedVersion() == null) {
+            throw new IllegalArgumentException("Se requiere 'expectedVersion'");
+        }
+        if (request.encryptedData() == null || request.iv() == null || request.salt() == null) {
+            throw new IllegalArgumentException("Se requieren 'encryptedData', 'iv' y 'salt' del secreto re-cifrado");
+        }
+
+        // Primero la versión: a partir de aquí nadie más puede compartir/revocar este secreto
+        if (vaultSecretRepository.bumpShareVersion(secretId, ownerId, request.expectedVersion()) == 0) {
+            VaultSecret secret = vaultSecretRepository.findByIdAndUserId(secretId, ownerId)
+                .orElseThrow(() -> new RuntimeException("Secreto no encontrado o sin permisos"));
+            throw new IllegalStateException("Los compartidos del secreto han cambiado: versión actual "
+                + secret.getShareVersion() + ", esperada " + request.expectedVersion());
+        }
+        VaultSecret secret = vaultSecretRepository.findByIdAndUserId(secretId, ownerId)
+            .orElseThrow(() -> new RuntimeException("Secreto no encontrado o sin permisos"));
+
+        List<SharedSecret> shares = sharedSecretRepository.findBySecretId(secretId);
+        byte[][] wrappedKeys = new byte[shares.size()][];
+        String[] algorithms = new String[shares.size()];
+        Map<Long, RewrappedShare> byRecipient = indexRewrappedShares(request.shares());
+
+        Set<Long> missing = new TreeSet<>();
+        for (SharedSecret share : shares) {
+            if (!byRecipient.containsKey(share.getSharedWithId())) {
+                missing.add(share.getSharedWithId());
+            }
+        }
+        if (!missing.isEmpty() || byRecipient.size() != shares.size()) {
+            throw new IllegalArgumentException("La rotación debe incluir exactamente a los receptores actuales"
+                + (missing.isEmpty() ? "" : "; faltan: " + missing));
+        }
+
+        // Primero se valida todo; los compartidos solo se tocan si todas las claves son válidas
+        for (int i = 0; i < shares.size(); i++) {
+            SharedSecret share = shares.get(i);
+            RewrappedShare rewrapped = byRecipient.get(share.getSharedWithId());
+            wrappedKeys[i] = decodeWrappedKey(rewrapped);
+            String algorithm = checkAlgorithm(rewrapped.algorithm());
+            algorithms[i] = algorithm != null ? algorithm : share.getAlgorithm();
+        }
+
+        for (int i = 0; i < shares.size(); i++) {
+            SharedSecret share = shares.get(i);
+            share.setEncryptedSecretKey(wrappedKeys[i]);
+            share.setAlgorithm(algorithms[i]);
+        }
+        sharedSecretRepository.saveAll(shares);
+
+        vaultService.updateSecret(ownerId, secretId, new SaveSecretRequest(
+            request.encryptedData(),
+            request.iv(),
+            request.salt(),
+            request.metadata() != null ? request.metadata() : secret.getMetadata(),
+            null
+        ));
+
+        return new RotateSecretKeyResponse(secretId, request.expectedVersion() + 1, shares.size());
+    }
+
+    private static Map<Long, RewrappedShare> indexRewrappedShares(List<RewrappedShare> rewrapped) {
+        Map<Long, RewrappedShare> byRecipient = new HashMap<>();
+        if (rewrapped == null) {
+            return byRecipient;
+        }
+        for (RewrappedShare share : rewrapped) {
+            if (share.sharedWithUserId() == null) {
+                throw new IllegalArgumentException("Cada entrada de 'shares' necesita 'sharedWithUserId'");
+            }
+            if (byRecipient.put(share.sharedWithUserId(), share) != null) {
+                throw new IllegalArgumentException("Receptor repetido: " + share.sharedWithUserId());
+            }
+        }
+        return byRecipient;
+    }
+
+    /**
+     * Algoritmo de envoltura en mayúsculas (null si no viene)
+     *
+     * @throws IllegalArgumentException si no es uno de WRAP_ALGORITHMS
+     */
+    private static String checkAlgorithm(String algorithm) {
+        if (algorithm == null) {
+            return null;
+        }
+        String normalized = algorithm.toUpperCase();
+        if (!WRAP_ALGORITHMS.contains(normalized)) {
+            throw new IllegalArgumentException("Algoritmo no soportado: " + algorithm
+                + " (use " + String.join(" o ", WRAP_ALGORITHMS) + ")");
+        }
+        return normalized;
+    }
+
+    private static byte[] decodeWrappedKey(RewrappedShare share) {
+        byte[] key = share.encryptedData();
+        if (key == null || key.length == 0) {
+            throw new IllegalArgumentException("Clave no válida para el receptor " + share.sharedWithUserId());
+        }
+        return key;
+    }
+
     /**
      * Lista con quién se ha compartido un secreto específico
      */
@@ -194,7 +431,7 @@ public class SharingService {
             shared.getSecretId(),
             shared.getOwnerId(),
             shared.getSharedWithId(),
-            Base64.getEncoder().encodeToString(shared.getEncryptedSecretKey()),
+            shared.getEncryptedSecretKey(),
             shared.getPermission(),
             shared.getAlgorithm(),
             shared.getCreatedAt(),
@@ -202,5 +439,9 @@ public class SharingService {
             isExpired
         );
     }
-}
 
+    /**
+     * Resultado de la búsqueda batch junto con su ETag
+     */
+    public record PublicKeyBatch(PublicKeyBatchResponse response, String etag) {}
+}
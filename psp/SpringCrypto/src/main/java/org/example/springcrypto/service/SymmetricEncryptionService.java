@@ -1,5 +1,6 @@
 package org.example.springcrypto.service;
 
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
@@ -14,7 +15,10 @@ import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 import java.security.spec.KeySpec;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Servicio para encriptación simétrica con AES
@@ -28,6 +32,11 @@ public class SymmetricEncryptionService {
     private static final int GCM_TAG_LENGTH = 128;
     private static final int IV_SIZE = 16;
 
+    public static final String ECB_TRANSFORMATION = "AES/ECB/PKCS5Padding";
+    public static final String CBC_TRANSFORMATION = "AES/CBC/PKCS5Padding";
+    public static final String CTR_TRANSFORMATION = "AES/CTR/NoPadding";
+    public static final String GCM_TRANSFORMATION = "AES/GCM/NoPadding";
+
     // Salt fijo para PBKDF2 - En producción esto debería ser único por aplicación
     private static final byte[] PBKDF2_SALT = "SpringCrypto2026".getBytes(StandardCharsets.UTF_8);
     private static final int PBKDF2_ITERATIONS = 65536; // Iteraciones para PBKDF2
@@ -35,6 +44,32 @@ public class SymmetricEncryptionService {
     @Value("${crypto.aes.secret-key:#{null}}")
     private String configuredSecretKey;
 
+    // Parámetros de Argon2id (RFC 9106, 2ª recomendación: 64 MiB, t=3, p=4)
+    @Value("${crypto.argon2.memory-kib:65536}")
+    private int argon2MemoryKiB;
+
+    @Value("${crypto.argon2.iterations:3}")
+    private int argon2Iterations;
+
+    @Value("${crypto.argon2.parallelism:4}")
+    private int argon2Parallelism;
+
+    // Hilos para las lanes de Argon2id: con p = 4 la derivación usa 4 cores
+    private final ExecutorService argon2Lanes = Executors.newFixedThreadPool(
+        Runtime.getRuntime().availableProcessors(),
+        r -> {
+            Thread t = new Thread(r, "argon2-lane");
+            t.setDaemon(true);
+            return t;
+        }
+    );
+
+    private final JcaProviderSelector providers;
+
+    public SymmetricEncryptionService(JcaProviderSelector providers) {
+        this.providers = providers;
+    }
+
     /**
      * Genera una clave AES de 256 bits
      */
@@ -82,17 +117,80 @@ public class SymmetricEncryptionService {
      * @return SecretKey derivada del password y salt
      */
     public SecretKey generateKeyFromPassword(String password, byte[] salt) throws Exception {
+        return generateKeyFromPassword(password, salt, PBKDF2_ITERATIONS);
+    }
+
+    /**
+     * Genera una clave AES desde un password con salt e iteraciones personalizados
+     *
+     * @param password String base para generar la clave
+     * @param salt Salt único (mínimo 8 bytes recomendado)
+     * @param iterations Iteraciones de PBKDF2 (más iteraciones = más lento de atacar)
+     * @return SecretKey derivada del password y salt
+     */
+    public SecretKey generateKeyFromPassword(String password, byte[] salt, int iterations) throws Exception {
         SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
         KeySpec spec = new PBEKeySpec(
             password.toCharArray(),
             salt,
-            PBKDF2_ITERATIONS,
+            iterations,
             KEY_SIZE
         );
         SecretKey tmp = factory.generateSecret(spec);
         return new SecretKeySpec(tmp.getEncoded(), ALGORITHM);
     }
 
+    /**
+     * Genera una clave AES desde un password con Argon2id (salt fijo, como la versión PBKDF2)
+     */
+    public SecretKey generateKeyFromPasswordArgon2id(String password) {
+        return generateKeyFromPasswordArgon2id(password, PBKDF2_SALT);
+    }
+
+    /**
+     * Genera una clave AES desde un password con Argon2id y los parámetros configurados
+     * (crypto.argon2.memory-kib, crypto.argon2.iterations, crypto.argon2.parallelism)
+     *
+     * @param password String base para generar la clave
+     * @param salt Salt único (mínimo 8 bytes)
+     * @return SecretKey derivada del password y salt
+     */
+    public SecretKey generateKeyFromPasswordArgon2id(String password, byte[] salt) {
+        return generateKeyFromPasswordArgon2id(password, salt, argon2MemoryKiB, argon2Iterations, argon2Parallelism);
+    }
+
+    /**
+     * Genera una clave AES desde un password con Argon2id
+     *
+     * A diferencia de PBKDF2 (secuencial y sin apenas memoria), Argon2id obliga
+     * a usar memoryKiB de memoria, y reparte el trabajo en "parallelism" lanes
+     * que se calculan en hilos distintos.
+     *
+     * @param memoryKiB Memoria en KiB (m)
+     * @param iterations Pasadas sobre la memoria (t)
+     * @param parallelism Lanes / hilos (p)
+     */
+    public SecretKey generateKeyFromPasswordArgon2id(String password, byte[] salt,
+                                                     int memoryKiB, int iterations, int parallelism) {
+        byte[] passwordBytes = password.getBytes(StandardCharsets.UTF_8);
+        byte[] keyBytes = new Argon2id(memoryKiB, iterations, parallelism, argon2Lanes)
+            .hash(passwordBytes, salt, KEY_SIZE / 8);
+        Arrays.fill(passwordBytes, (byte) 0);
+        return new SecretKeySpec(keyBytes, ALGORITHM);
+    }
+
+    public int getArgon2MemoryKiB() {
+        return argon2MemoryKiB;
+    }
+
+    public int getArgon2Iterations() {
+        return argon2Iterations;
+    }
+
+    public int getArgon2Parallelism() {
+        return argon2Parallelism;
+    }
+
     /**
      * Convierte una clave a Base64 para almacenamiento/transmisión
      */
@@ -104,8 +202,14 @@ public class SymmetricEncryptionService {
      * Convierte una clave desde Base64
      */
     public SecretKey base64ToKey(String base64Key) {
-        byte[] decodedKey = Base64.getDecoder().decode(base64Key);
-        return new SecretKeySpec(decodedKey, 0, decodedKey.length, ALGORITHM);
+        return bytesToKey(Base64.getDecoder().decode(base64Key));
+    }
+
+    /**
+     * Clave AES a partir de sus bytes (DTOs con byte[])
+     */
+    public SecretKey bytesToKey(byte[] keyBytes) {
+        return new SecretKeySpec(keyBytes, 0, keyBytes.length, ALGORITHM);
     }
 
     /**
@@ -114,18 +218,19 @@ public class SymmetricEncryptionService {
      * No usa IV (Vector de Inicialización)
      */
     public String encryptECB(String plainText, SecretKey key) throws Exception {
-        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
-        cipher.init(Cipher.ENCRYPT_MODE, key);
-        byte[] encrypted = cipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8));
-        return Base64.getEncoder().encodeToString(encrypted);
+        return encryptECB(plainText, key, providers.cipher(ECB_TRANSFORMATION));
+    }
+
+    public String encryptECB(String plainText, SecretKey key, Cipher cipher) throws Exception {
+        return Base64.getEncoder().encodeToString(encryptBytes("ECB", plainText, key, null, cipher));
     }
 
     public String decryptECB(String encryptedText, SecretKey key) throws Exception {
-        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
-        cipher.init(Cipher.DECRYPT_MODE, key);
-        byte[] decoded = Base64.getDecoder().decode(encryptedText);
-        byte[] decrypted = cipher.doFinal(decoded);
-        return new String(decrypted, StandardCharsets.UTF_8);
+        return decryptECB(encryptedText, key, providers.cipher(ECB_TRANSFORMATION));
+    }
+
+    public String decryptECB(String encryptedText, SecretKey key, Cipher cipher) throws Exception {
+        return decryptBytes("ECB", Base64.getDecoder().decode(encryptedText), key, cipher);
     }
 
     /**
@@ -134,33 +239,19 @@ public class SymmetricEncryptionService {
      * Requiere IV (Vector de Inicialización)
      */
     public String encryptCBC(String plainText, SecretKey key, byte[] iv) throws Exception {
-        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-        IvParameterSpec ivSpec = new IvParameterSpec(iv);
-        cipher.init(Cipher.ENCRYPT_MODE, key, ivSpec);
-        byte[] encrypted = cipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8));
-
-        // Concatenar IV + texto cifrado para facilitar descifrado
-        byte[] combined = new byte[iv.length + encrypted.length];
-        System.arraycopy(iv, 0, combined, 0, iv.length);
-        System.arraycopy(encrypted, 0, combined, iv.length, encrypted.length);
+        return encryptCBC(plainText, key, iv, providers.cipher(CBC_TRANSFORMATION));
+    }
 
-        return Base64.getEncoder().encodeToString(combined);
+    public String encryptCBC(String plainText, SecretKey key, byte[] iv, Cipher cipher) throws Exception {
+        return Base64.getEncoder().encodeToString(encryptBytes("CBC", plainText, key, iv, cipher));
     }
 
     public String decryptCBC(String encryptedText, SecretKey key) throws Exception {
-        byte[] combined = Base64.getDecoder().decode(encryptedText);
+        return decryptCBC(encryptedText, key, providers.cipher(CBC_TRANSFORMATION));
+    }
 
-        // Extraer IV y texto cifrado
-        byte[] iv = new byte[IV_SIZE];
-        byte[] encrypted = new byte[combined.length - IV_SIZE];
-        System.arraycopy(combined, 0, iv, 0, IV_SIZE);
-        System.arraycopy(combined, IV_SIZE, encrypted, 0, encrypted.length);
-
-        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-        IvParameterSpec ivSpec = new IvParameterSpec(iv);
-        cipher.init(Cipher.DECRYPT_MODE, key, ivSpec);
-        byte[] decrypted = cipher.doFinal(encrypted);
-        return new String(decrypted, StandardCharsets.UTF_8);
+    public String decryptCBC(String encryptedText, SecretKey key, Cipher cipher) throws Exception {
+        return decryptBytes("CBC", Base64.getDecoder().decode(encryptedText), key, cipher);
     }
 
     /**
@@ -169,32 +260,19 @@ public class SymmetricEncryptionService {
      * Paralelizable y no requiere padding
      */
     public String encryptCTR(String plainText, SecretKey key, byte[] iv) throws Exception {
-        Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
-        IvParameterSpec ivSpec = new IvParameterSpec(iv);
-        cipher.init(Cipher.ENCRYPT_MODE, key, ivSpec);
-        byte[] encrypted = cipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8));
-
-        // Concatenar IV + texto cifrado
-        byte[] combined = new byte[iv.length + encrypted.length];
-        System.arraycopy(iv, 0, combined, 0, iv.length);
-        System.arraycopy(encrypted, 0, combined, iv.length, encrypted.length);
+        return encryptCTR(plainText, key, iv, providers.cipher(CTR_TRANSFORMATION));
+    }
 
-        return Base64.getEncoder().encodeToString(combined);
+    public String encryptCTR(String plainText, SecretKey key, byte[] iv, Cipher cipher) throws Exception {
+        return Base64.getEncoder().encodeToString(encryptBytes("CTR", plainText, key, iv, cipher));
     }
 
     public String decryptCTR(String encryptedText, SecretKey key) throws Exception {
-        byte[] combined = Base64.getDecoder().decode(encryptedText);
+        return decryptCTR(encryptedText, key, providers.cipher(CTR_TRANSFORMATION));
+    }
 
-        byte[] iv = new byte[IV_SIZE];
-        byte[] encrypted = new byte[combined.length - IV_SIZE];
-        System.arraycopy(combined, 0, iv, 0, IV_SIZE);
-        System.arraycopy(combined, IV_SIZE, encrypted, 0, encrypted.length);
-
-        Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
-        IvParameterSpec ivSpec = new IvParameterSpec(iv);
-        cipher.init(Cipher.DECRYPT_MODE, key, ivSpec);
-        byte[] decrypted = cipher.doFinal(encrypted);
-        return new String(decrypted, StandardCharsets.UTF_8);
+    public String decryptCTR(String encryptedText, SecretKey key, Cipher cipher) throws Exception {
+        return decryptBytes("CTR", Base64.getDecoder().decode(encryptedText), key, cipher);
     }
 
     /**
@@ -203,34 +281,123 @@ public class SymmetricEncryptionService {
      * Detecta modificaciones en el texto cifrado
      */
     public String encryptGCM(String plainText, SecretKey key, byte[] iv) throws Exception {
-        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-        GCMParameterSpec gcmSpec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
-        cipher.init(Cipher.ENCRYPT_MODE, key, gcmSpec);
-        byte[] encrypted = cipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8));
-
-        // Concatenar IV + texto cifrado (que incluye el tag de autenticación)
-        byte[] combined = new byte[iv.length + encrypted.length];
-        System.arraycopy(iv, 0, combined, 0, iv.length);
-        System.arraycopy(encrypted, 0, combined, iv.length, encrypted.length);
+        return encryptGCM(plainText, key, iv, providers.cipher(GCM_TRANSFORMATION));
+    }
 
-        return Base64.getEncoder().encodeToString(combined);
+    public String encryptGCM(String plainText, SecretKey key, byte[] iv, Cipher cipher) throws Exception {
+        return Base64.getEncoder().encodeToString(encryptBytes("GCM", plainText, key, iv, cipher));
     }
 
     public String decryptGCM(String encryptedText, SecretKey key) throws Exception {
-        byte[] combined = Base64.getDecoder().decode(encryptedText);
+        return decryptGCM(encryptedText, key, providers.cipher(GCM_TRANSFORMATION));
+    }
 
-        byte[] iv = new byte[IV_SIZE];
-        byte[] encrypted = new byte[combined.length - IV_SIZE];
-        System.arraycopy(combined, 0, iv, 0, IV_SIZE);
-        System.arraycopy(combined, IV_SIZE, encrypted, 0, encrypted.length);
-
-        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-        GCMParameterSpec gcmSpec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
-        cipher.init(Cipher.DECRYPT_MODE, key, gcmSpec);
-        byte[] decrypted = cipher.doFinal(encrypted);
+    public String decryptGCM(String encryptedText, SecretKey key, Cipher cipher) throws Exception {
+        return decryptBytes("GCM", Base64.getDecoder().decode(encryptedText), key, cipher);
+    }
+
+    /**
+     * Transformación JCA para un modo (ECB, CBC, CTR, GCM)
+     *
+     * @throws IllegalArgumentException si el modo no está soportado
+     */
+    public static String transformationFor(String mode) {
+        return switch (mode) {
+            case "ECB" -> ECB_TRANSFORMATION;
+            case "CBC" -> CBC_TRANSFORMATION;
+            case "CTR" -> CTR_TRANSFORMATION;
+            case "GCM" -> GCM_TRANSFORMATION;
+            default -> throw new IllegalArgumentException("Modo no soportado: " + mode + ". Use: ECB, CBC, CTR, GCM");
+        };
+    }
+
+    /**
+     * Encripta con el modo indicado reutilizando un Cipher ya creado
+     * (p.ej. el de una clave registrada en KeyHandleService)
+     *
+     * @param iv IV a usar (se ignora en ECB)
+     */
+    public String encrypt(String mode, String plainText, SecretKey key, byte[] iv, Cipher cipher) throws Exception {
+        return Base64.getEncoder().encodeToString(encryptBytes(mode, plainText, key, iv, cipher));
+    }
+
+    /**
+     * Desencripta con el modo indicado reutilizando un Cipher ya creado
+     */
+    public String decrypt(String mode, String encryptedText, SecretKey key, Cipher cipher) throws Exception {
+        return decryptBytes(mode, Base64.getDecoder().decode(encryptedText), key, cipher);
+    }
+
+    /**
+     * Como encryptBytes, con un Cipher nuevo para el modo
+     */
+    public byte[] encryptBytes(String mode, String plainText, SecretKey key, byte[] iv) throws Exception {
+        return encryptBytes(mode, plainText, key, iv, providers.cipher(transformationFor(mode)));
+    }
+
+    /**
+     * Como decryptBytes, con un Cipher nuevo para el modo
+     */
+    public String decryptBytes(String mode, byte[] encrypted, SecretKey key) throws Exception {
+        return decryptBytes(mode, encrypted, key, providers.cipher(transformationFor(mode)));
+    }
+
+    /**
+     * Encripta y devuelve IV + texto cifrado (+ tag en GCM) en un único array
+     *
+     * @param iv IV a usar (se ignora en ECB)
+     */
+    public byte[] encryptBytes(String mode, String plainText, SecretKey key, byte[] iv, Cipher cipher) throws Exception {
+        byte[] plain = plainText.getBytes(StandardCharsets.UTF_8);
+        switch (mode) {
+            case "ECB" -> {
+                cipher.init(Cipher.ENCRYPT_MODE, key);
+                return cipher.doFinal(plain);
+            }
+            case "CBC", "CTR" -> cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(iv));
+            case "GCM" -> cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH, iv));
+            default -> throw new IllegalArgumentException("Modo no soportado: " + mode);
+        }
+
+        // El IV va delante del texto cifrado para poder descifrar; se cifra directamente detrás
+        byte[] combined = new byte[iv.length + cipher.getOutputSize(plain.length)];
+        System.arraycopy(iv, 0, combined, 0, iv.length);
+        int written = cipher.doFinal(plain, 0, plain.length, combined, iv.length);
+        return iv.length + written == combined.length ? combined : Arrays.copyOf(combined, iv.length + written);
+    }
+
+    /**
+     * Desencripta IV + texto cifrado (lo que devuelve encryptBytes)
+     */
+    public String decryptBytes(String mode, byte[] encrypted, SecretKey key, Cipher cipher) throws Exception {
+        if (encrypted == null) {
+            throw new IllegalArgumentException("El campo 'encryptedText' es requerido");
+        }
+        switch (mode) {
+            case "ECB" -> {
+                cipher.init(Cipher.DECRYPT_MODE, key);
+                return new String(cipher.doFinal(encrypted), StandardCharsets.UTF_8);
+            }
+            case "CBC", "CTR" -> {
+                requireIv(encrypted);
+                cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(encrypted, 0, IV_SIZE));
+            }
+            case "GCM" -> {
+                requireIv(encrypted);
+                cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH, encrypted, 0, IV_SIZE));
+            }
+            default -> throw new IllegalArgumentException("Modo no soportado: " + mode);
+        }
+        byte[] decrypted = cipher.doFinal(encrypted, IV_SIZE, encrypted.length - IV_SIZE);
         return new String(decrypted, StandardCharsets.UTF_8);
     }
 
+    private static void requireIv(byte[] encrypted) {
+        if (encrypted.length < IV_SIZE) {
+            throw new IllegalArgumentException("Texto cifrado demasiado corto: falta el IV");
+        }
+    }
+
     /**
      * Genera un IV (Vector de Inicialización) aleatorio
      */
@@ -253,5 +420,10 @@ public class SymmetricEncryptionService {
     public byte[] base64ToIv(String base64Iv) {
         return Base64.getDecoder().decode(base64Iv);
     }
+
+    @PreDestroy
+    public void shutdown() {
+        argon2Lanes.shutdownNow();
+    }
 }
 
@@ -1,22 +1,50 @@
 package org.example.springcrypto.service;
 
 import org.example.springcrypto.dto.*;
+import org.example.springcrypto.entity.VaultSearchToken;
 import org.example.springcrypto.entity.VaultSecret;
+import org.example.springcrypto.repository.VaultSearchTokenRepository;
 import org.example.springcrypto.repository.VaultSecretRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 public class VaultService {
 
     private final VaultSecretRepository repository;
+    private final AuditService auditService;
+    private final VaultTreeHasher treeHasher;
+    private final VaultSearchTokenRepository searchTokenRepository;
+    private final int maxTokensPerSecret;
+    private final int maxTokensPerQuery;
+    private final long maxBlobSize;
 
-    public VaultService(VaultSecretRepository repository) {
+    public VaultService(
+        VaultSecretRepository repository,
+        AuditService auditService,
+        VaultTreeHasher treeHasher,
+        VaultSearchTokenRepository searchTokenRepository,
+        @Value("${vault.search.max-tokens-per-secret:64}") int maxTokensPerSecret,
+        @Value("${vault.search.max-tokens-per-query:16}") int maxTokensPerQuery,
+        @Value("${vault.max-blob-size:16777216}") long maxBlobSize
+    ) {
         this.repository = repository;
+        this.auditService = auditService;
+        this.treeHasher = treeHasher;
+        this.searchTokenRepository = searchTokenRepository;
+        this.maxTokensPerSecret = maxTokensPerSecret;
+        this.maxTokensPerQuery = maxTokensPerQuery;
+        this.maxBlobSize = Math.min(maxBlobSize, Integer.MAX_VALUE - 8);
     }
 
     /**
@@ -28,29 +56,39 @@ public class VaultService {
         secret.setUserId(userId);
 
         // Los datos YA vienen cifrados desde el cliente
-        secret.setEncryptedData(Base64.getDecoder().decode(request.encryptedData()));
-        secret.setIv(Base64.getDecoder().decode(request.iv()));
-        secret.setSalt(Base64.getDecoder().decode(request.salt()));
+        secret.setEncryptedData(request.encryptedData());
+        secret.setIv(request.iv());
+        secret.setSalt(request.salt());
         secret.setMetadata(request.metadata());
+        updateTreeHash(secret, treeHasher.getChunkSize());
 
         secret = repository.save(secret);
+        saveSearchTokens(userId, secret.getId(), request.searchTokens());
 
-        return new SaveSecretResponse(secret.getId(), secret.getCreatedAt());
+        return new SaveSecretResponse(
+            secret.getId(),
+            secret.getCreatedAt(),
+            secret.getTreeHash()
+        );
     }
 
     /**
      * Obtiene un secreto cifrado (el servidor NO descifra)
      */
     public SecretDetailResponse getSecret(Long userId, Long secretId) {
-        VaultSecret secret = repository.findByIdAndUserId(secretId, userId)
-            .orElseThrow(() -> new RuntimeException("Secret not found or access denied"));
+        VaultSecret secret = repository.findByIdAndUserId(secretId, userId).orElse(null);
+        auditService.record(AuditService.AuditAction.GET_SECRET, userId, secretId, null, secret != null);
+        if (secret == null) {
+            throw new RuntimeException("Secret not found or access denied");
+        }
 
         return new SecretDetailResponse(
             secret.getId(),
-            Base64.getEncoder().encodeToString(secret.getEncryptedData()),
-            Base64.getEncoder().encodeToString(secret.getIv()),
-            Base64.getEncoder().encodeToString(secret.getSalt()),
-            secret.getMetadata()
+            secret.getEncryptedData(),
+            secret.getIv(),
+            secret.getSalt(),
+            secret.getMetadata(),
+            secret.getShareVersion()
         );
     }
 
@@ -77,6 +115,7 @@ public class VaultService {
         VaultSecret secret = repository.findByIdAndUserId(secretId, userId)
             .orElseThrow(() -> new RuntimeException("Secret not found or access denied"));
 
+        searchTokenRepository.deleteBySecretId(secretId);
         repository.delete(secret);
     }
 
@@ -88,12 +127,258 @@ public class VaultService {
         VaultSecret secret = repository.findByIdAndUserId(secretId, userId)
             .orElseThrow(() -> new RuntimeException("Secret not found or access denied"));
 
-        secret.setEncryptedData(Base64.getDecoder().decode(request.encryptedData()));
-        secret.setIv(Base64.getDecoder().decode(request.iv()));
-        secret.setSalt(Base64.getDecoder().decode(request.salt()));
+        secret.setEncryptedData(request.encryptedData());
+        secret.setIv(request.iv());
+        secret.setSalt(request.salt());
         secret.setMetadata(request.metadata());
+        updateTreeHash(secret, treeHasher.getChunkSize());
 
         repository.save(secret);
+
+        // null = se mantienen los tokens; lista vacía = se quitan del índice
+        if (request.searchTokens() != null) {
+            searchTokenRepository.deleteBySecretId(secretId);
+            saveSearchTokens(userId, secretId, request.searchTokens());
+        }
+    }
+
+    /**
+     * Búsqueda por índice ciego: secretos del usuario que tienen todos los tokens
+     *
+     * El servidor solo compara tokens por igualdad (nunca ve las palabras).
+     * Va por el índice (user_id, token) y solo carga los secretos encontrados.
+     */
+    public VaultSearchResponse search(Long userId, List<String> tokens) {
+        Set<String> normalized = normalizeTokens(tokens, maxTokensPerQuery);
+        if (normalized.isEmpty()) {
+            throw new IllegalArgumentException("Se requiere al menos un 'token'");
+        }
+
+        List<Long> ids = searchTokenRepository.findSecretIdsMatchingAll(userId, normalized, normalized.size());
+        // findAllById no garantiza orden: se devuelven en el de ids
+        Map<Long, VaultSecret> byId = repository.findAllById(ids)
+            .stream()
+            .filter(s -> userId.equals(s.getUserId()))
+            .collect(Collectors.toMap(VaultSecret::getId, s -> s));
+        List<SecretListItem> secrets = ids.stream()
+            .map(byId::get)
+            .filter(Objects::nonNull)
+            .map(s -> new SecretListItem(
+                s.getId(),
+                s.getMetadata(),
+                s.getCreatedAt(),
+                s.getUpdatedAt()
+            ))
+            .collect(Collectors.toList());
+        return new VaultSearchResponse(ids, secrets);
+    }
+
+    /**
+     * Hash en árbol de un secreto (raíz y, si se piden, los hashes de cada trozo)
+     *
+     * Con verify = true se vuelve a hashear el blob guardado y se compara con la
+     * raíz almacenada (detecta corrupción en la base de datos).
+     */
+    @Transactional
+    public VaultTreeHashResponse getTreeHash(Long userId, Long secretId, boolean includeChunks, boolean verify) {
+        VaultSecret secret = repository.findByIdAndUserId(secretId, userId)
+            .orElseThrow(() -> new RuntimeException("Secret not found or access denied"));
+
+        // Secretos guardados antes de existir el hash en árbol: se calcula ahora
+        if (secret.getTreeHash() == null) {
+            updateTreeHash(secret, treeHasher.getChunkSize());
+            repository.save(secret);
+        }
+
+        Boolean verified = null;
+        if (verify) {
+            byte[] leaves = treeHasher.hashChunks(secret.getEncryptedData(), secret.getChunkSize());
+            verified = Arrays.equals(VaultTreeHasher.root(leaves), secret.getTreeHash());
+        }
+        return toTreeHashResponse(secret, includeChunks, verified);
+    }
+
+    /**
+     * Actualización parcial: sustituye solo los trozos enviados
+     *
+     * Solo se hashean los trozos que cambian; el resto de hojas se reutiliza.
+     * Todo trozo cuyo contenido cambie (también el último si cambia el tamaño)
+     * tiene que venir en la petición.
+     *
+     * La fila se lee bloqueada: otra actualización concurrente espera al
+     * commit y entonces ve la raíz nueva, así que su baseRoot ya no coincide.
+     */
+    @Transactional
+    public VaultTreeHashResponse updateChunks(Long userId, Long secretId, VaultChunkUpdateRequest request) {
+        if (request.baseRoot() == null) {
+            throw new IllegalArgumentException("El campo 'baseRoot' es requerido (raíz sobre la que se aplican los trozos)");
+        }
+        VaultSecret secret = repository.findByIdAndUserIdForUpdate(secretId, userId)
+            .orElseThrow(() -> new RuntimeException("Secret not found or access denied"));
+        if (secret.getTreeHash() == null) {
+            updateTreeHash(secret, treeHasher.getChunkSize());
+        }
+
+        if (!Arrays.equals(request.baseRoot(), secret.getTreeHash())) {
+            throw new IllegalStateException("El secreto ha cambiado: baseRoot no coincide con la raíz actual");
+        }
+
+        byte[] oldData = secret.getEncryptedData();
+        int chunkSize = secret.getChunkSize();
+        long newSizeLong = request.size() != null ? request.size() : oldData.length;
+        if (newSizeLong < 0 || newSizeLong > maxBlobSize) {
+            throw new IllegalArgumentException("Tamaño no válido: " + newSizeLong + " (máximo " + maxBlobSize + ")");
+        }
+        int newSize = (int) newSizeLong;
+        int oldCount = VaultTreeHasher.chunkCount(oldData.length, chunkSize);
+        int newCount = VaultTreeHasher.chunkCount(newSize, chunkSize);
+
+        // Primero se valida todo (índices, longitudes y que vengan los trozos
+        // que cambian de tamaño); solo entonces se reserva el blob nuevo
+        VaultChunk[] sent = new VaultChunk[newCount];
+        List<VaultChunk> chunks = request.chunks() != null ? request.chunks() : List.of();
+        for (VaultChunk chunk : chunks) {
+            Integer index = chunk.index();
+            if (index == null || index < 0 || index >= newCount) {
+                throw new IllegalArgumentException("Índice de trozo fuera de rango: " + index);
+            }
+            if (sent[index] != null) {
+                throw new IllegalArgumentException("Trozo repetido: " + index);
+            }
+            byte[] data = chunk.data();
+            if (data == null) {
+                throw new IllegalArgumentException("El trozo " + index + " no tiene datos");
+            }
+            int offset = index * chunkSize;
+            int expected = Math.min(chunkSize, newSize - offset);
+            if (data.length != expected) {
+                throw new IllegalArgumentException(
+                    "El trozo " + index + " debe tener " + expected + " bytes (tiene " + data.length + ")");
+            }
+            sent[index] = chunk;
+        }
+
+        // Trozos que hay que rehashear: los enviados (los demás deben seguir idénticos)
+        int[] changed = new int[chunks.size()];
+        int n = 0;
+        for (int i = 0; i < newCount; i++) {
+            if (sent[i] != null) {
+                changed[n++] = i;
+            } else if (i >= oldCount || chunkEnd(i, chunkSize, oldData.length) != chunkEnd(i, chunkSize, newSize)) {
+                throw new IllegalArgumentException("El trozo " + i + " cambia de tamaño y debe enviarse");
+            }
+        }
+
+        byte[] newData = Arrays.copyOf(oldData, newSize);
+        for (int i = 0; i < n; i++) {
+            byte[] data = sent[changed[i]].data();
+            System.arraycopy(data, 0, newData, changed[i] * chunkSize, data.length);
+        }
+
+        byte[] leaves = Arrays.copyOf(secret.getChunkHashes(), newCount * VaultTreeHasher.HASH_SIZE);
+        treeHasher.rehashChunks(newData, chunkSize, changed, leaves);
+        byte[] root = VaultTreeHasher.root(leaves);
+
+        if (request.expectedRoot() != null && !Arrays.equals(request.expectedRoot(), root)) {
+            throw new IllegalStateException("La raíz resultante no coincide con expectedRoot: no se guarda nada");
+        }
+
+        secret.setEncryptedData(newData);
+        if (request.iv() != null) {
+            secret.setIv(request.iv());
+        }
+        secret.setChunkHashes(leaves);
+        secret.setTreeHash(root);
+        repository.save(secret);
+
+        return toTreeHashResponse(secret, false, null);
+    }
+
+    private void saveSearchTokens(Long userId, Long secretId, List<byte[]> tokens) {
+        Set<String> normalized = encodeTokens(tokens, maxTokensPerSecret);
+        if (!normalized.isEmpty()) {
+            searchTokenRepository.saveAll(normalized.stream()
+                .map(token -> new VaultSearchToken(userId, secretId, token))
+                .toList());
+        }
+    }
+
+    /**
+     * Valida los tokens (ya en binario) y los pasa a Base64 canónico (sin duplicados)
+     */
+    private static Set<String> encodeTokens(List<byte[]> tokens, int max) {
+        Set<String> normalized = new LinkedHashSet<>();
+        if (tokens == null) {
+            return normalized;
+        }
+        for (byte[] raw : tokens) {
+            normalized.add(Base64.getEncoder().encodeToString(checkToken(raw)));
+        }
+        if (normalized.size() > max) {
+            throw new IllegalArgumentException("Demasiados tokens de búsqueda (máximo " + max + ")");
+        }
+        return normalized;
+    }
+
+    /**
+     * Valida los tokens y los pasa a Base64 canónico (sin duplicados)
+     *
+     * Así dos codificaciones del mismo HMAC (con o sin relleno, URL-safe...)
+     * caen en la misma entrada del índice.
+     */
+    private static Set<String> normalizeTokens(List<String> tokens, int max) {
+        Set<String> normalized = new LinkedHashSet<>();
+        if (tokens == null) {
+            return normalized;
+        }
+        for (String token : tokens) {
+            byte[] raw;
+            try {
+                // Se acepta también Base64 URL-safe (cómodo en ?token=...)
+                raw = Base64.getDecoder().decode(token.replace('-', '+').replace('_', '/'));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                throw new IllegalArgumentException("Token de búsqueda no válido (debe ser Base64)");
+            }
+            normalized.add(Base64.getEncoder().encodeToString(checkToken(raw)));
+        }
+        if (normalized.size() > max) {
+            throw new IllegalArgumentException("Demasiados tokens de búsqueda (máximo " + max + ")");
+        }
+        return normalized;
+    }
+
+    private static byte[] checkToken(byte[] raw) {
+        if (raw == null) {
+            throw new IllegalArgumentException("Token de búsqueda no válido (vacío)");
+        }
+        if (raw.length < 16 || raw.length > 64) {
+            throw new IllegalArgumentException("Token de búsqueda de " + raw.length + " bytes (se esperan 16-64)");
+        }
+        return raw;
+    }
+
+    private void updateTreeHash(VaultSecret secret, int chunkSize) {
+        byte[] leaves = treeHasher.hashChunks(secret.getEncryptedData(), chunkSize);
+        secret.setChunkSize(chunkSize);
+        secret.setChunkHashes(leaves);
+        secret.setTreeHash(VaultTreeHasher.root(leaves));
+    }
+
+    private static int chunkEnd(int index, int chunkSize, int size) {
+        return (int) Math.min((long) (index + 1) * chunkSize, size);
+    }
+
+    private static VaultTreeHashResponse toTreeHashResponse(VaultSecret secret, boolean includeChunks, Boolean verified) {
+        List<byte[]> chunkHashes = includeChunks ? VaultTreeHasher.splitLeaves(secret.getChunkHashes()) : null;
+        return new VaultTreeHashResponse(
+            secret.getId(),
+            VaultTreeHasher.ALGORITHM,
+            secret.getChunkSize(),
+            secret.getEncryptedData().length,
+            secret.getTreeHash(),
+            chunkHashes,
+            verified
+        );
     }
 }
 
@@ -0,0 +1,108 @@
+package org.example.springcrypto.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Hash en árbol de los blobs de la caja fuerte
+ *
+ * El blob cifrado se parte en trozos de vault.tree-hash.chunk-size bytes:
+ * - Hoja:  SHA-256(0x00 || trozo)      (ver {@link MerkleTree})
+ * - Raíz:  árbol de Merkle de las hojas
+ *
+ * Ventajas frente a un SHA-256 del blob entero:
+ * - Las hojas son independientes: en blobs grandes se calculan en paralelo
+ *   (a partir de vault.tree-hash.parallel-threshold bytes)
+ * - Guardando las hojas, cambiar un trozo solo obliga a hashear ese trozo
+ *   y a recombinar las hojas (32 bytes cada una), no a releer todo el blob
+ * - El cliente compara sus hashes de trozo con los del servidor y sabe
+ *   exactamente qué trozos tiene que volver a subir
+ *
+ * Un blob vacío tiene un único trozo vacío, así siempre hay raíz.
+ */
+@Service
+public class VaultTreeHasher {
+
+    public static final String ALGORITHM = "SHA-256-MERKLE";
+    public static final int HASH_SIZE = 32;
+
+    private final int chunkSize;
+    private final int parallelThreshold;
+
+    public VaultTreeHasher(
+        @Value("${vault.tree-hash.chunk-size:65536}") int chunkSize,
+        @Value("${vault.tree-hash.parallel-threshold:1048576}") int parallelThreshold
+    ) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("vault.tree-hash.chunk-size debe ser positivo");
+        }
+        this.chunkSize = chunkSize;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Tamaño de trozo para blobs nuevos (los existentes guardan el suyo)
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public static int chunkCount(long size, int chunkSize) {
+        return size == 0 ? 1 : (int) ((size + chunkSize - 1) / chunkSize);
+    }
+
+    /**
+     * Hashes de hoja de todos los trozos, concatenados (32 bytes por trozo)
+     */
+    public byte[] hashChunks(byte[] data, int chunkSize) {
+        int count = chunkCount(data.length, chunkSize);
+        byte[] leaves = new byte[count * HASH_SIZE];
+        IntStream indexes = IntStream.range(0, count);
+        if (data.length >= parallelThreshold) {
+            indexes = indexes.parallel();
+        }
+        indexes.forEach(i -> hashChunkInto(data, chunkSize, i, leaves));
+        return leaves;
+    }
+
+    /**
+     * Recalcula solo los trozos indicados, reutilizando el resto de hojas
+     *
+     * @param leaves hojas actuales (ya redimensionadas al nuevo número de trozos)
+     */
+    public void rehashChunks(byte[] data, int chunkSize, int[] chunks, byte[] leaves) {
+        IntStream indexes = Arrays.stream(chunks);
+        if ((long) chunks.length * chunkSize >= parallelThreshold) {
+            indexes = indexes.parallel();
+        }
+        indexes.forEach(i -> hashChunkInto(data, chunkSize, i, leaves));
+    }
+
+    /**
+     * Raíz del árbol a partir de las hojas concatenadas
+     */
+    public static byte[] root(byte[] leaves) {
+        List<byte[]> hashes = splitLeaves(leaves);
+        return MerkleTree.of(hashes).root();
+    }
+
+    public static List<byte[]> splitLeaves(byte[] leaves) {
+        List<byte[]> hashes = new ArrayList<>(leaves.length / HASH_SIZE);
+        for (int off = 0; off < leaves.length; off += HASH_SIZE) {
+            hashes.add(Arrays.copyOfRange(leaves, off, off + HASH_SIZE));
+        }
+        return hashes;
+    }
+
+    private static void hashChunkInto(byte[] data, int chunkSize, int index, byte[] leaves) {
+        int offset = index * chunkSize;
+        int length = Math.min(chunkSize, data.length - offset);
+        byte[] hash = MerkleTree.hashLeaf(data, offset, Math.max(length, 0));
+        System.arraycopy(hash, 0, leaves, index * HASH_SIZE, HASH_SIZE);
+    }
+}
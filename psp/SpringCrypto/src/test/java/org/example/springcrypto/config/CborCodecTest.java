@@ -0,0 +1,71 @@
+package org.example.springcrypto.config;
+
+import org.example.springcrypto.dto.EciesDecryptRequest;
+import org.example.springcrypto.dto.EnvelopeDecryptRequest;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Codificación CBOR de los DTOs
+ */
+class CborCodecTest {
+
+    /**
+     * Los campos byte[] viajan como cadenas de bytes y vuelven iguales
+     */
+    @Test
+    void binaryFieldsRoundTrip() throws IOException {
+        EciesDecryptRequest request = new EciesDecryptRequest(
+            new byte[]{1, 2, 3}, new byte[]{4, 5}, new byte[]{(byte) 0xFF, 0}, new byte[12]);
+
+        EciesDecryptRequest decoded = decode(CborCodec.encode(request), EciesDecryptRequest.class);
+
+        assertArrayEquals(request.privateKey(), decoded.privateKey());
+        assertArrayEquals(request.ephemeralPublicKey(), decoded.ephemeralPublicKey());
+        assertArrayEquals(request.encryptedData(), decoded.encryptedData());
+        assertArrayEquals(request.iv(), decoded.iv());
+    }
+
+    @Test
+    void listOfBinaryRoundTrip() throws IOException {
+        EnvelopeDecryptRequest request = new EnvelopeDecryptRequest(
+            List.of(new byte[]{1}, new byte[]{2, 3}), null, null);
+
+        EnvelopeDecryptRequest decoded = decode(CborCodec.encode(request), EnvelopeDecryptRequest.class);
+
+        assertEquals(2, decoded.envelopes().size());
+        assertArrayEquals(new byte[]{2, 3}, decoded.envelopes().get(1));
+    }
+
+    /**
+     * Un documento muy anidado se rechaza con IOException (no StackOverflowError)
+     */
+    @Test
+    void rejectsDeepNesting() {
+        // 10 000 arrays de un elemento anidados: 0x81 0x81 ... 0x00
+        byte[] nested = new byte[10_001];
+        Arrays.fill(nested, 0, 10_000, (byte) 0x81);
+
+        assertThrows(IOException.class, () -> decode(nested, List.class));
+    }
+
+    @Test
+    void acceptsNestingUpToLimit() throws IOException {
+        byte[] nested = new byte[CborCodec.MAX_DEPTH + 1];
+        Arrays.fill(nested, 0, CborCodec.MAX_DEPTH, (byte) 0x81);
+
+        assertEquals(1, decode(nested, List.class).size());
+    }
+
+    private static <T> T decode(byte[] body, Class<T> type) throws IOException {
+        return CborCodec.decode(new ByteArrayInputStream(body), type, body.length);
+    }
+}
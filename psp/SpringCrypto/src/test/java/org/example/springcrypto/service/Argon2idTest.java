@@ -0,0 +1,74 @@
+package org.example.springcrypto.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Vectores de prueba de Argon2id
+ */
+class Argon2idTest {
+
+    /**
+     * RFC 9106, sección 5.3 (m = 32 KiB, t = 3, p = 4, con secreto y datos asociados)
+     */
+    @Test
+    void rfc9106TestVector() {
+        byte[] password = filled(32, 0x01);
+        byte[] salt = filled(16, 0x02);
+        byte[] secret = filled(8, 0x03);
+        byte[] associatedData = filled(12, 0x04);
+        byte[] expected = HexFormat.of().parseHex("0d640df58d78766c08c037a34a8b53c9d01ef0452d75b65eb52520e96b01e659");
+
+        assertArrayEquals(expected, new Argon2id(32, 3, 4).hash(password, salt, secret, associatedData, 32));
+    }
+
+    /**
+     * El resultado no depende de si las lanes se calculan en paralelo
+     */
+    @Test
+    void parallelLanesGiveSameTag() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            byte[] expected = HexFormat.of().parseHex("0d640df58d78766c08c037a34a8b53c9d01ef0452d75b65eb52520e96b01e659");
+            byte[] tag = new Argon2id(32, 3, 4, executor)
+                .hash(filled(32, 0x01), filled(16, 0x02), filled(8, 0x03), filled(12, 0x04), 32);
+            assertArrayEquals(expected, tag);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Implementación de referencia: argon2id v=19, m=65536, t=2, p=1, "password" / "somesalt"
+     */
+    @Test
+    void referenceImplementationVector() {
+        byte[] expected = Base64.getDecoder().decode("CTFhFdXPJO1aFaMaO6Mm5c8y7cJHAph8ArZWb2GRPPc=");
+        byte[] tag = new Argon2id(65536, 2, 1).hash(
+            "password".getBytes(StandardCharsets.UTF_8), "somesalt".getBytes(StandardCharsets.UTF_8), 32);
+
+        assertArrayEquals(expected, tag);
+    }
+
+    @Test
+    void rejectsInvalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new Argon2id(16, 1, 4));
+        assertThrows(IllegalArgumentException.class, () -> new Argon2id(64, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new Argon2id(64, 1, 1).hash(new byte[8], new byte[4], 32));
+    }
+
+    private static byte[] filled(int length, int value) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) value);
+        return bytes;
+    }
+}
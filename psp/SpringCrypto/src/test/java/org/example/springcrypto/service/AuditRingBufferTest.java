@@ -0,0 +1,104 @@
+package org.example.springcrypto.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cola de auditoría: orden, capacidad y varios productores
+ */
+class AuditRingBufferTest {
+
+    @Test
+    void drainsInFifoOrder() {
+        AuditRingBuffer<Integer> buffer = new AuditRingBuffer<>(8);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        List<Integer> out = new ArrayList<>();
+        assertEquals(5, buffer.drainTo(out, 100));
+        assertEquals(List.of(0, 1, 2, 3, 4), out);
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    void rejectsWhenFullAndWrapsAround() {
+        AuditRingBuffer<Integer> buffer = new AuditRingBuffer<>(4);
+        int capacity = buffer.capacity();
+        List<Integer> out = new ArrayList<>();
+        int next = 0;
+        // Varias vueltas completas al anillo
+        for (int round = 0; round < 10; round++) {
+            int first = next;
+            for (int i = 0; i < capacity; i++) {
+                assertTrue(buffer.offer(next++));
+            }
+            assertFalse(buffer.offer(-1));
+            out.clear();
+            assertEquals(2, buffer.drainTo(out, 2));
+            assertEquals(List.of(first, first + 1), out);
+            assertTrue(buffer.offer(next++));
+            out.clear();
+            assertEquals(capacity - 1, buffer.drainTo(out, capacity));
+            assertEquals(first + 2, out.get(0));
+            assertEquals(next - 1, out.get(out.size() - 1));
+        }
+    }
+
+    @Test
+    void concurrentProducersLoseNothing() throws Exception {
+        int producers = 4;
+        int perProducer = 200_000;
+        AuditRingBuffer<Long> buffer = new AuditRingBuffer<>(1024);
+        ExecutorService pool = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                long base = (long) p << 32;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perProducer; i++) {
+                        while (!buffer.offer(base + i)) {
+                            Thread.onSpinWait();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+
+            // Un único consumidor: cada productor debe salir en su orden y sin huecos ni duplicados
+            int[] expected = new int[producers];
+            List<Long> out = new ArrayList<>();
+            long total = (long) producers * perProducer;
+            long received = 0;
+            while (received < total) {
+                out.clear();
+                int n = buffer.drainTo(out, 256);
+                for (Long value : out) {
+                    int producer = (int) (value >>> 32);
+                    int seq = (int) (long) value;
+                    assertEquals(expected[producer], seq);
+                    expected[producer]++;
+                }
+                received += n;
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            assertEquals(0, buffer.size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
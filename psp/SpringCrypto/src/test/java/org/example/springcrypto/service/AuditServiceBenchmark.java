@@ -0,0 +1,67 @@
+package org.example.springcrypto.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Coste de AuditService.record() en el hilo de la petición
+ *
+ * No corre con un mvn test normal:
+ * <pre>
+ * mvn test -Dtest=AuditServiceBenchmark -Dbenchmark=true
+ * </pre>
+ *
+ * El servicio arranca de verdad (start()) con el destino de fichero, así que
+ * el hilo escritor vacía la cola a la vez que se mide, como en producción. Se
+ * mide por ráfagas que caben en la cola y entre ráfagas se espera a que el
+ * escritor la vacíe (sin medir): si no, se estaría midiendo el descarte por
+ * cola llena, que es más barato que encolar.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class AuditServiceBenchmark {
+
+    private static final int CALENTAMIENTO = 200_000;
+    private static final int MUESTRAS = 1_000_000;
+    private static final int RAFAGA = 10_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recordLatency() throws Exception {
+        AuditService service = new AuditService(null, 65_536, AuditService.OverflowPolicy.DROP,
+            5, 1000, 200, Set.of("file"), dir.resolve("audit.log").toString());
+        service.start();
+        try {
+            long[] calentamiento = new long[CALENTAMIENTO];
+            medir(service, calentamiento);
+
+            long[] nanos = new long[MUESTRAS];
+            medir(service, nanos);
+            Arrays.sort(nanos);
+            System.out.printf("AuditService.record: p50=%d ns, p99=%d ns, p99.9=%d ns, descartados=%d%n",
+                nanos[MUESTRAS / 2], nanos[(int) (MUESTRAS * 0.99)], nanos[(int) (MUESTRAS * 0.999)],
+                service.getDroppedCount());
+        } finally {
+            service.stop();
+        }
+    }
+
+    private static void medir(AuditService service, long[] nanos) throws InterruptedException {
+        for (int i = 0; i < nanos.length; i++) {
+            if (i % RAFAGA == 0) {
+                while (service.getPendingCount() > 0) {
+                    Thread.sleep(1);
+                }
+            }
+            long t0 = System.nanoTime();
+            service.record(AuditService.AuditAction.GET_SECRET, 1L, (long) i, null, true);
+            nanos[i] = System.nanoTime() - t0;
+        }
+    }
+}
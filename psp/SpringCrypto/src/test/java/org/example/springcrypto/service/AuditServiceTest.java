@@ -0,0 +1,90 @@
+package org.example.springcrypto.service;
+
+import org.example.springcrypto.entity.AuditLogEntry;
+import org.example.springcrypto.repository.AuditLogRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cuentas por destino: un fallo de la tabla no resta nada al fichero
+ */
+class AuditServiceTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void failingSinkDoesNotCountAsDroppedInTheOthers() throws Exception {
+        // saveAll falla la primera vez y después guarda
+        AtomicInteger llamadas = new AtomicInteger();
+        List<AuditLogEntry> guardadas = new ArrayList<>();
+        AuditLogRepository repository = (AuditLogRepository) Proxy.newProxyInstance(
+            AuditLogRepository.class.getClassLoader(), new Class<?>[]{AuditLogRepository.class},
+            (proxy, method, args) -> {
+                if (!method.getName().equals("saveAll")) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                if (llamadas.getAndIncrement() == 0) {
+                    throw new IllegalStateException("base de datos caída");
+                }
+                for (Object entry : (Iterable<?>) args[0]) {
+                    guardadas.add((AuditLogEntry) entry);
+                }
+                return args[0];
+            });
+        Path fichero = dir.resolve("audit.log");
+        AuditService service = new AuditService(repository, 1024, AuditService.OverflowPolicy.DROP,
+            5, 1000, 10, Set.of("file", "jpa"), fichero.toString());
+        service.start();
+
+        for (long i = 0; i < 3; i++) {
+            service.record(AuditService.AuditAction.GET_SECRET, 1L, i, null, true);
+        }
+        esperar(() -> service.getFailedCount("jpa") == 3 && service.getWrittenCount("file") == 3);
+
+        for (long i = 3; i < 5; i++) {
+            service.record(AuditService.AuditAction.GET_SECRET, 1L, i, null, true);
+        }
+        service.stop();
+
+        // Fichero: los 5 eventos y ningún aviso de pérdida
+        List<String> lineas = Files.readAllLines(fichero);
+        assertEquals(5, lineas.size());
+        assertTrue(lineas.stream().noneMatch(l -> l.contains("AUDIT_EVENTS_DROPPED")));
+        assertEquals(5L, service.getWrittenCount("file"));
+        assertEquals(0L, service.getFailedCount("file"));
+        assertEquals(0L, service.getDroppedCount());
+
+        // Tabla: los 2 últimos y (en ese lote o en uno anterior) el aviso de los 3 perdidos
+        assertEquals(2L, service.getWrittenCount("jpa"));
+        assertEquals(3L, service.getFailedCount("jpa"));
+        assertEquals(3, guardadas.size());
+        List<AuditLogEntry> avisos = guardadas.stream()
+            .filter(e -> e.getAction().equals("AUDIT_EVENTS_DROPPED"))
+            .toList();
+        assertEquals(1, avisos.size());
+        assertEquals(3L, avisos.get(0).getDroppedCount());
+    }
+
+    private static void esperar(java.util.function.BooleanSupplier condicion) throws InterruptedException {
+        long hasta = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condicion.getAsBoolean()) {
+            if (System.nanoTime() > hasta) {
+                throw new AssertionError("el escritor de auditoría no avanzó");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.example.springcrypto.service;
+
+import org.example.springcrypto.entity.UserPublicKey;
+import org.example.springcrypto.repository.UserPublicKeyRepository;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Caché de claves públicas: invalidaciones durante una carga y memoria acotada
+ */
+class PublicKeyDirectoryTest {
+
+    private final AtomicInteger consultas = new AtomicInteger();
+    private Consumer<Long> durante = userId -> { };
+
+    private final UserPublicKeyRepository repository = (UserPublicKeyRepository) Proxy.newProxyInstance(
+        UserPublicKeyRepository.class.getClassLoader(), new Class<?>[]{UserPublicKeyRepository.class},
+        (proxy, method, args) -> switch (method.getName()) {
+            case "findByUserId" -> {
+                consultas.incrementAndGet();
+                durante.accept((Long) args[0]);
+                yield Optional.of(clave((Long) args[0]));
+            }
+            case "findByUserIdIn" -> {
+                consultas.incrementAndGet();
+                yield ((Collection<?>) args[0]).stream().map(id -> clave((Long) id)).toList();
+            }
+            default -> throw new UnsupportedOperationException(method.getName());
+        });
+
+    @Test
+    void invalidationDuringLoadIsNotCached() {
+        PublicKeyDirectory directory = new PublicKeyDirectory(repository, 100);
+        // Otro hilo registra una clave nueva mientras esta lectura consulta la base de datos
+        durante = directory::invalidate;
+
+        directory.find(1L);
+        durante = userId -> { };
+        directory.find(1L);
+        directory.find(1L);
+
+        // La primera carga no se cacheó; la segunda sí
+        assertEquals(2, consultas.get());
+        assertEquals(0, directory.pendingLoads());
+    }
+
+    @Test
+    void invalidationsDoNotAccumulate() {
+        PublicKeyDirectory directory = new PublicKeyDirectory(repository, 10);
+        for (long userId = 0; userId < 10_000; userId++) {
+            directory.find(userId);
+            directory.invalidate(userId);
+        }
+        directory.findAll(List.of(1L, 2L, 3L));
+
+        assertEquals(0, directory.pendingLoads());
+    }
+
+    private static UserPublicKey clave(Long userId) {
+        UserPublicKey key = new UserPublicKey();
+        key.setUserId(userId);
+        key.setPublicKey(new byte[]{1, 2, 3});
+        key.setAlgorithm("EC");
+        key.setKeySize(256);
+        return key;
+    }
+}
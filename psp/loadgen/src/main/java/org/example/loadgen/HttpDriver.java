@@ -0,0 +1,67 @@
+package org.example.loadgen;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Cliente HTTP compartido por todas las iteraciones
+ *
+ * Cada iteración del escenario corre en su propio hilo virtual y hace llamadas
+ * bloqueantes con send(): el hilo virtual se desmonta mientras espera la
+ * respuesta, así que miles de iteraciones en vuelo no necesitan miles de
+ * hilos de plataforma. El propio HttpClient también usa hilos virtuales.
+ */
+public class HttpDriver implements AutoCloseable {
+
+    private final String baseUrl;
+    private final Duration requestTimeout;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpClient client;
+
+    public HttpDriver(String baseUrl, Duration requestTimeout) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.requestTimeout = requestTimeout;
+        this.client = HttpClient.newBuilder()
+            .executor(executor)
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    }
+
+    public String baseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * Envía una petición y devuelve la respuesta como texto
+     *
+     * @param headers pares nombre, valor
+     */
+    public HttpResponse<String> send(String method, String path, String jsonBody, String... headers)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .timeout(requestTimeout);
+        for (int i = 0; i + 1 < headers.length; i += 2) {
+            builder.header(headers[i], headers[i + 1]);
+        }
+        if (jsonBody != null) {
+            builder.header("Content-Type", "application/json");
+            builder.method(method, HttpRequest.BodyPublishers.ofString(jsonBody));
+        } else {
+            builder.method(method, HttpRequest.BodyPublishers.noBody());
+        }
+        return client.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Override
+    public void close() {
+        client.close();
+        executor.shutdownNow();
+    }
+}
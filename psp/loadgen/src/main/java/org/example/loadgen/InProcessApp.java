@@ -0,0 +1,124 @@
+package org.example.loadgen;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarFile;
+
+/**
+ * Arranca una aplicación Spring Boot de psp dentro de este mismo proceso
+ *
+ * Carga el jar ejecutable (mvn package) en un class loader propio y llama a su
+ * Main-Class (el JarLauncher de Spring Boot) en un hilo aparte, con un puerto
+ * libre. Así no hace falta arrancar la aplicación a mano ni dejar procesos
+ * sueltos: al terminar la carga se para la JVM y con ella la aplicación.
+ *
+ * El JDK que ejecuta el generador debe ser el mismo que el de las aplicaciones
+ * (Java 25) para poder cargar sus clases.
+ */
+public class InProcessApp {
+
+    private final Path jar;
+    private final int port;
+    private URLClassLoader classLoader;
+
+    public InProcessApp(Path jar) throws IOException {
+        if (!Files.isRegularFile(jar)) {
+            throw new IllegalArgumentException("No existe el jar " + jar + " (¿falta mvn package en la aplicación?)");
+        }
+        this.jar = jar;
+        this.port = freePort();
+    }
+
+    public String baseUrl() {
+        return "http://localhost:" + port;
+    }
+
+    /**
+     * Busca el jar ejecutable en target/ (descarta *-plain.jar y *.original)
+     */
+    public static Path findJar(Path moduleDir) throws IOException {
+        Path target = moduleDir.resolve("target");
+        if (!Files.isDirectory(target)) {
+            throw new IllegalArgumentException("No existe " + target + " (ejecuta mvn package en " + moduleDir + ")");
+        }
+        try (var files = Files.list(target)) {
+            return files
+                .filter(p -> p.getFileName().toString().endsWith(".jar"))
+                .filter(p -> !p.getFileName().toString().endsWith("-plain.jar"))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("No hay ningún jar en " + target));
+        }
+    }
+
+    /**
+     * Arranca la aplicación y espera hasta que el puerto acepta conexiones
+     */
+    public void start(Duration timeout, List<String> extraArgs) throws Exception {
+        String mainClass;
+        try (JarFile jarFile = new JarFile(jar.toFile())) {
+            mainClass = jarFile.getManifest().getMainAttributes().getValue("Main-Class");
+        }
+        if (mainClass == null) {
+            throw new IllegalArgumentException("El jar " + jar + " no tiene Main-Class");
+        }
+
+        classLoader = new URLClassLoader(new URL[]{jar.toUri().toURL()}, ClassLoader.getPlatformClassLoader());
+        Method main = classLoader.loadClass(mainClass).getMethod("main", String[].class);
+
+        List<String> args = new ArrayList<>(List.of(
+            "--server.port=" + port,
+            "--spring.main.banner-mode=off",
+            "--logging.level.root=WARN",
+            "--spring.jpa.show-sql=false"
+        ));
+        args.addAll(extraArgs);
+
+        Thread thread = new Thread(() -> {
+            try {
+                main.invoke(null, (Object) args.toArray(String[]::new));
+            } catch (Exception e) {
+                System.err.println("La aplicación no arrancó: " + e);
+            }
+        }, "app-" + jar.getFileName());
+        thread.setContextClassLoader(classLoader);
+        thread.setDaemon(true);
+        thread.start();
+
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!thread.isAlive() && !portOpen()) {
+                throw new IllegalStateException("La aplicación terminó sin abrir el puerto " + port);
+            }
+            if (portOpen()) {
+                return;
+            }
+            Thread.sleep(200);
+        }
+        throw new IllegalStateException("La aplicación no abrió el puerto " + port + " en " + timeout.toSeconds() + " s");
+    }
+
+    private boolean portOpen() {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("localhost", port), 200);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.example.loadgen;
+
+/**
+ * JSON mínimo para el generador de carga (sin dependencias)
+ *
+ * Solo lo necesario para montar cuerpos y sacar un campo (id, token...) de
+ * una respuesta; no es un parser completo.
+ */
+public final class Json {
+
+    private Json() {
+    }
+
+    /**
+     * Cadena JSON entre comillas, con los caracteres especiales escapados
+     */
+    public static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Valor del primer campo con ese nombre (texto, número o booleano), o null
+     */
+    public static String field(String json, String name) {
+        if (json == null) {
+            return null;
+        }
+        String key = "\"" + name + "\"";
+        int pos = json.indexOf(key);
+        while (pos >= 0) {
+            int i = skipSpaces(json, pos + key.length());
+            if (i < json.length() && json.charAt(i) == ':') {
+                return value(json, skipSpaces(json, i + 1));
+            }
+            pos = json.indexOf(key, pos + 1);
+        }
+        return null;
+    }
+
+    private static String value(String json, int i) {
+        if (i >= json.length()) {
+            return null;
+        }
+        if (json.charAt(i) == '"') {
+            StringBuilder sb = new StringBuilder();
+            for (int j = i + 1; j < json.length(); j++) {
+                char c = json.charAt(j);
+                if (c == '\\' && j + 1 < json.length()) {
+                    char next = json.charAt(++j);
+                    switch (next) {
+                        case 'n' -> sb.append('\n');
+                        case 't' -> sb.append('\t');
+                        case 'r' -> sb.append('\r');
+                        case 'u' -> {
+                            sb.append((char) Integer.parseInt(json.substring(j + 1, j + 5), 16));
+                            j += 4;
+                        }
+                        default -> sb.append(next);
+                    }
+                } else if (c == '"') {
+                    return sb.toString();
+                } else {
+                    sb.append(c);
+                }
+            }
+            return null;
+        }
+        int end = i;
+        while (end < json.length() && ",}] \n\r\t".indexOf(json.charAt(end)) < 0) {
+            end++;
+        }
+        String raw = json.substring(i, end);
+        return raw.equals("null") ? null : raw;
+    }
+
+    private static int skipSpaces(String json, int i) {
+        while (i < json.length() && Character.isWhitespace(json.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+}
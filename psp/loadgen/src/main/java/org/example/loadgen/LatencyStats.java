@@ -0,0 +1,70 @@
+package org.example.loadgen;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencias por endpoint en histogramas HdrHistogram (microsegundos)
+ *
+ * ConcurrentHistogram admite recordValue desde muchos hilos virtuales a la vez
+ * sin bloqueos. Se guarda hasta 1 hora con 3 cifras significativas.
+ */
+public class LatencyStats {
+
+    private static final long HIGHEST_MICROS = TimeUnit.HOURS.toMicros(1);
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * Histograma y contadores de un endpoint ("POST /api/vault/secrets")
+     */
+    public static class Endpoint {
+        private final String name;
+        private final Histogram histogram = new ConcurrentHistogram(HIGHEST_MICROS, SIGNIFICANT_DIGITS);
+        private final LongAdder errors = new LongAdder();
+
+        private Endpoint(String name) {
+            this.name = name;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public Histogram histogram() {
+            return histogram;
+        }
+
+        public long errors() {
+            return errors.sum();
+        }
+    }
+
+    /**
+     * Registra una petición
+     *
+     * @param latencyNanos desde el instante en que DEBÍA enviarse (no desde que se envió)
+     * @param ok false si falló la conexión o el código no es el esperado
+     */
+    public void record(String endpoint, long latencyNanos, boolean ok) {
+        Endpoint stats = endpoints.computeIfAbsent(endpoint, Endpoint::new);
+        stats.histogram.recordValue(Math.min(Math.max(latencyNanos / 1000, 0), HIGHEST_MICROS));
+        if (!ok) {
+            stats.errors.increment();
+        }
+    }
+
+    public List<Endpoint> endpoints() {
+        List<Endpoint> list = new ArrayList<>(endpoints.values());
+        list.sort((a, b) -> a.name.compareTo(b.name));
+        return list;
+    }
+}
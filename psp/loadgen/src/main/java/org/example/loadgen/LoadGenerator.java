@@ -0,0 +1,111 @@
+package org.example.loadgen;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generador de carga local para las aplicaciones Spring Boot de psp
+ *
+ * Uso (desde psp/loadgen, con la aplicación ya empaquetada con mvn package):
+ * <pre>
+ * mvn -q compile exec:java -Dexec.args="--app SpringCrypto --rate 20 --duration 60"
+ * mvn -q compile exec:java -Dexec.args="--app spring --rate 200 --duration 30"
+ * mvn -q compile exec:java -Dexec.args="--app springSecurity --url http://localhost:8080"
+ * </pre>
+ *
+ * Opciones:
+ * --app        SpringCrypto | spring | springSecurity
+ * --jar        jar ejecutable de la aplicación (por defecto ../&lt;app&gt;/target/*.jar)
+ * --url        usar una aplicación ya arrancada en vez de arrancarla aquí
+ * --scenario   escenario (por defecto el de la aplicación)
+ * --rate       iteraciones del escenario por segundo (por defecto 10)
+ * --duration   segundos de medición (por defecto 30)
+ * --warmup     segundos de calentamiento, no se informan (por defecto 10)
+ * --out        carpeta del informe (por defecto target/loadgen)
+ * --max-in-flight  iteraciones simultáneas como máximo (por defecto 10000)
+ * --users, --secrets, --shares, --reads  parámetros del escenario
+ */
+public class LoadGenerator {
+
+    private static final Map<String, String> MODULE_DIRS = Map.of(
+        "SpringCrypto", "../SpringCrypto",
+        "spring", "../spring",
+        "springSecurity", "../springSecutiry/springSecurity"
+    );
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        String app = options.getOrDefault("app", "SpringCrypto");
+        if (!MODULE_DIRS.containsKey(app)) {
+            System.err.println("--app debe ser uno de " + MODULE_DIRS.keySet());
+            System.exit(2);
+        }
+
+        double rate = Double.parseDouble(options.getOrDefault("rate", "10"));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "30")));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "10")));
+        int maxInFlight = Integer.parseInt(options.getOrDefault("max-in-flight", "10000"));
+        Path out = Path.of(options.getOrDefault("out", "target/loadgen"));
+        Scenarios.Options scenarioOptions = new Scenarios.Options(
+            Integer.parseInt(options.getOrDefault("users", "50")),
+            Integer.parseInt(options.getOrDefault("secrets", "100")),
+            Integer.parseInt(options.getOrDefault("shares", "10")),
+            Integer.parseInt(options.getOrDefault("reads", "10")));
+        Scenario scenario = Scenarios.create(app, options.get("scenario"), scenarioOptions);
+
+        String baseUrl = options.get("url");
+        if (baseUrl == null) {
+            Path jar = options.containsKey("jar")
+                ? Path.of(options.get("jar"))
+                : InProcessApp.findJar(Path.of(MODULE_DIRS.get(app)));
+            InProcessApp inProcess = new InProcessApp(jar);
+            System.out.println("Arrancando " + jar + " en " + inProcess.baseUrl() + "...");
+            inProcess.start(Duration.ofMinutes(2), List.of());
+            baseUrl = inProcess.baseUrl();
+        }
+
+        try (HttpDriver http = new HttpDriver(baseUrl, Duration.ofSeconds(30))) {
+            OpenLoopRunner runner = new OpenLoopRunner(http, scenario, maxInFlight);
+            runner.setup();
+
+            ReportWriter report = new ReportWriter();
+            if (!warmup.isZero()) {
+                System.out.printf("Calentamiento: %d s a %.1f/s%n", warmup.toSeconds(), rate);
+                OpenLoopRunner.Result warm = runner.run(rate, warmup, 0);
+                System.out.print(report.summary(warm));
+            }
+
+            System.out.printf("Medición: %s (%s), %d s a %.1f/s%n",
+                scenario.name(), scenario.description(), duration.toSeconds(), rate);
+            long firstIteration = (long) Math.ceil(rate * warmup.toSeconds());
+            OpenLoopRunner.Result result = runner.run(rate, duration, firstIteration);
+            System.out.print(report.summary(result));
+
+            report.write(out, new ReportWriter.RunInfo(app, baseUrl, scenario.name(), scenario.description()), result);
+            System.out.println("Informe: " + out.resolve("report.json") + " y " + out.resolve("report.html"));
+        }
+        // La aplicación arrancada en este proceso tiene hilos no daemon (Tomcat)
+        System.exit(0);
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        List<String> unknown = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.startsWith("--") && i + 1 < args.length) {
+                options.put(arg.substring(2), args[++i]);
+            } else {
+                unknown.add(arg);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            throw new IllegalArgumentException("Argumentos no reconocidos: " + unknown);
+        }
+        return options;
+    }
+}
@@ -0,0 +1,115 @@
+package org.example.loadgen;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ejecuta un escenario a tasa de llegada constante (modelo de carga abierto)
+ *
+ * La iteración i se programa en start + i / rate, sin esperar a que terminen
+ * las anteriores: si el servidor se ralentiza siguen llegando iteraciones
+ * nuevas, como pasaría con usuarios reales. Un generador de bucle cerrado
+ * (N hilos que envían, esperan y vuelven a enviar) baja la tasa justo cuando
+ * el servidor va lento y esconde esa lentitud en los percentiles altos
+ * (omisión coordinada).
+ *
+ * Cada iteración corre en un hilo virtual propio. maxInFlight solo es una
+ * protección para no agotar memoria si el servidor deja de responder: las
+ * iteraciones que no caben se cuentan como descartadas (Result.dropped) y no
+ * entran en los histogramas.
+ */
+public class OpenLoopRunner {
+
+    public static final String SCENARIO_PREFIX = "ESCENARIO ";
+
+    private final HttpDriver http;
+    private final Scenario scenario;
+    private final int maxInFlight;
+
+    public OpenLoopRunner(HttpDriver http, Scenario scenario, int maxInFlight) {
+        this.http = http;
+        this.scenario = scenario;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Resultado de una fase de carga
+     */
+    public record Result(LatencyStats stats, long scheduled, long completed, long failed, long dropped,
+                         double rate, Duration elapsed) {
+    }
+
+    /**
+     * Pasos de preparación del escenario (una vez, sin medir)
+     */
+    public void setup() throws Exception {
+        scenario.runSetup(new ScenarioContext(http, new LatencyStats(), -1, System.nanoTime()));
+    }
+
+    /**
+     * Lanza iteraciones a ratePerSecond durante duration y espera a que terminen
+     *
+     * @param firstIteration número de la primera iteración (para no repetir
+     *                       usuarios/ids entre el calentamiento y la medición)
+     */
+    public Result run(double ratePerSecond, Duration duration, long firstIteration) throws InterruptedException {
+        if (ratePerSecond <= 0) {
+            throw new IllegalArgumentException("La tasa debe ser mayor que 0");
+        }
+        LatencyStats stats = new LatencyStats();
+        LongAdder completed = new LongAdder();
+        LongAdder failed = new LongAdder();
+        long dropped = 0;
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        String scenarioEndpoint = SCENARIO_PREFIX + scenario.name();
+
+        long total = (long) Math.floor(ratePerSecond * duration.toNanos() / 1e9);
+        double intervalNanos = 1e9 / ratePerSecond;
+        long start = System.nanoTime();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; i < total; i++) {
+                long intended = start + (long) (i * intervalNanos);
+                long wait;
+                while ((wait = intended - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                if (!inFlight.tryAcquire()) {
+                    // Solo se cuenta: no se ha enviado nada, así que no hay latencia
+                    // que meter en el histograma (saldría ~0 y bajaría los percentiles)
+                    dropped++;
+                    continue;
+                }
+                long iteration = firstIteration + i;
+                executor.execute(() -> {
+                    ScenarioContext ctx = new ScenarioContext(http, stats, iteration, intended);
+                    boolean ok = false;
+                    try {
+                        scenario.runIteration(ctx);
+                        ok = true;
+                    } catch (ScenarioContext.ScenarioAbort e) {
+                        // ya registrado en el endpoint que falló
+                    } catch (Exception e) {
+                        System.err.println("Iteración " + iteration + ": " + e);
+                    } finally {
+                        stats.record(scenarioEndpoint, System.nanoTime() - intended, ok);
+                        (ok ? completed : failed).increment();
+                        inFlight.release();
+                    }
+                });
+            }
+            executor.shutdown();
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                System.err.println("Quedan iteraciones en vuelo tras 1 minuto; se cancelan");
+                executor.shutdownNow();
+            }
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        return new Result(stats, total, completed.sum(), failed.sum(), dropped, ratePerSecond, elapsed);
+    }
+}
@@ -0,0 +1,197 @@
+package org.example.loadgen;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Escribe el informe de una ejecución en JSON (report.json) y HTML (report.html)
+ *
+ * Las latencias se dan en milisegundos. El HTML incluye la curva de percentiles
+ * de cada endpoint en SVG (sin JavaScript ni dependencias externas).
+ */
+public class ReportWriter {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+    private static final double[] CURVE = {0, 50, 75, 90, 95, 99, 99.5, 99.9, 99.95, 99.99, 99.999, 100};
+
+    /**
+     * Datos generales de la ejecución
+     */
+    public record RunInfo(String app, String baseUrl, String scenario, String description) {
+    }
+
+    public void write(Path dir, RunInfo info, OpenLoopRunner.Result result) throws IOException {
+        Files.createDirectories(dir);
+        Files.writeString(dir.resolve("report.json"), json(info, result), StandardCharsets.UTF_8);
+        Files.writeString(dir.resolve("report.html"), html(info, result), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Resumen por consola (una línea por endpoint)
+     */
+    public String summary(OpenLoopRunner.Result result) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%-55s %8s %6s %9s %9s %9s %9s %9s%n",
+            "endpoint", "n", "err", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (LatencyStats.Endpoint e : result.stats().endpoints()) {
+            Histogram h = e.histogram();
+            sb.append(String.format(Locale.ROOT, "%-55s %8d %6d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                e.name(), h.getTotalCount(), e.errors(),
+                ms(h.getValueAtPercentile(50)), ms(h.getValueAtPercentile(90)),
+                ms(h.getValueAtPercentile(99)), ms(h.getValueAtPercentile(99.9)), ms(h.getMaxValue())));
+        }
+        sb.append(String.format(Locale.ROOT,
+            "Iteraciones: %d programadas, %d correctas, %d fallidas, %d descartadas en %.1f s (objetivo %.1f/s)%n",
+            result.scheduled(), result.completed(), result.failed(), result.dropped(),
+            seconds(result), result.rate()));
+        return sb.toString();
+    }
+
+    private String json(RunInfo info, OpenLoopRunner.Result result) {
+        StringBuilder sb = new StringBuilder(4096);
+        sb.append("{\n");
+        sb.append("  \"app\": ").append(Json.quote(info.app())).append(",\n");
+        sb.append("  \"baseUrl\": ").append(Json.quote(info.baseUrl())).append(",\n");
+        sb.append("  \"scenario\": ").append(Json.quote(info.scenario())).append(",\n");
+        sb.append("  \"description\": ").append(Json.quote(info.description())).append(",\n");
+        sb.append("  \"targetRate\": ").append(num(result.rate())).append(",\n");
+        sb.append("  \"durationSeconds\": ").append(num(seconds(result))).append(",\n");
+        sb.append("  \"iterations\": {\"scheduled\": ").append(result.scheduled())
+            .append(", \"completed\": ").append(result.completed())
+            .append(", \"failed\": ").append(result.failed())
+            .append(", \"dropped\": ").append(result.dropped()).append("},\n");
+        sb.append("  \"endpoints\": [");
+        List<LatencyStats.Endpoint> endpoints = result.stats().endpoints();
+        for (int i = 0; i < endpoints.size(); i++) {
+            LatencyStats.Endpoint e = endpoints.get(i);
+            Histogram h = e.histogram();
+            sb.append(i == 0 ? "\n" : ",\n");
+            sb.append("    {\"endpoint\": ").append(Json.quote(e.name()))
+                .append(", \"count\": ").append(h.getTotalCount())
+                .append(", \"errors\": ").append(e.errors())
+                .append(", \"throughput\": ").append(num(h.getTotalCount() / seconds(result)))
+                .append(", \"latencyMs\": {\"mean\": ").append(num(h.getMean() / 1000.0));
+            for (double p : PERCENTILES) {
+                sb.append(", \"p").append(label(p)).append("\": ").append(num(ms(h.getValueAtPercentile(p))));
+            }
+            sb.append(", \"max\": ").append(num(ms(h.getMaxValue()))).append("}}");
+        }
+        sb.append("\n  ]\n}\n");
+        return sb.toString();
+    }
+
+    private String html(RunInfo info, OpenLoopRunner.Result result) {
+        StringBuilder sb = new StringBuilder(16384);
+        sb.append("<!DOCTYPE html>\n<html lang=\"es\">\n<head>\n<meta charset=\"utf-8\">\n")
+            .append("<title>Carga ").append(escape(info.app())).append(" - ").append(escape(info.scenario()))
+            .append("</title>\n<style>\n")
+            .append("body{font-family:sans-serif;margin:2em}table{border-collapse:collapse}")
+            .append("th,td{border:1px solid #ccc;padding:4px 8px;text-align:right}")
+            .append("th:first-child,td:first-child{text-align:left}")
+            .append("svg{border:1px solid #ccc;margin:1em 0}\n</style>\n</head>\n<body>\n");
+        sb.append("<h1>").append(escape(info.app())).append(" &middot; ").append(escape(info.scenario())).append("</h1>\n");
+        sb.append("<p>").append(escape(info.description())).append("</p>\n");
+        sb.append(String.format(Locale.ROOT,
+            "<p>%s &middot; objetivo %.1f iteraciones/s &middot; %.1f s &middot; %d programadas, %d correctas, "
+                + "%d fallidas, %d descartadas</p>\n",
+            escape(info.baseUrl()), result.rate(), seconds(result),
+            result.scheduled(), result.completed(), result.failed(), result.dropped()));
+        sb.append("<p>Latencia medida desde el instante en que la petición debía enviarse (carga abierta).</p>\n");
+
+        sb.append("<table>\n<tr><th>Endpoint</th><th>n</th><th>errores</th><th>req/s</th><th>media ms</th>");
+        for (double p : PERCENTILES) {
+            sb.append("<th>p").append(label(p).replace('_', '.')).append(" ms</th>");
+        }
+        sb.append("<th>máx ms</th></tr>\n");
+        for (LatencyStats.Endpoint e : result.stats().endpoints()) {
+            Histogram h = e.histogram();
+            sb.append("<tr><td>").append(escape(e.name())).append("</td><td>").append(h.getTotalCount())
+                .append("</td><td>").append(e.errors())
+                .append("</td><td>").append(num(h.getTotalCount() / seconds(result)))
+                .append("</td><td>").append(num(h.getMean() / 1000.0)).append("</td>");
+            for (double p : PERCENTILES) {
+                sb.append("<td>").append(num(ms(h.getValueAtPercentile(p)))).append("</td>");
+            }
+            sb.append("<td>").append(num(ms(h.getMaxValue()))).append("</td></tr>\n");
+        }
+        sb.append("</table>\n");
+
+        for (LatencyStats.Endpoint e : result.stats().endpoints()) {
+            sb.append("<h2>").append(escape(e.name())).append("</h2>\n").append(svg(e.histogram()));
+        }
+        sb.append("</body>\n</html>\n");
+        return sb.toString();
+    }
+
+    /**
+     * Curva de percentiles: eje X logarítmico en 1/(1-p) como en HdrHistogram
+     */
+    private String svg(Histogram h) {
+        int width = 640;
+        int height = 240;
+        int margin = 40;
+        double maxX = Math.log10(1 / (1 - CURVE[CURVE.length - 2] / 100.0));
+        double maxMs = Math.max(ms(h.getMaxValue()), 0.001);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("<svg width=\"").append(width).append("\" height=\"").append(height)
+            .append("\" xmlns=\"http://www.w3.org/2000/svg\">\n");
+        sb.append("<polyline fill=\"none\" stroke=\"#1f77b4\" stroke-width=\"2\" points=\"");
+        for (double p : CURVE) {
+            double xValue = p >= 100 ? maxX : Math.log10(1 / (1 - p / 100.0));
+            double x = margin + (width - 2 * margin) * xValue / maxX;
+            double y = height - margin - (height - 2 * margin) * ms(h.getValueAtPercentile(p)) / maxMs;
+            sb.append(num(x)).append(',').append(num(y)).append(' ');
+        }
+        sb.append("\"/>\n");
+        for (double p : CURVE) {
+            if (p == 0 || p >= 100) {
+                continue;
+            }
+            double x = margin + (width - 2 * margin) * Math.log10(1 / (1 - p / 100.0)) / maxX;
+            sb.append("<text x=\"").append(num(x)).append("\" y=\"").append(height - margin / 2)
+                .append("\" font-size=\"10\" text-anchor=\"middle\">").append(label(p).replace('_', '.'))
+                .append("</text>\n");
+        }
+        sb.append("<text x=\"4\" y=\"").append(margin - 8).append("\" font-size=\"10\">")
+            .append(num(maxMs)).append(" ms</text>\n");
+        sb.append("<text x=\"4\" y=\"").append(height - margin).append("\" font-size=\"10\">0</text>\n");
+        sb.append("</svg>\n");
+        return sb.toString();
+    }
+
+    private static double ms(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static double seconds(OpenLoopRunner.Result result) {
+        return Math.max(result.elapsed().toNanos() / 1e9, 1e-9);
+    }
+
+    private static String num(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    /**
+     * 99.9 -&gt; "99_9" (nombre de campo JSON válido y legible)
+     */
+    private static String label(double percentile) {
+        String text = percentile == Math.rint(percentile)
+            ? String.valueOf((long) percentile)
+            : String.valueOf(percentile);
+        return text.replace('.', '_');
+    }
+
+    private static String escape(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
@@ -0,0 +1,94 @@
+package org.example.loadgen;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DSL de escenarios: una lista de pasos que se ejecuta en cada iteración
+ *
+ * <pre>
+ * Scenario.named("vault")
+ *     .setup(ctx -&gt; ...)                                   // una vez, sin medir
+ *     .step(ctx -&gt; ctx.post("/api/sharing/public-key", body))
+ *     .repeat(100, (ctx, i) -&gt; ctx.post("/api/vault/secrets", secreto(i)))
+ *     .repeat(10, (ctx, i) -&gt; ctx.post("/api/sharing/share", compartir(i)))
+ *     .step(ctx -&gt; ctx.get("/api/vault/secrets"));
+ * </pre>
+ *
+ * Las latencias se agrupan por petición ("POST /api/vault/secrets"), no por paso.
+ */
+public class Scenario {
+
+    @FunctionalInterface
+    public interface Step {
+        void run(ScenarioContext ctx) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface IndexedStep {
+        void run(ScenarioContext ctx, int index) throws Exception;
+    }
+
+    private final String name;
+    private final String description;
+    private final List<Step> setup = new ArrayList<>();
+    private final List<Step> steps = new ArrayList<>();
+
+    private Scenario(String name, String description) {
+        this.name = name;
+        this.description = description;
+    }
+
+    public static Scenario named(String name) {
+        return new Scenario(name, "");
+    }
+
+    public static Scenario named(String name, String description) {
+        return new Scenario(name, description);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public String description() {
+        return description;
+    }
+
+    /**
+     * Paso de preparación: se ejecuta una sola vez antes de la carga y no se mide
+     */
+    public Scenario setup(Step step) {
+        setup.add(step);
+        return this;
+    }
+
+    public Scenario step(Step step) {
+        steps.add(step);
+        return this;
+    }
+
+    /**
+     * El mismo paso times veces seguidas (index = 0..times-1)
+     */
+    public Scenario repeat(int times, IndexedStep step) {
+        steps.add(ctx -> {
+            for (int i = 0; i < times; i++) {
+                step.run(ctx, i);
+            }
+        });
+        return this;
+    }
+
+    public void runSetup(ScenarioContext ctx) throws Exception {
+        for (Step step : setup) {
+            step.run(ctx);
+        }
+    }
+
+    public void runIteration(ScenarioContext ctx) throws Exception {
+        for (Step step : steps) {
+            step.run(ctx);
+        }
+    }
+}
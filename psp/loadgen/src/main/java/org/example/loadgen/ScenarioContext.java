@@ -0,0 +1,189 @@
+package org.example.loadgen;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estado de UNA iteración de un escenario (variables, cabeceras, cookies)
+ *
+ * Cómo se mide la latencia (evita la omisión coordinada):
+ * - La primera petición se mide desde el instante en que la iteración DEBÍA
+ *   empezar según la tasa fija, no desde que el hilo consiguió arrancar.
+ *   Si el servidor se atasca, el retraso acumulado aparece en los percentiles.
+ * - Las siguientes peticiones se miden desde que terminó la anterior, porque
+ *   dependen de ella (necesitan su id, su token...).
+ */
+public class ScenarioContext {
+
+    private final HttpDriver http;
+    private final LatencyStats stats;
+    private final long iteration;
+    private final Map<String, String> vars = new HashMap<>();
+    private final Map<String, String> cookies = new LinkedHashMap<>();
+    private final Map<String, String> headers = new LinkedHashMap<>();
+    private long intendedStart;
+
+    public ScenarioContext(HttpDriver http, LatencyStats stats, long iteration, long intendedStart) {
+        this.http = http;
+        this.stats = stats;
+        this.iteration = iteration;
+        this.intendedStart = intendedStart;
+    }
+
+    /**
+     * Número de iteración (0, 1, 2...): sirve para repartir usuarios, ids...
+     */
+    public long iteration() {
+        return iteration;
+    }
+
+    public String var(String name) {
+        return vars.get(name);
+    }
+
+    public void var(String name, Object value) {
+        vars.put(name, String.valueOf(value));
+    }
+
+    /**
+     * Cabecera que se envía en todas las peticiones siguientes de la iteración
+     */
+    public ScenarioContext header(String name, String value) {
+        headers.put(name, value);
+        return this;
+    }
+
+    public Response get(String pathTemplate, Object... pathVars) {
+        return request("GET", pathTemplate, null, pathVars);
+    }
+
+    public Response post(String pathTemplate, String jsonBody, Object... pathVars) {
+        return request("POST", pathTemplate, jsonBody, pathVars);
+    }
+
+    public Response put(String pathTemplate, String jsonBody, Object... pathVars) {
+        return request("PUT", pathTemplate, jsonBody, pathVars);
+    }
+
+    public Response delete(String pathTemplate, Object... pathVars) {
+        return request("DELETE", pathTemplate, null, pathVars);
+    }
+
+    /**
+     * Hace una petición y la registra como "MÉTODO plantilla"
+     *
+     * La plantilla agrupa las latencias: /rest/cosas/{id} es un único endpoint
+     * aunque cada iteración pida un id distinto.
+     *
+     * @throws ScenarioAbort si falla la conexión o el código es 4xx/5xx
+     *         (la iteración se cuenta como fallida y no sigue)
+     */
+    public Response request(String method, String pathTemplate, String jsonBody, Object... pathVars) {
+        String endpoint = method + " " + pathTemplate;
+        String path = expand(pathTemplate, pathVars);
+
+        long sendAt = System.nanoTime();
+        long from = Math.min(intendedStart, sendAt);
+        try {
+            HttpResponse<String> response = http.send(method, path, jsonBody, headerArray());
+            long end = System.nanoTime();
+            intendedStart = end;
+
+            boolean ok = response.statusCode() < 400;
+            stats.record(endpoint, end - from, ok);
+            storeCookies(response);
+            if (!ok) {
+                throw new ScenarioAbort(endpoint + " -> HTTP " + response.statusCode());
+            }
+            return new Response(response.statusCode(), response.body());
+        } catch (IOException e) {
+            long end = System.nanoTime();
+            intendedStart = end;
+            stats.record(endpoint, end - from, false);
+            throw new ScenarioAbort(endpoint + " -> " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ScenarioAbort(endpoint + " -> interrumpido");
+        }
+    }
+
+    private String[] headerArray() {
+        List<String> list = new ArrayList<>(headers.size() * 2 + 2);
+        headers.forEach((name, value) -> {
+            list.add(name);
+            list.add(value);
+        });
+        if (!cookies.isEmpty()) {
+            StringBuilder cookie = new StringBuilder();
+            cookies.forEach((name, value) -> {
+                if (!cookie.isEmpty()) {
+                    cookie.append("; ");
+                }
+                cookie.append(name).append('=').append(value);
+            });
+            list.add("Cookie");
+            list.add(cookie.toString());
+        }
+        return list.toArray(String[]::new);
+    }
+
+    /**
+     * Guarda las cookies (JSESSIONID...) para el resto de la iteración
+     */
+    private void storeCookies(HttpResponse<String> response) {
+        for (String setCookie : response.headers().allValues("Set-Cookie")) {
+            int end = setCookie.indexOf(';');
+            String pair = end >= 0 ? setCookie.substring(0, end) : setCookie;
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                cookies.put(pair.substring(0, eq).trim(), pair.substring(eq + 1).trim());
+            }
+        }
+    }
+
+    private static String expand(String template, Object... pathVars) {
+        if (pathVars.length == 0) {
+            return template;
+        }
+        StringBuilder sb = new StringBuilder(template.length() + 16);
+        int v = 0;
+        for (int i = 0; i < template.length(); i++) {
+            char c = template.charAt(i);
+            int close = c == '{' ? template.indexOf('}', i) : -1;
+            if (close > 0 && v < pathVars.length) {
+                sb.append(pathVars[v++]);
+                i = close;
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Respuesta ya leída
+     */
+    public record Response(int status, String body) {
+
+        /**
+         * Valor de un campo del JSON de la respuesta (el primero con ese nombre)
+         */
+        public String json(String field) {
+            return Json.field(body, field);
+        }
+    }
+
+    /**
+     * Corta la iteración actual (el runner la cuenta como fallida)
+     */
+    public static class ScenarioAbort extends RuntimeException {
+        public ScenarioAbort(String message) {
+            super(message, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.example.loadgen;
+
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Escenarios predefinidos para cada aplicación de psp
+ */
+public final class Scenarios {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final Base64.Encoder B64 = Base64.getEncoder();
+
+    private Scenarios() {
+    }
+
+    /**
+     * Escenarios disponibles por aplicación (el primero es el de por defecto)
+     */
+    public static final Map<String, Map<String, Function<Options, Scenario>>> BY_APP = Map.of(
+        "SpringCrypto", Map.of("vault", Scenarios::springCryptoVault),
+        "spring", Map.of("cosas", Scenarios::springCosas),
+        "springSecurity", Map.of("jwt", Scenarios::springSecurityJwt)
+    );
+
+    public static final Map<String, String> DEFAULT_SCENARIO = Map.of(
+        "SpringCrypto", "vault",
+        "spring", "cosas",
+        "springSecurity", "jwt"
+    );
+
+    /**
+     * Parámetros de los escenarios (usuarios, secretos por iteración...)
+     */
+    public record Options(int users, int secrets, int shares, int reads) {
+    }
+
+    public static Scenario create(String app, String name, Options options) {
+        Map<String, Function<Options, Scenario>> scenarios = BY_APP.get(app);
+        if (scenarios == null) {
+            throw new IllegalArgumentException("Aplicación desconocida: " + app + " (disponibles: " + BY_APP.keySet() + ")");
+        }
+        Function<Options, Scenario> factory = scenarios.get(name != null ? name : DEFAULT_SCENARIO.get(app));
+        if (factory == null) {
+            throw new IllegalArgumentException("Escenario desconocido: " + name + " (disponibles: " + scenarios.keySet() + ")");
+        }
+        return factory.apply(options);
+    }
+
+    /**
+     * SpringCrypto: registrar clave, guardar N secretos, compartir con M usuarios, listar
+     *
+     * En la preparación se registra una clave pública EC para cada usuario del
+     * grupo (los receptores necesitan clave para poder compartirles). Cada
+     * iteración actúa como un propietario distinto (X-User-Id rotando por el grupo).
+     *
+     * Antes de compartir se lee el shareVersion del secreto y cada /share lo
+     * envía como expectedVersion, como haría un cliente real; tras cada
+     * compartido correcto la versión sube en uno.
+     */
+    public static Scenario springCryptoVault(Options options) {
+        int users = Math.max(options.users(), options.shares() + 1);
+        String[] publicKeys = new String[users];
+
+        return Scenario.named("vault",
+                "registrar clave, guardar " + options.secrets() + " secretos, compartir con "
+                    + options.shares() + " usuarios, listar")
+            .setup(ctx -> {
+                KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+                generator.initialize(256);
+                for (int u = 0; u < users; u++) {
+                    publicKeys[u] = B64.encodeToString(generator.generateKeyPair().getPublic().getEncoded());
+                    ctx.header("X-User-Id", String.valueOf(u + 1));
+                    ctx.post("/api/sharing/public-key", publicKeyBody(publicKeys[u]));
+                }
+            })
+            .step(ctx -> {
+                int owner = (int) (ctx.iteration() % users);
+                ctx.var("owner", owner + 1);
+                ctx.header("X-User-Id", String.valueOf(owner + 1));
+                ctx.post("/api/sharing/public-key", publicKeyBody(publicKeys[owner]));
+            })
+            .repeat(options.secrets(), (ctx, i) -> {
+                String secretId = ctx.post("/api/vault/secrets", secretBody(i)).json("secretId");
+                if (i == 0) {
+                    ctx.var("secretId", secretId);
+                }
+            })
+            .repeat(options.shares(), (ctx, i) -> {
+                if (i == 0) {
+                    ctx.var("shareVersion", ctx.get("/api/vault/secrets/{id}", ctx.var("secretId")).json("shareVersion"));
+                }
+                long owner = Long.parseLong(ctx.var("owner"));
+                long receiver = (owner + i) % users + 1;
+                long version = Long.parseLong(ctx.var("shareVersion"));
+                ctx.post("/api/sharing/share", "{\"secretId\":" + ctx.var("secretId")
+                    + ",\"sharedWithUserId\":" + receiver
+                    + ",\"encryptedData\":" + Json.quote(randomBase64(64))
+                    + ",\"permission\":\"READ\",\"algorithm\":\"EC\""
+                    + ",\"expectedVersion\":" + version + "}");
+                // Si el /share falla la iteración se corta antes de llegar aquí
+                ctx.var("shareVersion", version + 1);
+            })
+            .step(ctx -> ctx.get("/api/vault/secrets"));
+    }
+
+    /**
+     * spring: login con sesión, listar cosas, filtrar por nombre, consultar la sesión
+     */
+    public static Scenario springCosas(Options options) {
+        return Scenario.named("cosas", "login, listar cosas, filtrar, consultar sesión")
+            .step(ctx -> ctx.post("/api/auth/login", "{\"username\":\"admin\",\"password\":\"admin123\"}"))
+            .repeat(options.reads(), (ctx, i) -> ctx.get("/rest/cosas"))
+            .repeat(options.reads(), (ctx, i) -> ctx.get("/rest/cosas/filtrar?nombre={nombre}", "a"))
+            .step(ctx -> ctx.get("/api/auth/session"));
+    }
+
+    /**
+     * springSecurity: login JWT y peticiones autenticadas con el token
+     */
+    public static Scenario springSecurityJwt(Options options) {
+        return Scenario.named("jwt", "login JWT, " + options.reads() + " peticiones privadas, una pública")
+            .step(ctx -> {
+                String token = ctx.post("/api/auth/login",
+                    "{\"username\":\"usuario\",\"password\":\"password123\"}").json("token");
+                ctx.header("Authorization", "Bearer " + token);
+            })
+            .repeat(options.reads(), (ctx, i) -> ctx.get("/api/private"))
+            .step(ctx -> ctx.get("/api/public"));
+    }
+
+    private static String publicKeyBody(String publicKey) {
+        return "{\"publicKey\":" + Json.quote(publicKey) + ",\"algorithm\":\"EC\",\"keySize\":256}";
+    }
+
+    private static String secretBody(int index) {
+        return "{\"encryptedData\":" + Json.quote(randomBase64(256))
+            + ",\"iv\":" + Json.quote(randomBase64(12))
+            + ",\"salt\":" + Json.quote(randomBase64(16))
+            + ",\"metadata\":" + Json.quote("carga-" + index) + "}";
+    }
+
+    private static String randomBase64(int bytes) {
+        byte[] data = new byte[bytes];
+        RANDOM.nextBytes(data);
+        return B64.encodeToString(data);
+    }
+}
@@ -0,0 +1,81 @@
+package org.example.loadgen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Histogramas por endpoint
+ */
+class LatencyStatsTest {
+
+    @Test
+    void recordsMicrosAndCountsErrors() {
+        LatencyStats stats = new LatencyStats();
+        stats.record("GET /a", TimeUnit.MICROSECONDS.toNanos(1500), true);
+        stats.record("GET /a", TimeUnit.MICROSECONDS.toNanos(1500), false);
+
+        LatencyStats.Endpoint a = stats.endpoints().get(0);
+        assertEquals(2L, a.histogram().getTotalCount());
+        assertEquals(1L, a.errors());
+        // 3 cifras significativas: el valor guardado está a menos de un 0,1 %
+        long max = a.histogram().getMaxValue();
+        assertTrue(max >= 1500 && max <= 1502, "max = " + max);
+    }
+
+    /**
+     * Negativos (reloj) a 0 y lo que pase de 1 hora al máximo del histograma
+     */
+    @Test
+    void clampsOutOfRangeValues() {
+        LatencyStats stats = new LatencyStats();
+        stats.record("neg", -5_000, true);
+        stats.record("big", TimeUnit.HOURS.toNanos(3), true);
+
+        assertEquals(0L, endpoint(stats, "neg").histogram().getMaxValue());
+        long max = endpoint(stats, "big").histogram().getMaxValue();
+        long hour = TimeUnit.HOURS.toMicros(1);
+        assertTrue(max >= hour && max <= hour + hour / 1000, "max = " + max);
+    }
+
+    @Test
+    void endpointsSortedByName() {
+        LatencyStats stats = new LatencyStats();
+        stats.record("POST /b", 1_000, true);
+        stats.record("GET /c", 1_000, true);
+        stats.record("GET /a", 1_000, true);
+
+        List<String> names = stats.endpoints().stream().map(LatencyStats.Endpoint::name).toList();
+        assertEquals(List.of("GET /a", "GET /c", "POST /b"), names);
+    }
+
+    @Test
+    void concurrentRecordsAreNotLost() throws Exception {
+        LatencyStats stats = new LatencyStats();
+        int threads = 8;
+        int perThread = 10_000;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int t = 0; t < threads; t++) {
+                executor.execute(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        stats.record("GET /x", 1_000 + i, i % 10 != 0);
+                    }
+                });
+            }
+        }
+
+        LatencyStats.Endpoint x = endpoint(stats, "GET /x");
+        assertEquals((long) threads * perThread, x.histogram().getTotalCount());
+        assertEquals((long) threads * perThread / 10, x.errors());
+    }
+
+    private static LatencyStats.Endpoint endpoint(LatencyStats stats, String name) {
+        return stats.endpoints().stream().filter(e -> e.name().equals(name)).findFirst().orElseThrow();
+    }
+}
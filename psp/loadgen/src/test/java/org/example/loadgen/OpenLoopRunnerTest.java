@@ -0,0 +1,106 @@
+package org.example.loadgen;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Planificador de tasa constante (sin servidor: los pasos no hacen HTTP)
+ */
+class OpenLoopRunnerTest {
+
+    /**
+     * Ninguna iteración empieza antes de start + i / rate
+     */
+    @Test
+    void iterationsStartNoEarlierThanSchedule() throws Exception {
+        int total = 200;
+        AtomicLongArray started = new AtomicLongArray(total);
+        Scenario scenario = Scenario.named("reloj").step(ctx -> started.set((int) ctx.iteration(), System.nanoTime()));
+        OpenLoopRunner runner = new OpenLoopRunner(null, scenario, 1000);
+
+        long before = System.nanoTime();
+        OpenLoopRunner.Result result = runner.run(1000, Duration.ofMillis(total), 0);
+
+        assertEquals((long) total, result.scheduled());
+        assertEquals((long) total, result.completed());
+        assertEquals(0L, result.dropped());
+        long interval = 1_000_000;
+        for (int i = 0; i < total; i++) {
+            assertTrue(started.get(i) >= before + i * interval, "iteración " + i + " adelantada");
+        }
+        assertTrue(result.elapsed().toNanos() >= (total - 1) * interval);
+    }
+
+    /**
+     * Modelo abierto: iteraciones lentas no frenan la tasa de llegada
+     */
+    @Test
+    void slowIterationsDoNotSlowDownArrivals() throws Exception {
+        Scenario scenario = Scenario.named("lento").step(ctx -> Thread.sleep(50));
+        OpenLoopRunner runner = new OpenLoopRunner(null, scenario, 1000);
+
+        OpenLoopRunner.Result result = runner.run(1000, Duration.ofMillis(200), 0);
+
+        assertEquals(200L, result.completed());
+        // En bucle cerrado con un hilo serían 200 * 50 ms = 10 s
+        assertTrue(result.elapsed().toMillis() < 5_000, "elapsed = " + result.elapsed());
+        long count = scenarioHistogramCount(result, "lento");
+        assertEquals(200L, count);
+    }
+
+    /**
+     * Las descartadas solo van al contador, no al histograma
+     */
+    @Test
+    void droppedIterationsAreNotRecorded() throws Exception {
+        Scenario scenario = Scenario.named("lleno").step(ctx -> Thread.sleep(500));
+        OpenLoopRunner runner = new OpenLoopRunner(null, scenario, 1);
+
+        OpenLoopRunner.Result result = runner.run(1000, Duration.ofMillis(50), 0);
+
+        assertEquals(50L, result.scheduled());
+        assertEquals(1L, result.completed());
+        assertEquals(49L, result.dropped());
+        assertEquals(result.completed() + result.failed(), scenarioHistogramCount(result, "lleno"));
+        // Solo la iteración que sí corrió (~500 ms), ninguna latencia ~0
+        long min = result.stats().endpoints().get(0).histogram().getValueAtPercentile(0);
+        assertTrue(min >= 490_000, "min = " + min + " µs");
+    }
+
+    @Test
+    void failedIterationsAreCountedAndRecorded() throws Exception {
+        Scenario scenario = Scenario.named("falla").step(ctx -> {
+            if (ctx.iteration() % 2 == 0) {
+                throw new IllegalStateException("fallo de prueba");
+            }
+        });
+        OpenLoopRunner runner = new OpenLoopRunner(null, scenario, 100);
+
+        OpenLoopRunner.Result result = runner.run(1000, Duration.ofMillis(20), 0);
+
+        assertEquals(10L, result.completed());
+        assertEquals(10L, result.failed());
+        LatencyStats.Endpoint endpoint = result.stats().endpoints().get(0);
+        assertEquals(20L, endpoint.histogram().getTotalCount());
+        assertEquals(10L, endpoint.errors());
+    }
+
+    @Test
+    void rejectsNonPositiveRate() {
+        OpenLoopRunner runner = new OpenLoopRunner(null, Scenario.named("x"), 1);
+        assertThrows(IllegalArgumentException.class, () -> runner.run(0, Duration.ofSeconds(1), 0));
+    }
+
+    private static long scenarioHistogramCount(OpenLoopRunner.Result result, String name) {
+        return result.stats().endpoints().stream()
+            .filter(e -> e.name().equals(OpenLoopRunner.SCENARIO_PREFIX + name))
+            .mapToLong(e -> e.histogram().getTotalCount())
+            .sum();
+    }
+}
@@ -1,59 +1,318 @@
 package org.example.spring.data;
 
 import org.example.spring.domain.model.Cosa;
+import org.example.spring.domain.model.Pagina;
+import org.example.spring.domain.model.PaginaCursor;
 import org.springframework.stereotype.Repository;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Cosas en memoria, seguro con peticiones concurrentes
+ *
+ * - cosas: id -> cosa (mapa principal)
+ * - porUsuario: userId -> ids de sus cosas, para que "las cosas del usuario X"
+ *   y delete(id, userId) no recorran toda la lista
+ *
+ * Cada escritura de una cosa se hace dentro de cosas.compute(id, ...), así que
+ * el índice por usuario se actualiza a la vez que el mapa principal.
+ *
+ * findAll devuelve una instantánea inmutable ordenada por id que se
+ * construye al leer, recorriendo el índice ordenado por id, y se reutiliza
+ * hasta la siguiente escritura: cada escritura solo incrementa un contador de
+ * versión (sin copiar nada ni tomar un lock global) y la primera lectura que
+ * ve la versión nueva rehace la lista.
+ *
+ * La búsqueda por texto usa un índice de trigramas (TrigramIndex) que se
+ * mantiene en las mismas escrituras.
+ *
+ * Para paginar por cursor hay dos índices ordenados (ConcurrentSkipListSet),
+ * por id y por nombre: una página se lee con tailSet(cursor) y solo recorre
+ * los elementos que devuelve, sin copiar la colección entera. Al modificar
+ * una cosa primero se añade la entrada nueva y después se quita la vieja, así
+ * que una lectura concurrente nunca deja de verla; como mucho la encuentra
+ * dos veces y pagina() descarta los ids repetidos. Las entradas de los índices
+ * solo marcan la posición: la página devuelve la versión actual del mapa.
+ */
 @Repository
 public class CosaRepository {
 
-    private final List<Cosa> cosas;
-    private int nextId = 4;
+    private final Map<Integer, Cosa> cosas = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Set<Integer>> porUsuario = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(4);
+    private final TrigramIndex indice = new TrigramIndex();
+
+    // Orden por nombre sin distinguir mayúsculas; el id desempata para que el orden sea estable
+    private static final Comparator<Cosa> POR_ID = Comparator.comparingInt(Cosa::id);
+    private static final Comparator<Cosa> POR_NOMBRE = Comparator
+            .comparing(Cosa::nombre, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER))
+            .thenComparing(Cosa::nombre, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparingInt(Cosa::id);
+    private final ConcurrentSkipListSet<Cosa> ordenId = new ConcurrentSkipListSet<>(POR_ID);
+    private final ConcurrentSkipListSet<Cosa> ordenNombre = new ConcurrentSkipListSet<>(POR_NOMBRE);
+
+    // Lista de findAll y la versión con la que se construyó
+    private record Instantanea(long version, List<Cosa> cosas) {
+    }
+
+    // Se incrementa después de cada escritura (cuando el mapa ya tiene el valor nuevo)
+    private final AtomicLong version = new AtomicLong();
+    private volatile Instantanea instantanea = new Instantanea(-1, List.of());
 
     public CosaRepository() {
-        this.cosas = new ArrayList<>();
-        cosas.add(new Cosa(1, 1, "Cosa 1", "Descripción de la cosa 1"));
-        cosas.add(new Cosa(2, 1, "Cosa 2", "Descripción de la cosa 2"));
-        cosas.add(new Cosa(3, 2, "Cosa 3", "Descripción de la cosa 3"));
+        insertar(new Cosa(1, 1, "Cosa 1", "Descripción de la cosa 1"));
+        insertar(new Cosa(2, 1, "Cosa 2", "Descripción de la cosa 2"));
+        insertar(new Cosa(3, 2, "Cosa 3", "Descripción de la cosa 3"));
     }
 
     public List<Cosa> findAll() {
-        return new ArrayList<>(cosas);
+        Instantanea actual = instantanea;
+        long v = version.get();
+        if (actual.version() == v) {
+            return actual.cosas();
+        }
+        // Las entradas de ordenId solo marcan el id: el valor sale del mapa
+        List<Cosa> lista = new ArrayList<>(cosas.size());
+        for (Cosa entrada : ordenId) {
+            Cosa cosa = cosas.get(entrada.id());
+            if (cosa != null) {
+                lista.add(cosa);
+            }
+        }
+        // Si mientras tanto hubo otra escritura, la lista queda con la versión
+        // leída antes de recorrer y la siguiente lectura la vuelve a construir
+        Instantanea nueva = new Instantanea(v, Collections.unmodifiableList(lista));
+        instantanea = nueva;
+        return nueva.cosas();
     }
 
     public Optional<Cosa> findById(int id) {
-        return cosas.stream()
-                .filter(cosa -> cosa.id() == id)
-                .findFirst();
+        return Optional.ofNullable(cosas.get(id));
+    }
+
+    /**
+     * Cosas de un usuario (ordenadas por id)
+     */
+    public List<Cosa> findByUserId(int userId) {
+        Set<Integer> ids = porUsuario.get(userId);
+        if (ids == null) {
+            return List.of();
+        }
+        List<Cosa> lista = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            Cosa cosa = cosas.get(id);
+            if (cosa != null && cosa.userId() == userId) {
+                lista.add(cosa);
+            }
+        }
+        lista.sort(Comparator.comparingInt(Cosa::id));
+        return lista;
     }
 
     public Cosa save(Cosa cosa) {
-        Cosa nuevaCosa = new Cosa(nextId++, cosa.userId(), cosa.nombre(), cosa.descripcion());
-        cosas.add(nuevaCosa);
+        Cosa nuevaCosa = new Cosa(nextId.getAndIncrement(), cosa.userId(), cosa.nombre(), cosa.descripcion());
+        insertar(nuevaCosa);
         return nuevaCosa;
     }
 
     public Optional<Cosa> update(int id, Cosa cosa) {
-        for (int i = 0; i < cosas.size(); i++) {
-            if (cosas.get(i).id() == id) {
-                Cosa cosaActualizada = new Cosa(id, cosa.userId(), cosa.nombre(), cosa.descripcion());
-                cosas.set(i, cosaActualizada);
-                return Optional.of(cosaActualizada);
+        Cosa cosaActualizada = new Cosa(id, cosa.userId(), cosa.nombre(), cosa.descripcion());
+        Cosa resultado = cosas.computeIfPresent(id, (key, anterior) -> {
+            if (anterior.userId() != cosaActualizada.userId()) {
+                quitarDelIndice(anterior.userId(), id);
+                anadirAlIndice(cosaActualizada.userId(), id);
             }
-        }
-        return Optional.empty();
+            indice.put(id, cosaActualizada.nombre(), cosaActualizada.descripcion());
+            reordenar(anterior, cosaActualizada);
+            return cosaActualizada;
+        });
+        version.incrementAndGet();
+        return Optional.ofNullable(resultado);
     }
 
     public boolean delete(int id,Long userId) {
+        if (userId == null) {
+            return false;
+        }
+        boolean[] borrada = {false};
+        cosas.computeIfPresent(id, (key, cosa) -> {
+            if (cosa.userId() != userId) {
+                return cosa;
+            }
+            quitarDelIndice(cosa.userId(), id);
+            indice.remove(id);
+            quitarDeOrden(cosa);
+            borrada[0] = true;
+            return null;
+        });
+        if (borrada[0]) {
+            version.incrementAndGet();
+        }
+        return borrada[0];
+    }
+
+    /**
+     * Todas las cosas cuyo nombre o descripción contiene el texto (sin
+     * distinguir mayúsculas ni tildes), ordenadas por id
+     */
+    public List<Cosa> buscar(String texto) {
+        int[] ids = indice.buscar(texto);
+        List<Cosa> resultado = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            Cosa cosa = cosas.get(id);
+            if (cosa != null) {
+                resultado.add(cosa);
+            }
+        }
+        return resultado;
+    }
 
-        return cosas.removeIf(cosa -> cosa.id() == id && cosa.userId()==userId);
+    /**
+     * Como buscar(texto), pero paginado
+     */
+    public Pagina<Cosa> buscar(String texto, int pagina, int tamano) {
+        int[] ids = indice.buscar(texto);
+        long desde = (long) pagina * tamano;
+        List<Cosa> contenido = new ArrayList<>();
+        for (long i = desde; i < ids.length && contenido.size() < tamano; i++) {
+            Cosa cosa = cosas.get(ids[(int) i]);
+            if (cosa != null) {
+                contenido.add(cosa);
+            }
+        }
+        return new Pagina<>(contenido, ids.length, pagina, tamano);
     }
 
-    public List<Cosa> findNameLike(String nombre) {
+    /**
+     * Página de cosas ordenada por "id" o "nombre" a partir de un cursor
+     *
+     * @param after nextCursor de la página anterior, o null para la primera
+     * @throws IllegalArgumentException si el orden no existe o el cursor no es
+     *         válido para ese orden
+     */
+    public PaginaCursor<Cosa> pagina(String sort, boolean descendente, String after, int limit) {
+        NavigableSet<Cosa> orden = switch (sort) {
+            case "id" -> ordenId;
+            case "nombre" -> ordenNombre;
+            default -> throw new IllegalArgumentException("Orden no soportado: " + sort + " (id o nombre)");
+        };
+        if (descendente) {
+            orden = orden.descendingSet();
+        }
+        NavigableSet<Cosa> desde = after == null || after.isBlank()
+                ? orden
+                : orden.tailSet(decodificarCursor(sort, after), false);
+
+        List<Cosa> contenido = new ArrayList<>(Math.min(limit, 1024));
+        Set<Integer> vistos = new HashSet<>();
+        Cosa ultimaEntrada = null;
+        Iterator<Cosa> it = desde.iterator();
+        while (it.hasNext() && contenido.size() < limit) {
+            Cosa entrada = it.next();
+            // Borrada mientras se recorría, o repetida por una modificación a medias
+            Cosa actual = cosas.get(entrada.id());
+            if (actual == null || !vistos.add(entrada.id())) {
+                continue;
+            }
+            contenido.add(actual);
+            ultimaEntrada = entrada;
+        }
+        // El cursor sale de la entrada del índice (su posición), no de la versión actual
+        String nextCursor = it.hasNext() && ultimaEntrada != null
+                ? codificarCursor(sort, ultimaEntrada)
+                : null;
+        return new PaginaCursor<>(contenido, nextCursor, sort, descendente ? "desc" : "asc", limit);
+    }
+
+    /**
+     * Cursor = Base64 URL de "id:&lt;id&gt;" o "nombre:&lt;id&gt;:&lt;nombre&gt;" (la última cosa de la página)
+     */
+    private static String codificarCursor(String sort, Cosa ultima) {
+        String valor = sort + ":" + ultima.id();
+        if (sort.equals("nombre") && ultima.nombre() != null) {
+            valor += ":" + ultima.nombre();
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(valor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Cosa decodificarCursor(String sort, String cursor) {
+        String[] partes;
+        int id;
+        try {
+            partes = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":", 3);
+            id = Integer.parseInt(partes[1]);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Cursor no válido");
+        }
+        if (!partes[0].equals(sort)) {
+            throw new IllegalArgumentException("El cursor no corresponde al orden " + sort);
+        }
+        // Solo importan los campos que usa el comparador
+        return new Cosa(id, 0, partes.length == 3 ? partes[2] : null, null);
+    }
+
+    private void insertar(Cosa cosa) {
+        cosas.compute(cosa.id(), (key, anterior) -> {
+            anadirAlIndice(cosa.userId(), cosa.id());
+            indice.put(cosa.id(), cosa.nombre(), cosa.descripcion());
+            reordenar(anterior, cosa);
+            return cosa;
+        });
+        version.incrementAndGet();
+    }
+
+    private void anadirAlIndice(int userId, int id) {
+        porUsuario.compute(userId, (key, ids) -> {
+            Set<Integer> set = ids != null ? ids : ConcurrentHashMap.newKeySet();
+            set.add(id);
+            return set;
+        });
+    }
+
+    /**
+     * Cambia la posición de una cosa en los índices ordenados: primero añade
+     * la nueva y luego quita la anterior
+     */
+    private void reordenar(Cosa anterior, Cosa nueva) {
+        reordenar(ordenId, anterior, nueva);
+        reordenar(ordenNombre, anterior, nueva);
+    }
+
+    private static void reordenar(ConcurrentSkipListSet<Cosa> orden, Cosa anterior, Cosa nueva) {
+        // Misma clave de orden: add no la sustituiría y remove la quitaría del todo
+        if (anterior != null && orden.comparator().compare(anterior, nueva) == 0) {
+            return;
+        }
+        orden.add(nueva);
+        if (anterior != null) {
+            orden.remove(anterior);
+        }
+    }
+
+    private void quitarDeOrden(Cosa cosa) {
+        ordenId.remove(cosa);
+        ordenNombre.remove(cosa);
+    }
 
-       return cosas.stream().filter(cosa -> cosa.nombre().contains(nombre)).toList();
+    private void quitarDelIndice(int userId, int id) {
+        porUsuario.computeIfPresent(userId, (key, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
     }
 }
@@ -0,0 +1,237 @@
+package org.example.spring.data;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Índice invertido de trigramas para buscar subcadenas en nombre y descripción
+ *
+ * Cada texto se normaliza (minúsculas, sin tildes) y se parte en trigramas
+ * ("cosa" -> "cos", "osa"). Para cada trigrama se guarda la lista ordenada de
+ * ids (int[]) de las cosas que lo contienen. Buscar "cosa" es intersecar las
+ * listas de sus trigramas, empezando por la más corta, y comprobar los pocos
+ * candidatos que quedan: no hace falta recorrer todas las cosas.
+ *
+ * Consultas de menos de 3 caracteres no tienen trigramas: se recorren los textos.
+ *
+ * Las escrituras (put/remove) toman el cerrojo de escritura y las búsquedas
+ * el de lectura, así que muchas búsquedas van en paralelo.
+ */
+class TrigramIndex {
+
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final int[] VACIO = new int[0];
+
+    private final Map<Long, PostingList> postings = new HashMap<>();
+    private final Map<Integer, String[]> textos = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Indexa (o reindexa) una cosa
+     */
+    void put(int id, String nombre, String descripcion) {
+        String[] normalizados = {normalizar(nombre), normalizar(descripcion)};
+        long[] trigramas = trigramas(normalizados);
+        lock.writeLock().lock();
+        try {
+            quitar(id);
+            textos.put(id, normalizados);
+            for (long trigrama : trigramas) {
+                postings.computeIfAbsent(trigrama, k -> new PostingList()).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            quitar(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ids (ordenados) cuyo nombre o descripción contiene el texto, sin
+     * distinguir mayúsculas ni tildes
+     */
+    int[] buscar(String texto) {
+        String consulta = normalizar(texto);
+        lock.readLock().lock();
+        try {
+            if (consulta.length() < 3) {
+                return recorrer(consulta);
+            }
+            long[] trigramas = trigramas(new String[]{consulta});
+            PostingList[] listas = new PostingList[trigramas.length];
+            for (int i = 0; i < trigramas.length; i++) {
+                listas[i] = postings.get(trigramas[i]);
+                if (listas[i] == null) {
+                    return VACIO;
+                }
+            }
+            // La más corta primero: el resultado nunca es mayor que ella
+            Arrays.sort(listas, (a, b) -> Integer.compare(a.size, b.size));
+            int[] candidatos = Arrays.copyOf(listas[0].ids, listas[0].size);
+            int n = candidatos.length;
+            for (int i = 1; i < listas.length && n > 0; i++) {
+                n = intersecar(candidatos, n, listas[i]);
+            }
+
+            // Los trigramas pueden estar en otro orden o repartidos entre los
+            // dos campos: se confirma con contains
+            int encontrados = 0;
+            for (int i = 0; i < n; i++) {
+                String[] t = textos.get(candidatos[i]);
+                if (t != null && (t[0].contains(consulta) || t[1].contains(consulta))) {
+                    candidatos[encontrados++] = candidatos[i];
+                }
+            }
+            return Arrays.copyOf(candidatos, encontrados);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Minúsculas y sin tildes ("Canción" -> "cancion")
+     */
+    static String normalizar(String texto) {
+        if (texto == null || texto.isEmpty()) {
+            return "";
+        }
+        String sinMarcas = MARCAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return sinMarcas.toLowerCase(Locale.ROOT);
+    }
+
+    private void quitar(int id) {
+        String[] anteriores = textos.remove(id);
+        if (anteriores == null) {
+            return;
+        }
+        for (long trigrama : trigramas(anteriores)) {
+            PostingList lista = postings.get(trigrama);
+            if (lista != null && lista.remove(id) && lista.size == 0) {
+                postings.remove(trigrama);
+            }
+        }
+    }
+
+    private int[] recorrer(String consulta) {
+        int[] ids = new int[textos.size()];
+        int n = 0;
+        for (Map.Entry<Integer, String[]> entry : textos.entrySet()) {
+            String[] t = entry.getValue();
+            if (t[0].contains(consulta) || t[1].contains(consulta)) {
+                ids[n++] = entry.getKey();
+            }
+        }
+        int[] resultado = Arrays.copyOf(ids, n);
+        Arrays.sort(resultado);
+        return resultado;
+    }
+
+    /**
+     * Deja en candidatos[0..n) solo los ids que también están en la lista;
+     * avanza por la lista con búsqueda exponencial porque suele ser mucho más larga
+     */
+    private static int intersecar(int[] candidatos, int n, PostingList lista) {
+        int[] ids = lista.ids;
+        int size = lista.size;
+        int pos = 0;
+        int quedan = 0;
+        for (int i = 0; i < n && pos < size; i++) {
+            int id = candidatos[i];
+            int paso = 1;
+            int hasta = pos;
+            while (hasta < size && ids[hasta] < id) {
+                pos = hasta + 1;
+                hasta += paso;
+                paso <<= 1;
+            }
+            int encontrado = Arrays.binarySearch(ids, pos, Math.min(hasta + 1, size), id);
+            if (encontrado >= 0) {
+                candidatos[quedan++] = id;
+                pos = encontrado + 1;
+            } else {
+                pos = -encontrado - 1;
+            }
+        }
+        return quedan;
+    }
+
+    /**
+     * Trigramas distintos de los textos, cada uno empaquetado en un long (3 chars de 16 bits)
+     */
+    private static long[] trigramas(String[] textos) {
+        int maximo = 0;
+        for (String texto : textos) {
+            maximo += Math.max(texto.length() - 2, 0);
+        }
+        long[] trigramas = new long[maximo];
+        int n = 0;
+        for (String texto : textos) {
+            for (int i = 0; i + 2 < texto.length(); i++) {
+                trigramas[n++] = ((long) texto.charAt(i) << 32) | ((long) texto.charAt(i + 1) << 16) | texto.charAt(i + 2);
+            }
+        }
+        Arrays.sort(trigramas, 0, n);
+        int distintos = 0;
+        for (int i = 0; i < n; i++) {
+            if (distintos == 0 || trigramas[distintos - 1] != trigramas[i]) {
+                trigramas[distintos++] = trigramas[i];
+            }
+        }
+        return Arrays.copyOf(trigramas, distintos);
+    }
+
+    /**
+     * Lista ordenada de ids (int[] que crece al doble); los ids nuevos son
+     * crecientes, así que add casi siempre es añadir al final
+     */
+    private static final class PostingList {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] >= id) {
+                int pos = Arrays.binarySearch(ids, 0, size, id);
+                if (pos >= 0) {
+                    return;
+                }
+                insertar(-pos - 1, id);
+                return;
+            }
+            insertar(size, id);
+        }
+
+        boolean remove(int id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos < 0) {
+                return false;
+            }
+            System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+            size--;
+            if (size > 16 && size < ids.length / 4) {
+                ids = Arrays.copyOf(ids, ids.length / 2);
+            }
+            return true;
+        }
+
+        private void insertar(int pos, int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            ids[pos] = id;
+            size++;
+        }
+    }
+}
@@ -7,14 +7,30 @@ import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Usuarios en memoria con índices secundarios por username y por email
+ *
+ * - usuarios: id -> usuario (mapa principal)
+ * - usernameIndex: username -> id
+ * - emailIndex: email en minúsculas -> id
+ *
+ * Las búsquedas por username/email son O(1) en vez de recorrer todos los
+ * usuarios. Cada escritura se hace dentro de usuarios.compute(id, ...), así
+ * que dos escrituras del mismo usuario no se mezclan, y los índices se
+ * reservan con putIfAbsent: si dos registros simultáneos piden el mismo
+ * username solo uno lo consigue, el otro recibe IllegalStateException.
+ */
 @Repository
 public class UsuarioRepository {
     private final Map<Long, Usuario> usuarios = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> usernameIndex = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> emailIndex = new ConcurrentHashMap<>();
     private final AtomicLong idCounter = new AtomicLong(1);
     private final PasswordEncoder passwordEncoder;
 
@@ -32,11 +48,43 @@ public class UsuarioRepository {
         save(usuario);
     }
 
+    /**
+     * Crea (id null) o actualiza un usuario manteniendo los índices
+     *
+     * @throws IllegalStateException si el username o el email ya pertenecen a
+     *         otro usuario (no se guarda nada)
+     */
     public Usuario save(Usuario usuario) {
         Long id = usuario.id() != null ? usuario.id() : idCounter.getAndIncrement();
         Usuario usuarioConId = new Usuario(id, usuario.username(), usuario.password(),
-                usuario.email(), usuario.nombre(), usuario.rol());
-        usuarios.put(id, usuarioConId);
+                usuario.email(), usuario.nombre(), usuario.rol(),
+                usuario.twoFactorEnabled(), usuario.twoFactorSecret());
+
+        usuarios.compute(id, (key, anterior) -> {
+            String username = usuarioConId.username();
+            String email = emailKey(usuarioConId.email());
+            String usernameAnterior = anterior != null ? anterior.username() : null;
+            String emailAnterior = anterior != null ? emailKey(anterior.email()) : null;
+
+            boolean nuevoUsername = reservar(usernameIndex, username, id, "El username ya existe");
+            try {
+                reservar(emailIndex, email, id, "El email ya está registrado");
+            } catch (IllegalStateException e) {
+                if (nuevoUsername) {
+                    usernameIndex.remove(username, id);
+                }
+                throw e;
+            }
+
+            // Si ha cambiado el username o el email se libera el anterior
+            if (usernameAnterior != null && !usernameAnterior.equals(username)) {
+                usernameIndex.remove(usernameAnterior, id);
+            }
+            if (emailAnterior != null && !emailAnterior.equals(email)) {
+                emailIndex.remove(emailAnterior, id);
+            }
+            return usuarioConId;
+        });
         return usuarioConId;
     }
 
@@ -49,18 +97,67 @@ public class UsuarioRepository {
     }
 
     public Optional<Usuario> findByUsername(String username) {
+        if (username == null) {
+            return Optional.empty();
+        }
+        Long id = usernameIndex.get(username);
+        if (id == null) {
+            return Optional.empty();
+        }
+        // El índice se reserva antes de publicar el usuario: puede no estar aún
+        return findById(id).filter(u -> username.equals(u.username()));
+    }
 
-        return usuarios.values().stream()
-                .filter(u -> u.username().equals(username))
-                .findFirst();
+    public Optional<Usuario> findByEmail(String email) {
+        String key = emailKey(email);
+        if (key == null) {
+            return Optional.empty();
+        }
+        Long id = emailIndex.get(key);
+        if (id == null) {
+            return Optional.empty();
+        }
+        return findById(id).filter(u -> key.equals(emailKey(u.email())));
     }
 
     public void deleteById(Long id) {
-        usuarios.remove(id);
+        usuarios.computeIfPresent(id, (key, usuario) -> {
+            if (usuario.username() != null) {
+                usernameIndex.remove(usuario.username(), id);
+            }
+            String email = emailKey(usuario.email());
+            if (email != null) {
+                emailIndex.remove(email, id);
+            }
+            return null;
+        });
     }
 
     public boolean existsByUsername(String username) {
-        return usuarios.values().stream()
-                .anyMatch(u -> u.username().equals(username));
+        return findByUsername(username).isPresent();
+    }
+
+    /**
+     * Reserva la clave para el id; true si la acaba de reservar, false si ya era suya
+     */
+    private static boolean reservar(ConcurrentHashMap<String, Long> index, String key, Long id, String error) {
+        if (key == null) {
+            return false;
+        }
+        Long actual = index.putIfAbsent(key, id);
+        if (actual == null) {
+            return true;
+        }
+        if (!actual.equals(id)) {
+            throw new IllegalStateException(error);
+        }
+        return false;
+    }
+
+    private static String emailKey(String email) {
+        if (email == null || email.isBlank()) {
+            return null;
+        }
+        return email.trim().toLowerCase(Locale.ROOT);
     }
 }
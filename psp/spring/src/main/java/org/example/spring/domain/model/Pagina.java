@@ -0,0 +1,14 @@
+package org.example.spring.domain.model;
+
+import java.util.List;
+
+/**
+ * Una página de resultados y el total de resultados de la consulta
+ */
+public record Pagina<T>(
+        List<T> contenido,
+        int total,
+        int pagina,
+        int tamano
+) {
+}
@@ -0,0 +1,18 @@
+package org.example.spring.domain.model;
+
+import java.util.List;
+
+/**
+ * Una página de resultados paginados por cursor
+ *
+ * nextCursor es opaco: se pasa tal cual en "after" para pedir la página
+ * siguiente; es null cuando no hay más resultados.
+ */
+public record PaginaCursor<T>(
+        List<T> contenido,
+        String nextCursor,
+        String sort,
+        String dir,
+        int limit
+) {
+}
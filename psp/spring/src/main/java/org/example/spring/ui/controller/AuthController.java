@@ -1,22 +1,26 @@
 package org.example.spring.ui.controller;
 
 import dev.samstevens.totp.exceptions.QrGenerationException;
-import jakarta.servlet.http.HttpSession;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
 import org.example.spring.data.UsuarioRepository;
 import org.example.spring.domain.model.Usuario;
+import org.example.spring.ui.interceptor.RequiresAuth;
 import org.example.spring.ui.dto.*;
 import org.example.spring.ui.service.AuthService;
+import org.example.spring.ui.service.EmailService;
+import org.example.spring.ui.service.PasswordHashingService;
 import org.example.spring.ui.service.TotpService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -25,19 +29,37 @@ public class AuthController {
     private final AuthService authService;
     private final TotpService totpService;
     private final UsuarioRepository usuarioRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
+    private final EmailService emailService;
 
-    public AuthController(AuthService authService, TotpService totpService, UsuarioRepository usuarioRepository, PasswordEncoder passwordEncoder) {
+    public AuthController(AuthService authService, TotpService totpService, UsuarioRepository usuarioRepository,
+                          PasswordHashingService passwordHashingService, EmailService emailService) {
         this.authService = authService;
         this.totpService = totpService;
         this.usuarioRepository = usuarioRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingService = passwordHashingService;
+        this.emailService = emailService;
     }
 
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody LoginRequest request, HttpSession session) {
-        Optional<Usuario> usuario = authService.login(request.username(), request.password(), session);
+    public ResponseEntity<?> login(@RequestBody LoginRequest request, HttpServletRequest httpRequest, HttpServletResponse httpResponse) {
+        Optional<Usuario> usuario;
+        try {
+            usuario = authService.login(request.username(), request.password(), httpRequest, httpResponse);
+        } catch (RejectedExecutionException e) {
+            return hashingSaturado();
+        } catch (IllegalStateException e) {
+            return sesionesAgotadas();
+        }
 
+        // Con 2FA la sesión queda pendiente hasta POST /2fa/verify
+        if (usuario.isPresent() && Boolean.TRUE.equals(usuario.get().twoFactorEnabled())) {
+            return ResponseEntity.ok(Map.of(
+                "success", false,
+                "requiresTwoFactor", true,
+                "message", "Se requiere código de autenticación de dos factores"
+            ));
+        }
 
         if (usuario.isPresent()) {
             Map<String, Object> response = new HashMap<>();
@@ -65,7 +87,12 @@ public class AuthController {
         }
 
         // Hashear la contraseña antes de guardar
-        String hashedPassword = passwordEncoder.encode(request.password());
+        String hashedPassword;
+        try {
+            hashedPassword = passwordHashingService.encode(request.password());
+        } catch (RejectedExecutionException e) {
+            return hashingSaturado();
+        }
 
         Usuario nuevoUsuario = new Usuario(
             null,
@@ -79,7 +106,20 @@ public class AuthController {
         // Generar código de activación aleatorio
         String codigoActivacion = UUID.randomUUID().toString();
 
-        Usuario usuarioGuardado = usuarioRepository.save(nuevoUsuario);
+        // El repositorio reserva username y email de forma atómica: si otro
+        // registro simultáneo los ha cogido entre la comprobación y aquí, falla
+        Usuario usuarioGuardado;
+        try {
+            usuarioGuardado = usuarioRepository.save(nuevoUsuario);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("success", false, "message", e.getMessage()));
+        }
+
+        // Solo se encola: el envío real lo hace MailQueue en segundo plano
+        if (usuarioGuardado.email() != null && !usuarioGuardado.email().isBlank()) {
+            emailService.enviarEmailActivacion(usuarioGuardado.email(), usuarioGuardado.nombre(), codigoActivacion);
+        }
 
         return ResponseEntity.status(HttpStatus.CREATED)
             .body(Map.of(
@@ -95,15 +135,24 @@ public class AuthController {
     }
 
     @PostMapping("/logout")
-    public ResponseEntity<?> logout(HttpSession session) {
-        authService.logout(session);
+    public ResponseEntity<?> logout(HttpServletRequest httpRequest, HttpServletResponse httpResponse) {
+        authService.logout(httpRequest, httpResponse);
         return ResponseEntity.ok(Map.of("success", true, "message", "Logout exitoso"));
     }
 
+    /**
+     * Cola del pool de hash de contraseñas: tiempo en cola y tiempo de hash por separado
+     */
+    @GetMapping("/hashing/metrics")
+    @RequiresAuth(admin = true)
+    public ResponseEntity<Map<String, Object>> hashingMetrics() {
+        return ResponseEntity.ok(passwordHashingService.metrics());
+    }
+
     @GetMapping("/session")
-    public ResponseEntity<?> checkSession(HttpSession session) {
-        if (authService.isAuthenticated(session)) {
-            Long usuarioId = authService.getUsuarioIdFromSession(session);
+    public ResponseEntity<?> checkSession(HttpServletRequest httpRequest) {
+        if (authService.isAuthenticated(httpRequest)) {
+            Long usuarioId = authService.getUsuarioIdFromSession(httpRequest);
             Optional<Usuario> usuario = usuarioRepository.findById(usuarioId);
 
             if (usuario.isPresent()) {
@@ -128,14 +177,14 @@ public class AuthController {
     // ============== ENDPOINTS 2FA (TOTP) ==============
 
     @PostMapping("/2fa/enable")
-    public ResponseEntity<?> enable2FA(HttpSession session) {
+    public ResponseEntity<?> enable2FA(HttpServletRequest httpRequest) {
         // Verificar que el usuario esté autenticado
-        if (!authService.isAuthenticated(session)) {
+        if (!authService.isAuthenticated(httpRequest)) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("success", false, "message", "No autenticado"));
         }
 
-        Long usuarioId = authService.getUsuarioIdFromSession(session);
+        Long usuarioId = authService.getUsuarioIdFromSession(httpRequest);
         Optional<Usuario> usuarioOpt = usuarioRepository.findById(usuarioId);
 
         if (usuarioOpt.isEmpty()) {
@@ -177,14 +226,14 @@ public class AuthController {
     }
 
     @PostMapping("/2fa/confirm")
-    public ResponseEntity<?> confirm2FA(@RequestBody Confirm2FARequest request, HttpSession session) {
+    public ResponseEntity<?> confirm2FA(@RequestBody Confirm2FARequest request, HttpServletRequest httpRequest) {
         // Verificar que el usuario esté autenticado
-        if (!authService.isAuthenticated(session)) {
+        if (!authService.isAuthenticated(httpRequest)) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("success", false, "message", "No autenticado"));
         }
 
-        Long usuarioId = authService.getUsuarioIdFromSession(session);
+        Long usuarioId = authService.getUsuarioIdFromSession(httpRequest);
         Optional<Usuario> usuarioOpt = usuarioRepository.findById(usuarioId);
 
         if (usuarioOpt.isEmpty()) {
@@ -219,14 +268,14 @@ public class AuthController {
     }
 
     @PostMapping("/2fa/disable")
-    public ResponseEntity<?> disable2FA(HttpSession session) {
+    public ResponseEntity<?> disable2FA(HttpServletRequest httpRequest) {
         // Verificar que el usuario esté autenticado
-        if (!authService.isAuthenticated(session)) {
+        if (!authService.isAuthenticated(httpRequest)) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("success", false, "message", "No autenticado"));
         }
 
-        Long usuarioId = authService.getUsuarioIdFromSession(session);
+        Long usuarioId = authService.getUsuarioIdFromSession(httpRequest);
         Optional<Usuario> usuarioOpt = usuarioRepository.findById(usuarioId);
 
         if (usuarioOpt.isEmpty()) {
@@ -244,16 +293,17 @@ public class AuthController {
     }
 
     @PostMapping("/2fa/verify")
-    public ResponseEntity<?> verify2FA(@RequestBody Verify2FARequest request, HttpSession session) {
+    public ResponseEntity<?> verify2FA(@RequestBody Verify2FARequest request, HttpServletRequest httpRequest, HttpServletResponse httpResponse) {
         // Verificar que hay un login pendiente de 2FA
-        String pendingUsername = (String) session.getAttribute("pendingTwoFactorUsername");
+        Optional<Long> pendingUsuarioId = authService.getUsuarioPendiente2FA(httpRequest);
 
-        if (pendingUsername == null || !pendingUsername.equals(request.username())) {
+        if (pendingUsuarioId.isEmpty()) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("success", false, "message", "No hay un login pendiente de verificación 2FA"));
         }
 
-        Optional<Usuario> usuarioOpt = usuarioRepository.findByUsername(request.username());
+        Optional<Usuario> usuarioOpt = usuarioRepository.findByUsername(request.username())
+                .filter(u -> u.id().equals(pendingUsuarioId.get()));
 
         if (usuarioOpt.isEmpty()) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
@@ -277,10 +327,11 @@ public class AuthController {
         }
 
         // Código válido - completar el login
-        session.removeAttribute("pendingTwoFactorUsername");
-        session.setAttribute("usuarioId", usuario.id());
-        session.setAttribute("username", usuario.username());
-        session.setAttribute("rol", usuario.rol());
+        try {
+            authService.completarLogin2FA(httpRequest, httpResponse, usuario);
+        } catch (IllegalStateException e) {
+            return sesionesAgotadas();
+        }
 
         return ResponseEntity.ok(Map.of(
                 "success", true,
@@ -291,13 +342,13 @@ public class AuthController {
 
 
     @GetMapping("/2fa/status")
-    public ResponseEntity<?> get2FAStatus(HttpSession session) {
-        if (!authService.isAuthenticated(session)) {
+    public ResponseEntity<?> get2FAStatus(HttpServletRequest httpRequest) {
+        if (!authService.isAuthenticated(httpRequest)) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("success", false, "message", "No autenticado"));
         }
 
-        Long usuarioId = authService.getUsuarioIdFromSession(session);
+        Long usuarioId = authService.getUsuarioIdFromSession(httpRequest);
         Optional<Usuario> usuarioOpt = usuarioRepository.findById(usuarioId);
 
         if (usuarioOpt.isEmpty()) {
@@ -313,4 +364,19 @@ public class AuthController {
         ));
     }
 
+    private ResponseEntity<?> hashingSaturado() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header("Retry-After", String.valueOf(passwordHashingService.retryAfterSeconds()))
+            .body(Map.of("success", false, "message", "Servidor ocupado, reintente más tarde"));
+    }
+
+    /**
+     * El almacén de sesiones está lleno de sesiones vivas (las caducadas ya
+     * se reutilizan al crear): no es un error del servidor, se libera hueco
+     * cuando caduca o se cierra alguna
+     */
+    private ResponseEntity<?> sesionesAgotadas() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .body(Map.of("success", false, "message", "No se pueden abrir más sesiones ahora, reintente más tarde"));
+    }
 }
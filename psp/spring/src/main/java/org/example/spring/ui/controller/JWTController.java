@@ -1,16 +1,36 @@
 package org.example.spring.ui.controller;
 
+import io.jsonwebtoken.JwtException;
+import org.example.spring.domain.model.Usuario;
+import org.example.spring.ui.dto.LoginRequest;
+import org.example.spring.ui.dto.RefreshRequest;
+import org.example.spring.ui.service.AuthService;
 import org.example.spring.ui.service.JwtService;
+import org.example.spring.ui.service.PasswordHashingService;
+import org.example.spring.ui.service.RefreshTokenService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+
 @RestController
 @RequestMapping("/loginToken")
 public class JWTController {
 
     private final JwtService jwtService;
+    private final RefreshTokenService refreshTokenService;
+    private final AuthService authService;
+    private final PasswordHashingService passwordHashingService;
 
-    public JWTController(JwtService jwtService) {
+    public JWTController(JwtService jwtService, RefreshTokenService refreshTokenService, AuthService authService,
+                         PasswordHashingService passwordHashingService) {
         this.jwtService = jwtService;
+        this.refreshTokenService = refreshTokenService;
+        this.authService = authService;
+        this.passwordHashingService = passwordHashingService;
     }
     @GetMapping
     public String getToken(@RequestParam String nombre, @RequestParam String password){
@@ -34,17 +54,70 @@ public class JWTController {
         // Extraer el token del formato "Bearer <token>"
         String token = authHeader.substring(7); // Eliminar "Bearer "
 
-        jwtService.isTokenValid(token, "oscar");
-        System.out.println(jwtService.extractRol(token));
-        return jwtService.extractUsername(token);
+        // Un solo parseo (o ninguno si el token ya se verificó antes)
+        JwtService.ValidatedToken datos = jwtService.validateAndParse(token);
+        return datos.username();
     }
 
     @GetMapping("/v")
     public String validateTokenGET(@RequestParam String token){
 
+        JwtService.ValidatedToken datos = jwtService.validateAndParse(token);
+        return datos.username();
+    }
+
+    // ============== ACCESS + REFRESH TOKEN ==============
+
+    /**
+     * Login con usuario y contraseña: devuelve access token y refresh token
+     */
+    @PostMapping("/login")
+    public ResponseEntity<?> login(@RequestBody LoginRequest request) {
+        Optional<Usuario> usuario;
+        try {
+            usuario = authService.verificarCredenciales(request.username(), request.password());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", String.valueOf(passwordHashingService.retryAfterSeconds()))
+                    .body(Map.of("success", false, "message", "Servidor ocupado, reintente más tarde"));
+        }
+        if (usuario.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("success", false, "message", "Credenciales inválidas"));
+        }
+        return ResponseEntity.ok(refreshTokenService.login(usuario.get().username(), usuario.get().rol()));
+    }
+
+    /**
+     * Cambia el refresh token por un par nuevo (el anterior deja de valer)
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refresh(@RequestBody RefreshRequest request) {
+        try {
+            return ResponseEntity.ok(refreshTokenService.refresh(request.refreshToken()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", e.getMessage()));
+        } catch (IllegalStateException | JwtException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
 
-        jwtService.isTokenValid(token, "oscar");
-        System.out.println(jwtService.extractRol(token));
-        return jwtService.extractUsername(token);
+    /**
+     * Revoca el access token de la cabecera y toda su sesión
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@RequestHeader("Authorization") String authHeader,
+                                    @RequestBody(required = false) RefreshRequest request) {
+        if (!authHeader.startsWith("Bearer ")) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", "Falta el token Bearer"));
+        }
+        try {
+            refreshTokenService.logout(authHeader.substring(7), request != null ? request.refreshToken() : null);
+            return ResponseEntity.ok(Map.of("success", true, "message", "Logout exitoso"));
+        } catch (JwtException | IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        }
     }
 }
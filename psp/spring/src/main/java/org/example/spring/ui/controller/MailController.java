@@ -0,0 +1,31 @@
+package org.example.spring.ui.controller;
+
+import org.example.spring.ui.interceptor.RequiresAuth;
+import org.example.spring.ui.service.MailQueue;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/mail")
+public class MailController {
+
+    private final MailQueue mailQueue;
+
+    public MailController(MailQueue mailQueue) {
+        this.mailQueue = mailQueue;
+    }
+
+    /**
+     * Estado de la cola de correo: profundidad, pendientes en el spool,
+     * enviados, reintentos, dead letters y latencias
+     */
+    @GetMapping("/metrics")
+    @RequiresAuth(admin = true)
+    public ResponseEntity<Map<String, Object>> metrics() {
+        return ResponseEntity.ok(mailQueue.metrics());
+    }
+}
@@ -1,9 +1,11 @@
 package org.example.spring.ui.controller;
 
 
-import jakarta.servlet.http.HttpSession;
+import jakarta.servlet.http.HttpServletRequest;
 import org.example.spring.data.CosaRepository;
 import org.example.spring.domain.model.Cosa;
+import org.example.spring.domain.model.Pagina;
+import org.example.spring.domain.model.PaginaCursor;
 import org.example.spring.ui.service.AuthService;
 import org.springframework.http.HttpRequest;
 import org.springframework.http.HttpStatus;
@@ -11,6 +13,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/rest/cosas")
@@ -24,14 +27,31 @@ public class RestCosas {
         this.authService = authService;
     }
 
+    /**
+     * Lista paginada por cursor: sort=id|nombre, dir=asc|desc, limit (1..500),
+     * after = nextCursor de la página anterior
+     */
     @GetMapping
-    public ResponseEntity<List<Cosa>> listarCosas(HttpRequest request, HttpSession session) {
+    public ResponseEntity<?> listarCosas(HttpRequest request, HttpServletRequest httpRequest,
+                                         @RequestParam(defaultValue = "id") String sort,
+                                         @RequestParam(defaultValue = "asc") String dir,
+                                         @RequestParam(defaultValue = "50") int limit,
+                                         @RequestParam(required = false) String after) {
 
         request.getAttributes().get("rol");
-        if (authService.isAuthenticated(session)) {
-            return ResponseEntity.ok(cosaRepository.findAll());
+        if (!authService.isAuthenticated(httpRequest)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (limit < 1 || limit > 500 || !(dir.equals("asc") || dir.equals("desc"))) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("success", false, "message", "limit debe estar entre 1 y 500 y dir ser asc o desc"));
+        }
+        try {
+            PaginaCursor<Cosa> pagina = cosaRepository.pagina(sort, dir.equals("desc"), after, limit);
+            return ResponseEntity.ok(pagina);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", e.getMessage()));
         }
-        return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
     }
 
     @GetMapping("/{id}")
@@ -48,17 +68,44 @@ public class RestCosas {
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
+
+    /**
+     * Busca el texto en nombre y descripción (sin distinguir mayúsculas ni tildes)
+     *
+     * Sin page ni size devuelve todos los resultados como un array (como
+     * antes). Con page o size (por defecto 0 y 100, size hasta 1000) devuelve
+     * una Pagina con el contenido y el total.
+     */
     @GetMapping("/filtrar")
-    public ResponseEntity<List<Cosa>> filtroCosa(@RequestParam String nombre) {
+    public ResponseEntity<?> filtroCosa(@RequestParam String nombre,
+                                        @RequestParam(required = false) Integer page,
+                                        @RequestParam(required = false) Integer size) {
+        if (page == null && size == null) {
+            return ResponseEntity.ok(cosaRepository.buscar(nombre));
+        }
+        int numero = page != null ? page : 0;
+        int tamano = size != null ? size : 100;
+        if (numero < 0 || tamano < 1 || tamano > 1000) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("success", false, "message", "page no puede ser negativo y size debe estar entre 1 y 1000"));
+        }
+        Pagina<Cosa> pagina = cosaRepository.buscar(nombre, numero, tamano);
+        return ResponseEntity.ok(pagina);
+    }
 
-        return ResponseEntity.ok(cosaRepository.findNameLike(nombre));
+    @GetMapping("/usuario/{userId}")
+    public ResponseEntity<List<Cosa>> cosasDeUsuario(@PathVariable int userId, HttpServletRequest httpRequest) {
+        if (authService.isAuthenticated(httpRequest)) {
+            return ResponseEntity.ok(cosaRepository.findByUserId(userId));
+        }
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
     }
 
 
     @PostMapping
-    public ResponseEntity<Cosa> crearCosa(@RequestBody Cosa cosa,HttpSession session) {
-        if (authService.isAuthenticated(session)) {
-            if (authService.isAdmin(session)) {
+    public ResponseEntity<Cosa> crearCosa(@RequestBody Cosa cosa,HttpServletRequest httpRequest) {
+        if (authService.isAuthenticated(httpRequest)) {
+            if (authService.isAdmin(httpRequest)) {
                 Cosa nuevaCosa = cosaRepository.save(cosa);
                 return ResponseEntity.status(HttpStatus.CREATED).body(nuevaCosa);
             }
@@ -79,9 +126,9 @@ public class RestCosas {
 
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> eliminarCosa(@PathVariable int id, HttpSession session) {
-        if (authService.isAuthenticated(session)) {
-            Long userId = authService.getUsuarioIdFromSession(session);
+    public ResponseEntity<Void> eliminarCosa(@PathVariable int id, HttpServletRequest httpRequest) {
+        if (authService.isAuthenticated(httpRequest)) {
+            Long userId = authService.getUsuarioIdFromSession(httpRequest);
             if (cosaRepository.delete(id,userId)) {
                 return ResponseEntity.noContent().build();
             } else {
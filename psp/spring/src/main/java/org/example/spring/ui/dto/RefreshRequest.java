@@ -0,0 +1,5 @@
+package org.example.spring.ui.dto;
+
+public record RefreshRequest(
+    String refreshToken
+) {}
@@ -1,8 +1,10 @@
 package org.example.spring.ui.dto;
 
 public record TokenResponse(
-        String accessToken
-
+        String accessToken,
+        String refreshToken,
+        String tokenType,
+        long expiresIn       // segundos de validez del access token
 ) {
 
 }
@@ -5,22 +5,116 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.example.spring.ui.service.AuthService;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.ApplicationContext;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.HandlerInterceptor;
-
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Control de acceso de /api/**
+ *
+ * Al arrancar se recorren todos los HandlerMethod registrados y se calcula
+ * para cada uno su política (pública, autenticado, solo admin, propietario o
+ * "según el método HTTP" si el mapping admite varios métodos). La tabla es
+ * inmutable: por petición solo hay una búsqueda en el mapa y una lectura de
+ * la sesión (SessionStore), sin startsWith ni reflexión sobre anotaciones.
+ */
 @Component
-public class AuthInterceptor implements HandlerInterceptor {
+public class AuthInterceptor implements HandlerInterceptor, SmartInitializingSingleton {
+
+    // Endpoints públicos
+    private static final List<String> RUTAS_PUBLICAS = List.of(
+            "/api/auth/login",
+            "/api/auth/register",
+            "/api/auth/activar",
+            "/api/auth/session",
+            // Segundo paso del login: la sesión aún está pendiente del código
+            "/api/auth/2fa/verify");
+
+    private static final Set<String> METODOS_ADMIN = Set.of("POST", "PUT", "PATCH", "DELETE");
+
+    enum Tipo {
+        PUBLICA,
+        AUTENTICADO,
+        ADMIN,
+        PROPIETARIO,
+        // El mapping admite GET y escrituras: se decide con el método de la petición
+        POR_METODO
+    }
+
+    /**
+     * anotada: viene de @RequiresAuth (cambian los mensajes de error);
+     * owner: variable de ruta con el id del propietario
+     */
+    record Politica(Tipo tipo, boolean anotada, String owner) {
+        static final Politica PUBLICA = new Politica(Tipo.PUBLICA, false, null);
+        static final Politica AUTENTICADO = new Politica(Tipo.AUTENTICADO, false, null);
+        static final Politica ADMIN = new Politica(Tipo.ADMIN, false, null);
+        static final Politica POR_METODO = new Politica(Tipo.POR_METODO, false, null);
+    }
 
     private final AuthService authService;
     private final ObjectMapper objectMapper;
+    private final ApplicationContext applicationContext;
+
+    private volatile Map<Method, Politica> politicas = Map.of();
 
-    public AuthInterceptor(AuthService authService, ObjectMapper objectMapper) {
+    public AuthInterceptor(AuthService authService, ObjectMapper objectMapper, ApplicationContext applicationContext) {
         this.authService = authService;
         this.objectMapper = objectMapper;
+        this.applicationContext = applicationContext;
+    }
+
+    /**
+     * Construye la tabla de políticas cuando ya están registrados todos los
+     * controladores (no se puede inyectar el HandlerMapping en el constructor:
+     * el HandlerMapping necesita este interceptor)
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        registrar(applicationContext.getBeansOfType(RequestMappingHandlerMapping.class).values().stream()
+                .map(RequestMappingHandlerMapping::getHandlerMethods)
+                .toList());
+    }
+
+    /**
+     * Calcula la tabla de políticas a partir de los mappings de cada HandlerMapping
+     */
+    void registrar(Collection<Map<RequestMappingInfo, HandlerMethod>> mappings) {
+        Map<Method, Politica> tabla = new HashMap<>();
+        Set<Method> porPeticion = new HashSet<>();
+        for (Map<RequestMappingInfo, HandlerMethod> handlerMethods : mappings) {
+            for (Map.Entry<RequestMappingInfo, HandlerMethod> entry : handlerMethods.entrySet()) {
+                RequestMappingInfo info = entry.getKey();
+                HandlerMethod handlerMethod = entry.getValue();
+                Set<String> metodos = info.getMethodsCondition() == null
+                        ? Set.of()
+                        : info.getMethodsCondition().getMethods().stream().map(RequestMethod::name).collect(Collectors.toSet());
+                Politica politica = resolver(info.getPatternValues(), metodos, handlerMethod.getMethodAnnotation(RequiresAuth.class));
+                Politica anterior = tabla.putIfAbsent(handlerMethod.getMethod(), politica);
+                // Sin política fija, o un mismo método con mappings de políticas distintas: se decide por petición
+                if (politica == null || (anterior != null && !anterior.equals(politica))) {
+                    porPeticion.add(handlerMethod.getMethod());
+                }
+            }
+        }
+        tabla.keySet().removeAll(porPeticion);
+        politicas = Map.copyOf(tabla);
     }
 
     @Override
@@ -28,72 +122,126 @@ public class AuthInterceptor implements HandlerInterceptor {
         if (!(handler instanceof HandlerMethod handlerMethod)) {
             return true;
         }
-        request.getHeader("Authorization");
-
 
         request.setAttribute("rol","admin");
 
-        // Verificar si el endpoint está en /api/
-        String path = request.getRequestURI();
-        if (!path.startsWith("/api/")) {
-            return true;
+        Politica politica = politicas.get(handlerMethod.getMethod());
+        if (politica == null) {
+            // No estaba en la tabla: se calcula con la ruta y el método de esta petición
+            politica = resolver(Set.of(request.getRequestURI()), Set.of(request.getMethod()),
+                    handlerMethod.getMethodAnnotation(RequiresAuth.class));
         }
 
-        // Excluir endpoints públicos
-        if (path.startsWith("/api/auth/login") ||
-            path.startsWith("/api/auth/register") ||
-            path.startsWith("/api/auth/activar") ||
-            path.startsWith("/api/auth/session")) {
+        Tipo tipo = politica.tipo();
+        if (tipo == Tipo.POR_METODO) {
+            tipo = tipoPorMetodo(request.getMethod());
+        }
+        if (tipo == Tipo.PUBLICA) {
             return true;
         }
 
-        RequiresAuth requiresAuth = handlerMethod.getMethodAnnotation(RequiresAuth.class);
-        String httpMethod = request.getMethod();
+        // La sesión se lee una vez y AuthService la deja en la petición
+        if (!authService.isAuthenticated(request)) {
+            sendJsonError(response, HttpStatus.UNAUTHORIZED, !politica.anotada() && tipo == Tipo.AUTENTICADO
+                    ? "Debe iniciar sesión para acceder a este recurso"
+                    : "Debe iniciar sesión");
+            return false;
+        }
+
+        switch (tipo) {
+            case ADMIN -> {
+                if (!authService.isAdmin(request)) {
+                    sendJsonError(response, HttpStatus.FORBIDDEN, politica.anotada()
+                            ? "Acceso denegado"
+                            : "Solo los administradores pueden realizar esta acción");
+                    return false;
+                }
+            }
+            case PROPIETARIO -> {
+                if (!esPropietario(request, politica.owner()) && !authService.isAdmin(request)) {
+                    sendJsonError(response, HttpStatus.FORBIDDEN, "Acceso denegado");
+                    return false;
+                }
+            }
+            default -> {
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Política de un handler a partir de sus rutas, sus métodos HTTP y su
+     * anotación @RequiresAuth (si la tiene); null si unas rutas son públicas
+     * y otras no
+     */
+    static Politica resolver(Set<String> rutas, Set<String> metodos, RequiresAuth requiresAuth) {
+        long publicas = rutas.stream().filter(AuthInterceptor::esRutaPublica).count();
+        if (publicas > 0 && publicas == rutas.size()) {
+            return Politica.PUBLICA;
+        }
+        if (publicas > 0) {
+            return null;
+        }
 
         // Si tiene anotación @RequiresAuth, usarla
         if (requiresAuth != null) {
-            if (!authService.isAuthenticated(request.getSession())) {
-                sendJsonError(response, HttpStatus.UNAUTHORIZED, "Debe iniciar sesión");
-                return false;
+            if (requiresAuth.admin()) {
+                return new Politica(Tipo.ADMIN, true, null);
             }
-
-            if (requiresAuth.admin() && !authService.isAdmin(request.getSession())) {
-                sendJsonError(response, HttpStatus.FORBIDDEN, "Acceso denegado");
-                return false;
+            if (!requiresAuth.owner().isEmpty()) {
+                return new Politica(Tipo.PROPIETARIO, true, requiresAuth.owner());
             }
-
-            return true;
+            return new Politica(Tipo.AUTENTICADO, true, null);
         }
 
         // Reglas automáticas por método HTTP
-        switch (httpMethod) {
-            case "GET":
-                // GET requiere USER (cualquier usuario autenticado)
-                if (!authService.isAuthenticated(request.getSession())) {
-                    sendJsonError(response, HttpStatus.UNAUTHORIZED, "Debe iniciar sesión para acceder a este recurso");
-                    return false;
-                }
-                break;
-
-            case "POST", "PUT", "PATCH", "DELETE":
-                // POST, PUT, PATCH, DELETE requieren ADMIN
-                if (!authService.isAuthenticated(request.getSession())) {
-                    sendJsonError(response, HttpStatus.UNAUTHORIZED, "Debe iniciar sesión");
-                    return false;
-                }
+        if (metodos.isEmpty()) {
+            return Politica.POR_METODO;
+        }
+        Set<Tipo> tipos = metodos.stream().map(AuthInterceptor::tipoPorMetodo).collect(Collectors.toSet());
+        if (tipos.size() != 1) {
+            return Politica.POR_METODO;
+        }
+        return switch (tipos.iterator().next()) {
+            case AUTENTICADO -> Politica.AUTENTICADO;
+            case ADMIN -> Politica.ADMIN;
+            default -> Politica.PUBLICA;
+        };
+    }
 
-                if (!authService.isAdmin(request.getSession())) {
-                    sendJsonError(response, HttpStatus.FORBIDDEN, "Solo los administradores pueden realizar esta acción");
-                    return false;
-                }
-                break;
+    private static boolean esRutaPublica(String ruta) {
+        // El interceptor solo está registrado en /api/**
+        if (!ruta.startsWith("/api/")) {
+            return true;
+        }
+        for (String publica : RUTAS_PUBLICAS) {
+            if (ruta.startsWith(publica)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-            default:
-                // Otros métodos HTTP (OPTIONS, HEAD, etc.) pasan sin verificación
-                break;
+    /**
+     * GET requiere USER (cualquier usuario autenticado); POST, PUT, PATCH y
+     * DELETE requieren ADMIN; otros métodos (OPTIONS, HEAD, etc.) pasan sin
+     * verificación
+     */
+    private static Tipo tipoPorMetodo(String metodo) {
+        if (metodo.equals("GET")) {
+            return Tipo.AUTENTICADO;
         }
+        return METODOS_ADMIN.contains(metodo) ? Tipo.ADMIN : Tipo.PUBLICA;
+    }
 
-        return true;
+    private boolean esPropietario(HttpServletRequest request, String variable) {
+        Object variables = request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (!(variables instanceof Map<?, ?> mapa)) {
+            return false;
+        }
+        Object valor = mapa.get(variable);
+        Long usuarioId = authService.getUsuarioIdFromSession(request);
+        return valor != null && usuarioId != null && valor.toString().equals(usuarioId.toString());
     }
 
     private void sendJsonError(HttpServletResponse response, HttpStatus status, String message) throws Exception {
@@ -9,4 +9,11 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 public @interface RequiresAuth {
     boolean admin() default false;
+
+    /**
+     * Nombre de la variable de ruta con el id del usuario dueño del recurso
+     * (p. ej. "userId" en /api/usuarios/{userId}/...): solo ese usuario o un
+     * administrador pueden acceder. Vacío = sin regla de propietario.
+     */
+    String owner() default "";
 }
@@ -1,55 +1,168 @@
 package org.example.spring.ui.service;
 
-import jakarta.servlet.http.HttpSession;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.example.spring.data.UsuarioRepository;
 import org.example.spring.domain.model.Usuario;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.util.Optional;
 
+/**
+ * Login con sesión
+ *
+ * La sesión ya no vive en el HttpSession del contenedor: se guarda en
+ * SessionStore (por defecto compartido entre instancias) y el navegador solo
+ * lleva su token en la cookie SID. La sesión de cada petición se lee una vez y
+ * se deja en un atributo de la petición para el resto de comprobaciones.
+ *
+ * SID es una cookie de sesión (sin Max-Age): la caducidad la decide solo el
+ * almacén, que la va alargando con el uso. Con un Max-Age fijo el navegador
+ * tiraría la cookie de una sesión que sigue viva en el servidor.
+ */
 @Service
 public class AuthService {
 
+    public static final String SESSION_COOKIE = "SID";
+    private static final String ATRIBUTO_SESION = AuthService.class.getName() + ".sesion";
+
     private final UsuarioRepository usuarioRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
+    private final SessionStore sessionStore;
 
-    public AuthService(UsuarioRepository usuarioRepository, PasswordEncoder passwordEncoder) {
+    public AuthService(UsuarioRepository usuarioRepository, PasswordHashingService passwordHashingService, SessionStore sessionStore) {
         this.usuarioRepository = usuarioRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingService = passwordHashingService;
+        this.sessionStore = sessionStore;
+    }
+
+    /**
+     * Comprueba las credenciales y abre sesión. Si el usuario tiene 2FA la
+     * sesión queda pendiente del código (POST /api/auth/2fa/verify).
+     *
+     * @throws java.util.concurrent.RejectedExecutionException si el pool de hash está saturado
+     * @throws IllegalStateException si el almacén de sesiones no tiene hueco
+     */
+    public Optional<Usuario> login(String username, String password, HttpServletRequest request, HttpServletResponse response) {
+        Optional<Usuario> usuario = verificarCredenciales(username, password);
+
+        if (usuario.isPresent()) {
+            // Guardamos en la sesión solo id, rol y si falta el segundo factor
+            Usuario u = usuario.get();
+            abrirSesion(request, response, u, Boolean.TRUE.equals(u.twoFactorEnabled()));
+        }
+
+        return usuario;
     }
 
-    public Optional<Usuario> login(String username, String password, HttpSession session) {
+    /**
+     * Comprueba usuario y contraseña sin crear sesión (login con JWT)
+     *
+     * @throws java.util.concurrent.RejectedExecutionException si el pool de hash está saturado
+     */
+    public Optional<Usuario> verificarCredenciales(String username, String password) {
         Optional<Usuario> usuario = usuarioRepository.findByUsername(username);
 
-        // Verificar la contraseña usando BCrypt
-        if (usuario.isPresent() && passwordEncoder.matches(password, usuario.get().password())) {
-            // Guardamos el usuario en la sesión
-            session.setAttribute("usuario", usuario);
+        // Verificar la contraseña usando BCrypt (en el pool de hash, no en el hilo de la petición)
+        if (usuario.isPresent() && passwordHashingService.matches(password, usuario.get().password())) {
             return usuario;
         }
 
         return Optional.empty();
     }
 
-    public void logout(HttpSession session) {
-        session.invalidate();
+    /**
+     * Segundo factor correcto: la sesión pendiente se cambia por una completa
+     * (con otro token)
+     *
+     * @throws IllegalStateException si el almacén de sesiones no tiene hueco
+     */
+    public void completarLogin2FA(HttpServletRequest request, HttpServletResponse response, Usuario usuario) {
+        abrirSesion(request, response, usuario, false);
+    }
+
+    public void logout(HttpServletRequest request, HttpServletResponse response) {
+        String token = token(request);
+        if (token != null) {
+            sessionStore.delete(token);
+        }
+        request.removeAttribute(ATRIBUTO_SESION);
+        response.addCookie(cookie("", 0));
+    }
+
+    /**
+     * Sesión de la petición (leída del almacén una sola vez por petición)
+     */
+    public Optional<SessionStore.SessionRecord> getSesion(HttpServletRequest request) {
+        Object cacheada = request.getAttribute(ATRIBUTO_SESION);
+        if (cacheada instanceof SessionStore.SessionRecord sesion) {
+            return Optional.of(sesion);
+        }
+        if (cacheada != null) {
+            return Optional.empty();
+        }
+        String token = token(request);
+        Optional<SessionStore.SessionRecord> sesion = token == null ? Optional.empty() : sessionStore.find(token);
+        request.setAttribute(ATRIBUTO_SESION, sesion.isPresent() ? sesion.get() : Boolean.FALSE);
+        return sesion;
+    }
+
+    public boolean isAuthenticated(HttpServletRequest request) {
+        return getSesion(request).filter(s -> !s.pendingTwoFactor()).isPresent();
     }
 
-    public boolean isAuthenticated(HttpSession session) {
-        return session.getAttribute("usuario") != null;
+    /**
+     * Id del usuario que ha pasado el primer paso del login y aún no ha dado el código 2FA
+     */
+    public Optional<Long> getUsuarioPendiente2FA(HttpServletRequest request) {
+        return getSesion(request).filter(SessionStore.SessionRecord::pendingTwoFactor).map(SessionStore.SessionRecord::userId);
     }
 
-    public Long getUsuarioIdFromSession(HttpSession session) {
-        return ((Usuario) session.getAttribute("usuario")).id();
+    public Long getUsuarioIdFromSession(HttpServletRequest request) {
+        return getSesion(request).filter(s -> !s.pendingTwoFactor()).map(SessionStore.SessionRecord::userId).orElse(null);
     }
 
-    public String getRolFromSession(HttpSession session) {
-        return (String) session.getAttribute("rol");
+    public String getRolFromSession(HttpServletRequest request) {
+        return getSesion(request).filter(s -> !s.pendingTwoFactor()).map(SessionStore.SessionRecord::rol).orElse(null);
     }
 
-    public boolean isAdmin(HttpSession session) {
-        String rol = getRolFromSession(session);
+    public boolean isAdmin(HttpServletRequest request) {
+        String rol = getRolFromSession(request);
         return "ADMIN".equals(rol);
     }
+
+    private void abrirSesion(HttpServletRequest request, HttpServletResponse response, Usuario usuario, boolean pendiente2FA) {
+        // Token nuevo en cada login (la sesión anterior, si había, se cierra)
+        String anterior = token(request);
+        if (anterior != null) {
+            sessionStore.delete(anterior);
+        }
+        String token = sessionStore.create(usuario.id(), usuario.rol(), pendiente2FA);
+        request.setAttribute(ATRIBUTO_SESION, sessionStore.find(token).<Object>map(s -> s).orElse(Boolean.FALSE));
+        // -1: cookie de sesión del navegador
+        response.addCookie(cookie(token, -1));
+    }
+
+    private static String token(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return null;
+        }
+        for (Cookie cookie : cookies) {
+            if (SESSION_COOKIE.equals(cookie.getName())) {
+                return cookie.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static Cookie cookie(String valor, int maxAge) {
+        Cookie cookie = new Cookie(SESSION_COOKIE, valor);
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge(maxAge);
+        cookie.setAttribute("SameSite", "Lax");
+        return cookie;
+    }
 }
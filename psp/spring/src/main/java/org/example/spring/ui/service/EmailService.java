@@ -1,44 +1,48 @@
 package org.example.spring.ui.service;
 
-import jakarta.mail.internet.MimeMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 
+import java.io.UncheckedIOException;
+
+/**
+ * Correos de la aplicación. No envía directamente: deja el correo en
+ * MailQueue, que lo manda en segundo plano, así que una petición (p. ej. el
+ * registro) no espera al servidor SMTP.
+ */
 @Service
 public class EmailService {
 
     private static final Logger log = LoggerFactory.getLogger(EmailService.class);
-    private final JavaMailSender mailSender;
+    private final MailQueue mailQueue;
 
-    public EmailService(JavaMailSender mailSender) {
-        this.mailSender = mailSender;
+    public EmailService(MailQueue mailQueue) {
+        this.mailQueue = mailQueue;
     }
 
     public void enviarEmailActivacion(String destinatario, String nombreUsuario, String codigoActivacion) {
 
+        // En desarrollo, si el correo no sale, mostramos el código en consola
+        String aviso = avisoActivacion(destinatario, codigoActivacion);
         try
         {
-            MimeMessage mensaje = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(mensaje, true, "UTF-8");
-
-            helper.setTo(destinatario);
-            helper.setSubject("Activación de cuenta - Sistema");
-            helper.setText(construirMensajeActivacion(nombreUsuario, codigoActivacion), true);
-            mailSender.send(mensaje);
-        } catch (Exception e) {
-            log.error("Error al enviar correo a {}", destinatario, e);
-            System.err.println("Error al enviar correo: " + e.getMessage());
-            // En desarrollo, mostramos el código en consola
-            System.out.println("=================================================");
-            System.out.println("CÓDIGO DE ACTIVACIÓN PARA: " + destinatario);
-            System.out.println("Código: " + codigoActivacion);
-            System.out.println("=================================================");
+            mailQueue.enqueue(destinatario, "Activación de cuenta - Sistema",
+                    construirMensajeActivacion(nombreUsuario, codigoActivacion), aviso);
+        } catch (UncheckedIOException | IllegalStateException e) {
+            log.error("Error al encolar correo a {}", destinatario, e);
+            System.out.println(aviso);
         }
     }
 
+    private static String avisoActivacion(String destinatario, String codigoActivacion) {
+        return String.join(System.lineSeparator(),
+                "=================================================",
+                "CÓDIGO DE ACTIVACIÓN PARA: " + destinatario,
+                "Código: " + codigoActivacion,
+                "=================================================");
+    }
+
     private String construirMensajeActivacion(String nombreUsuario, String codigoActivacion) {
         return """
                 <!DOCTYPE html>
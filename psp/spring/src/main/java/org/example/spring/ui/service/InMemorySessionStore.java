@@ -0,0 +1,70 @@
+package org.example.spring.ui.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sesiones en un mapa en memoria (una sola instancia de la aplicación)
+ */
+@Service
+@ConditionalOnProperty(name = "application.session.store", havingValue = "memory")
+public class InMemorySessionStore implements SessionStore {
+
+    private static final int LIMPIAR_CADA = 1024;
+
+    private final Map<String, SessionRecord> sesiones = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final AtomicLong creadas = new AtomicLong();
+    private final long ttl;
+
+    public InMemorySessionStore(@Value("${application.session.timeout-minutes:30}") long timeoutMinutes) {
+        this.ttl = timeoutMinutes * 60_000;
+    }
+
+    @Override
+    public String create(long userId, String rol, boolean pendingTwoFactor) {
+        long ahora = System.currentTimeMillis();
+        // Las caducadas que nadie vuelve a pedir se quitan de vez en cuando
+        if (creadas.incrementAndGet() % LIMPIAR_CADA == 0) {
+            sesiones.values().removeIf(s -> s.expiresAt() <= ahora);
+        }
+        byte[] bytes = new byte[20];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sesiones.put(token, new SessionRecord(userId, rol, pendingTwoFactor, ahora + ttl));
+        return token;
+    }
+
+    @Override
+    public Optional<SessionRecord> find(String token) {
+        SessionRecord sesion = sesiones.get(token);
+        if (sesion == null) {
+            return Optional.empty();
+        }
+        long ahora = System.currentTimeMillis();
+        if (sesion.expiresAt() <= ahora) {
+            sesiones.remove(token, sesion);
+            return Optional.empty();
+        }
+        if (sesion.expiresAt() - ahora < ttl / 2) {
+            SessionRecord renovada = new SessionRecord(sesion.userId(), sesion.rol(), sesion.pendingTwoFactor(), ahora + ttl);
+            if (sesiones.replace(token, sesion, renovada)) {
+                sesion = renovada;
+            }
+        }
+        return Optional.of(sesion);
+    }
+
+    @Override
+    public void delete(String token) {
+        sesiones.remove(token);
+    }
+}
@@ -1,31 +1,139 @@
 package org.example.spring.ui.service;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.security.Key;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
+/**
+ * Genera y valida tokens JWT
+ *
+ * La clave HMAC y el parser se construyen una sola vez (el parser de jjwt es
+ * inmutable y seguro entre hilos). validateAndParse verifica la firma y lee
+ * los claims en un único parseo y guarda el resultado, indexado por el
+ * SHA-256 del token, hasta que el token caduca: volver a presentar el mismo
+ * token no vuelve a verificar la firma ni a parsear el JSON.
+ *
+ * Todos los tokens llevan un id (jti) y un tipo ("access" o "refresh"); los
+ * que salen de un par login/refresh llevan además la familia ("fam") de la
+ * sesión. validateAndParse rechaza los tokens cuyo id o familia están en
+ * TokenRevocationStore (también los que estaban en la caché) y los refresh
+ * tokens: solo sirven para POST /loginToken/refresh, que usa verify.
+ */
 @Service
 public class JwtService {
 
-    @Value("${application.security.jwt.secret-key}")
-    private String secretKey;
-    @Value("${application.security.jwt.expiration}")
-    private long jwtExpiration;
-    @Value("${application.security.jwt.refresh-token.expiration}")
-    private long refreshExpiration;
+    private final long jwtExpiration;
+    private final long refreshExpiration;
+    private final int cacheSize;
+    private final SecretKey signingKey;
+    private final JwtParser parser;
+    private final TokenRevocationStore revocationStore;
+
+    // SHA-256 del token -> datos ya verificados
+    private final Map<ByteBuffer, ValidatedToken> verificados = new ConcurrentHashMap<>();
+
+    /**
+     * Datos de un token con la firma ya verificada
+     */
+    public record ValidatedToken(
+            String username,
+            String rol,
+            String id,
+            String type,
+            String family,
+            Instant issuedAt,
+            Instant expiresAt
+    ) {
+        public boolean isRefresh() {
+            return TYPE_REFRESH.equals(type);
+        }
+    }
+
+    public static final String TYPE_ACCESS = "access";
+    public static final String TYPE_REFRESH = "refresh";
+
+    public JwtService(@Value("${application.security.jwt.secret-key}") String secretKey,
+                      @Value("${application.security.jwt.expiration}") long jwtExpiration,
+                      @Value("${application.security.jwt.refresh-token.expiration}") long refreshExpiration,
+                      @Value("${application.security.jwt.cache-size:10000}") int cacheSize,
+                      TokenRevocationStore revocationStore) {
+        this.jwtExpiration = jwtExpiration;
+        this.refreshExpiration = refreshExpiration;
+        this.cacheSize = cacheSize;
+        this.revocationStore = revocationStore;
+        this.signingKey = getSignInKey(secretKey);
+        this.parser = Jwts
+                .parser()
+                .verifyWith(signingKey)
+                .build();
+    }
+
+    /**
+     * Verifica un access token y devuelve sus datos con un solo parseo (o
+     * desde la caché)
+     *
+     * @throws JwtException si la firma no es válida, está mal formado, ha
+     *         caducado, está revocado o es un refresh token
+     */
+    public ValidatedToken validateAndParse(String token) {
+        ValidatedToken datos = verify(token);
+        if (datos.isRefresh()) {
+            throw new JwtException("Se esperaba un access token");
+        }
+        if (revocationStore.isRevoked(datos.id()) || revocationStore.isRevoked(datos.family())) {
+            throw new JwtException("Token revocado");
+        }
+        return datos;
+    }
+
+    /**
+     * Como validateAndParse pero sin mirar las revocaciones ni el tipo (la
+     * rotación de refresh tokens necesita distinguir "revocado" de
+     * "reutilizado")
+     */
+    ValidatedToken verify(String token) {
+        ByteBuffer clave = ByteBuffer.wrap(sha256(token));
+        ValidatedToken cacheado = verificados.get(clave);
+        if (cacheado != null) {
+            if (cacheado.expiresAt().isAfter(Instant.now())) {
+                return cacheado;
+            }
+            verificados.remove(clave);
+        }
+
+        Claims claims = extractAllClaims(token);
+        Date expiration = claims.getExpiration();
+        Date issuedAt = claims.getIssuedAt();
+        if (expiration == null) {
+            throw new JwtException("El token no tiene fecha de expiración");
+        }
+        ValidatedToken datos = new ValidatedToken(
+                claims.getSubject(),
+                (String) claims.get("auth"),
+                claims.getId(),
+                claims.get("typ") != null ? claims.get("typ").toString() : TYPE_ACCESS,
+                (String) claims.get("fam"),
+                issuedAt != null ? issuedAt.toInstant() : null,
+                expiration.toInstant()
+        );
+        guardar(clave, datos);
+        return datos;
+    }
 
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
@@ -58,7 +166,42 @@ public class JwtService {
     public String generateRefreshToken(
             String username
     ) {
-        return buildToken(new HashMap<>(), username, refreshExpiration);
+        return generateRefreshToken(username, null, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Refresh token de una familia (todas las rotaciones de una misma sesión
+     * comparten familia y se pueden revocar juntas)
+     */
+    public String generateRefreshToken(String username, String rol, String family) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("typ", TYPE_REFRESH);
+        claims.put("fam", family);
+        if (rol != null) {
+            claims.put("auth", rol);
+        }
+        return buildToken(claims, username, refreshExpiration);
+    }
+
+    /**
+     * Access token de una familia
+     */
+    public String generateAccessToken(String username, String rol, String family) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("typ", TYPE_ACCESS);
+        claims.put("fam", family);
+        if (rol != null) {
+            claims.put("auth", rol);
+        }
+        return buildToken(claims, username, jwtExpiration);
+    }
+
+    public long getJwtExpiration() {
+        return jwtExpiration;
+    }
+
+    public long getRefreshExpiration() {
+        return refreshExpiration;
     }
 
     private String buildToken(
@@ -71,38 +214,59 @@ public class JwtService {
         return Jwts
                 .builder()
                 .claims(extraClaims)
+                .id(UUID.randomUUID().toString())
                 .subject(username)
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSignInKey())
+                .signWith(signingKey)
                 .compact();
     }
 
     public boolean isTokenValid(String token, String username) {
-        final String usernameToken = extractUsername(token);
-        return (usernameToken.equals(username) && !isTokenExpired(token));
-    }
-
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
-    }
-
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+        try {
+            return validateAndParse(token).username().equals(username);
+        } catch (JwtException | IllegalArgumentException e) {
+            // Firma incorrecta, mal formado, vacío o caducado (ExpiredJwtException)
+            return false;
+        }
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts
-                .parser()
-                .verifyWith((SecretKey) getSignInKey())
-                .build()
+        return parser
                 .parseSignedClaims(token)
                 .getPayload();
     }
-    private Key getSigningKey() {
-        return Keys.hmacShaKeyFor(secretKey.getBytes());
+
+    /**
+     * Guarda un token verificado; si la caché está llena se quitan primero los
+     * caducados y, si no basta, una parte cualquiera de las entradas
+     */
+    private void guardar(ByteBuffer clave, ValidatedToken datos) {
+        if (cacheSize <= 0) {
+            return;
+        }
+        if (verificados.size() >= cacheSize) {
+            Instant ahora = Instant.now();
+            verificados.values().removeIf(t -> !t.expiresAt().isAfter(ahora));
+            Iterator<ByteBuffer> it = verificados.keySet().iterator();
+            for (int quitar = verificados.size() - cacheSize * 9 / 10; quitar > 0 && it.hasNext(); quitar--) {
+                it.next();
+                it.remove();
+            }
+        }
+        verificados.put(clave, datos);
     }
-    private Key getSignInKey() {
+
+    private static byte[] sha256(String token) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    private static SecretKey getSignInKey(String secretKey) {
 
         final MessageDigest digest;
         try {
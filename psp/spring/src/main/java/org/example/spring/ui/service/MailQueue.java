@@ -0,0 +1,488 @@
+package org.example.spring.ui.service;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cola de correos salientes: quien envía no espera al servidor SMTP
+ *
+ * - enqueue escribe el correo en el spool (un fichero por correo, con
+ *   escritura atómica) y lo mete en una cola en memoria acotada. Si la
+ *   aplicación se cae, al arrancar se vuelve a cargar lo que quedó en el spool.
+ * - Si la cola está llena el correo se queda solo en disco; cada pocos
+ *   segundos se rellena la cola desde el spool.
+ * - Varios hilos sacan lotes de la cola y los envían con una sola llamada a
+ *   send(MimeMessage...): JavaMailSenderImpl abre una conexión SMTP por
+ *   llamada, así que el lote entero comparte conexión.
+ * - Un fallo reprograma el correo con espera exponencial (y algo de azar);
+ *   tras el máximo de intentos pasa al fichero de dead letters.
+ * - Un correo puede llevar un aviso que se escribe por consola la primera vez
+ *   que falla (en desarrollo, sin SMTP, así se ve el código de activación).
+ * - metrics() da profundidad de cola, pendientes en disco, contadores y
+ *   latencias (de envío por lote y de extremo a extremo).
+ */
+@Service
+public class MailQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(MailQueue.class);
+    private static final String EXTENSION = ".mail";
+    private static final long RELLENO_MILLIS = 5000;
+
+    /**
+     * Un correo pendiente tal como se guarda en el spool
+     *
+     * @param aviso Texto para la consola si el primer envío falla (puede ser null)
+     */
+    record Mensaje(String id, String para, String asunto, String html, String aviso,
+                   int intentos, long siguienteIntento, long creado) {
+
+        Mensaje conFallo(long siguienteIntento) {
+            return new Mensaje(id, para, asunto, html, aviso, intentos + 1, siguienteIntento, creado);
+        }
+    }
+
+    private final JavaMailSender mailSender;
+    private final BlockingQueue<Mensaje> cola;
+    private final Path spool;
+    private final Path deadLetters;
+    private final int tamanoLote;
+    private final int maxIntentos;
+    private final long esperaBase;
+    private final long esperaMaxima;
+    private final List<Thread> workers = new ArrayList<>();
+    private final ScheduledExecutorService scheduler;
+
+    // Ids que están en la cola, enviándose o esperando reintento (el resto del spool solo está en disco)
+    private final Set<String> enMemoria = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean pendientesEnDisco = new AtomicBoolean(true);
+    private final Object deadLettersLock = new Object();
+
+    private final LongAdder encolados = new LongAdder();
+    private final LongAdder enviados = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder muertos = new LongAdder();
+    private final LongAdder lotes = new LongAdder();
+    private final LongAdder nanosEnvio = new LongAdder();
+    private final AtomicLong maxNanosEnvio = new AtomicLong();
+    private final LongAdder millisExtremo = new LongAdder();
+    private final AtomicLong maxMillisExtremo = new AtomicLong();
+
+    private volatile boolean cerrada;
+
+    public MailQueue(JavaMailSender mailSender,
+                     @Value("${mail.queue.capacity:1000}") int capacidad,
+                     @Value("${mail.queue.workers:2}") int numWorkers,
+                     @Value("${mail.queue.batch-size:20}") int tamanoLote,
+                     @Value("${mail.queue.max-attempts:6}") int maxIntentos,
+                     @Value("${mail.queue.backoff-ms:1000}") long esperaBase,
+                     @Value("${mail.queue.backoff-max-ms:300000}") long esperaMaxima,
+                     @Value("${mail.spool.dir:data/mail-spool}") String spool,
+                     @Value("${mail.dead-letter.file:data/mail-dead-letter.log}") String deadLetters) {
+        this.mailSender = mailSender;
+        this.cola = new LinkedBlockingQueue<>(Math.max(capacidad, 1));
+        this.tamanoLote = Math.max(tamanoLote, 1);
+        this.maxIntentos = Math.max(maxIntentos, 1);
+        this.esperaBase = Math.max(esperaBase, 1);
+        this.esperaMaxima = Math.max(esperaMaxima, this.esperaBase);
+        this.spool = Path.of(spool);
+        this.deadLetters = Path.of(deadLetters);
+        try {
+            Files.createDirectories(this.spool);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se puede crear el spool de correo " + spool, e);
+        }
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "mail-reintentos");
+            t.setDaemon(true);
+            return t;
+        });
+        // La primera pasada carga lo que quedó en el spool de la ejecución anterior
+        scheduler.scheduleWithFixedDelay(this::rellenar, 0, RELLENO_MILLIS, TimeUnit.MILLISECONDS);
+
+        for (int i = 0; i < Math.max(numWorkers, 1); i++) {
+            Thread worker = new Thread(this::trabajar, "mail-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * Deja el correo pendiente de envío y vuelve sin esperar al SMTP
+     *
+     * @return id del correo en el spool
+     * @throws UncheckedIOException si no se puede escribir en el spool
+     */
+    public String enqueue(String para, String asunto, String html) {
+        return enqueue(para, asunto, html, null);
+    }
+
+    /**
+     * Igual que {@link #enqueue(String, String, String)}, con un aviso que se
+     * escribe por consola si el primer intento de envío falla
+     */
+    public String enqueue(String para, String asunto, String html, String avisoSiFalla) {
+        if (cerrada) {
+            throw new IllegalStateException("La cola de correo está cerrada");
+        }
+        Mensaje mensaje = new Mensaje(UUID.randomUUID().toString(), para, asunto, html, avisoSiFalla,
+                0, 0, System.currentTimeMillis());
+        // Se marca antes de escribir para que rellenar() no lo coja del spool a la vez
+        enMemoria.add(mensaje.id());
+        try {
+            escribir(mensaje);
+        } catch (UncheckedIOException e) {
+            enMemoria.remove(mensaje.id());
+            throw e;
+        }
+        encolados.increment();
+        ofrecer(mensaje);
+        return mensaje.id();
+    }
+
+    /**
+     * Profundidad de la cola, contadores y latencias
+     */
+    public Map<String, Object> metrics() {
+        long numLotes = lotes.sum();
+        long numEnviados = enviados.sum();
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("queueDepth", cola.size());
+        metricas.put("queueCapacity", cola.size() + cola.remainingCapacity());
+        metricas.put("inFlight", enMemoria.size());
+        metricas.put("spooled", contarSpool());
+        metricas.put("enqueued", encolados.sum());
+        metricas.put("sent", numEnviados);
+        metricas.put("failedAttempts", fallos.sum());
+        metricas.put("deadLettered", muertos.sum());
+        metricas.put("batches", numLotes);
+        metricas.put("avgBatchSendMillis", numLotes == 0 ? 0 : nanosEnvio.sum() / numLotes / 1_000_000.0);
+        metricas.put("maxBatchSendMillis", maxNanosEnvio.get() / 1_000_000.0);
+        metricas.put("avgEndToEndMillis", numEnviados == 0 ? 0 : millisExtremo.sum() / (double) numEnviados);
+        metricas.put("maxEndToEndMillis", maxMillisExtremo.get());
+        return metricas;
+    }
+
+    /**
+     * Para los hilos; lo que no se haya enviado sigue en el spool para el
+     * siguiente arranque
+     */
+    @PreDestroy
+    public void cerrar() {
+        cerrada = true;
+        scheduler.shutdownNow();
+        workers.forEach(Thread::interrupt);
+    }
+
+    private void trabajar() {
+        List<Mensaje> lote = new ArrayList<>(tamanoLote);
+        while (!cerrada) {
+            try {
+                lote.add(cola.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            cola.drainTo(lote, tamanoLote - 1);
+            try {
+                enviar(lote);
+            } catch (RuntimeException e) {
+                log.error("Error inesperado enviando un lote de {} correos", lote.size(), e);
+                lote.forEach(m -> reintentar(m, e));
+            }
+            lote.clear();
+        }
+    }
+
+    private void enviar(List<Mensaje> lote) {
+        Map<MimeMessage, Mensaje> porMime = new IdentityHashMap<>();
+        for (Mensaje mensaje : lote) {
+            try {
+                porMime.put(construir(mensaje), mensaje);
+            } catch (MessagingException e) {
+                // Mal formado (p. ej. dirección no válida): reintentar no lo arregla
+                morir(mensaje, e);
+            }
+        }
+        if (porMime.isEmpty()) {
+            return;
+        }
+
+        Map<Object, Exception> fallidos;
+        long inicio = System.nanoTime();
+        try {
+            mailSender.send(porMime.keySet().toArray(new MimeMessage[0]));
+            fallidos = Map.of();
+        } catch (MailSendException e) {
+            // Trae los mensajes que fallaron; los demás sí salieron
+            fallidos = e.getFailedMessages().isEmpty() ? todos(porMime, e) : e.getFailedMessages();
+        } catch (MailException e) {
+            fallidos = todos(porMime, e);
+        }
+        long nanos = System.nanoTime() - inicio;
+        lotes.increment();
+        nanosEnvio.add(nanos);
+        maxNanosEnvio.accumulateAndGet(nanos, Math::max);
+
+        for (Map.Entry<MimeMessage, Mensaje> entry : porMime.entrySet()) {
+            Exception error = fallidos.get(entry.getKey());
+            if (error == null) {
+                enviado(entry.getValue());
+            } else {
+                reintentar(entry.getValue(), error);
+            }
+        }
+    }
+
+    private MimeMessage construir(Mensaje mensaje) throws MessagingException {
+        MimeMessage mime = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(mime, true, "UTF-8");
+        helper.setTo(mensaje.para());
+        helper.setSubject(mensaje.asunto());
+        helper.setText(mensaje.html(), true);
+        return mime;
+    }
+
+    private static Map<Object, Exception> todos(Map<MimeMessage, Mensaje> porMime, Exception error) {
+        Map<Object, Exception> fallidos = new IdentityHashMap<>();
+        porMime.keySet().forEach(m -> fallidos.put(m, error));
+        return fallidos;
+    }
+
+    private void enviado(Mensaje mensaje) {
+        borrar(mensaje);
+        enMemoria.remove(mensaje.id());
+        enviados.increment();
+        long millis = System.currentTimeMillis() - mensaje.creado();
+        millisExtremo.add(millis);
+        maxMillisExtremo.accumulateAndGet(millis, Math::max);
+    }
+
+    /**
+     * Espera base * 2^(intentos-1), con tope y hasta un 20 % de azar para que
+     * los reintentos de un mismo lote no lleguen todos a la vez
+     */
+    private void reintentar(Mensaje mensaje, Exception error) {
+        fallos.increment();
+        avisar(mensaje);
+        if (mensaje.intentos() + 1 >= maxIntentos) {
+            morir(mensaje, error);
+            return;
+        }
+        long espera = Math.min(esperaBase << Math.min(mensaje.intentos(), 30), esperaMaxima);
+        espera += ThreadLocalRandom.current().nextLong(espera / 5 + 1);
+        Mensaje siguiente = mensaje.conFallo(System.currentTimeMillis() + espera);
+        log.warn("Fallo enviando correo {} a {} (intento {}), se reintenta en {} ms: {}",
+                mensaje.id(), mensaje.para(), siguiente.intentos(), espera, error.getMessage());
+        try {
+            escribir(siguiente);
+        } catch (UncheckedIOException e) {
+            log.error("No se pudo actualizar el spool del correo {}", mensaje.id(), e);
+        }
+        programar(siguiente, espera);
+    }
+
+    private void programar(Mensaje mensaje, long espera) {
+        if (cerrada) {
+            enMemoria.remove(mensaje.id());
+            return;
+        }
+        scheduler.schedule(() -> ofrecer(mensaje), espera, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Mete el correo en la cola; si no cabe se queda solo en el spool
+     */
+    private void ofrecer(Mensaje mensaje) {
+        if (!cola.offer(mensaje)) {
+            enMemoria.remove(mensaje.id());
+            pendientesEnDisco.set(true);
+        }
+    }
+
+    /**
+     * Carga en la cola los correos del spool que no están en memoria (los que
+     * no cupieron y los de una ejecución anterior)
+     */
+    private void rellenar() {
+        if (!pendientesEnDisco.getAndSet(false)) {
+            return;
+        }
+        try (DirectoryStream<Path> ficheros = Files.newDirectoryStream(spool, "*" + EXTENSION)) {
+            long ahora = System.currentTimeMillis();
+            for (Path fichero : ficheros) {
+                String id = fichero.getFileName().toString().replace(EXTENSION, "");
+                if (enMemoria.contains(id)) {
+                    continue;
+                }
+                if (cola.remainingCapacity() == 0) {
+                    pendientesEnDisco.set(true);
+                    return;
+                }
+                Mensaje mensaje = leer(fichero);
+                if (mensaje == null || !enMemoria.add(id)) {
+                    continue;
+                }
+                if (mensaje.siguienteIntento() > ahora) {
+                    programar(mensaje, mensaje.siguienteIntento() - ahora);
+                } else {
+                    ofrecer(mensaje);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Error leyendo el spool de correo {}", spool, e);
+            pendientesEnDisco.set(true);
+        }
+    }
+
+    /**
+     * Pasa el correo al fichero de dead letters (en formato properties, se
+     * puede volver a copiar al spool a mano) y lo quita del spool
+     */
+    private void morir(Mensaje mensaje, Exception error) {
+        muertos.increment();
+        avisar(mensaje);
+        log.error("Correo {} a {} descartado tras {} intentos: {}",
+                mensaje.id(), mensaje.para(), mensaje.intentos() + 1, error.getMessage());
+        synchronized (deadLettersLock) {
+            try {
+                Path padre = deadLetters.toAbsolutePath().getParent();
+                if (padre != null) {
+                    Files.createDirectories(padre);
+                }
+                try (Writer writer = Files.newBufferedWriter(deadLetters, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    propiedades(mensaje).store(writer, Instant.now() + " " + error);
+                    writer.write(System.lineSeparator());
+                }
+            } catch (IOException e) {
+                log.error("No se pudo escribir el dead letter del correo {}", mensaje.id(), e);
+                return;
+            }
+        }
+        borrar(mensaje);
+        enMemoria.remove(mensaje.id());
+    }
+
+    /**
+     * Solo en el primer fallo, para no repetir el aviso en cada reintento
+     */
+    private static void avisar(Mensaje mensaje) {
+        if (mensaje.aviso() != null && mensaje.intentos() == 0) {
+            System.out.println(mensaje.aviso());
+        }
+    }
+
+    private void escribir(Mensaje mensaje) {
+        Path destino = spool.resolve(mensaje.id() + EXTENSION);
+        Path temporal = spool.resolve(mensaje.id() + ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temporal, StandardCharsets.UTF_8)) {
+                propiedades(mensaje).store(writer, null);
+            }
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(temporal);
+            } catch (IOException ignored) {
+                // El spool no es accesible; ya se informa del error original
+            }
+            throw new UncheckedIOException("No se pudo guardar el correo en el spool", e);
+        }
+    }
+
+    private Mensaje leer(Path fichero) {
+        Properties p = new Properties();
+        try (Reader reader = Files.newBufferedReader(fichero, StandardCharsets.UTF_8)) {
+            p.load(reader);
+            return new Mensaje(
+                    p.getProperty("id"),
+                    p.getProperty("para"),
+                    p.getProperty("asunto"),
+                    p.getProperty("html"),
+                    p.getProperty("aviso"),
+                    Integer.parseInt(p.getProperty("intentos", "0")),
+                    Long.parseLong(p.getProperty("siguienteIntento", "0")),
+                    Long.parseLong(p.getProperty("creado", "0")));
+        } catch (IOException | RuntimeException e) {
+            // Puede haberse borrado entre listar y leer (ya enviado)
+            log.warn("No se pudo leer {} del spool: {}", fichero, e.getMessage());
+            return null;
+        }
+    }
+
+    private void borrar(Mensaje mensaje) {
+        try {
+            Files.deleteIfExists(spool.resolve(mensaje.id() + EXTENSION));
+        } catch (IOException e) {
+            log.error("No se pudo borrar el correo {} del spool", mensaje.id(), e);
+        }
+    }
+
+    private long contarSpool() {
+        try (DirectoryStream<Path> ficheros = Files.newDirectoryStream(spool, "*" + EXTENSION)) {
+            long n = 0;
+            for (Path ignored : ficheros) {
+                n++;
+            }
+            return n;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static Properties propiedades(Mensaje mensaje) {
+        Properties p = new Properties();
+        p.setProperty("id", mensaje.id());
+        p.setProperty("para", mensaje.para());
+        p.setProperty("asunto", mensaje.asunto());
+        p.setProperty("html", mensaje.html());
+        if (mensaje.aviso() != null) {
+            p.setProperty("aviso", mensaje.aviso());
+        }
+        p.setProperty("intentos", String.valueOf(mensaje.intentos()));
+        p.setProperty("siguienteIntento", String.valueOf(mensaje.siguienteIntento()));
+        p.setProperty("creado", String.valueOf(mensaje.creado()));
+        return p;
+    }
+}
@@ -0,0 +1,375 @@
+package org.example.spring.ui.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sesiones en un fichero mapeado en memoria que comparten todas las
+ * instancias de la aplicación de la misma máquina (sin sesiones "pegajosas"
+ * en el balanceador)
+ *
+ * El fichero es una cabecera y una tabla de ranuras de 64 bytes:
+ *
+ *   0  control: (versión << 2) | estado (libre, escribiendo, viva)
+ *   8  huella del token (primeros 128 bits de su SHA-256)
+ *   24 id de usuario
+ *   32 caducidad (millis)
+ *   40 flags (segundo factor pendiente)
+ *   41 longitud del rol, 42.. rol en ASCII (hasta 22 bytes)
+ *
+ * El token que va en la cookie lleva el número de ranura más los 128 bits
+ * aleatorios, así que buscar una sesión es leer una ranura, sin recorrer nada.
+ * En el fichero solo se guarda la huella del token: quien pueda leer el
+ * fichero no obtiene cookies válidas. Además se crea con permisos solo para
+ * el propietario (rw-------) en sistemas POSIX.
+ *
+ * Sin cerrojos: para escribir una ranura se pasa su palabra de control a
+ * "escribiendo" con compareAndSet (atómico también entre procesos, es la
+ * misma memoria física) y se publica con una escritura release. Los lectores
+ * siguen el patrón seqlock: leen el control, los campos y otra vez el
+ * control; si cambió, vuelven a leer.
+ *
+ * La caducidad es perezosa: una sesión caducada se trata como libre al
+ * leerla o al buscar hueco para una nueva. Si un proceso muere a mitad de
+ * escribir una ranura, esa ranura se queda en "escribiendo" y no se reutiliza
+ * (se pierde un hueco, no se corrompe nada).
+ *
+ * Las sesiones no ocupan heap: solo se crean objetos al leer una.
+ */
+@Service
+@ConditionalOnProperty(name = "application.session.store", havingValue = "mmap", matchIfMissing = true)
+public class MmapSessionStore implements SessionStore {
+
+    private static final Logger log = LoggerFactory.getLogger(MmapSessionStore.class);
+
+    private static final long MAGIC = 0x53455353494F4E32L; // "SESSION2"
+    // Versión anterior, con el token sin hash: se vacía al arrancar
+    private static final long MAGIC_V1 = 0x53455353494F4E31L; // "SESSION1"
+    private static final int CABECERA = 64;
+    private static final int RANURA = 64;
+
+    private static final int CONTROL = 0;
+    private static final int HUELLA_ALTA = 8;
+    private static final int HUELLA_BAJA = 16;
+    private static final int USUARIO = 24;
+    private static final int CADUCA = 32;
+    private static final int FLAGS = 40;
+    private static final int ROL_LONGITUD = 41;
+    private static final int ROL = 42;
+    private static final int ROL_MAXIMO = RANURA - ROL;
+
+    private static final long LIBRE = 0;
+    private static final long ESCRIBIENDO = 1;
+    private static final long VIVA = 2;
+
+    private static final byte FLAG_PENDIENTE_2FA = 1;
+    private static final int REINTENTOS_LECTURA = 64;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final Set<PosixFilePermission> SOLO_PROPIETARIO = PosixFilePermissions.fromString("rw-------");
+
+    private final MappedByteBuffer buffer;
+    private final int ranuras;
+    private final long ttl;
+    private final SecureRandom random = new SecureRandom();
+
+    @Autowired
+    public MmapSessionStore(@Value("${application.session.file:data/sessions.bin}") String fichero,
+                            @Value("${application.session.slots:65536}") int ranuras,
+                            @Value("${application.session.timeout-minutes:30}") long timeoutMinutes) {
+        this(Path.of(fichero), ranuras, timeoutMinutes * 60_000);
+    }
+
+    /**
+     * @param ttlMillis duración de una sesión sin uso (en las pruebas, menos de un minuto)
+     */
+    MmapSessionStore(Path ruta, int ranuras, long ttlMillis) {
+        if (ranuras < 1 || ranuras > (Integer.MAX_VALUE - CABECERA) / RANURA) {
+            throw new IllegalArgumentException("application.session.slots fuera de rango: " + ranuras);
+        }
+        this.ttl = ttlMillis;
+        try {
+            Path padre = ruta.toAbsolutePath().getParent();
+            if (padre != null) {
+                Files.createDirectories(padre);
+            }
+            crearSoloPropietario(ruta);
+            try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                 FileLock ignored = canal.lock()) {
+                // El cerrojo de fichero solo se usa aquí, para que dos instancias
+                // que arrancan a la vez no inicialicen la cabecera las dos
+                this.ranuras = abrirCabecera(canal, ranuras);
+                this.buffer = canal.map(FileChannel.MapMode.READ_WRITE, 0, CABECERA + (long) this.ranuras * RANURA);
+                this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo abrir el fichero de sesiones " + ruta, e);
+        }
+    }
+
+    @Override
+    public String create(long userId, String rol, boolean pendingTwoFactor) {
+        byte[] rolBytes = rol == null ? new byte[0] : rol.getBytes(StandardCharsets.US_ASCII);
+        if (rolBytes.length > ROL_MAXIMO) {
+            throw new IllegalArgumentException("Rol demasiado largo para la sesión: " + rol);
+        }
+        long alto = random.nextLong();
+        long bajo = random.nextLong();
+        long ahora = System.currentTimeMillis();
+        byte[] datos = new byte[20];
+
+        int inicio = ThreadLocalRandom.current().nextInt(ranuras);
+        for (int i = 0; i < ranuras; i++) {
+            int ranura = (inicio + i) % ranuras;
+            int base = CABECERA + ranura * RANURA;
+            long control = (long) LONGS.getAcquire(buffer, base + CONTROL);
+            long estado = control & 3;
+            if (estado == ESCRIBIENDO || (estado == VIVA && buffer.getLong(base + CADUCA) > ahora)) {
+                continue;
+            }
+            // Si otro la ha cogido o renovado entre medias, el control ya no es el mismo
+            long escribiendo = siguiente(control, ESCRIBIENDO);
+            if (!LONGS.compareAndSet(buffer, base + CONTROL, control, escribiendo)) {
+                continue;
+            }
+            ByteBuffer.wrap(datos).putInt(ranura).putLong(alto).putLong(bajo);
+            ByteBuffer huella = huella(datos);
+            buffer.putLong(base + HUELLA_ALTA, huella.getLong(0));
+            buffer.putLong(base + HUELLA_BAJA, huella.getLong(8));
+            buffer.putLong(base + USUARIO, userId);
+            buffer.putLong(base + CADUCA, ahora + ttl);
+            buffer.put(base + FLAGS, pendingTwoFactor ? FLAG_PENDIENTE_2FA : 0);
+            buffer.put(base + ROL_LONGITUD, (byte) rolBytes.length);
+            buffer.put(base + ROL, rolBytes);
+            LONGS.setRelease(buffer, base + CONTROL, siguiente(escribiendo, VIVA));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(datos);
+        }
+        throw new IllegalStateException("No quedan huecos para sesiones nuevas");
+    }
+
+    @Override
+    public Optional<SessionRecord> find(String token) {
+        ByteBuffer datos = decodificar(token);
+        if (datos == null) {
+            return Optional.empty();
+        }
+        int base = CABECERA + datos.getInt(0) * RANURA;
+        ByteBuffer huella = huella(datos.array());
+        long alto = huella.getLong(0);
+        long bajo = huella.getLong(8);
+
+        for (int intento = 0; intento < REINTENTOS_LECTURA; intento++) {
+            long control = (long) LONGS.getAcquire(buffer, base + CONTROL);
+            if ((control & 3) == ESCRIBIENDO) {
+                Thread.onSpinWait();
+                continue;
+            }
+            if ((control & 3) != VIVA) {
+                return Optional.empty();
+            }
+            long leidoAlto = buffer.getLong(base + HUELLA_ALTA);
+            long leidoBajo = buffer.getLong(base + HUELLA_BAJA);
+            long usuario = buffer.getLong(base + USUARIO);
+            long caduca = buffer.getLong(base + CADUCA);
+            byte flags = buffer.get(base + FLAGS);
+            int longitud = Math.min(buffer.get(base + ROL_LONGITUD) & 0xFF, ROL_MAXIMO);
+            byte[] rol = new byte[longitud];
+            buffer.get(base + ROL, rol);
+            VarHandle.loadLoadFence();
+            if ((long) LONGS.getVolatile(buffer, base + CONTROL) != control) {
+                // Alguien la escribió mientras leíamos
+                continue;
+            }
+
+            if (leidoAlto != alto || leidoBajo != bajo) {
+                return Optional.empty();
+            }
+            long ahora = System.currentTimeMillis();
+            if (caduca <= ahora) {
+                LONGS.compareAndSet(buffer, base + CONTROL, control, siguiente(control, LIBRE));
+                return Optional.empty();
+            }
+            if (caduca - ahora < ttl / 2 && renovar(base, control, ahora + ttl)) {
+                caduca = ahora + ttl;
+            }
+            return Optional.of(new SessionRecord(usuario, longitud == 0 ? null : rol(rol),
+                    (flags & FLAG_PENDIENTE_2FA) != 0, caduca));
+        }
+        log.warn("La ranura de sesión {} no se pudo leer de forma consistente", datos.getInt(0));
+        return Optional.empty();
+    }
+
+    @Override
+    public void delete(String token) {
+        ByteBuffer datos = decodificar(token);
+        if (datos == null) {
+            return;
+        }
+        int base = CABECERA + datos.getInt(0) * RANURA;
+        ByteBuffer huella = huella(datos.array());
+        long alto = huella.getLong(0);
+        long bajo = huella.getLong(8);
+
+        for (int intento = 0; intento < REINTENTOS_LECTURA; intento++) {
+            long control = (long) LONGS.getAcquire(buffer, base + CONTROL);
+            if ((control & 3) == ESCRIBIENDO) {
+                Thread.onSpinWait();
+                continue;
+            }
+            if ((control & 3) != VIVA
+                    || buffer.getLong(base + HUELLA_ALTA) != alto
+                    || buffer.getLong(base + HUELLA_BAJA) != bajo) {
+                return;
+            }
+            // Si el control no ha cambiado, el token leído era el de esta versión
+            if (LONGS.compareAndSet(buffer, base + CONTROL, control, siguiente(control, LIBRE))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Amplía la caducidad; si otro hilo o proceso la cambió antes, se deja
+     */
+    private boolean renovar(int base, long control, long caduca) {
+        long escribiendo = siguiente(control, ESCRIBIENDO);
+        if (!LONGS.compareAndSet(buffer, base + CONTROL, control, escribiendo)) {
+            return false;
+        }
+        buffer.putLong(base + CADUCA, caduca);
+        LONGS.setRelease(buffer, base + CONTROL, siguiente(escribiendo, VIVA));
+        return true;
+    }
+
+    /**
+     * Lee o escribe la cabecera (magic + número de ranuras). Si el fichero ya
+     * existe manda su número de ranuras: todas las instancias deben ver la
+     * misma tabla.
+     */
+    private static int abrirCabecera(FileChannel canal, int ranuras) throws IOException {
+        ByteBuffer cabecera = ByteBuffer.allocate(CABECERA).order(ByteOrder.LITTLE_ENDIAN);
+        if (canal.size() >= CABECERA) {
+            canal.read(cabecera, 0);
+            if (cabecera.getLong(0) == MAGIC_V1) {
+                log.info("Fichero de sesiones de la versión anterior (tokens sin hash): se vacía");
+                return inicializar(canal, ranuras);
+            }
+            if (cabecera.getLong(0) != MAGIC) {
+                throw new IllegalStateException("El fichero de sesiones no tiene el formato esperado");
+            }
+            int existentes = cabecera.getInt(8);
+            if (existentes != ranuras) {
+                log.warn("El fichero de sesiones tiene {} ranuras (configuradas {}); se usa el fichero", existentes, ranuras);
+            }
+            return existentes;
+        }
+        return inicializar(canal, ranuras);
+    }
+
+    private static int inicializar(FileChannel canal, int ranuras) throws IOException {
+        ByteBuffer cabecera = ByteBuffer.allocate(CABECERA).order(ByteOrder.LITTLE_ENDIAN);
+        cabecera.putLong(0, MAGIC);
+        cabecera.putInt(8, ranuras);
+        canal.write(cabecera, 0);
+        // Ranuras a cero = libres
+        canal.truncate(CABECERA);
+        canal.write(ByteBuffer.allocate(1), CABECERA + (long) ranuras * RANURA - 1);
+        return ranuras;
+    }
+
+    private static long siguiente(long control, long estado) {
+        return (((control >>> 2) + 1) << 2) | estado;
+    }
+
+    private static String rol(byte[] bytes) {
+        // Los roles habituales sin crear un String nuevo en cada lectura
+        if (bytes.length == 4 && bytes[0] == 'U' && bytes[1] == 'S' && bytes[2] == 'E' && bytes[3] == 'R') {
+            return "USER";
+        }
+        if (bytes.length == 5 && bytes[0] == 'A' && bytes[1] == 'D' && bytes[2] == 'M' && bytes[3] == 'I' && bytes[4] == 'N') {
+            return "ADMIN";
+        }
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Crea el fichero con permisos rw------- si no existe; si ya existe con
+     * permisos más abiertos los restringe (o avisa si no puede)
+     */
+    private static void crearSoloPropietario(Path ruta) throws IOException {
+        if (!ruta.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            return;
+        }
+        try {
+            Files.createFile(ruta, PosixFilePermissions.asFileAttribute(SOLO_PROPIETARIO));
+            return;
+        } catch (FileAlreadyExistsException e) {
+            // Creado antes o por otra instancia
+        }
+        if (!Files.getPosixFilePermissions(ruta).equals(SOLO_PROPIETARIO)) {
+            try {
+                Files.setPosixFilePermissions(ruta, SOLO_PROPIETARIO);
+            } catch (IOException e) {
+                log.warn("No se pudieron restringir los permisos de {}", ruta, e);
+            }
+        }
+    }
+
+    /**
+     * Primeros 128 bits del SHA-256 del token (ranura + 128 bits aleatorios)
+     */
+    private static ByteBuffer huella(byte[] token) {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(token));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Bytes del token (Base64 URL de ranura, 4 bytes, + 128 bits aleatorios),
+     * o null si no es un token de este almacén
+     */
+    private ByteBuffer decodificar(String token) {
+        if (token == null || token.length() != 27) {
+            return null;
+        }
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        ByteBuffer datos = ByteBuffer.wrap(bytes);
+        int ranura = datos.getInt(0);
+        return ranura >= 0 && ranura < ranuras ? datos : null;
+    }
+}
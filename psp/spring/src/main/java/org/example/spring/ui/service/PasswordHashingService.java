@@ -0,0 +1,187 @@
+package org.example.spring.ui.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hash y verificación de contraseñas (BCrypt) fuera de los hilos de Tomcat
+ *
+ * Un pool con tantos hilos como núcleos y una cola acotada: una avalancha de
+ * logins ocupa como mucho esos hilos y el resto de peticiones (las baratas,
+ * como GET /rest/cosas/{id}) siguen teniendo CPU. Si la cola está llena o la
+ * tarea no termina antes de su plazo se lanza RejectedExecutionException y el
+ * controlador responde 503 con Retry-After.
+ *
+ * BCrypt no atiende interrupciones: un hash que ya ha empezado ocupa su hilo
+ * hasta terminar aunque nadie lo espere. Lo que sí se evita es empezar hashes
+ * caducados: la tarea comprueba el plazo antes de empezar, y al vencer el
+ * plazo la tarea cancelada se saca de la cola (purge) para que no cuente en
+ * el límite que decide el 503.
+ *
+ * El tiempo en cola y el tiempo de hash se miden por separado (metrics()).
+ */
+@Service
+public class PasswordHashingService {
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final long plazoNanos;
+    private final int retryAfterMinimo;
+
+    private final LongAdder tareas = new LongAdder();
+    private final LongAdder rechazadas = new LongAdder();
+    private final LongAdder caducadas = new LongAdder();
+    private final LongAdder nanosEspera = new LongAdder();
+    private final AtomicLong maxNanosEspera = new AtomicLong();
+    private final LongAdder nanosHash = new LongAdder();
+    private final AtomicLong maxNanosHash = new AtomicLong();
+
+    public PasswordHashingService(
+        PasswordEncoder passwordEncoder,
+        @Value("${password-hashing.workers:0}") int workers,
+        @Value("${password-hashing.max-queued:64}") int maxQueued,
+        @Value("${password-hashing.deadline-ms:2000}") long deadlineMs,
+        @Value("${password-hashing.retry-after-seconds:1}") int retryAfterSeconds
+    ) {
+        this.passwordEncoder = passwordEncoder;
+        this.plazoNanos = TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+        this.retryAfterMinimo = Math.max(retryAfterSeconds, 1);
+
+        // 0 = uno por núcleo
+        int hilos = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+            hilos, hilos, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(maxQueued, 1)),
+            r -> {
+                Thread t = new Thread(r, "password-hash-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            },
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    /**
+     * @throws RejectedExecutionException si la cola está llena o se pasa el plazo
+     */
+    public String encode(String rawPassword) {
+        return ejecutar(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    /**
+     * @throws RejectedExecutionException si la cola está llena o se pasa el plazo
+     */
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return ejecutar(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Segundos que conviene esperar antes de reintentar: lo que tardaría en
+     * vaciarse la cola actual al ritmo medio de hash (como mínimo el configurado)
+     */
+    public int retryAfterSeconds() {
+        long hechas = tareas.sum();
+        if (hechas == 0) {
+            return retryAfterMinimo;
+        }
+        double segundos = (double) executor.getQueue().size() * (nanosHash.sum() / hechas)
+                / executor.getMaximumPoolSize() / 1e9;
+        return (int) Math.max(retryAfterMinimo, Math.ceil(segundos));
+    }
+
+    public Map<String, Object> metrics() {
+        long hechas = tareas.sum();
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("workers", executor.getMaximumPoolSize());
+        metricas.put("active", executor.getActiveCount());
+        metricas.put("queueDepth", executor.getQueue().size());
+        metricas.put("queueCapacity", executor.getQueue().size() + executor.getQueue().remainingCapacity());
+        metricas.put("completed", hechas);
+        metricas.put("rejected", rechazadas.sum());
+        metricas.put("timedOut", caducadas.sum());
+        metricas.put("avgQueueWaitMillis", hechas == 0 ? 0 : nanosEspera.sum() / hechas / 1_000_000.0);
+        metricas.put("maxQueueWaitMillis", maxNanosEspera.get() / 1_000_000.0);
+        metricas.put("avgHashMillis", hechas == 0 ? 0 : nanosHash.sum() / hechas / 1_000_000.0);
+        metricas.put("maxHashMillis", maxNanosHash.get() / 1_000_000.0);
+        metricas.put("retryAfterSeconds", retryAfterSeconds());
+        return metricas;
+    }
+
+    private <T> T ejecutar(Callable<T> tarea) {
+        long encolada = System.nanoTime();
+        Future<T> futuro;
+        try {
+            futuro = executor.submit(() -> {
+                long inicio = System.nanoTime();
+                // El llamante ya se ha rendido: no se gasta un hilo en un hash que nadie espera
+                if (inicio - encolada >= plazoNanos) {
+                    throw new RejectedExecutionException("Plazo vencido antes de empezar el hash");
+                }
+                try {
+                    return tarea.call();
+                } finally {
+                    long fin = System.nanoTime();
+                    tareas.increment();
+                    registrar(nanosEspera, maxNanosEspera, inicio - encolada);
+                    registrar(nanosHash, maxNanosHash, fin - inicio);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rechazadas.increment();
+            throw new RejectedExecutionException("Cola de hash de contraseñas llena", e);
+        }
+
+        try {
+            return futuro.get(plazoNanos - (System.nanoTime() - encolada), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // Si aún estaba en cola ya no se ejecuta (un hash ya empezado sigue hasta terminar)
+            descartar(futuro);
+            caducadas.increment();
+            throw new RejectedExecutionException("El hash de la contraseña no terminó a tiempo", e);
+        } catch (InterruptedException e) {
+            descartar(futuro);
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrumpido esperando el hash de la contraseña", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Cancela la tarea y la quita de la cola para que deje libre su hueco
+     */
+    private void descartar(Future<?> futuro) {
+        futuro.cancel(false);
+        executor.purge();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static void registrar(LongAdder suma, AtomicLong maximo, long nanos) {
+        suma.add(nanos);
+        maximo.accumulateAndGet(nanos, Math::max);
+    }
+}
@@ -0,0 +1,102 @@
+package org.example.spring.ui.service;
+
+import io.jsonwebtoken.JwtException;
+import org.example.spring.ui.dto.TokenResponse;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Pares access/refresh con rotación y detección de reutilización
+ *
+ * - Cada login crea una familia (id de sesión) que llevan todos sus tokens.
+ * - Cada refresh token solo sirve una vez: al usarlo se revoca su jti con
+ *   revokeIfAbsent (atómico), y se emite un par nuevo de la misma familia.
+ * - Si llega un refresh token que ya se usó, alguien lo ha copiado: se revoca
+ *   la familia entera (el atacante y el usuario legítimo tienen que volver a
+ *   hacer login).
+ * - Logout revoca el access token y la familia.
+ *
+ * Las revocaciones se guardan en TokenRevocationStore, así que también se
+ * detecta la reutilización después de reiniciar la aplicación.
+ */
+@Service
+public class RefreshTokenService {
+
+    private final JwtService jwtService;
+    private final TokenRevocationStore revocationStore;
+
+    public RefreshTokenService(JwtService jwtService, TokenRevocationStore revocationStore) {
+        this.jwtService = jwtService;
+        this.revocationStore = revocationStore;
+    }
+
+    /**
+     * Primer par de tokens de una sesión nueva
+     */
+    public TokenResponse login(String username, String rol) {
+        return emitir(username, rol, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Cambia un refresh token por un par nuevo
+     *
+     * @throws JwtException si el token no es válido o ha caducado
+     * @throws IllegalArgumentException si no es un refresh token
+     * @throws IllegalStateException si la sesión está revocada o el token ya se usó
+     */
+    public TokenResponse refresh(String refreshToken) {
+        JwtService.ValidatedToken datos = jwtService.verify(refreshToken);
+        if (!datos.isRefresh() || datos.family() == null || datos.id() == null) {
+            throw new IllegalArgumentException("No es un refresh token");
+        }
+        if (revocationStore.isRevoked(datos.family())) {
+            throw new IllegalStateException("La sesión ha sido revocada");
+        }
+        if (!revocationStore.revokeIfAbsent(datos.id(), datos.expiresAt())) {
+            revocarFamilia(datos.family());
+            throw new IllegalStateException("Refresh token reutilizado: se ha revocado la sesión");
+        }
+        return emitir(datos.username(), datos.rol(), datos.family());
+    }
+
+    /**
+     * Revoca el access token y, con él, toda su sesión
+     *
+     * @param refreshToken opcional, para los access tokens sin familia
+     */
+    public void logout(String accessToken, String refreshToken) {
+        JwtService.ValidatedToken access = jwtService.validateAndParse(accessToken);
+        if (access.id() != null) {
+            revocationStore.revoke(access.id(), access.expiresAt());
+        }
+        if (access.family() != null) {
+            revocarFamilia(access.family());
+        }
+        if (refreshToken != null && !refreshToken.isBlank()) {
+            JwtService.ValidatedToken refresh = jwtService.verify(refreshToken);
+            if (refresh.family() != null) {
+                revocarFamilia(refresh.family());
+            } else if (refresh.id() != null) {
+                revocationStore.revoke(refresh.id(), refresh.expiresAt());
+            }
+        }
+    }
+
+    private TokenResponse emitir(String username, String rol, String family) {
+        return new TokenResponse(
+                jwtService.generateAccessToken(username, rol, family),
+                jwtService.generateRefreshToken(username, rol, family),
+                "Bearer",
+                jwtService.getJwtExpiration() / 1000
+        );
+    }
+
+    /**
+     * Ningún token de la familia dura más que un refresh token recién emitido
+     */
+    private void revocarFamilia(String family) {
+        revocationStore.revoke(family, Instant.now().plusMillis(jwtService.getRefreshExpiration()));
+    }
+}
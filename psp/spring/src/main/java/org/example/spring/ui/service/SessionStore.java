@@ -0,0 +1,34 @@
+package org.example.spring.ui.service;
+
+import java.util.Optional;
+
+/**
+ * Almacén de sesiones de login, independiente del HttpSession del contenedor
+ *
+ * La sesión se identifica con un token opaco (cookie SID) y guarda solo lo
+ * necesario para autorizar: id de usuario, rol, si falta el segundo factor y
+ * cuándo caduca. La caducidad es perezosa: find devuelve vacío si ya ha
+ * pasado y renueva la sesión (caducidad deslizante) cuando le queda menos de
+ * la mitad del tiempo.
+ *
+ * Implementaciones (application.session.store):
+ * - mmap (por defecto): fichero mapeado en memoria compartido por varias
+ *   instancias de la aplicación en la misma máquina
+ * - memory: mapa en memoria, solo para una instancia
+ */
+public interface SessionStore {
+
+    record SessionRecord(long userId, String rol, boolean pendingTwoFactor, long expiresAt) {
+    }
+
+    /**
+     * Crea una sesión y devuelve su token
+     *
+     * @throws IllegalStateException si no caben más sesiones
+     */
+    String create(long userId, String rol, boolean pendingTwoFactor);
+
+    Optional<SessionRecord> find(String token);
+
+    void delete(String token);
+}
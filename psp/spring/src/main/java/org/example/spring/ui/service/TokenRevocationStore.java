@@ -0,0 +1,385 @@
+package org.example.spring.ui.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lista de tokens JWT revocados, por id (jti) o por familia de refresh
+ *
+ * - revocados: id -> instante de expiración del token. Solo hace falta
+ *   recordar un token revocado hasta que caduca; después el propio JWT ya no
+ *   es válido.
+ * - Filtro de Bloom delante: la comprobación habitual ("no está revocado")
+ *   responde sin tocar el mapa y sin crear objetos. Solo si el filtro dice
+ *   "quizá" se mira el mapa.
+ * - Rueda de tiempo (timing wheel): cada id se cuelga de la ranura de su
+ *   segundo de expiración; un hilo avanza la rueda cada segundo y borra los
+ *   que han caducado. Cuando hay muchos borrados se reconstruye el filtro
+ *   (un filtro de Bloom no permite quitar elementos).
+ * - Fichero de solo añadir: cada revocación es una línea "id;expiraMillis",
+ *   se recarga al arrancar y se compacta cuando sobran líneas caducadas.
+ */
+@Service
+public class TokenRevocationStore {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenRevocationStore.class);
+    private static final long TICK_MILLIS = 1000;
+    private static final int WHEEL_SLOTS = 3600;
+
+    private final Map<String, Long> revocados = new ConcurrentHashMap<>();
+    private final TimingWheel rueda = new TimingWheel(TICK_MILLIS, WHEEL_SLOTS);
+    private final Path fichero;
+    private final int capacidadInicial;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile BloomFilter filtro;
+    private long borradosDesdeFiltro;
+    private long lineasFichero;
+    private BufferedWriter writer;
+
+    public TokenRevocationStore(@Value("${application.security.jwt.revocation.file:data/revoked-tokens.log}") String fichero,
+                                @Value("${application.security.jwt.revocation.expected:100000}") int capacidadInicial) {
+        this.fichero = Path.of(fichero);
+        this.capacidadInicial = Math.max(capacidadInicial, 1024);
+        this.filtro = new BloomFilter(this.capacidadInicial);
+        cargar();
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "revocaciones-jwt");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::avanzar, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * true si el id está revocado y aún no ha caducado
+     */
+    public boolean isRevoked(String id) {
+        if (id == null || !filtro.mightContain(id)) {
+            return false;
+        }
+        Long expira = revocados.get(id);
+        return expira != null && expira > System.currentTimeMillis();
+    }
+
+    /**
+     * Revoca un id hasta el instante indicado
+     */
+    public void revoke(String id, Instant expiresAt) {
+        revokeIfAbsent(id, expiresAt);
+    }
+
+    /**
+     * Revoca el id solo si no lo estaba ya (atómico)
+     *
+     * @return true si se ha revocado ahora, false si ya estaba revocado
+     */
+    public synchronized boolean revokeIfAbsent(String id, Instant expiresAt) {
+        long expira = expiresAt.toEpochMilli();
+        if (expira <= System.currentTimeMillis()) {
+            // Ya caducado: el JWT no es válido de todas formas, no hay nada que recordar
+            return true;
+        }
+        Long anterior = revocados.putIfAbsent(id, expira);
+        if (anterior != null && anterior > System.currentTimeMillis()) {
+            return false;
+        }
+        if (anterior != null) {
+            revocados.put(id, expira);
+        }
+        filtro.add(id);
+        rueda.add(id, expira);
+        anadirAlFichero(id, expira);
+        if (revocados.size() > filtro.capacidad) {
+            reconstruirFiltro();
+        }
+        return true;
+    }
+
+    public int size() {
+        return revocados.size();
+    }
+
+    @PreDestroy
+    public synchronized void cerrar() {
+        scheduler.shutdownNow();
+        try {
+            if (writer != null) {
+                writer.close();
+            }
+        } catch (IOException e) {
+            log.warn("No se pudo cerrar {}", fichero, e);
+        }
+    }
+
+    /**
+     * Un paso de la rueda: quita los ids caducados y, si hace falta,
+     * reconstruye el filtro o compacta el fichero
+     */
+    private void avanzar() {
+        try {
+            long ahora = System.currentTimeMillis();
+            List<TimingWheel.Entrada> caducadas = rueda.advance(ahora);
+            if (caducadas.isEmpty()) {
+                return;
+            }
+            synchronized (this) {
+                for (TimingWheel.Entrada entrada : caducadas) {
+                    if (revocados.remove(entrada.id(), entrada.expira())) {
+                        borradosDesdeFiltro++;
+                    }
+                }
+                if (borradosDesdeFiltro > Math.max(revocados.size(), capacidadInicial / 4)) {
+                    reconstruirFiltro();
+                }
+                if (lineasFichero > 2L * revocados.size() + 1000) {
+                    compactar();
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Error avanzando la rueda de revocaciones", e);
+        }
+    }
+
+    // Se llama con el cerrojo del objeto
+    private void reconstruirFiltro() {
+        BloomFilter nuevo = new BloomFilter(Math.max(capacidadInicial, revocados.size() * 2));
+        revocados.keySet().forEach(nuevo::add);
+        filtro = nuevo;
+        borradosDesdeFiltro = 0;
+    }
+
+    private void cargar() {
+        if (!Files.exists(fichero)) {
+            return;
+        }
+        long ahora = System.currentTimeMillis();
+        long lineas = 0;
+        try {
+            for (String linea : Files.readAllLines(fichero, StandardCharsets.UTF_8)) {
+                lineas++;
+                int sep = linea.lastIndexOf(';');
+                if (sep <= 0) {
+                    continue;
+                }
+                String id = linea.substring(0, sep);
+                long expira;
+                try {
+                    expira = Long.parseLong(linea.substring(sep + 1));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (expira > ahora) {
+                    revocados.merge(id, expira, Math::max);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer " + fichero, e);
+        }
+        revocados.forEach(rueda::add);
+        reconstruirFiltro();
+        lineasFichero = lineas;
+        if (lineas > revocados.size()) {
+            compactar();
+        }
+        log.info("Revocaciones JWT cargadas: {} vigentes de {} líneas", revocados.size(), lineas);
+    }
+
+    // Se llama con el cerrojo del objeto
+    private void anadirAlFichero(String id, long expira) {
+        try {
+            if (writer == null) {
+                Path dir = fichero.toAbsolutePath().getParent();
+                if (dir != null) {
+                    Files.createDirectories(dir);
+                }
+                writer = Files.newBufferedWriter(fichero, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            writer.write(id);
+            writer.write(';');
+            writer.write(Long.toString(expira));
+            writer.newLine();
+            writer.flush();
+            lineasFichero++;
+        } catch (IOException e) {
+            // La revocación sigue en memoria aunque no se haya podido guardar
+            log.error("No se pudo guardar la revocación de {} en {}", id, fichero, e);
+        }
+    }
+
+    /**
+     * Reescribe el fichero solo con las revocaciones vigentes (fichero
+     * temporal + renombrado atómico, para no perderlo si se corta a medias)
+     */
+    private void compactar() {
+        Path tmp = fichero.resolveSibling(fichero.getFileName() + ".tmp");
+        try {
+            if (writer != null) {
+                writer.close();
+                writer = null;
+            }
+            Path dir = fichero.toAbsolutePath().getParent();
+            if (dir != null) {
+                Files.createDirectories(dir);
+            }
+            long lineas = 0;
+            try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Long> entry : revocados.entrySet()) {
+                    out.write(entry.getKey());
+                    out.write(';');
+                    out.write(Long.toString(entry.getValue()));
+                    out.newLine();
+                    lineas++;
+                }
+            }
+            Files.move(tmp, fichero, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            lineasFichero = lineas;
+        } catch (IOException e) {
+            log.warn("No se pudo compactar {}", fichero, e);
+        }
+    }
+
+    /**
+     * Filtro de Bloom sobre AtomicLongArray (los bits se ponen con CAS, así
+     * que añadir desde varios hilos no pierde bits). Sin falsos negativos;
+     * ~1 % de falsos positivos a su capacidad.
+     */
+    static final class BloomFilter {
+        private static final int HASHES = 7;
+
+        private final AtomicLongArray bits;
+        private final long numBits;
+        final int capacidad;
+
+        BloomFilter(int capacidad) {
+            this.capacidad = capacidad;
+            // m = n * ln(1/p) / ln(2)^2 con p = 1 %  ->  ~9.6 bits por elemento
+            long m = Math.max(64, (long) Math.ceil(capacidad * 9.6));
+            this.bits = new AtomicLongArray((int) ((m + 63) / 64));
+            this.numBits = bits.length() * 64L;
+        }
+
+        void add(String id) {
+            long h = hash(id);
+            long h1 = h;
+            long h2 = mix(h ^ 0x9E3779B97F4A7C15L) | 1;
+            for (int i = 0; i < HASHES; i++) {
+                long bit = Math.floorMod(h1 + i * h2, numBits);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long actual;
+                while (((actual = bits.get(word)) & mask) == 0
+                        && !bits.compareAndSet(word, actual, actual | mask)) {
+                    // Otro hilo cambió la palabra: reintentar
+                }
+            }
+        }
+
+        boolean mightContain(String id) {
+            long h = hash(id);
+            long h1 = h;
+            long h2 = mix(h ^ 0x9E3779B97F4A7C15L) | 1;
+            for (int i = 0; i < HASHES; i++) {
+                long bit = Math.floorMod(h1 + i * h2, numBits);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // FNV-1a de 64 bits sobre los char (sin getBytes) y mezcla final
+        private static long hash(String s) {
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < s.length(); i++) {
+                h ^= s.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            return mix(h);
+        }
+
+        private static long mix(long z) {
+            z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+            z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+            return z ^ (z >>> 33);
+        }
+    }
+
+    /**
+     * Rueda de tiempo: ranura = (expira / tick) % ranuras. Un id cuya
+     * expiración está a más de una vuelta se vuelve a ver en cada vuelta
+     * hasta que le toca.
+     */
+    static final class TimingWheel {
+
+        record Entrada(String id, Long expira) {
+        }
+
+        private final long tickMillis;
+        private final ConcurrentLinkedQueue<Entrada>[] ranuras;
+        private long ultimoTick;
+
+        @SuppressWarnings("unchecked")
+        TimingWheel(long tickMillis, int numRanuras) {
+            this.tickMillis = tickMillis;
+            this.ranuras = new ConcurrentLinkedQueue[numRanuras];
+            for (int i = 0; i < numRanuras; i++) {
+                ranuras[i] = new ConcurrentLinkedQueue<>();
+            }
+            this.ultimoTick = System.currentTimeMillis() / tickMillis;
+        }
+
+        void add(String id, long expira) {
+            ranuras[(int) ((expira / tickMillis) % ranuras.length)].add(new Entrada(id, expira));
+        }
+
+        /**
+         * Avanza hasta ahora y devuelve las entradas caducadas (solo lo llama el hilo de la rueda)
+         */
+        List<Entrada> advance(long ahora) {
+            long tick = ahora / tickMillis;
+            // Se vuelve a mirar la ranura del último avance: lo que aún no había
+            // caducado entonces no puede esperar a la siguiente vuelta. Si el hilo
+            // se ha retrasado más de una vuelta, basta con recorrer todas una vez
+            long desde = Math.max(ultimoTick, tick - ranuras.length + 1);
+            List<Entrada> caducadas = new ArrayList<>();
+            for (long t = desde; t <= tick; t++) {
+                Iterator<Entrada> it = ranuras[(int) (t % ranuras.length)].iterator();
+                while (it.hasNext()) {
+                    Entrada entrada = it.next();
+                    if (entrada.expira() <= ahora) {
+                        caducadas.add(entrada);
+                        it.remove();
+                    }
+                }
+            }
+            ultimoTick = tick;
+            return caducadas;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.example.spring.data;
+
+import org.example.spring.domain.model.Cosa;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput de CosaRepository con varios hilos (mezcla de lecturas y escrituras)
+ *
+ * No corre con un mvn test normal:
+ * <pre>
+ * mvn test -Dtest=CosaRepositoryBenchmark -Dbenchmark=true
+ * mvn test -Dtest=CosaRepositoryBenchmark -Dbenchmark=true -Dbenchmark.cosas=100000 -Dbenchmark.hilos=16
+ * </pre>
+ *
+ * Cada hilo hace, en cada vuelta, 90 % de findById, 5 % de findByUserId,
+ * 4 % de update y 1 % de findAll, durante unos segundos por ronda.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class CosaRepositoryBenchmark {
+
+    private static final int USUARIOS = 1000;
+    private static final long SEGUNDOS_CALENTAMIENTO = 3;
+    private static final long SEGUNDOS_RONDA = 5;
+
+    @Test
+    void mixedThroughput() throws Exception {
+        int total = Integer.getInteger("benchmark.cosas", 10_000);
+        int hilos = Integer.getInteger("benchmark.hilos", Runtime.getRuntime().availableProcessors());
+
+        CosaRepository repository = new CosaRepository();
+        for (int i = 0; i < total; i++) {
+            repository.save(new Cosa(0, i % USUARIOS, "Cosa " + i, "Descripción " + i));
+        }
+
+        ronda(repository, hilos, total, SEGUNDOS_CALENTAMIENTO, false);
+        ronda(repository, hilos, total, SEGUNDOS_RONDA, true);
+    }
+
+    private static void ronda(CosaRepository repository, int hilos, int total, long segundos, boolean informar)
+            throws Exception {
+        LongAdder lecturas = new LongAdder();
+        LongAdder escrituras = new LongAdder();
+        AtomicBoolean fin = new AtomicBoolean();
+        CountDownLatch salida = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        try {
+            Future<?>[] tareas = new Future<?>[hilos];
+            for (int h = 0; h < hilos; h++) {
+                long semilla = h;
+                tareas[h] = executor.submit(() -> {
+                    SplittableRandom random = new SplittableRandom(semilla);
+                    long blackhole = 0;
+                    salida.await();
+                    while (!fin.get()) {
+                        int id = 4 + random.nextInt(total);
+                        int op = random.nextInt(100);
+                        if (op < 90) {
+                            blackhole += repository.findById(id).map(Cosa::userId).orElse(0);
+                            lecturas.increment();
+                        } else if (op < 95) {
+                            blackhole += repository.findByUserId(id % USUARIOS).size();
+                            lecturas.increment();
+                        } else if (op < 99) {
+                            repository.update(id, new Cosa(0, id % USUARIOS, "Cosa " + id, "Editada " + op));
+                            escrituras.increment();
+                        } else {
+                            blackhole += repository.findAll().size();
+                            lecturas.increment();
+                        }
+                    }
+                    return blackhole;
+                });
+            }
+            long inicio = System.nanoTime();
+            salida.countDown();
+            Thread.sleep(TimeUnit.SECONDS.toMillis(segundos));
+            fin.set(true);
+            for (Future<?> tarea : tareas) {
+                tarea.get();
+            }
+            double transcurrido = (System.nanoTime() - inicio) / 1e9;
+            if (informar) {
+                System.out.printf("%,d cosas, %d hilos: %,.0f lecturas/s, %,.0f escrituras/s%n",
+                    total, hilos, lecturas.sum() / transcurrido, escrituras.sum() / transcurrido);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
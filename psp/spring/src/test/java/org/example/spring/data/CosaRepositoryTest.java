@@ -0,0 +1,200 @@
+package org.example.spring.data;
+
+import org.example.spring.domain.model.Cosa;
+import org.example.spring.domain.model.Pagina;
+import org.example.spring.domain.model.PaginaCursor;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * CosaRepository con escrituras y lecturas concurrentes
+ */
+class CosaRepositoryTest {
+
+    private static final int HILOS = 8;
+    private static final int POR_HILO = 500;
+
+    @Test
+    void findAllIsSortedSnapshot() {
+        CosaRepository repository = new CosaRepository();
+        Cosa nueva = repository.save(new Cosa(0, 7, "Nueva", "d"));
+        repository.update(2, new Cosa(0, 1, "Cosa 2 bis", "d"));
+        repository.delete(1, 1L);
+
+        List<Cosa> todas = repository.findAll();
+        assertEquals(List.of(2, 3, nueva.id()), todas.stream().map(Cosa::id).toList());
+        assertEquals("Cosa 2 bis", todas.get(0).nombre());
+        assertThrows(UnsupportedOperationException.class, () -> todas.add(nueva));
+
+        // La instantánea ya leída no cambia con escrituras posteriores
+        repository.delete(2, 1L);
+        assertEquals(3, todas.size());
+        assertEquals(2, repository.findAll().size());
+    }
+
+    /**
+     * Sin escrituras entre medias findAll devuelve la misma lista; tras una
+     * modificación la reconstruye con el valor nuevo
+     */
+    @Test
+    void findAllIsRebuiltOnlyAfterWrites() {
+        CosaRepository repository = new CosaRepository();
+        List<Cosa> primera = repository.findAll();
+        assertSame(primera, repository.findAll());
+
+        repository.update(3, new Cosa(0, 2, "Cosa 3 bis", "d"));
+        List<Cosa> segunda = repository.findAll();
+        assertEquals("Cosa 3 bis", segunda.get(2).nombre());
+        assertSame(segunda, repository.findAll());
+    }
+
+    @Test
+    void buscarWithoutPagingReturnsEverything() {
+        CosaRepository repository = new CosaRepository();
+        for (int i = 0; i < 250; i++) {
+            repository.save(new Cosa(0, 1, "Lámpara " + i, "d"));
+        }
+
+        assertEquals(250, repository.buscar("LAMPARA").size());
+        Pagina<Cosa> pagina = repository.buscar("lampara", 2, 100);
+        assertEquals(250, pagina.total());
+        assertEquals(50, pagina.contenido().size());
+        assertEquals(repository.buscar("lampara").subList(200, 250), pagina.contenido());
+    }
+
+    /**
+     * Cada hilo crea, modifica y borra sus cosas mientras otro lee findAll:
+     * al final findAll, findById y findByUserId coinciden, y ninguna lectura
+     * intermedia vio la lista desordenada o con ids repetidos
+     */
+    @Test
+    void concurrentWritesKeepIndexesConsistent() throws Exception {
+        CosaRepository repository = new CosaRepository();
+        ConcurrentLinkedQueue<String> errores = new ConcurrentLinkedQueue<>();
+        CountDownLatch salida = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(HILOS + 1);
+        try {
+            Future<?> lector = executor.submit(() -> {
+                salida.await();
+                while (!Thread.currentThread().isInterrupted()) {
+                    List<Cosa> todas = repository.findAll();
+                    for (int i = 1; i < todas.size(); i++) {
+                        if (todas.get(i - 1).id() >= todas.get(i).id()) {
+                            errores.add("findAll desordenado o con ids repetidos");
+                            return null;
+                        }
+                    }
+                }
+                return null;
+            });
+
+            List<Future<List<Integer>>> escritores = new ArrayList<>();
+            for (int h = 0; h < HILOS; h++) {
+                int userId = 100 + h;
+                escritores.add(executor.submit(() -> {
+                    salida.await();
+                    List<Integer> vivas = new ArrayList<>();
+                    for (int i = 0; i < POR_HILO; i++) {
+                        int id = repository.save(new Cosa(0, userId, "n" + i, "d" + i)).id();
+                        repository.update(id, new Cosa(0, userId, "m" + i, "e" + i));
+                        if (i % 3 == 0) {
+                            assertTrue(repository.delete(id, (long) userId));
+                        } else {
+                            vivas.add(id);
+                        }
+                    }
+                    return vivas;
+                }));
+            }
+
+            salida.countDown();
+            List<Integer> esperadas = new ArrayList<>(List.of(1, 2, 3));
+            for (Future<List<Integer>> escritor : escritores) {
+                esperadas.addAll(escritor.get(1, TimeUnit.MINUTES));
+            }
+            lector.cancel(true);
+
+            esperadas.sort(Comparator.naturalOrder());
+            List<Cosa> todas = repository.findAll();
+            assertEquals(esperadas, todas.stream().map(Cosa::id).toList());
+            for (Cosa cosa : todas) {
+                assertEquals(cosa, repository.findById(cosa.id()).orElseThrow());
+                assertTrue(cosa.nombre().startsWith("Cosa") || cosa.nombre().startsWith("m"));
+            }
+            for (int h = 0; h < HILOS; h++) {
+                int userId = 100 + h;
+                assertEquals(todas.stream().filter(c -> c.userId() == userId).toList(), repository.findByUserId(userId));
+            }
+            assertTrue(errores.isEmpty(), String.valueOf(errores));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Mientras se renombran cosas sin parar, recorrer por id ve cada cosa
+     * exactamente una vez y por nombre ve siempre las que no cambian, sin ids
+     * repetidos en una página
+     */
+    @Test
+    void pagingDuringUpdatesNeverLosesOrRepeats() throws Exception {
+        CosaRepository repository = new CosaRepository();
+        List<Integer> estables = new ArrayList<>();
+        List<Integer> moviles = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            estables.add(repository.save(new Cosa(0, 1, "m" + i, "d")).id());
+            moviles.add(repository.save(new Cosa(0, 1, "a" + i, "d")).id());
+        }
+        int totalCosas = repository.findAll().size();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> escritor = executor.submit(() -> {
+                for (int vuelta = 0; !Thread.currentThread().isInterrupted(); vuelta++) {
+                    for (int id : moviles) {
+                        repository.update(id, new Cosa(0, 1, (vuelta % 2 == 0 ? "z" : "a") + id, "v" + vuelta));
+                    }
+                }
+            });
+            for (int recorrido = 0; recorrido < 200; recorrido++) {
+                List<Integer> porId = recorrer(repository, "id");
+                assertEquals(totalCosas, porId.size());
+                assertEquals(totalCosas, new HashSet<>(porId).size());
+
+                List<Integer> porNombre = recorrer(repository, "nombre");
+                assertTrue(porNombre.containsAll(estables));
+            }
+            escritor.cancel(true);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<Integer> recorrer(CosaRepository repository, String sort) {
+        List<Integer> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            PaginaCursor<Cosa> pagina = repository.pagina(sort, false, cursor, 7);
+            List<Integer> enPagina = pagina.contenido().stream().map(Cosa::id).toList();
+            assertEquals(enPagina.size(), new HashSet<>(enPagina).size());
+            ids.addAll(enPagina);
+            cursor = pagina.nextCursor();
+        } while (cursor != null);
+        return ids;
+    }
+}
@@ -0,0 +1,94 @@
+package org.example.spring.data;
+
+import org.example.spring.domain.model.Cosa;
+import org.example.spring.domain.model.Pagina;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Búsqueda por texto de CosaRepository (la de /cosas/filtrar), por defecto
+ * con 1 millón de cosas
+ *
+ * No corre con un mvn test normal (el índice de 1 millón necesita más heap):
+ * <pre>
+ * mvn test -Dtest=CosaSearchBenchmark -Dbenchmark=true -DargLine=-Xmx4g
+ * mvn test -Dtest=CosaSearchBenchmark -Dbenchmark=true -Dbenchmark.cosas=200000
+ * </pre>
+ *
+ * Mide buscar(texto, 0, 100) (una página, como /filtrar con page) con una
+ * consulta muy selectiva, una común, una corta (sin trigramas, recorre los
+ * textos) y una sin resultados; y como referencia unas pocas búsquedas
+ * lineales sobre findAll() (lo que hacía /filtrar antes del índice).
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class CosaSearchBenchmark {
+
+    private static final String[] COSAS = {"Lámpara", "Mesa", "Silla", "Canción", "Árbol", "Cámara", "Reloj", "Libro"};
+    private static final String[] COLORES = {"roja", "azul", "verde", "negra", "blanca"};
+    private static final int RONDAS_CALENTAMIENTO = 3;
+    private static final int RONDAS = 5;
+    private static final int BUSQUEDAS_LINEALES = 5;
+
+    @Test
+    void buscar() {
+        int total = Integer.getInteger("benchmark.cosas", 1_000_000);
+        CosaRepository repository = new CosaRepository();
+
+        long inicio = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            repository.save(new Cosa(0, i % 1000,
+                    COSAS[i % COSAS.length] + " " + COLORES[i / COSAS.length % COLORES.length] + " " + i,
+                    "Descripción de la cosa número " + i));
+        }
+        System.out.printf("Carga de %,d cosas: %,d ms%n", total, (System.nanoTime() - inicio) / 1_000_000);
+
+        medir("selectiva (\"numero 12345\")", repository, "numero 12345", 10_000);
+        medir("común (\"LAMPARA ROJA\")", repository, "LAMPARA ROJA", 1_000);
+        medir("corta (\"ro\")", repository, "ro", 10);
+        medir("sin resultados (\"zzz\")", repository, "zzz", 100_000);
+
+        inicio = System.nanoTime();
+        long encontrados = 0;
+        for (int i = 0; i < BUSQUEDAS_LINEALES; i++) {
+            encontrados += repository.findAll().stream()
+                    .filter(c -> TrigramIndex.normalizar(c.nombre()).contains("numero 12345")
+                            || TrigramIndex.normalizar(c.descripcion()).contains("numero 12345"))
+                    .count();
+        }
+        long nanos = System.nanoTime() - inicio;
+        assertEquals(encontrados, BUSQUEDAS_LINEALES * (long) repository.buscar("numero 12345").size());
+        System.out.printf("%-32s %,14.0f ns/op (referencia, sin índice)%n", "búsqueda lineal", (double) nanos / BUSQUEDAS_LINEALES);
+    }
+
+    /**
+     * Repite la búsqueda; cada vuelta debe dar el mismo total que la primera
+     */
+    private static void medir(String nombre, CosaRepository repository, String texto, int operaciones) {
+        long esperado = repository.buscar(texto, 0, 100).total();
+        for (int i = 0; i < RONDAS_CALENTAMIENTO; i++) {
+            assertEquals(esperado * operaciones, ronda(repository, texto, operaciones));
+        }
+        double[] nsPorOp = new double[RONDAS];
+        for (int i = 0; i < RONDAS; i++) {
+            long inicio = System.nanoTime();
+            assertEquals(esperado * operaciones, ronda(repository, texto, operaciones));
+            nsPorOp[i] = (double) (System.nanoTime() - inicio) / operaciones;
+        }
+        Arrays.sort(nsPorOp);
+        System.out.printf("%-32s %,14.0f ns/op (mediana; mín %,.0f, máx %,.0f; %,d resultados)%n",
+            nombre, nsPorOp[RONDAS / 2], nsPorOp[0], nsPorOp[RONDAS - 1], esperado);
+    }
+
+    private static long ronda(CosaRepository repository, String texto, int operaciones) {
+        long total = 0;
+        for (int i = 0; i < operaciones; i++) {
+            Pagina<Cosa> pagina = repository.buscar(texto, 0, 100);
+            total += pagina.total();
+        }
+        return total;
+    }
+}
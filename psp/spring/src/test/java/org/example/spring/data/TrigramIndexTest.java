@@ -0,0 +1,85 @@
+package org.example.spring.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * TrigramIndex: normalización, consultas cortas e intersección de listas
+ */
+class TrigramIndexTest {
+
+    @Test
+    void ignoresCaseAndAccents() {
+        assertEquals("cancion ultima n", TrigramIndex.normalizar("Canción ÚLTIMA Ñ"));
+        assertEquals("", TrigramIndex.normalizar(null));
+
+        TrigramIndex indice = new TrigramIndex();
+        indice.put(1, "Canción Última", "para el Árbol");
+        indice.put(2, "Cancion", "sin tildes");
+
+        assertArrayEquals(new int[]{1, 2}, indice.buscar("CANCIÓN"));
+        assertArrayEquals(new int[]{1, 2}, indice.buscar("cancion"));
+        assertArrayEquals(new int[]{1}, indice.buscar("ultima"));
+        assertArrayEquals(new int[]{1}, indice.buscar("ÁRBOL"));
+    }
+
+    /**
+     * Menos de 3 caracteres no hay trigramas: se recorren los textos
+     */
+    @Test
+    void shortQueriesScanTheTexts() {
+        TrigramIndex indice = new TrigramIndex();
+        indice.put(3, "Ábaco", "");
+        indice.put(1, "ab", null);
+        indice.put(2, "xyz", "otra");
+
+        assertArrayEquals(new int[]{1, 3}, indice.buscar("AB"));
+        assertArrayEquals(new int[]{2}, indice.buscar("z"));
+        assertArrayEquals(new int[]{1, 2, 3}, indice.buscar(""));
+        assertArrayEquals(new int[0], indice.buscar("q"));
+    }
+
+    /**
+     * Tener todos los trigramas no basta: tienen que formar la subcadena
+     * dentro de un mismo campo
+     */
+    @Test
+    void candidatesAreConfirmedAfterIntersecting() {
+        TrigramIndex indice = new TrigramIndex();
+        indice.put(1, "cosa", "");
+        indice.put(2, "acosar", "");
+        indice.put(3, "osado", "");
+        // "cos" y "osa" en otro orden y repartidos entre los dos campos
+        indice.put(4, "osa cos", "");
+        indice.put(5, "cos", "osa");
+
+        assertArrayEquals(new int[]{1, 2}, indice.buscar("cosa"));
+        assertArrayEquals(new int[]{1, 2, 3, 4, 5}, indice.buscar("osa"));
+        assertArrayEquals(new int[0], indice.buscar("cosas"));
+    }
+
+    /**
+     * Una lista corta contra una que tiene a todas las cosas, y el índice
+     * al día tras reindexar y borrar
+     */
+    @Test
+    void intersectsShortAndLongPostingLists() {
+        TrigramIndex indice = new TrigramIndex();
+        for (int id = 1; id <= 10_000; id++) {
+            indice.put(id, "comun " + id, id % 97 == 0 ? "xcom" : "");
+        }
+        int[] multiplos = IntStream.rangeClosed(1, 10_000).filter(id -> id % 97 == 0).toArray();
+        assertArrayEquals(multiplos, indice.buscar("xcom"));
+
+        indice.put(97, "otro", "otro");
+        indice.remove(194);
+        assertArrayEquals(IntStream.of(multiplos).filter(id -> id != 97 && id != 194).toArray(),
+                indice.buscar("xcom"));
+        assertEquals(9_998, indice.buscar("comun").length);
+        assertArrayEquals(new int[]{97}, indice.buscar("otro"));
+    }
+}
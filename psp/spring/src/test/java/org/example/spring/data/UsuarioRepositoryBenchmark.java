@@ -0,0 +1,115 @@
+package org.example.spring.data;
+
+import org.example.spring.domain.model.Usuario;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Microbenchmark de las búsquedas de UsuarioRepository (por defecto con 10
+ * millones de usuarios)
+ *
+ * No corre con un mvn test normal (necesita varios GB de heap):
+ * <pre>
+ * mvn test -Dtest=UsuarioRepositoryBenchmark -Dbenchmark=true -DargLine=-Xmx8g
+ * mvn test -Dtest=UsuarioRepositoryBenchmark -Dbenchmark=true -Dbenchmark.usuarios=2000000
+ * </pre>
+ *
+ * Mide ns por findByUsername (acierto y fallo) y findByEmail con claves al
+ * azar, y como referencia unas pocas búsquedas lineales sobre findAll() (lo
+ * que hacía el repositorio antes de tener índices).
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class UsuarioRepositoryBenchmark {
+
+    private static final int CLAVES = 1 << 20;
+    private static final int RONDAS_CALENTAMIENTO = 3;
+    private static final int RONDAS = 5;
+    private static final int BUSQUEDAS_LINEALES = 10;
+
+    @Test
+    void lookups() {
+        int usuarios = Integer.getInteger("benchmark.usuarios", 10_000_000);
+        UsuarioRepository repository = new UsuarioRepository(new SinHash());
+
+        long inicio = System.nanoTime();
+        for (int i = 0; i < usuarios; i++) {
+            repository.save(new Usuario(null, "u" + i, "x", "u" + i + "@example.com", "Usuario " + i, "USER"));
+        }
+        System.out.printf("Carga de %,d usuarios: %,d ms%n", usuarios, (System.nanoTime() - inicio) / 1_000_000);
+
+        SplittableRandom random = new SplittableRandom(42);
+        String[] usernames = new String[CLAVES];
+        String[] emails = new String[CLAVES];
+        String[] inexistentes = new String[CLAVES];
+        for (int i = 0; i < CLAVES; i++) {
+            int n = random.nextInt(usuarios);
+            usernames[i] = "u" + n;
+            emails[i] = "U" + n + "@Example.com";
+            inexistentes[i] = "nadie" + n;
+        }
+
+        medir("findByUsername (existe)", usernames.length, () -> contar(repository, usernames, false));
+        medir("findByUsername (no existe)", inexistentes.length, () -> CLAVES - contar(repository, inexistentes, false));
+        medir("findByEmail (existe)", emails.length, () -> contar(repository, emails, true));
+
+        inicio = System.nanoTime();
+        int encontrados = 0;
+        for (int i = 0; i < BUSQUEDAS_LINEALES; i++) {
+            String username = usernames[i];
+            encontrados += (int) repository.findAll().stream().filter(u -> username.equals(u.username())).count();
+        }
+        long nanos = System.nanoTime() - inicio;
+        assertEquals(BUSQUEDAS_LINEALES, encontrados);
+        System.out.printf("%-28s %,14.0f ns/op (referencia, sin índice)%n", "búsqueda lineal", (double) nanos / BUSQUEDAS_LINEALES);
+    }
+
+    private static int contar(UsuarioRepository repository, String[] claves, boolean porEmail) {
+        int encontrados = 0;
+        for (String clave : claves) {
+            if ((porEmail ? repository.findByEmail(clave) : repository.findByUsername(clave)).isPresent()) {
+                encontrados++;
+            }
+        }
+        return encontrados;
+    }
+
+    /**
+     * Repite la operación; cada ronda debe encontrar todas las claves
+     */
+    private static void medir(String nombre, int operaciones, IntSupplier ronda) {
+        for (int i = 0; i < RONDAS_CALENTAMIENTO; i++) {
+            assertEquals(operaciones, ronda.getAsInt());
+        }
+        double[] nsPorOp = new double[RONDAS];
+        for (int i = 0; i < RONDAS; i++) {
+            long inicio = System.nanoTime();
+            assertEquals(operaciones, ronda.getAsInt());
+            nsPorOp[i] = (double) (System.nanoTime() - inicio) / operaciones;
+        }
+        Arrays.sort(nsPorOp);
+        System.out.printf("%-28s %,14.1f ns/op (mediana; mín %,.1f, máx %,.1f)%n",
+            nombre, nsPorOp[RONDAS / 2], nsPorOp[0], nsPorOp[RONDAS - 1]);
+    }
+
+    /**
+     * Sin BCrypt: el benchmark mide los índices, no el hash
+     */
+    private static final class SinHash implements PasswordEncoder {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return rawPassword.toString();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return rawPassword.toString().equals(encodedPassword);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.example.spring.ui.controller;
+
+import org.example.spring.data.UsuarioRepository;
+import org.example.spring.ui.dto.LoginRequest;
+import org.example.spring.ui.service.AuthService;
+import org.example.spring.ui.service.MmapSessionStore;
+import org.example.spring.ui.service.PasswordHashingService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Login con el almacén de sesiones lleno
+ */
+class AuthControllerTest {
+
+    private static final PasswordEncoder SIN_HASH = new PasswordEncoder() {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return rawPassword.toString();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return rawPassword.toString().equals(encodedPassword);
+        }
+    };
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Sin huecos para la sesión el login responde 503, no 500
+     */
+    @Test
+    void fullSessionStoreIsServiceUnavailable() {
+        UsuarioRepository usuarios = new UsuarioRepository(SIN_HASH);
+        PasswordHashingService hashing = new PasswordHashingService(SIN_HASH, 1, 1, 1000, 1);
+        AuthService authService = new AuthService(usuarios, hashing,
+                new MmapSessionStore(dir.resolve("sesiones.bin").toString(), 1, 30));
+        AuthController controller = new AuthController(authService, null, usuarios, hashing, null);
+
+        ResponseEntity<?> primero = login(controller);
+        ResponseEntity<?> segundo = login(controller);
+
+        assertEquals(200, primero.getStatusCode().value());
+        assertEquals(503, segundo.getStatusCode().value());
+        assertEquals(false, ((Map<?, ?>) segundo.getBody()).get("success"));
+    }
+
+    private static ResponseEntity<?> login(AuthController controller) {
+        return controller.login(new LoginRequest("user", "user123"),
+                new MockHttpServletRequest("POST", "/api/auth/login"), new MockHttpServletResponse());
+    }
+}
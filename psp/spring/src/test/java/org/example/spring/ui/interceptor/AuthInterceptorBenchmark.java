@@ -0,0 +1,80 @@
+package org.example.spring.ui.interceptor;
+
+import org.example.spring.ui.service.InMemorySessionStore;
+import org.example.spring.ui.service.SessionStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Coste de AuthInterceptor.preHandle por petición
+ *
+ * No corre con un mvn test normal:
+ * <pre>
+ * mvn test -Dtest=AuthInterceptorBenchmark -Dbenchmark=true
+ * </pre>
+ *
+ * Mide un handler público, un GET autenticado y un POST de admin con la
+ * sesión en InMemorySessionStore. Las peticiones se crean fuera de la medida.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class AuthInterceptorBenchmark {
+
+    private static final int PETICIONES = 100_000;
+    private static final int RONDAS_CALENTAMIENTO = 5;
+    private static final int RONDAS = 5;
+
+    @Test
+    void preHandle() throws Exception {
+        SessionStore store = new InMemorySessionStore(30);
+        AuthInterceptor interceptor = AuthInterceptorTest.interceptor(store);
+        String usuario = store.create(7, "USER", false);
+        String admin = store.create(1, "ADMIN", false);
+
+        medir(interceptor, "público", "POST", "/api/auth/login", null, AuthInterceptorTest.handler("login"));
+        medir(interceptor, "GET autenticado", "GET", "/api/cosas", usuario, AuthInterceptorTest.handler("listar"));
+        medir(interceptor, "POST admin", "POST", "/api/cosas", admin, AuthInterceptorTest.handler("crear"));
+    }
+
+    private static void medir(AuthInterceptor interceptor, String nombre, String metodo, String uri, String token,
+                              HandlerMethod handler) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        for (int i = 0; i < RONDAS_CALENTAMIENTO; i++) {
+            ronda(interceptor, peticiones(metodo, uri, token), response, handler);
+        }
+        double[] nsPorOp = new double[RONDAS];
+        for (int i = 0; i < RONDAS; i++) {
+            MockHttpServletRequest[] peticiones = peticiones(metodo, uri, token);
+            long inicio = System.nanoTime();
+            ronda(interceptor, peticiones, response, handler);
+            nsPorOp[i] = (double) (System.nanoTime() - inicio) / PETICIONES;
+        }
+        Arrays.sort(nsPorOp);
+        System.out.printf("%-16s %,8.0f ns/petición (mediana; mín %,.0f, máx %,.0f)%n",
+            nombre, nsPorOp[RONDAS / 2], nsPorOp[0], nsPorOp[RONDAS - 1]);
+    }
+
+    private static void ronda(AuthInterceptor interceptor, MockHttpServletRequest[] peticiones,
+                              MockHttpServletResponse response, HandlerMethod handler) throws Exception {
+        for (MockHttpServletRequest request : peticiones) {
+            assertTrue(interceptor.preHandle(request, response, handler));
+        }
+    }
+
+    /**
+     * Una petición nueva por llamada: AuthService deja la sesión en un atributo
+     */
+    private static MockHttpServletRequest[] peticiones(String metodo, String uri, String token) {
+        MockHttpServletRequest[] peticiones = new MockHttpServletRequest[PETICIONES];
+        for (int i = 0; i < PETICIONES; i++) {
+            peticiones[i] = AuthInterceptorTest.peticion(metodo, uri, token);
+        }
+        return peticiones;
+    }
+}
@@ -0,0 +1,206 @@
+package org.example.spring.ui.interceptor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.Cookie;
+import org.example.spring.data.UsuarioRepository;
+import org.example.spring.ui.service.AuthService;
+import org.example.spring.ui.service.InMemorySessionStore;
+import org.example.spring.ui.service.PasswordHashingService;
+import org.example.spring.ui.service.SessionStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Políticas de AuthInterceptor y lo que cuesta cada petición: una búsqueda en
+ * la tabla y una sola lectura del SessionStore
+ */
+class AuthInterceptorTest {
+
+    /**
+     * Controlador de prueba: los mappings se declaran en handlers()
+     */
+    static class Controlador {
+        public void login() {
+        }
+
+        public void listar() {
+        }
+
+        public void crear() {
+        }
+
+        @RequiresAuth(admin = true)
+        public void informe() {
+        }
+
+        @RequiresAuth(owner = "userId")
+        public void perfil() {
+        }
+    }
+
+    @Test
+    void resolvesPolicies() {
+        RequiresAuth admin = anotacion("informe");
+        RequiresAuth owner = anotacion("perfil");
+
+        assertEquals(AuthInterceptor.Politica.PUBLICA, AuthInterceptor.resolver(Set.of("/api/auth/login"), Set.of("POST"), null));
+        assertEquals(AuthInterceptor.Politica.PUBLICA, AuthInterceptor.resolver(Set.of("/rest/cosas"), Set.of("POST"), null));
+        assertEquals(AuthInterceptor.Politica.AUTENTICADO, AuthInterceptor.resolver(Set.of("/api/cosas"), Set.of("GET"), null));
+        assertEquals(AuthInterceptor.Politica.ADMIN, AuthInterceptor.resolver(Set.of("/api/cosas"), Set.of("POST", "DELETE"), null));
+        assertEquals(AuthInterceptor.Politica.POR_METODO, AuthInterceptor.resolver(Set.of("/api/cosas"), Set.of("GET", "POST"), null));
+        assertEquals(AuthInterceptor.Politica.POR_METODO, AuthInterceptor.resolver(Set.of("/api/cosas"), Set.of(), null));
+        assertEquals(AuthInterceptor.Tipo.ADMIN, AuthInterceptor.resolver(Set.of("/api/x"), Set.of("GET"), admin).tipo());
+        assertEquals("userId", AuthInterceptor.resolver(Set.of("/api/x"), Set.of("GET"), owner).owner());
+        // Rutas públicas y privadas en el mismo handler: se decide por petición
+        assertNull(AuthInterceptor.resolver(Set.of("/api/auth/login", "/api/cosas"), Set.of("POST"), null));
+    }
+
+    @Test
+    void publicHandlerDoesNotReadSession() throws Exception {
+        AtomicInteger lecturas = new AtomicInteger();
+        AuthInterceptor interceptor = interceptor(contando(new InMemorySessionStore(30), lecturas));
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertTrue(interceptor.preHandle(new MockHttpServletRequest("POST", "/api/auth/login"), response, handler("login")));
+        assertEquals(0, lecturas.get());
+    }
+
+    /**
+     * Admin en un handler de escritura: isAuthenticated e isAdmin comparten
+     * la sesión que se leyó una vez
+     */
+    @Test
+    void readsSessionOncePerRequest() throws Exception {
+        AtomicInteger lecturas = new AtomicInteger();
+        SessionStore store = contando(new InMemorySessionStore(30), lecturas);
+        AuthInterceptor interceptor = interceptor(store);
+        String admin = store.create(1, "ADMIN", false);
+
+        for (String metodo : List.of("listar", "crear", "informe", "perfil")) {
+            lecturas.set(0);
+            MockHttpServletRequest request = peticion("POST", "/api/cosas", admin);
+            request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, Map.of("userId", "7"));
+            assertTrue(interceptor.preHandle(request, new MockHttpServletResponse(), handler(metodo)), metodo);
+            assertEquals(1, lecturas.get(), metodo);
+        }
+    }
+
+    @Test
+    void rejectsWithoutSessionOrRole() throws Exception {
+        SessionStore store = new InMemorySessionStore(30);
+        AuthInterceptor interceptor = interceptor(store);
+        String usuario = store.create(7, "USER", false);
+        String pendiente = store.create(7, "USER", true);
+
+        MockHttpServletResponse sinSesion = new MockHttpServletResponse();
+        assertFalse(interceptor.preHandle(peticion("GET", "/api/cosas", null), sinSesion, handler("listar")));
+        assertEquals(401, sinSesion.getStatus());
+
+        MockHttpServletResponse a2fa = new MockHttpServletResponse();
+        assertFalse(interceptor.preHandle(peticion("GET", "/api/cosas", pendiente), a2fa, handler("listar")));
+        assertEquals(401, a2fa.getStatus());
+
+        MockHttpServletResponse noAdmin = new MockHttpServletResponse();
+        assertFalse(interceptor.preHandle(peticion("POST", "/api/cosas", usuario), noAdmin, handler("crear")));
+        assertEquals(403, noAdmin.getStatus());
+
+        assertTrue(interceptor.preHandle(peticion("GET", "/api/cosas", usuario), new MockHttpServletResponse(), handler("listar")));
+
+        MockHttpServletRequest propio = peticion("GET", "/api/usuarios/7", usuario);
+        propio.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, Map.of("userId", "7"));
+        assertTrue(interceptor.preHandle(propio, new MockHttpServletResponse(), handler("perfil")));
+
+        MockHttpServletRequest ajeno = peticion("GET", "/api/usuarios/8", usuario);
+        ajeno.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, Map.of("userId", "8"));
+        MockHttpServletResponse prohibido = new MockHttpServletResponse();
+        assertFalse(interceptor.preHandle(ajeno, prohibido, handler("perfil")));
+        assertEquals(403, prohibido.getStatus());
+    }
+
+    /**
+     * Interceptor con la tabla ya calculada para los handlers de Controlador
+     */
+    static AuthInterceptor interceptor(SessionStore store) {
+        PasswordEncoder sinHash = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                return rawPassword.toString();
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return rawPassword.toString().equals(encodedPassword);
+            }
+        };
+        AuthService authService = new AuthService(new UsuarioRepository(sinHash),
+                new PasswordHashingService(sinHash, 1, 1, 1000, 1), store);
+        AuthInterceptor interceptor = new AuthInterceptor(authService, new ObjectMapper(), null);
+
+        Map<RequestMappingInfo, HandlerMethod> mappings = new HashMap<>();
+        mappings.put(RequestMappingInfo.paths("/api/auth/login").methods(RequestMethod.POST).build(), handler("login"));
+        mappings.put(RequestMappingInfo.paths("/api/cosas").methods(RequestMethod.GET).build(), handler("listar"));
+        mappings.put(RequestMappingInfo.paths("/api/cosas").methods(RequestMethod.POST).build(), handler("crear"));
+        mappings.put(RequestMappingInfo.paths("/api/informes").methods(RequestMethod.GET).build(), handler("informe"));
+        mappings.put(RequestMappingInfo.paths("/api/usuarios/{userId}").methods(RequestMethod.GET).build(), handler("perfil"));
+        interceptor.registrar(List.of(mappings));
+        return interceptor;
+    }
+
+    static HandlerMethod handler(String metodo) {
+        try {
+            return new HandlerMethod(new Controlador(), Controlador.class.getMethod(metodo));
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    static MockHttpServletRequest peticion(String metodo, String uri, String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest(metodo, uri);
+        if (token != null) {
+            request.setCookies(new Cookie(AuthService.SESSION_COOKIE, token));
+        }
+        return request;
+    }
+
+    private static RequiresAuth anotacion(String metodo) {
+        return handler(metodo).getMethodAnnotation(RequiresAuth.class);
+    }
+
+    private static SessionStore contando(SessionStore store, AtomicInteger lecturas) {
+        return new SessionStore() {
+            @Override
+            public String create(long userId, String rol, boolean pendingTwoFactor) {
+                return store.create(userId, rol, pendingTwoFactor);
+            }
+
+            @Override
+            public Optional<SessionRecord> find(String token) {
+                lecturas.incrementAndGet();
+                return store.find(token);
+            }
+
+            @Override
+            public void delete(String token) {
+                store.delete(token);
+            }
+        };
+    }
+}
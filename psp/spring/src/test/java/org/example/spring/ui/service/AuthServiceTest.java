@@ -0,0 +1,59 @@
+package org.example.spring.ui.service;
+
+import jakarta.servlet.http.Cookie;
+import org.example.spring.data.UsuarioRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cookie SID: la caducidad la lleva el almacén, no el navegador
+ */
+class AuthServiceTest {
+
+    private static final PasswordEncoder SIN_HASH = new PasswordEncoder() {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return rawPassword.toString();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return rawPassword.toString().equals(encodedPassword);
+        }
+    };
+
+    private final SessionStore store = new InMemorySessionStore(30);
+    private final AuthService authService = new AuthService(new UsuarioRepository(SIN_HASH),
+            new PasswordHashingService(SIN_HASH, 1, 1, 1000, 1), store);
+
+    @Test
+    void loginSetsBrowserSessionCookie() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertTrue(authService.login("user", "user123", new MockHttpServletRequest("POST", "/api/auth/login"), response).isPresent());
+
+        Cookie sid = response.getCookie(AuthService.SESSION_COOKIE);
+        assertEquals(-1, sid.getMaxAge());
+        assertTrue(store.find(sid.getValue()).isPresent());
+    }
+
+    @Test
+    void logoutExpiresCookieAndSession() {
+        MockHttpServletResponse login = new MockHttpServletResponse();
+        authService.login("user", "user123", new MockHttpServletRequest("POST", "/api/auth/login"), login);
+        String token = login.getCookie(AuthService.SESSION_COOKIE).getValue();
+
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/auth/logout");
+        request.setCookies(new Cookie(AuthService.SESSION_COOKIE, token));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        authService.logout(request, response);
+
+        assertEquals(0, response.getCookie(AuthService.SESSION_COOKIE).getMaxAge());
+        assertFalse(store.find(token).isPresent());
+    }
+}
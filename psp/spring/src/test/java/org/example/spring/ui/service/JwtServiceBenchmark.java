@@ -0,0 +1,84 @@
+package org.example.spring.ui.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Coste de validar un JWT con y sin la caché de tokens verificados
+ *
+ * No corre con un mvn test normal:
+ * <pre>
+ * mvn test -Dtest=JwtServiceBenchmark -Dbenchmark=true
+ * </pre>
+ *
+ * Con caché: los mismos tokens se presentan una y otra vez (lo normal, cada
+ * cliente repite su access token en cada petición). Sin caché (cache-size=0):
+ * cada validación verifica la firma y parsea el JSON, como antes.
+ *
+ * Es un bucle a mano como el resto de benchmarks del proyecto, no JMH (ningún
+ * módulo depende de JMH): rondas de calentamiento para que el JIT compile,
+ * mediana de varias rondas y el resultado de cada validación se usa para que
+ * no se elimine como código muerto. Sirve para comparar con y sin caché en la
+ * misma máquina, no como cifra absoluta. Al no acabar en Test, surefire no lo
+ * incluye por defecto y además necesita -Dbenchmark=true.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class JwtServiceBenchmark {
+
+    private static final int TOKENS = 1000;
+    private static final int OPERACIONES = 200_000;
+    private static final int RONDAS_CALENTAMIENTO = 3;
+    private static final int RONDAS = 5;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void validateAndParse() {
+        medir("validateAndParse con caché", 10_000);
+        medir("validateAndParse sin caché", 0);
+    }
+
+    private void medir(String nombre, int cacheSize) {
+        TokenRevocationStore revocaciones = new TokenRevocationStore(dir.resolve(cacheSize + ".log").toString(), 1024);
+        try {
+            JwtService jwtService = new JwtService("ClaveDePrueba", 3_600_000, 86_400_000, cacheSize, revocaciones);
+            String[] tokens = new String[TOKENS];
+            for (int i = 0; i < TOKENS; i++) {
+                tokens[i] = jwtService.generateAccessToken("usuario" + i, "USER", "familia" + i);
+            }
+
+            for (int i = 0; i < RONDAS_CALENTAMIENTO; i++) {
+                ronda(jwtService, tokens);
+            }
+            double[] nsPorOp = new double[RONDAS];
+            for (int i = 0; i < RONDAS; i++) {
+                long inicio = System.nanoTime();
+                ronda(jwtService, tokens);
+                nsPorOp[i] = (double) (System.nanoTime() - inicio) / OPERACIONES;
+            }
+            Arrays.sort(nsPorOp);
+            double mediana = nsPorOp[RONDAS / 2];
+            System.out.printf("%-28s %,10.0f ns/op %,12.0f tokens/s (mediana; mín %,.0f, máx %,.0f ns/op)%n",
+                nombre, mediana, 1e9 / mediana, nsPorOp[0], nsPorOp[RONDAS - 1]);
+        } finally {
+            revocaciones.cerrar();
+        }
+    }
+
+    private static void ronda(JwtService jwtService, String[] tokens) {
+        int usuarios = 0;
+        for (int i = 0; i < OPERACIONES; i++) {
+            if (jwtService.validateAndParse(tokens[i % TOKENS]).username() != null) {
+                usuarios++;
+            }
+        }
+        assertEquals(OPERACIONES, usuarios);
+    }
+}
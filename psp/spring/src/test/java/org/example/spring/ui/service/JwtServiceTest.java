@@ -0,0 +1,84 @@
+package org.example.spring.ui.service;
+
+import io.jsonwebtoken.JwtException;
+import org.example.spring.ui.dto.TokenResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tipos de token: un refresh token no vale donde se espera un access token
+ */
+class JwtServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private TokenRevocationStore revocaciones;
+    private JwtService jwtService;
+    private RefreshTokenService refreshTokenService;
+
+    @BeforeEach
+    void setUp() {
+        revocaciones = new TokenRevocationStore(dir.resolve("revocados.log").toString(), 1024);
+        jwtService = new JwtService("ClaveDePrueba", 60_000, 3_600_000, 100, revocaciones);
+        refreshTokenService = new RefreshTokenService(jwtService, revocaciones);
+    }
+
+    @AfterEach
+    void tearDown() {
+        revocaciones.cerrar();
+    }
+
+    @Test
+    void accessTokenIsAccepted() {
+        TokenResponse par = refreshTokenService.login("ana", "USER");
+
+        JwtService.ValidatedToken datos = jwtService.validateAndParse(par.accessToken());
+        assertEquals("ana", datos.username());
+        assertEquals("USER", datos.rol());
+    }
+
+    @Test
+    void refreshTokenIsRejectedAsAccessToken() {
+        TokenResponse par = refreshTokenService.login("ana", "USER");
+
+        assertThrows(JwtException.class, () -> jwtService.validateAndParse(par.refreshToken()));
+        // También si ya estaba en la caché de tokens verificados
+        refreshTokenService.refresh(par.refreshToken());
+        assertThrows(JwtException.class, () -> jwtService.validateAndParse(par.refreshToken()));
+        assertFalse(jwtService.isTokenValid(par.refreshToken(), "ana"));
+    }
+
+    /**
+     * Logout con el refresh token en la cabecera no revoca nada
+     */
+    @Test
+    void logoutRejectsRefreshTokenAsAccessToken() {
+        TokenResponse par = refreshTokenService.login("ana", "USER");
+
+        assertThrows(JwtException.class, () -> refreshTokenService.logout(par.refreshToken(), null));
+
+        jwtService.validateAndParse(par.accessToken());
+        TokenResponse nuevo = refreshTokenService.refresh(par.refreshToken());
+        assertNotEquals(par.refreshToken(), nuevo.refreshToken());
+    }
+
+    @Test
+    void logoutWithAccessTokenRevokesTheSession() {
+        TokenResponse par = refreshTokenService.login("ana", "USER");
+
+        refreshTokenService.logout(par.accessToken(), null);
+
+        assertThrows(JwtException.class, () -> jwtService.validateAndParse(par.accessToken()));
+        assertThrows(IllegalStateException.class, () -> refreshTokenService.refresh(par.refreshToken()));
+    }
+}
@@ -0,0 +1,270 @@
+package org.example.spring.ui.service;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * MailQueue con un JavaMailSender falso: reintentos, lotes con fallos
+ * parciales, spool tras reinicio y dead letters
+ */
+class MailQueueTest {
+
+    /**
+     * Lo que hace el servidor SMTP falso con cada lote
+     */
+    private interface Envio {
+        void send(MimeMessage[] lote) throws Exception;
+    }
+
+    @TempDir
+    Path dir;
+
+    private final List<MailQueue> colas = new ArrayList<>();
+
+    @AfterEach
+    void cerrarColas() {
+        colas.forEach(MailQueue::cerrar);
+    }
+
+    @Test
+    void retriesWithExponentialBackoffUntilSent() throws Exception {
+        List<Long> llamadas = new CopyOnWriteArrayList<>();
+        MailQueue cola = cola(lote -> {
+            llamadas.add(System.nanoTime());
+            if (llamadas.size() <= 2) {
+                throw new MailSendException("SMTP caído");
+            }
+        }, 5, 50);
+
+        cola.enqueue("a@ejemplo.com", "Asunto", "<p>hola</p>");
+        esperar(() -> metrica(cola, "sent") == 1);
+
+        assertEquals(3, llamadas.size());
+        assertEquals(2L, metrica(cola, "failedAttempts"));
+        assertEquals(0L, metrica(cola, "deadLettered"));
+        assertEquals(0L, metrica(cola, "spooled"));
+        assertEquals(0L, metrica(cola, "inFlight"));
+        // Espera base y luego el doble
+        assertTrue(llamadas.get(1) - llamadas.get(0) >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(llamadas.get(2) - llamadas.get(1) >= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    /**
+     * Si el servidor rechaza un destinatario del lote, solo ese se reintenta
+     */
+    @Test
+    void partialBatchFailureRetriesOnlyFailedMessages() throws Exception {
+        CountDownLatch ocupado = new CountDownLatch(1);
+        CountDownLatch soltar = new CountDownLatch(1);
+        List<List<String>> lotes = new CopyOnWriteArrayList<>();
+        MailQueue cola = cola(lote -> {
+            lotes.add(destinatarios(lote));
+            if (lotes.size() == 1) {
+                ocupado.countDown();
+                soltar.await();
+                return;
+            }
+            Map<Object, Exception> fallidos = new HashMap<>();
+            for (MimeMessage mime : lote) {
+                if (lotes.size() == 2 && destinatario(mime).equals("b@ejemplo.com")) {
+                    fallidos.put(mime, new MessagingException("buzón lleno"));
+                }
+            }
+            if (!fallidos.isEmpty()) {
+                throw new MailSendException(fallidos);
+            }
+        }, 5, 10);
+
+        // Mientras el único worker envía el primero, los otros tres se juntan en un lote
+        cola.enqueue("primero@ejemplo.com", "Asunto", "<p>1</p>");
+        assertTrue(ocupado.await(5, TimeUnit.SECONDS));
+        for (String para : List.of("a@ejemplo.com", "b@ejemplo.com", "c@ejemplo.com")) {
+            cola.enqueue(para, "Asunto", "<p>" + para + "</p>");
+        }
+        soltar.countDown();
+        esperar(() -> metrica(cola, "sent") == 4);
+
+        assertEquals(Set.of("a@ejemplo.com", "b@ejemplo.com", "c@ejemplo.com"), Set.copyOf(lotes.get(1)));
+        assertEquals(List.of("b@ejemplo.com"), lotes.get(2));
+        assertEquals(3, lotes.size());
+        assertEquals(1L, metrica(cola, "failedAttempts"));
+        assertEquals(0L, metrica(cola, "spooled"));
+    }
+
+    /**
+     * Lo que no llegó a enviarse antes de cerrar lo manda la siguiente cola
+     * que arranca sobre el mismo spool
+     */
+    @Test
+    void pendingMailIsSentAfterRestart() throws Exception {
+        CountDownLatch ocupado = new CountDownLatch(1);
+        MailQueue antes = cola(lote -> {
+            ocupado.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                throw new MailSendException("interrumpido");
+            }
+        }, 5, 10);
+        antes.enqueue("a@ejemplo.com", "Asunto", "<p>a</p>");
+        assertTrue(ocupado.await(5, TimeUnit.SECONDS));
+        antes.enqueue("b@ejemplo.com", "Asunto", "<p>b</p>");
+
+        antes.cerrar();
+        // El worker interrumpido reprograma "a" en el spool; "b" se queda en la cola
+        esperar(() -> metrica(antes, "failedAttempts") == 1 && metrica(antes, "inFlight") == 1);
+        assertEquals(2L, metrica(antes, "spooled"));
+        assertEquals(0L, metrica(antes, "sent"));
+
+        List<String> enviados = new CopyOnWriteArrayList<>();
+        MailQueue despues = cola(lote -> enviados.addAll(destinatarios(lote)), 5, 10);
+        esperar(() -> metrica(despues, "sent") == 2);
+
+        assertEquals(Set.of("a@ejemplo.com", "b@ejemplo.com"), Set.copyOf(enviados));
+        assertEquals(2, enviados.size());
+        assertEquals(0L, metrica(despues, "spooled"));
+    }
+
+    @Test
+    void exhaustedRetriesGoToDeadLetters() throws Exception {
+        AtomicInteger llamadas = new AtomicInteger();
+        MailQueue cola = cola(lote -> {
+            llamadas.incrementAndGet();
+            throw new MailSendException("SMTP caído");
+        }, 3, 10);
+
+        String id = cola.enqueue("a@ejemplo.com", "Asunto", "<p>hola</p>");
+        esperar(() -> metrica(cola, "deadLettered") == 1 && metrica(cola, "inFlight") == 0);
+
+        assertEquals(3, llamadas.get());
+        assertEquals(3L, metrica(cola, "failedAttempts"));
+        assertEquals(0L, metrica(cola, "spooled"));
+        assertEquals(0L, metrica(cola, "inFlight"));
+        String deadLetters = Files.readString(dir.resolve("dead-letter.log"), StandardCharsets.UTF_8);
+        assertTrue(deadLetters.contains("id=" + id), deadLetters);
+        assertTrue(deadLetters.contains("intentos=2"), deadLetters);
+    }
+
+    /**
+     * Si no se puede escribir en el spool, enqueue falla sin dejar el id
+     * marcado como en memoria
+     */
+    @Test
+    void failedSpoolWriteDoesNotLeakTheId() throws Exception {
+        MailQueue cola = cola(lote -> { }, 5, 10);
+        Path spool = dir.resolve("spool");
+        Files.delete(spool);
+        Files.createFile(spool);
+
+        assertThrows(UncheckedIOException.class,
+                () -> cola.enqueue("a@ejemplo.com", "Asunto", "<p>hola</p>"));
+        assertEquals(0L, metrica(cola, "inFlight"));
+        assertEquals(0L, metrica(cola, "enqueued"));
+
+        Files.delete(spool);
+        Files.createDirectory(spool);
+        cola.enqueue("a@ejemplo.com", "Asunto", "<p>hola</p>");
+        esperar(() -> metrica(cola, "sent") == 1);
+        assertEquals(0L, metrica(cola, "inFlight"));
+    }
+
+    /**
+     * El aviso (el código de activación en desarrollo) sale por consola en el
+     * primer fallo y no se repite en los reintentos
+     */
+    @Test
+    void warningIsPrintedOnceOnFirstFailure() throws Exception {
+        PrintStream original = System.out;
+        ByteArrayOutputStream consola = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(consola, true, StandardCharsets.UTF_8));
+        try {
+            MailQueue cola = cola(lote -> {
+                throw new MailSendException("SMTP caído");
+            }, 3, 10);
+            cola.enqueue("a@ejemplo.com", "Asunto", "<p>hola</p>", "Código: 123456");
+            esperar(() -> metrica(cola, "deadLettered") == 1);
+        } finally {
+            System.setOut(original);
+        }
+
+        String salida = consola.toString(StandardCharsets.UTF_8);
+        assertEquals(salida.indexOf("Código: 123456"), salida.lastIndexOf("Código: 123456"), salida);
+        assertTrue(salida.contains("Código: 123456"), salida);
+    }
+
+    private MailQueue cola(Envio envio, int maxIntentos, long espera) {
+        MailQueue cola = new MailQueue(mailSender(envio), 100, 1, 20, maxIntentos, espera, espera * 8,
+                dir.resolve("spool").toString(), dir.resolve("dead-letter.log").toString());
+        colas.add(cola);
+        return cola;
+    }
+
+    private static JavaMailSender mailSender(Envio envio) {
+        return (JavaMailSender) Proxy.newProxyInstance(
+                JavaMailSender.class.getClassLoader(),
+                new Class<?>[]{JavaMailSender.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "createMimeMessage" -> new MimeMessage((Session) null);
+                    case "send" -> {
+                        envio.send((MimeMessage[]) args[0]);
+                        yield null;
+                    }
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static List<String> destinatarios(MimeMessage[] lote) throws MessagingException {
+        List<String> destinatarios = new ArrayList<>();
+        for (MimeMessage mime : lote) {
+            destinatarios.add(destinatario(mime));
+        }
+        return destinatarios;
+    }
+
+    private static String destinatario(MimeMessage mime) throws MessagingException {
+        return ((InternetAddress) mime.getAllRecipients()[0]).getAddress();
+    }
+
+    private static long metrica(MailQueue cola, String nombre) {
+        return ((Number) cola.metrics().get(nombre)).longValue();
+    }
+
+    private static void esperar(BooleanSupplier condicion) throws InterruptedException {
+        long hasta = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condicion.getAsBoolean()) {
+            if (System.nanoTime() > hasta) {
+                throw new AssertionError("la cola de correo no avanzó");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package org.example.spring.ui.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * MmapSessionStore con varios hilos y varias instancias sobre el mismo fichero
+ */
+class MmapSessionStoreTest {
+
+    private static final int HILOS = 8;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void fileIsOwnerOnlyAndHoldsNoTokens() throws Exception {
+        Path fichero = dir.resolve("sesiones.bin");
+        MmapSessionStore store = new MmapSessionStore(fichero, 16, 60_000);
+        String token = store.create(7, "USER", false);
+
+        if (fichero.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(fichero)));
+        }
+        byte[] aleatorio = new byte[16];
+        ByteBuffer.wrap(Base64.getUrlDecoder().decode(token), 4, 16).get(aleatorio);
+        byte[] contenido = Files.readAllBytes(fichero);
+        for (int i = 0; i + aleatorio.length <= contenido.length; i++) {
+            assertFalse(Arrays.equals(aleatorio, 0, 16, contenido, i, i + 16), "token en claro en el fichero");
+        }
+    }
+
+    @Test
+    void reusedSlotDoesNotMatchOldToken() {
+        MmapSessionStore store = new MmapSessionStore(dir.resolve("sesiones.bin"), 1, 60_000);
+        String antiguo = store.create(1, "USER", false);
+        store.delete(antiguo);
+        String nuevo = store.create(2, "ADMIN", false);
+
+        assertFalse(store.find(antiguo).isPresent());
+        assertEquals(2L, store.find(nuevo).orElseThrow().userId());
+        // Borrar con el token antiguo no toca la sesión nueva
+        store.delete(antiguo);
+        assertTrue(store.find(nuevo).isPresent());
+    }
+
+    @Test
+    void renewsAfterHalfTheTtl() throws Exception {
+        MmapSessionStore store = new MmapSessionStore(dir.resolve("sesiones.bin"), 16, 400);
+        String token = store.create(1, "USER", false);
+        long caducidad = store.find(token).orElseThrow().expiresAt();
+
+        Thread.sleep(250);
+        long renovada = store.find(token).orElseThrow().expiresAt();
+        assertTrue(renovada > caducidad, "no se renovó");
+
+        Thread.sleep(250);
+        // Sin la renovación ya habría caducado
+        assertTrue(store.find(token).isPresent());
+        Thread.sleep(450);
+        assertFalse(store.find(token).isPresent());
+    }
+
+    /**
+     * Dos instancias sobre el mismo fichero (como dos procesos) crean, leen,
+     * renuevan y borran a la vez: cada token solo encuentra su propia sesión,
+     * nunca otra ni una a medio escribir
+     */
+    @Test
+    void concurrentCreateFindRenewDelete() throws Exception {
+        Path fichero = dir.resolve("sesiones.bin");
+        // ttl corto: las lecturas a partir de la mitad renuevan
+        MmapSessionStore[] instancias = {
+            new MmapSessionStore(fichero, 256, 200),
+            new MmapSessionStore(fichero, 256, 200)
+        };
+        ConcurrentLinkedQueue<String> errores = new ConcurrentLinkedQueue<>();
+        AtomicBoolean fin = new AtomicBoolean();
+        CountDownLatch salida = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(HILOS);
+        try {
+            List<Future<Integer>> tareas = new ArrayList<>();
+            for (int h = 0; h < HILOS; h++) {
+                int hilo = h;
+                tareas.add(executor.submit(() -> {
+                    salida.await();
+                    int vueltas = 0;
+                    while (!fin.get()) {
+                        MmapSessionStore store = instancias[vueltas % 2];
+                        long usuario = hilo * 1_000_000L + vueltas;
+                        String rol = vueltas % 3 == 0 ? "ADMIN" : "USER";
+                        String token = store.create(usuario, rol, vueltas % 2 == 0);
+                        for (int lectura = 0; lectura < 5; lectura++) {
+                            Optional<SessionStore.SessionRecord> sesion = instancias[lectura % 2].find(token);
+                            if (sesion.isEmpty()
+                                    || sesion.get().userId() != usuario
+                                    || !sesion.get().rol().equals(rol)
+                                    || sesion.get().pendingTwoFactor() != (vueltas % 2 == 0)) {
+                                errores.add("hilo " + hilo + ", vuelta " + vueltas + ": " + sesion);
+                            }
+                        }
+                        instancias[(vueltas + 1) % 2].delete(token);
+                        if (store.find(token).isPresent()) {
+                            errores.add("hilo " + hilo + ", vuelta " + vueltas + ": sigue tras borrar");
+                        }
+                        vueltas++;
+                    }
+                    return vueltas;
+                }));
+            }
+
+            // Sesiones que se leen sin parar y cruzan la mitad del ttl (renovación concurrente)
+            String compartida = instancias[0].create(42, "USER", false);
+            salida.countDown();
+            long hasta = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+            while (System.nanoTime() < hasta) {
+                if (instancias[1].find(compartida).map(SessionStore.SessionRecord::userId).orElse(-1L) != 42L) {
+                    errores.add("sesión compartida perdida o cambiada");
+                }
+                Thread.sleep(10);
+            }
+            fin.set(true);
+            int total = 0;
+            for (Future<Integer> tarea : tareas) {
+                total += tarea.get(1, TimeUnit.MINUTES);
+            }
+            assertTrue(total > HILOS, "sin vueltas");
+            assertTrue(errores.isEmpty(), () -> errores.size() + " errores, p. ej. " + errores.peek());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void rejectsForeignTokens() {
+        MmapSessionStore store = new MmapSessionStore(dir.resolve("sesiones.bin"), 4, 60_000);
+        store.create(1, "USER", false);
+
+        assertFalse(store.find(null).isPresent());
+        assertFalse(store.find("corto").isPresent());
+        assertFalse(store.find(new InMemorySessionStore(30).create(1, "USER", false)).isPresent());
+        byte[] fuera = ByteBuffer.allocate(20).putInt(99).array();
+        assertFalse(store.find(Base64.getUrlEncoder().withoutPadding().encodeToString(fuera)).isPresent());
+    }
+}
@@ -0,0 +1,151 @@
+package org.example.spring.ui.service;
+
+import org.example.spring.data.UsuarioRepository;
+import org.example.spring.ui.controller.AuthController;
+import org.example.spring.ui.dto.LoginRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pool de hash saturado: 503 con Retry-After, plazo vencido y cierre
+ */
+class PasswordHashingServiceTest {
+
+    /**
+     * matches se queda esperando hasta liberar(); encode no bloquea (lo usa
+     * UsuarioRepository al arrancar)
+     */
+    private static final class EncoderBloqueante implements PasswordEncoder {
+        final CountDownLatch dentro = new CountDownLatch(1);
+        final CountDownLatch liberar = new CountDownLatch(1);
+        final CountDownLatch interrumpido = new CountDownLatch(1);
+        final AtomicInteger llamadas = new AtomicInteger();
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return rawPassword.toString();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            llamadas.incrementAndGet();
+            dentro.countDown();
+            try {
+                liberar.await();
+            } catch (InterruptedException e) {
+                interrumpido.countDown();
+                Thread.currentThread().interrupt();
+            }
+            return rawPassword.toString().equals(encodedPassword);
+        }
+    }
+
+    @Test
+    void fullQueueAnswers503WithRetryAfter() throws Exception {
+        EncoderBloqueante encoder = new EncoderBloqueante();
+        PasswordHashingService service = new PasswordHashingService(encoder, 1, 1, 10_000, 3);
+        UsuarioRepository usuarios = new UsuarioRepository(encoder);
+        AuthService authService = new AuthService(usuarios, service, new InMemorySessionStore(30));
+        AuthController controller = new AuthController(authService, null, usuarios, service, null);
+        try {
+            // Uno ocupa el único hilo y otro la única plaza de la cola
+            CompletableFuture<Boolean> enCurso = CompletableFuture.supplyAsync(() -> service.matches("a", "a"));
+            assertTrue(encoder.dentro.await(5, TimeUnit.SECONDS));
+            CompletableFuture<Boolean> enCola = CompletableFuture.supplyAsync(() -> service.matches("b", "b"));
+            esperarCola(service, 1);
+
+            assertThrows(RejectedExecutionException.class, () -> service.matches("c", "c"));
+
+            ResponseEntity<?> respuesta = controller.login(new LoginRequest("user", "user123"),
+                new MockHttpServletRequest("POST", "/api/auth/login"), new MockHttpServletResponse());
+            assertEquals(503, respuesta.getStatusCode().value());
+            assertTrue(Integer.parseInt(respuesta.getHeaders().getFirst("Retry-After")) >= 3);
+            assertEquals(2L, service.metrics().get("rejected"));
+
+            encoder.liberar.countDown();
+            assertTrue(enCurso.get(5, TimeUnit.SECONDS));
+            assertTrue(enCola.get(5, TimeUnit.SECONDS));
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    /**
+     * Plazo vencido: la tarea en cola sale de la cola (su hueco vuelve a estar
+     * libre) y nunca llega a hacer el hash; la que ya se ejecutaba termina
+     */
+    @Test
+    void expiredTasksLeaveTheQueueAndNeverHash() throws Exception {
+        EncoderBloqueante encoder = new EncoderBloqueante();
+        PasswordHashingService service = new PasswordHashingService(encoder, 1, 1, 300, 1);
+        try {
+            CompletableFuture<Boolean> enCurso = CompletableFuture.supplyAsync(() -> service.matches("a", "a"));
+            assertTrue(encoder.dentro.await(5, TimeUnit.SECONDS));
+            CompletableFuture<Boolean> enCola = CompletableFuture.supplyAsync(() -> service.matches("b", "b"));
+            esperarCola(service, 1);
+
+            assertTrue(causa(enCurso) instanceof RejectedExecutionException);
+            assertTrue(causa(enCola) instanceof RejectedExecutionException);
+            assertEquals(2L, service.metrics().get("timedOut"));
+            assertEquals(0, service.metrics().get("queueDepth"));
+
+            // El hueco de la cola está libre aunque el hilo siga con el hash de "a"
+            CompletableFuture<Boolean> siguiente = CompletableFuture.supplyAsync(() -> service.matches("c", "c"));
+            esperarCola(service, 1);
+            encoder.liberar.countDown();
+            assertTrue(siguiente.get(5, TimeUnit.SECONDS));
+            // "a" y "c": "b" nunca llegó a ejecutarse
+            assertEquals(2, encoder.llamadas.get());
+            assertEquals(0L, service.metrics().get("rejected"));
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void shutdownStopsWorkers() throws Exception {
+        EncoderBloqueante encoder = new EncoderBloqueante();
+        PasswordHashingService service = new PasswordHashingService(encoder, 1, 1, 10_000, 1);
+        CompletableFuture<Boolean> enCurso = CompletableFuture.supplyAsync(() -> service.matches("a", "a"));
+        assertTrue(encoder.dentro.await(5, TimeUnit.SECONDS));
+
+        service.shutdown();
+
+        assertTrue(encoder.interrumpido.await(5, TimeUnit.SECONDS), "el hilo de hash sigue vivo");
+        assertThrows(RejectedExecutionException.class, () -> service.matches("b", "b"));
+        enCurso.handle((r, e) -> r).get(5, TimeUnit.SECONDS);
+    }
+
+    private static Throwable causa(CompletableFuture<?> futuro) throws Exception {
+        try {
+            futuro.get(5, TimeUnit.SECONDS);
+            return null;
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+    }
+
+    private static void esperarCola(PasswordHashingService service, int profundidad) throws InterruptedException {
+        long hasta = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!Integer.valueOf(profundidad).equals(service.metrics().get("queueDepth"))) {
+            if (System.nanoTime() > hasta) {
+                throw new AssertionError("la cola no se llenó");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
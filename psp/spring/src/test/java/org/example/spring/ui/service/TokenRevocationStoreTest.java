@@ -0,0 +1,47 @@
+package org.example.spring.ui.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Rueda de caducidad de las revocaciones
+ */
+class TokenRevocationStoreTest {
+
+    /**
+     * Una entrada que no había caducado en el último avance sale en el
+     * siguiente aunque caiga en la misma ranura, sin esperar una vuelta entera
+     */
+    @Test
+    void entryInCurrentSlotIsReapedOnNextAdvance() {
+        TokenRevocationStore.TimingWheel rueda = new TokenRevocationStore.TimingWheel(1000, 3600);
+        long inicioTick = System.currentTimeMillis() / 1000 * 1000;
+        rueda.add("a", inicioTick + 900);
+
+        assertEquals(List.of(), rueda.advance(inicioTick + 500));
+        assertEquals(List.of("a"), ids(rueda.advance(inicioTick + 950)));
+
+        // Y lo mismo si el siguiente avance ya es del tick siguiente
+        rueda.add("b", inicioTick + 1900);
+        assertEquals(List.of(), rueda.advance(inicioTick + 1100));
+        assertEquals(List.of("b"), ids(rueda.advance(inicioTick + 2100)));
+    }
+
+    @Test
+    void lateAdvanceScansEachSlotOnce() {
+        TokenRevocationStore.TimingWheel rueda = new TokenRevocationStore.TimingWheel(1000, 10);
+        long inicioTick = System.currentTimeMillis() / 1000 * 1000;
+        for (int i = 0; i < 5; i++) {
+            rueda.add("t" + i, inicioTick + i * 1000L + 500);
+        }
+        // Más de una vuelta de retraso
+        assertEquals(5, rueda.advance(inicioTick + 25_000).size());
+    }
+
+    private static List<String> ids(List<TokenRevocationStore.TimingWheel.Entrada> entradas) {
+        return entradas.stream().map(TokenRevocationStore.TimingWheel.Entrada::id).toList();
+    }
+}